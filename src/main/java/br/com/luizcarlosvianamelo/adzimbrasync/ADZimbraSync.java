@@ -2,7 +2,9 @@ package br.com.luizcarlosvianamelo.adzimbrasync;
 
 import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADTree;
 import br.com.luizcarlosvianamelo.adzimbrasync.zimbra.ADChangePasswordListener;
+import br.com.luizcarlosvianamelo.adzimbrasync.zimbra.ADConnectionManager;
 import br.com.luizcarlosvianamelo.adzimbrasync.zimbra.ADCustomAuth;
+import br.com.luizcarlosvianamelo.adzimbrasync.zimbra.ADWriteBackQueue;
 
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.cs.account.auth.ZimbraCustomAuth;
@@ -44,6 +46,8 @@ public class ADZimbraSync implements ZimbraExtension {
 		ChangePasswordListener.register("ADZimbraSyncPasswordChanger", new ADChangePasswordListener());
 		// registra o método de autenticação do AD
 		ZimbraCustomAuth.register("ad", new ADCustomAuth());
+		// inicia a gravação das modificações das contas no AD, incluindo as pendentes
+		ADWriteBackQueue.start();
 	}
 	
 	/**
@@ -51,7 +55,10 @@ public class ADZimbraSync implements ZimbraExtension {
 	 */
 	@Override
 	public void destroy() {
-		
+		// as modificações pendentes são gravadas na próxima inicialização
+		ADWriteBackQueue.shutdown();
+		// fecha as conexões abertas com os servidores AD
+		ADConnectionManager.shutdown();
 	}
 
 	/**
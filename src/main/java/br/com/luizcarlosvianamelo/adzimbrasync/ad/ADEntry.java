@@ -47,6 +47,13 @@ public abstract class ADEntry extends LDAPEntry {
 	@LDAPAttribute( accessMode = AttributeAccessMode.READ )
 	protected Date whenChanged;
 
+	/**
+	 * O identificador único da entrada, em formato hexadecimal. Este não é
+	 * alterado quando a entrada é renomeada ou movida.
+	 */
+	@LDAPAttribute( accessMode = AttributeAccessMode.READ )
+	protected String objectGUID;
+
 	/**
 	 * Construtor padrão da classe. Os atributos desta são inicializadas com o
 	 * valor padrão <code>null</code>.
@@ -152,6 +159,20 @@ public abstract class ADEntry extends LDAPEntry {
 		this.whenChanged = whenChanged;
 	}
 
+	/**
+	 * Retorna o identificador único da entrada, em formato hexadecimal.
+	 */
+	public String getObjectGUID() {
+		return objectGUID;
+	}
+
+	/**
+	 * Ajusta o identificador único da entrada.
+	 */
+	public void setObjectGUID(String objectGUID) {
+		this.objectGUID = objectGUID;
+	}
+
 	/**
 	 * Função privada que verifica se a entrada pertence a um determinado grupo
 	 * a partir do seu DN.
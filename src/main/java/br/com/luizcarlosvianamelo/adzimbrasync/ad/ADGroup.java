@@ -1,6 +1,8 @@
 package br.com.luizcarlosvianamelo.adzimbrasync.ad;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.naming.directory.Attributes;
 
@@ -21,7 +23,15 @@ import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPEntry;
 public class ADGroup extends ADEntry {
 	
 	@LDAPAttribute( name = "member" )
-	private List<DN> members;
+	protected List<DN> members;
+
+	/*
+	 * Conjunto dos membros utilizado na verificação de pertinência. Este é
+	 * montado apenas na primeira verificação e refeito quando a lista de
+	 * membros for substituída.
+	 */
+	private Set<DN> membersSet;
+	private List<DN> membersSetSource;
 	
 	/**
 	 * Construtor padrão da classe. Este inicializa os atributos com o valor
@@ -36,7 +46,10 @@ public class ADGroup extends ADEntry {
 	}
 
 	/**
-	 * Retorna a lista contendo os DNs das entradas que pertencem ao grupo.
+	 * Retorna a lista contendo os DNs das entradas que pertencem ao grupo. Caso
+	 * a lista retornada seja modificada, a lista deverá ser ajustada novamente
+	 * através da função {@link #setMembers(List)} para que as verificações de
+	 * pertinência a considerem.
 	 */
 	public List<DN> getMembers() {
 		return members;
@@ -47,24 +60,27 @@ public class ADGroup extends ADEntry {
 	 */
 	public void setMembers(List<DN> members) {
 		this.members = members;
+		this.membersSet = null;
 	}
 	
 	/**
 	 * Função privada que verifica se uma entrada com o determinado DN pertence
-	 * a este grupo.
+	 * a este grupo. A verificação é feita em um conjunto indexado pelo DN,
+	 * logo não depende da quantidade de membros do grupo.
 	 * @param dn O DN da entrada a ser checada.
 	 * @return Retorna <code>true</code> caso a entrada com o DN passado
 	 * pertencer ao grupo. Caso contrário, retorna <code>false</code>.
 	 */
 	private boolean isMember(DN dn) {
-		// verifica a lista de membros do grupo
-		if (this.members != null) {
-			for (DN memberDn : this.members)
-				// se o DN estiver contido na lista
-				if (memberDn.equals(dn))
-					return true;
+		if (this.members == null)
+			return false;
+
+		// monta o conjunto caso a lista de membros tenha sido substituída
+		if (this.membersSet == null || this.membersSetSource != this.members) {
+			this.membersSet = new HashSet<>(this.members);
+			this.membersSetSource = this.members;
 		}
-		return false;
+		return this.membersSet.contains(dn);
 	}
 
 	/**
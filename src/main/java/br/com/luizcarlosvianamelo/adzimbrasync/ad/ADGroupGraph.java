@@ -0,0 +1,152 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ad;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.DN;
+
+/**
+ * Classe que representa o grafo de pertinência entre os grupos do AD. Este é
+ * utilizado para resolver os membros de grupos aninhados no cliente, sem que
+ * seja feita uma busca no servidor para cada grupo. Os grupos podem possuir
+ * ciclos de pertinência, que são ignorados durante a resolução.
+ * <p>Os membros transitivos de cada grupo são armazenados após o cálculo,
+ * logo os grupos contidos em vários outros são percorridos apenas uma vez.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+public class ADGroupGraph {
+
+	private Map<DN, List<DN>> groupMembers;
+
+	private Map<DN, Set<DN>> groupParents;
+
+	private Map<DN, Set<DN>> nestedMembersCache;
+
+	/**
+	 * Construtor da classe.
+	 * @param groups Os grupos do AD. Apenas o DN e os membros dos grupos são
+	 * utilizados.
+	 */
+	public ADGroupGraph(Collection<ADGroup> groups) {
+		this.groupMembers = new HashMap<>();
+		this.groupParents = new HashMap<>();
+		this.nestedMembersCache = new HashMap<>();
+
+		for (ADGroup group : groups) {
+			List<DN> members = group.getMembers();
+			this.groupMembers.put(group.getDistinguishedName(),
+					members != null ? members : Collections.<DN>emptyList());
+		}
+
+		// monta as arestas inversas, dos grupos membros para os grupos pai
+		for (Map.Entry<DN, List<DN>> entry : this.groupMembers.entrySet()) {
+			for (DN member : entry.getValue()) {
+				if (!this.groupMembers.containsKey(member))
+					continue;
+
+				Set<DN> parents = this.groupParents.get(member);
+				if (parents == null) {
+					parents = new HashSet<>();
+					this.groupParents.put(member, parents);
+				}
+				parents.add(entry.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Função que faz a leitura de todos os grupos do AD para a montagem do
+	 * grafo. São lidos apenas o DN e os membros de cada grupo.
+	 * @param rep O repositório de grupos.
+	 * @return Retorna o grafo dos grupos.
+	 * @throws Exception Lança exceção quando não for possível realizar a
+	 * busca.
+	 */
+	public static ADGroupGraph load(ADGroupsRepository rep) throws Exception {
+		return new ADGroupGraph(rep.queryGroups("", "distinguishedName", "member"));
+	}
+
+	/**
+	 * Função que retorna os membros de um grupo, incluindo os membros dos
+	 * grupos contidos nele. Os grupos não são incluídos no resultado.
+	 * @param group O DN do grupo.
+	 * @return Retorna o conjunto com os DNs dos membros do grupo. Caso o grupo
+	 * não exista no grafo, retorna um conjunto vazio.
+	 */
+	public Set<DN> getNestedMembers(DN group) {
+		Set<DN> members = this.nestedMembersCache.get(group);
+		if (members != null)
+			return members;
+
+		members = new HashSet<>();
+		Set<DN> visitedGroups = new HashSet<>();
+		Deque<DN> pendingGroups = new ArrayDeque<>();
+		pendingGroups.push(group);
+		visitedGroups.add(group);
+
+		while (!pendingGroups.isEmpty()) {
+			List<DN> currentMembers = this.groupMembers.get(pendingGroups.pop());
+			if (currentMembers == null)
+				continue;
+
+			for (DN member : currentMembers) {
+				if (!this.groupMembers.containsKey(member)) {
+					members.add(member);
+					continue;
+				}
+
+				// o grupo já foi visitado, o que também evita os ciclos
+				if (!visitedGroups.add(member))
+					continue;
+
+				// reutiliza os membros já calculados do subgrupo
+				Set<DN> cachedMembers = this.nestedMembersCache.get(member);
+				if (cachedMembers != null)
+					members.addAll(cachedMembers);
+				else
+					pendingGroups.push(member);
+			}
+		}
+
+		members = Collections.unmodifiableSet(members);
+		this.nestedMembersCache.put(group, members);
+		return members;
+	}
+
+	/**
+	 * Função que retorna os grupos que contêm, direta ou indiretamente, os
+	 * grupos passados.
+	 * @param groups Os DNs dos grupos.
+	 * @return Retorna o conjunto com os DNs dos grupos passados e de todos os
+	 * grupos que os contêm.
+	 */
+	public Set<DN> getAncestors(Collection<DN> groups) {
+		Set<DN> ancestors = new HashSet<>();
+		Deque<DN> pendingGroups = new ArrayDeque<>();
+		for (DN group : groups) {
+			if (ancestors.add(group))
+				pendingGroups.push(group);
+		}
+
+		while (!pendingGroups.isEmpty()) {
+			Set<DN> parents = this.groupParents.get(pendingGroups.pop());
+			if (parents == null)
+				continue;
+			for (DN parent : parents) {
+				if (ancestors.add(parent))
+					pendingGroups.push(parent);
+			}
+		}
+
+		return ancestors;
+	}
+}
@@ -3,6 +3,7 @@ package br.com.luizcarlosvianamelo.adzimbrasync.ad;
 import java.util.List;
 
 import br.com.luizcarlosvianamelo.adzimbrasync.ldap.DN;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPTree;
 
 /**
  * Classe que representa o repositório de grupos que estão contidos na árvore do
@@ -57,15 +58,18 @@ public class ADGroupsRepository {
 	 * o filtro definido.
 	 * @param searchFilter O filtro a ser aplicado durante a busca dos grupos.
 	 * Este segue o padrão de filtros do LDAP.
+	 * @param returnAttributes A lista com os atributos que serão lidos. Caso
+	 * seja vazia, serão lidos todos os atributos de leitura da classe
+	 * {@link ADGroup}.
 	 * @return A lista contendo os grupos da árvore do AD que não foram
 	 * filtrados. Caso não haja grupos na árvore ou todos os grupos foram
 	 * filtrados, é retornada uma lista vazia.
 	 * @throws Exception Lança exceção quando ocorre um erro durante a
 	 * realização da consulta no AD.
 	 */
-	public List<ADGroup> queryGroups(String searchFilter) throws Exception {
+	public List<ADGroup> queryGroups(String searchFilter, String... returnAttributes) throws Exception {
 		// faz a consulta ao LDAP dos grupos
-		return this.adTree.search(ADGroup.class, searchFilter);
+		return this.adTree.search(ADGroup.class, searchFilter, returnAttributes);
 	}
 
 	/**
@@ -81,7 +85,8 @@ public class ADGroupsRepository {
 		 * Faz a consulta do grupo que possui o attributo distinguishedName com o valor
 		 * passado. Esta consulta deverá retornar apenas um grupo.
 		 */
-		List<ADGroup> groups = this.queryGroups(String.format("(distinguishedName=%s)", groupDN.toString()));
+		List<ADGroup> groups = this.queryGroups(String.format("(distinguishedName=%s)",
+				LDAPTree.escapeFilterValue(groupDN.toString())));
 
 		// retorna o grupo caso ele tenha sido encontrado
 		if (groups.size() > 0)
@@ -123,12 +128,28 @@ public class ADGroupsRepository {
 	 * realização da consulta no AD.
 	 */
 	public List<ADGroup> queryDistributionLists(boolean withMail) throws Exception {
+		return this.queryDistributionLists("", withMail);
+	}
+
+	/**
+	 * Função que faz a busca de listas de distribuição cofiguradas no AD de
+	 * acordo com o filtro definido.
+	 * @param searchFilter O filtro a ser aplicado durante a busca das listas.
+	 * Este segue o padrão de filtros do LDAP.
+	 * @param withMail Indica se somente as listas que tiverem o atributo
+	 * <code>mail</code> ajustado serão retornados.
+	 * @return Retorna a lista contendo as listas de distribuição do AD. Caso
+	 * não haja grupos, é retornada uma lista vazia.
+	 * @throws Exception Lança exceção quando ocorre um erro durante a
+	 * realização da consulta no AD.
+	 */
+	public List<ADGroup> queryDistributionLists(String searchFilter, boolean withMail) throws Exception {
 		/*
 		 * Faz a query do LDAP em que busca as listas de distribuição
 		 * configuradas no AD. Isto é feito verificando se o bit 0x80000000 do
 		 * atributo groupType não está ajustado.
 		 */
-		String searchQuery = "(!(groupType:1.2.840.113556.1.4.803:=2147483648))";
+		String searchQuery = "(!(groupType:1.2.840.113556.1.4.803:=2147483648))" + searchFilter;
 
 		// busca apenas os grupos que possuem e-mail
 		if (withMail)
@@ -204,7 +225,8 @@ public class ADGroupsRepository {
 		 * Faz a query do LDAP em que busca as entradas que tem o atributo
 		 * memberOf com o valor do DN do usuário.
 		 */
-		String searchQuery = String.format("(member=%s)", entry.getDistinguishedName().toString());
+		String searchQuery = String.format("(member=%s)",
+				LDAPTree.escapeFilterValue(entry.getDistinguishedName().toString()));
 
 		// busca apenas os grupos que possuem e-mail
 		if (withMail)
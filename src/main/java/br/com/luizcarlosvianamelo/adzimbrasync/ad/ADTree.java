@@ -1,5 +1,15 @@
 package br.com.luizcarlosvianamelo.adzimbrasync.ad;
 
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.BasicControl;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.ExtendedRequest;
+import javax.naming.ldap.ExtendedResponse;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPAttributeValues;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPDirSyncResults;
 import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPTree;
 
 /**
@@ -12,6 +22,32 @@ import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPTree;
  *
  */
 public class ADTree extends LDAPTree {
+
+	/**
+	 * Atributos do AD que possuem valores binários.
+	 */
+	private static final String[] BINARY_ATTRIBUTES = { "invocationId", "objectGUID" };
+
+	/**
+	 * O OID do controle <i>Show Deleted</i>, que faz com que a busca retorne
+	 * as entradas removidas do AD.
+	 */
+	public static final String SHOW_DELETED_OID = "1.2.840.113556.1.4.417";
+
+	/**
+	 * O OID da operação estendida <i>Fast Bind</i> do AD. Após esta operação,
+	 * as operações de bind da conexão apenas validam as credenciais do
+	 * usuário, sem que as permissões deste sejam carregadas e sem que a
+	 * conexão fique autenticada.
+	 */
+	public static final String FAST_BIND_OID = "1.2.840.113556.1.4.1781";
+
+	/**
+	 * O GUID conhecido do container <i>Deleted Objects</i> do domínio. Este
+	 * é utilizado na base de busca, já que o nome do container depende do
+	 * idioma do AD.
+	 */
+	private static final String DELETED_OBJECTS_WKGUID = "18E2EA80684F11D2B9AA00C04F79F805";
 	
 	private ADUsersRepository usersRepository;
 	
@@ -38,6 +74,9 @@ public class ADTree extends LDAPTree {
 			String ldapSearchBindDn,
 			String ldapSearchBindPassword) {
 		super(ldapUrl, ldapSearchBase, ldapSearchBindDn, ldapSearchBindPassword);
+
+		// atributos do AD que possuem valores binários
+		this.setBinaryAttributes(BINARY_ATTRIBUTES);
 		
 		// inicializa os repositórios
 		this.usersRepository = new ADUsersRepository(this);
@@ -61,4 +100,165 @@ public class ADTree extends LDAPTree {
 	public ADGroupsRepository getGroupsRepository() {
 		return groupsRepository;
 	}
+
+	/**
+	 * Função que retorna o maior número de sequência de atualização (USN)
+	 * gravado no controlador de domínio conectado. Todas as entradas
+	 * modificadas após a leitura deste valor terão o atributo
+	 * <code>uSNChanged</code> maior que ele.
+	 * @return Retorna o maior USN do controlador de domínio. Caso o servidor
+	 * não informe este valor, retorna <code>-1</code>.
+	 * @throws Exception Lança exceção quando não for possível ler a raiz do
+	 * servidor.
+	 */
+	public long getHighestCommittedUSN() throws Exception {
+		Attribute attr = this.getAttributes("", "highestCommittedUSN").get("highestCommittedUSN");
+		if (attr == null || attr.size() == 0)
+			return -1;
+		return Long.parseLong(attr.get().toString());
+	}
+
+	/**
+	 * Função que retorna o identificador da base de dados do controlador de
+	 * domínio conectado (<code>invocationId</code>). Os números de sequência
+	 * de atualização (USN) são válidos apenas para um mesmo identificador,
+	 * logo a mudança deste indica que o servidor conectado foi trocado ou que
+	 * a sua base de dados foi restaurada.
+	 * @return Retorna o identificador em formato hexadecimal. Caso o servidor
+	 * não informe este valor, retorna <code>null</code>.
+	 * @throws Exception Lança exceção quando não for possível ler as
+	 * informações do servidor.
+	 */
+	public String getInvocationId() throws Exception {
+		// pega o DN do objeto com as configurações do serviço de diretório
+		Attribute dsServiceName = this.getAttributes("", "dsServiceName").get("dsServiceName");
+		if (dsServiceName == null || dsServiceName.size() == 0)
+			return null;
+
+		Attribute attr = this.getAttributes(dsServiceName.get().toString(), "invocationId").get("invocationId");
+		if (attr == null || attr.size() == 0)
+			return null;
+		return LDAPAttributeValues.toHex((byte[]) attr.get());
+	}
+
+	/**
+	 * Função que retorna o DN da partição do domínio conectado
+	 * (<code>defaultNamingContext</code>).
+	 * @return Retorna o DN da partição. Caso o servidor não informe este
+	 * valor, retorna <code>null</code>.
+	 * @throws Exception Lança exceção quando não for possível ler a raiz do
+	 * servidor.
+	 */
+	public String getDefaultNamingContext() throws Exception {
+		Attribute attr = this.getAttributes("", "defaultNamingContext").get("defaultNamingContext");
+		if (attr == null || attr.size() == 0)
+			return null;
+		return attr.get().toString();
+	}
+
+	/**
+	 * Função que faz a busca das entradas do domínio modificadas desde a
+	 * busca que gerou o <i>cookie</i> passado, utilizando o controle
+	 * <i>DirSync</i> (veja
+	 * {@link LDAPTree#searchDirSync(String, String, int, byte[], String...)}).
+	 * A busca é feita em toda a partição do domínio, independente da base de
+	 * busca configurada.
+	 * @param filter O filtro a ser aplicado na busca.
+	 * @param flags As opções do controle.
+	 * @param cookie O <i>cookie</i> retornado na última busca. Caso seja
+	 * <code>null</code>, serão retornadas todas as entradas.
+	 * @param returnAttributes A lista com os atributos que serão retornados.
+	 * Se esta for vazia, serão retornados todos os atributos modificados.
+	 * @return Retorna o resultado da busca.
+	 * @throws Exception Lança exceção quando não for possível realizar a
+	 * busca.
+	 */
+	public LDAPDirSyncResults searchDirSync(String filter, int flags, byte[] cookie, String... returnAttributes)
+			throws Exception {
+		String namingContext = this.getDefaultNamingContext();
+		if (namingContext == null)
+			throw new Exception("The server did not return the default naming context");
+		return this.searchDirSync(namingContext, filter, flags, cookie, returnAttributes);
+	}
+
+	/**
+	 * Função que faz a busca das entradas removidas do domínio, que ficam no
+	 * container <i>Deleted Objects</i> até o fim do seu tempo de vida. A busca
+	 * utiliza o controle <i>Show Deleted</i> (OID {@value #SHOW_DELETED_OID})
+	 * e é paginada, logo pode retornar mais entradas que o limite de
+	 * resultados do servidor, como na primeira sincronização, quando são
+	 * lidas todas as entradas removidas.
+	 * <p>Sem a lixeira do AD habilitada, as entradas removidas mantêm apenas
+	 * alguns atributos, como o <code>objectGUID</code> e o
+	 * <code>lastKnownParent</code>.</p>
+	 * @param filter O filtro a ser aplicado na busca.
+	 * @param returnAttributes A lista com os atributos que serão retornados.
+	 * @return Retorna as entradas removidas. O resultado deverá ser fechado
+	 * caso não seja lido até o final.
+	 * @throws Exception Lança exceção quando não for possível realizar a
+	 * busca.
+	 */
+	public NamingEnumeration<SearchResult> searchDeletedObjects(String filter, String... returnAttributes)
+			throws Exception {
+		String namingContext = this.getDefaultNamingContext();
+		if (namingContext == null)
+			throw new Exception("The server did not return the default naming context");
+
+		String searchBase = String.format("<WKGUID=%s,%s>", DELETED_OBJECTS_WKGUID, namingContext);
+		int pageSize = this.getPageSize() > 0 ? this.getPageSize() : DEFAULT_PAGE_SIZE;
+		return this.searchPaged(searchBase, filter,
+				new Control[] { new BasicControl(SHOW_DELETED_OID, Control.CRITICAL, null) }, pageSize,
+				returnAttributes);
+	}
+
+	/**
+	 * Função que habilita o modo <i>Fast Bind</i> (OID {@value #FAST_BIND_OID})
+	 * na conexão. Este modo permite validar as credenciais de vários usuários
+	 * sobre a mesma conexão através da função
+	 * {@link LDAPTree#bind(String, String)}. A conexão deve ter sido aberta
+	 * sem autenticação e nenhuma operação de bind pode ter sido realizada.
+	 * @throws Exception Lança exceção quando o servidor não aceitar a
+	 * operação.
+	 */
+	public void enableFastBind() throws Exception {
+		this.extendedOperation(new FastBindRequest());
+	}
+
+	/**
+	 * Requisição da operação estendida <i>Fast Bind</i>, que não possui
+	 * valor.
+	 */
+	private static class FastBindRequest implements ExtendedRequest {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String getID() {
+			return FAST_BIND_OID;
+		}
+
+		@Override
+		public byte[] getEncodedValue() {
+			return null;
+		}
+
+		@Override
+		public ExtendedResponse createExtendedResponse(final String id, byte[] berValue, int offset,
+				int length) {
+			return new ExtendedResponse() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public String getID() {
+					return id;
+				}
+
+				@Override
+				public byte[] getEncodedValue() {
+					return null;
+				}
+			};
+		}
+	}
 }
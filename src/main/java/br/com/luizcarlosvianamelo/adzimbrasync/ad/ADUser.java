@@ -22,70 +22,70 @@ public class ADUser extends ADEntry {
 	// identificação do usuário ----------------------------
 	
 	@LDAPAttribute
-	private String givenName;
+	protected String givenName;
 
 	@LDAPAttribute
-	private String initials;
+	protected String initials;
 	
 	@LDAPAttribute( name = "sn" )
-	private String surname;
+	protected String surname;
 	
 	@LDAPAttribute
-	private String displayName;
+	protected String displayName;
 	
 	@LDAPAttribute
-	private String description;
+	protected String description;
 	
 	@LDAPAttribute
-	private String info;
+	protected String info;
 	
 	@LDAPAttribute(
 			name = "unicodePwd",
 			accessMode = AttributeAccessMode.WRITE,
 			raw = true )
-	private byte[] password;
+	protected byte[] password;
 	
 	// telefones -------------------------------------------
 	
 	@LDAPAttribute
-	private String telephoneNumber;
+	protected String telephoneNumber;
 	
 	@LDAPAttribute
-	private String homePhone;
+	protected String homePhone;
 	
 	@LDAPAttribute
-	private String mobile;
+	protected String mobile;
 	
 	@LDAPAttribute
-	private String pager;
+	protected String pager;
 	
 	@LDAPAttribute( name = "facsimileTelephoneNumber" )
-	private String faxNumber;
+	protected String faxNumber;
 	
 	// endereço --------------------------------------------
 	
 	@LDAPAttribute
-	private String streetAddress;
+	protected String streetAddress;
 	
 	@LDAPAttribute( name = "l")
-	private String city;
+	protected String city;
 	
 	@LDAPAttribute( name = "st")
-	private String state;
+	protected String state;
 	
 	@LDAPAttribute
-	private String postalCode;
+	protected String postalCode;
 	
 	@LDAPAttribute( name = "co" )
-	private String country;
+	protected String country;
 	
 	// dados da empresa ------------------------------------
 	
 	@LDAPAttribute
-	private String company;
+	protected String company;
 	
 	@LDAPAttribute
-	private String title;
+	protected String title;
 
 	/**
 	 * Construtor da classe. Este inicializa os atributos com o valor
@@ -3,6 +3,8 @@ package br.com.luizcarlosvianamelo.adzimbrasync.ad;
 import java.util.List;
 
 import br.com.luizcarlosvianamelo.adzimbrasync.ldap.DN;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPEntryEnumeration;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPTree;
 
 /**
  * Classe que representa o repositório de usuários que estão contidos na árvore do
@@ -57,15 +59,56 @@ public class ADUsersRepository {
 	 * o filtro definido.
 	 * @param searchFilter O filtro a ser aplicado durante a busca dos usuários.
 	 * Este segue o padrão de filtros do LDAP.
+	 * @param returnAttributes A lista com os atributos que serão lidos. Caso
+	 * seja vazia, serão lidos todos os atributos de leitura da classe
+	 * {@link ADUser}.
 	 * @return A lista contendo os usuários da árvore do AD que não foram
 	 * filtrados. Caso não haja grupos na árvore ou todos os usuários foram
 	 * filtrados, é retornada uma lista vazia.
 	 * @throws Exception Lança exceção quando ocorre um erro durante a
 	 * realização da consulta no AD.
 	 */
-	public List<ADUser> queryUsers(String searchFilter) throws Exception {
+	public List<ADUser> queryUsers(String searchFilter, String... returnAttributes) throws Exception {
 		// faz a consulta ao LDAP dos usuários
-		return this.adTree.search(ADUser.class, searchFilter);
+		return this.adTree.search(ADUser.class, searchFilter, returnAttributes);
+	}
+
+	/**
+	 * Função que faz a busca dos usuários contidos na árvore do AD sem que todos
+	 * eles sejam mantidos em memória. Os objetos dos usuários são criados
+	 * apenas quando forem lidos do resultado.
+	 * @param withMail Informa a função se apenas os usuários com e-mail deverão
+	 * ser buscados.
+	 * @return Retorna o resultado da busca. Este deverá ser fechado após o seu
+	 * uso.
+	 * @throws Exception Lança exceção quando ocorre um erro durante a
+	 * realização da consulta no AD.
+	 */
+	public LDAPEntryEnumeration<ADUser> enumerateUsers(boolean withMail) throws Exception {
+		String searchFilter = "";
+		if (withMail)
+			searchFilter = "(mail=*)";
+		return this.enumerateUsers(searchFilter);
+	}
+
+	/**
+	 * Função que faz a busca dos usuários contidos na árvore do AD de acordo com
+	 * o filtro definido sem que todos eles sejam mantidos em memória. Os
+	 * objetos dos usuários são criados apenas quando forem lidos do resultado.
+	 * @param searchFilter O filtro a ser aplicado durante a busca dos usuários.
+	 * Este segue o padrão de filtros do LDAP.
+	 * @param returnAttributes A lista com os atributos que serão lidos. Caso
+	 * seja vazia, serão lidos todos os atributos de leitura da classe
+	 * {@link ADUser}.
+	 * @return Retorna o resultado da busca. Este deverá ser fechado após o seu
+	 * uso.
+	 * @throws Exception Lança exceção quando ocorre um erro durante a
+	 * realização da consulta no AD.
+	 */
+	public LDAPEntryEnumeration<ADUser> enumerateUsers(String searchFilter, String... returnAttributes)
+			throws Exception {
+		// faz a consulta ao LDAP dos usuários
+		return this.adTree.searchEnumeration(ADUser.class, searchFilter, returnAttributes);
 	}
 
 	/**
@@ -82,7 +125,8 @@ public class ADUsersRepository {
 		 * com o valor passado. Esta consulta deverá retornar apenas um
 		 * usuário.
 		 */
-		List<ADUser> users = this.queryUsers(String.format("(sAMAccountName=%s)", accountName));
+		List<ADUser> users = this.queryUsers(String.format("(sAMAccountName=%s)",
+				LDAPTree.escapeFilterValue(accountName)));
 
 		// retorna o usuário caso ele tenha sido encontrado
 		if (users.size() > 0)
@@ -107,7 +151,8 @@ public class ADUsersRepository {
 		 * com o valor passado. Esta consulta deverá retornar apenas um
 		 * usuário.
 		 */
-		List<ADUser> users = this.queryUsers(String.format("(distinguishedName=%s)", userDN.toString()));
+		List<ADUser> users = this.queryUsers(String.format("(distinguishedName=%s)",
+				LDAPTree.escapeFilterValue(userDN.toString())));
 
 		// retorna o usuário caso ele tenha sido encontrado
 		if (users.size() > 0)
@@ -154,7 +199,8 @@ public class ADUsersRepository {
 		 * Faz a consulta na base LDAP por todos os usuários que possuirem o
 		 * atributo memberOf ajustado com o valor do DN do grupo
 		 */
-		String searchQuery = String.format("(memberOf=%s)", group.getDistinguishedName().toString());
+		String searchQuery = String.format("(memberOf=%s)",
+				LDAPTree.escapeFilterValue(group.getDistinguishedName().toString()));
 
 		// busca apenas os usuários que possuem e-mail
 		if (withMail)
@@ -163,6 +209,34 @@ public class ADUsersRepository {
 		return this.queryUsers(searchQuery);
 	}
 	
+	/**
+	 * Função que retorna todos os usuários que pertencem ao grupo, incluindo
+	 * os usuários dos grupos contidos nele. A resolução dos grupos aninhados
+	 * é feita pelo servidor através da regra
+	 * <code>LDAP_MATCHING_RULE_IN_CHAIN</code> (1.2.840.113556.1.4.1941).
+	 * @param group O grupo a ser buscado.
+	 * @param withMail Indica se somente os usuários que tiverem o atributo
+	 * <code>mail</code> ajustado serão retornados.
+	 * @param returnAttributes A lista com os atributos que serão lidos. Caso
+	 * seja vazia, serão lidos todos os atributos de leitura da classe
+	 * {@link ADUser}.
+	 * @return Retorna a lista de usuário que são membros do grupo. Caso o grupo
+	 * não tenha usuários, é retornada uma lista vazia.
+	 * @throws Exception Lança exceção quando ocorre um erro durante a
+	 * realização da consulta no AD.
+	 */
+	public List<ADUser> queryNestedGroupMembers(ADGroup group, boolean withMail, String... returnAttributes)
+			throws Exception {
+		String searchQuery = String.format("(memberOf:1.2.840.113556.1.4.1941:=%s)",
+				LDAPTree.escapeFilterValue(group.getDistinguishedName().toString()));
+
+		// busca apenas os usuários que possuem e-mail
+		if (withMail)
+			searchQuery += "(mail=*)";
+
+		return this.queryUsers(searchQuery, returnAttributes);
+	}
+
 	/**
 	 * Função que realiza a mudança da senha de um usuário no AD. Esta
 	 * funcionalidade funcionará apenas se for estabelecida uma conexão segura
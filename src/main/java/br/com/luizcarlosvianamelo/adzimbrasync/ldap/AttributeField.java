@@ -19,12 +19,13 @@ import java.util.List;
  */
 public class AttributeField {
 
-	private Field field;
+	private final Field field;
+	private final FieldAccessor accessor;
 
 	private CustomAttributeConverter converter;
-	private String attributeName;
-	private AttributeAccessMode attributeAccessMode;
-	private boolean useRawValue;
+	private final String attributeName;
+	private final AttributeAccessMode attributeAccessMode;
+	private final boolean useRawValue;
 
 	/**
 	 * Construtor da classe. Este faz a associação do atributo do LDAP ao campo
@@ -43,6 +44,8 @@ public class AttributeField {
 	AttributeField(Field field)
 			throws IllegalArgumentException, IllegalAccessException, InstantiationException {
 		this.field = field;
+		// resolve a forma de acesso ao campo apenas uma vez
+		this.accessor = FieldAccessor.create(field);
 
 		// verifica se o campo é um atributo do LDAP
 		LDAPAttribute ann = this.field.getAnnotation(LDAPAttribute.class);
@@ -112,8 +115,7 @@ public class AttributeField {
 	 * do campo desejado.
 	 */
 	public Object getRaw(Object obj) throws Exception {
-		this.field.setAccessible(true);
-		return this.field.get(obj);
+		return this.accessor.get(obj);
 	}
 
 	/**
@@ -168,7 +170,7 @@ public class AttributeField {
 				values = this.converter.getFieldValue(this.field, obj);
 			// caso contrário chama o conversor padrão
 			else
-				values = LDAPAttributeConverter.getFieldValue(this.field, obj);
+				values = LDAPAttributeConverter.getFieldValue(this.accessor, obj);
 
 			// retorna a lista convertida
 			return values;
@@ -208,7 +210,7 @@ public class AttributeField {
 			this.converter.setFieldValue(this.field, obj, values);
 		// caso contrário, chama o conversor padrão
 		else
-			LDAPAttributeConverter.setFieldValue(this.field, obj, values);
+			LDAPAttributeConverter.setFieldValue(this.accessor, obj, values);
 	}
 	
 	/**
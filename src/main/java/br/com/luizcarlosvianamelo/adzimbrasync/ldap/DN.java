@@ -1,31 +1,55 @@
 package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.StringTokenizer;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Classe que representa um <i>distinguished name</i> - DN do LDAP. Um DN
  * corresponde a uma chave utilizada para referenciar uma única entrada do LDAP.
- * 
+ * <p>Internamente, o DN é representado por uma cadeia imutável de nós, onde
+ * cada nó contém um RDN e aponta para o nó do DN pai. Os nós são
+ * compartilhados entre os DNs através de uma tabela de internalização, logo
+ * os sufixos comuns (como <code>DC=empresa,DC=local</code>) ou os DNs
+ * repetidos nos atributos <code>member</code> e <code>memberOf</code> são
+ * mantidos apenas uma vez em memória. As representações textuais e o código
+ * <i>hash</i> de cada nó são calculados uma única vez.</p>
+ *
  * @author Luiz Carlos Viana Melo
  *
  */
 public class DN {
 
-	private List<RDN> rdns;
+	/**
+	 * Tabela dos nós internalizados. Os nós são removidos automaticamente
+	 * quando não forem mais referenciados por nenhum DN.
+	 */
+	private static final Map<Node, WeakReference<Node>> INTERNED_NODES = new WeakHashMap<>();
+
+	private Node node;
 
 	/**
 	 * Construtor da classe.
 	 */
 	public DN() {
-		this.rdns = new ArrayList<>();
+		this.node = null;
+	}
+
+	/**
+	 * Construtor privado que cria um DN a partir de um nó já internalizado.
+	 */
+	private DN(Node node) {
+		this.node = node;
 	}
 
 	/**
 	 * Função que verifica se o DN é igual a um outro objeto. Quando o objeto
-	 * passado é um outro {@link DN}, é feita a comparação entre o valor textual
-	 * dos dois ignorando a caixa das letras.
+	 * passado é um outro {@link DN}, é feita a comparação entre as formas
+	 * normalizadas dos dois (veja {@link #toNormalizedString()}), sem que
+	 * estas sejam montadas.
 	 * @return Retorna <code>true</code> caso os DNs forem igual. Caso
 	 * contrário, retorna <code>false</code>. Esta função sempre retorna
 	 * <code>false</code> quando o objeto passado não for um DN.
@@ -35,29 +59,38 @@ public class DN {
 		// retorna false caso o objeto passado for null
 		// verifica se o objeto é do tipo DN
 		if (obj instanceof DN) {
-			// compara as string desconsiderando a caixa dos caracteres
-			return this.toString().equalsIgnoreCase(obj.toString());
+			// compara as formas normalizadas, que desconsideram a caixa
+			return Node.normalizedEquals(this.node, ((DN) obj).node);
 		}
 		return false;
 	}
 
 	/**
-	 * Função que retorna a representação textual do DN.
+	 * Função que retorna o código <i>hash</i> do DN. Este é calculado a partir
+	 * da forma normalizada, sendo consistente com a função
+	 * {@link #equals(Object)}. Assim, os DNs podem ser utilizados como chaves
+	 * de mapas e conjuntos.
 	 */
 	@Override
-	public String toString() {
-		StringBuilder builder = new StringBuilder();
-
-		// adiciona o primeiro se existir
-		if (this.getNumberOfLevels() > 0) {
-			builder.append(this.getLeafRDN().toString());
+	public int hashCode() {
+		return this.node != null ? this.node.normalizedHash : 0;
+	}
 
-			for (int i = 1; i < this.getNumberOfLevels(); i++) {
-				builder.append(String.format(",%s", this.rdns.get(i).toString()));
-			}
-		}
+	/**
+	 * Função que retorna a forma normalizada do DN, utilizada na comparação
+	 * entre DNs. Nesta forma, os nomes e valores dos RDNs ficam em letras
+	 * minúsculas e sem os espaços ao redor dos separadores.
+	 */
+	public String toNormalizedString() {
+		return this.node != null ? this.node.toNormalizedString() : "";
+	}
 
-		return builder.toString();
+	/**
+	 * Função que retorna a representação textual do DN.
+	 */
+	@Override
+	public String toString() {
+		return this.node != null ? this.node.toString() : "";
 	}
 
 	/**
@@ -65,11 +98,9 @@ public class DN {
 	 * nível mais baixo.
 	 */
 	public RDN getLeafRDN() {
-		if (this.getNumberOfLevels() > 0)
-			return this.rdns.get(0);
-		return null;
+		return this.getLevel(0);
 	}
-	
+
 	/**
 	 * Função que inclui um RDN no nível especificado.
 	 * @param rdn O {@link RDN} a ser inserido.
@@ -78,19 +109,35 @@ public class DN {
 	 * elemento inserido será incrementado.
 	 */
 	public void insertAtLevel(RDN rdn, int level) {
-		this.rdns.add(level, rdn);
+		if (level < 0 || level > this.getNumberOfLevels())
+			throw new IndexOutOfBoundsException(String.format("Invalid level %d", level));
+
+		// os nós abaixo do nível são recriados, já que são compartilhados
+		List<Node> lowerNodes = new ArrayList<>(level);
+		Node parent = this.node;
+		for (int i = 0; i < level; i++) {
+			lowerNodes.add(parent);
+			parent = parent.parent;
+		}
+
+		parent = intern(rdn.getAttributes(), parent);
+		for (int i = lowerNodes.size() - 1; i >= 0; i--)
+			parent = intern(lowerNodes.get(i).attributes, parent);
+		this.node = parent;
 	}
 
 	/**
-	 * Função que retorna o RDN contido no nível desejado.
+	 * Função que retorna o RDN contido no nível desejado. O RDN retornado é
+	 * uma cópia, logo a sua alteração não modifica o DN.
 	 * @param level O nível do RDN a ser retornado, sendo que o nível mais baixo
 	 * é zero.
 	 * @return O {@link RDN} incluso no nível. Caso o nível passado não for
 	 * válido, é retornado o valor <code>null</code>.
 	 */
 	public RDN getLevel(int level) {
-		if (this.getNumberOfLevels() > level)
-			return this.rdns.get(level);
+		Node levelNode = this.getNode(level);
+		if (levelNode != null)
+			return new RDN(Arrays.copyOf(levelNode.attributes, levelNode.attributes.length));
 		return null;
 	}
 
@@ -98,41 +145,188 @@ public class DN {
 	 * Função que retorna o número de níveis de RDN.
 	 */
 	public int getNumberOfLevels() {
-		return this.rdns.size();
+		return this.node != null ? this.node.levels : 0;
+	}
+
+	/**
+	 * Função privada que retorna o nó do nível desejado.
+	 */
+	private Node getNode(int level) {
+		if (level < 0)
+			return null;
+
+		Node levelNode = this.node;
+		for (int i = 0; i < level && levelNode != null; i++)
+			levelNode = levelNode.parent;
+		return levelNode;
+	}
+
+	/**
+	 * Função que retorna o DN pai deste DN, ou seja, o DN sem o RDN folha.
+	 * O DN pai é obtido sem que seja feito o parser de uma nova
+	 * <i>string</i>.
+	 * @return Retorna o DN pai. Caso o DN possua apenas um nível, retorna
+	 * <code>null</code>.
+	 */
+	public DN getParent() {
+		return this.getAncestor(1);
+	}
+
+	/**
+	 * Função que retorna um DN ancestral deste DN.
+	 * @param generations A quantidade de níveis a serem removidos a partir do
+	 * nível mais baixo. O valor 1 retorna o DN pai.
+	 * @return Retorna o DN ancestral. Caso a quantidade de níveis seja maior
+	 * ou igual à quantidade de níveis do DN, retorna <code>null</code>.
+	 */
+	public DN getAncestor(int generations) {
+		Node ancestor = this.getNode(generations);
+		if (ancestor != null)
+			return new DN(ancestor);
+		return null;
+	}
+
+	/**
+	 * Função que verifica se este DN está abaixo de um outro DN na árvore.
+	 * @param ancestor O DN a ser checado.
+	 * @return Retorna <code>true</code> caso o DN passado seja um ancestral
+	 * deste DN. Caso os DNs sejam iguais, retorna <code>false</code>.
+	 */
+	public boolean isDescendantOf(DN ancestor) {
+		int generations = this.getNumberOfLevels() - ancestor.getNumberOfLevels();
+		if (generations <= 0 || ancestor.node == null)
+			return false;
+		return Node.normalizedEquals(this.getNode(generations), ancestor.node);
+	}
+
+	/**
+	 * Função privada que retorna o nó internalizado com o RDN e o pai
+	 * passados. Caso este ainda não exista, ele é criado.
+	 */
+	private static Node intern(String[] attributes, Node parent) {
+		Node candidate = new Node(attributes, parent);
+		synchronized (INTERNED_NODES) {
+			WeakReference<Node> ref = INTERNED_NODES.get(candidate);
+			Node interned = ref != null ? ref.get() : null;
+			if (interned != null)
+				return interned;
+
+			INTERNED_NODES.put(candidate, new WeakReference<>(candidate));
+			return candidate;
+		}
 	}
 
 	/**
 	 * Função que, a partir de uma string contendo um DN, gera um objeto
-	 * {@link DN} correspondente.
+	 * {@link DN} correspondente. O DN deve seguir o formato da RFC 4514,
+	 * podendo conter caracteres precedidos por '\' (como em
+	 * <code>CN=Silva\, Joao</code>) e RDNs com vários atributos.
 	 * @param dn O DN a ser utilizado para geração do objeto.
 	 * @return Retorna o objeto {@link DN} correspondente. Caso o DN passado
-	 * for inválido, a função retorna <code>false</code>. 
+	 * for vazio ou inválido, a função retorna <code>null</code>.
 	 */
 	public static DN parse(String dn) {
-		
+
 		// faz a separação do DN
-		StringTokenizer tokenizer = new StringTokenizer(dn, ",");
-		if (tokenizer.countTokens() > 0) {
-			DN newDn = new DN();
-			
-			// cria os RDN
-			while (tokenizer.hasMoreTokens()) {
-				// verifica a posição do símbolo '='
-				String token = tokenizer.nextToken();
-				int pos = token.indexOf('=');
-				// se não tiver o símbolo, retorna null porque o DN está inválido
-				if (pos < 0)
-					return null;
-				// pega o nome e  o valor do atributo
-				String attrName = token.substring(0, pos);
-				String attrValue = token.substring(pos + 1);
-				
-				newDn.rdns.add(new RDN(attrName, attrValue));
+		List<String[]> rdns = DNParser.parse(dn);
+		if (rdns == null)
+			return null;
+
+		// os nós são criados a partir da raiz para que os sufixos sejam compartilhados
+		Node node = null;
+		for (int i = rdns.size() - 1; i >= 0; i--)
+			node = intern(rdns.get(i), node);
+
+		return new DN(node);
+	}
+
+	/**
+	 * Classe privada que representa um nível do DN. Os nós são imutáveis e
+	 * internalizados, logo dois nós com o mesmo RDN (considerando a caixa
+	 * das letras) e o mesmo pai são sempre o mesmo objeto.
+	 */
+	private static final class Node {
+
+		private final String[] attributes;
+		private final Node parent;
+		private final int levels;
+
+		private final int normalizedHash;
+
+		private String string;
+		private String normalizedString;
+
+		/**
+		 * Construtor da classe.
+		 */
+		Node(String[] attributes, Node parent) {
+			this.attributes = attributes;
+			this.parent = parent;
+			this.levels = parent != null ? parent.levels + 1 : 1;
+
+			// o hash é calculado sem que a forma normalizada seja montada
+			int hash = parent != null ? 31 * parent.normalizedHash + ',' : 0;
+			this.normalizedHash = RDN.normalizedHash(hash, attributes);
+		}
+
+		/**
+		 * Função que verifica se dois nós são iguais considerando a forma
+		 * normalizada dos seus RDNs e dos seus pais.
+		 */
+		static boolean normalizedEquals(Node a, Node b) {
+			while (a != b) {
+				if (a == null || b == null || a.levels != b.levels || a.normalizedHash != b.normalizedHash)
+					return false;
+				if (!RDN.normalizedEquals(a.attributes, b.attributes))
+					return false;
+				a = a.parent;
+				b = b.parent;
 			}
-			
-			return newDn;
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			String value = this.string;
+			if (value == null) {
+				String rdn = RDN.toString(this.attributes);
+				value = this.parent != null ? rdn + "," + this.parent.toString() : rdn;
+				this.string = value;
+			}
+			return value;
+		}
+
+		/**
+		 * Função que retorna a forma normalizada do DN a partir deste nó.
+		 */
+		String toNormalizedString() {
+			String value = this.normalizedString;
+			if (value == null) {
+				String rdn = RDN.toNormalizedString(this.attributes);
+				value = this.parent != null ? rdn + "," + this.parent.toNormalizedString() : rdn;
+				this.normalizedString = value;
+			}
+			return value;
+		}
+
+		/*
+		 * A igualdade dos nós na tabela de internalização considera a caixa
+		 * das letras, preservando a representação textual original dos DNs.
+		 * Como os pais já são internalizados, estes são comparados pela
+		 * referência.
+		 */
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Node))
+				return false;
+			Node other = (Node) obj;
+			return this.parent == other.parent && Arrays.equals(this.attributes, other.attributes);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Arrays.hashCode(this.attributes) + System.identityHashCode(this.parent);
 		}
-		return null;
 	}
-	
 }
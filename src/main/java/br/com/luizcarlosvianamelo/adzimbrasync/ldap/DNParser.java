@@ -0,0 +1,334 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classe que faz o parser de um DN em sua representação textual, conforme a
+ * RFC 4514. São tratados os caracteres de <i>escape</i>
+ * (<code>CN=Silva\, Joao</code>), os pares hexadecimais em UTF-8
+ * (<code>CN=Jo\C3\A3o</code>), os valores entre aspas, os valores
+ * hexadecimais codificados em BER (<code>CN=#04034a6f65</code>), os RDNs com
+ * vários atributos (<code>CN=Joao+UID=joao</code>) e os espaços ao redor dos
+ * separadores.
+ * <p>O DN é lido em uma única passagem. Os valores sem caracteres de
+ * <i>escape</i>, que são a maioria, são extraídos diretamente da string do
+ * DN, sem a criação de <i>buffers</i> intermediários.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+final class DNParser {
+
+	private final String dn;
+	private final int length;
+	private int pos;
+
+	/**
+	 * Construtor privado. Utilize a função {@link #parse(String)}.
+	 */
+	private DNParser(String dn) {
+		this.dn = dn;
+		this.length = dn.length();
+		this.pos = 0;
+	}
+
+	/**
+	 * Função que faz o parser de um DN.
+	 * @param dn O DN a ser lido.
+	 * @return Retorna a lista com os pares de nome e valor dos atributos de
+	 * cada RDN, intercalados, na ordem em que aparecem no DN (ou seja, do
+	 * nível mais baixo para a raiz). Caso o DN seja vazio ou inválido, retorna
+	 * <code>null</code>.
+	 */
+	static List<String[]> parse(String dn) {
+		return new DNParser(dn).parseDN();
+	}
+
+	/**
+	 * Função privada que lê todos os RDNs do DN.
+	 */
+	private List<String[]> parseDN() {
+		this.skipSpaces();
+		if (this.pos == this.length)
+			return null;
+
+		List<String[]> rdns = new ArrayList<>();
+		while (true) {
+			String[] rdn = this.parseRDN();
+			if (rdn == null)
+				return null;
+			rdns.add(rdn);
+
+			if (this.pos == this.length)
+				return rdns;
+
+			// o separador ';' é aceito por compatibilidade com a RFC 2253
+			char c = this.dn.charAt(this.pos);
+			if (c != ',' && c != ';')
+				return null;
+			this.pos++;
+		}
+	}
+
+	/**
+	 * Função privada que lê um RDN, parando no separador do próximo RDN ou no
+	 * final do DN.
+	 * @return Retorna os pares de nome e valor dos atributos do RDN, ou
+	 * <code>null</code> caso o RDN seja inválido.
+	 */
+	private String[] parseRDN() {
+		String name = this.parseAttributeType();
+		if (name == null)
+			return null;
+		String value = this.parseAttributeValue();
+		if (value == null)
+			return null;
+
+		// caso mais comum, com apenas um atributo
+		if (this.pos == this.length || this.dn.charAt(this.pos) != '+')
+			return new String[] { name, value };
+
+		List<String> attributes = new ArrayList<>();
+		attributes.add(name);
+		attributes.add(value);
+		while (this.pos < this.length && this.dn.charAt(this.pos) == '+') {
+			this.pos++;
+			name = this.parseAttributeType();
+			if (name == null)
+				return null;
+			value = this.parseAttributeValue();
+			if (value == null)
+				return null;
+			attributes.add(name);
+			attributes.add(value);
+		}
+		return attributes.toArray(new String[attributes.size()]);
+	}
+
+	/**
+	 * Função privada que lê o nome do atributo, juntamente com o símbolo
+	 * '=' e os espaços ao redor.
+	 * @return Retorna o nome do atributo, ou <code>null</code> caso este seja
+	 * inválido.
+	 */
+	private String parseAttributeType() {
+		this.skipSpaces();
+		int start = this.pos;
+		while (this.pos < this.length) {
+			char c = this.dn.charAt(this.pos);
+			// aceita nomes de atributos e OIDs
+			if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '.'))
+				break;
+			this.pos++;
+		}
+		if (start == this.pos)
+			return null;
+		String name = this.dn.substring(start, this.pos);
+
+		this.skipSpaces();
+		if (this.pos == this.length || this.dn.charAt(this.pos) != '=')
+			return null;
+		this.pos++;
+		this.skipSpaces();
+		return name;
+	}
+
+	/**
+	 * Função privada que lê o valor de um atributo, parando no separador
+	 * seguinte ou no final do DN.
+	 * @return Retorna o valor do atributo sem os caracteres de
+	 * <i>escape</i>, ou <code>null</code> caso este seja inválido.
+	 */
+	private String parseAttributeValue() {
+		String value;
+		if (this.pos < this.length && this.dn.charAt(this.pos) == '#')
+			value = this.parseHexValue();
+		else if (this.pos < this.length && this.dn.charAt(this.pos) == '"')
+			value = this.parseQuotedValue();
+		else
+			return this.parseStringValue();
+
+		// após os valores hexadecimais e entre aspas só podem haver espaços
+		this.skipSpaces();
+		if (value != null && this.pos < this.length) {
+			char c = this.dn.charAt(this.pos);
+			if (c != ',' && c != ';' && c != '+')
+				return null;
+		}
+		return value;
+	}
+
+	/**
+	 * Função privada que lê um valor sem aspas. Os espaços no final do valor
+	 * são ignorados, a menos que estejam precedidos por '\'.
+	 */
+	private String parseStringValue() {
+		int start = this.pos;
+		// posição final do valor, desconsiderando os espaços no final
+		int end = this.pos;
+		// buffer criado apenas quando o valor possuir caracteres de escape
+		StringBuilder value = null;
+		int valueEnd = 0;
+
+		while (this.pos < this.length) {
+			char c = this.dn.charAt(this.pos);
+			if (c == ',' || c == ';' || c == '+')
+				break;
+
+			if (c == '\\') {
+				// inclui os espaços antes do '\', que não estão no final do valor
+				if (value == null) {
+					value = new StringBuilder(this.length - start);
+					value.append(this.dn, start, this.pos);
+				} else {
+					value.append(this.dn, end, this.pos);
+				}
+				if (!this.appendEscaped(value))
+					return null;
+				valueEnd = value.length();
+				end = this.pos;
+				continue;
+			}
+
+			this.pos++;
+			if (c != ' ') {
+				if (value != null) {
+					value.append(this.dn, end, this.pos);
+					valueEnd = value.length();
+				}
+				end = this.pos;
+			}
+		}
+
+		if (value == null)
+			return this.dn.substring(start, end);
+		value.setLength(valueEnd);
+		return value.toString();
+	}
+
+	/**
+	 * Função privada que lê um valor entre aspas. Dentro das aspas, apenas os
+	 * caracteres '\' e '"' precisam estar precedidos por '\'.
+	 */
+	private String parseQuotedValue() {
+		// ignora a aspa inicial
+		this.pos++;
+		StringBuilder value = new StringBuilder();
+		while (this.pos < this.length) {
+			char c = this.dn.charAt(this.pos);
+			if (c == '"') {
+				this.pos++;
+				return value.toString();
+			}
+			if (c == '\\') {
+				if (!this.appendEscaped(value))
+					return null;
+			} else {
+				value.append(c);
+				this.pos++;
+			}
+		}
+		// não encontrou a aspa final
+		return null;
+	}
+
+	/**
+	 * Função privada que lê um valor hexadecimal. O valor é a codificação BER
+	 * do valor do atributo, cujo conteúdo é lido como uma string UTF-8.
+	 */
+	private String parseHexValue() {
+		// ignora o '#' inicial
+		int start = ++this.pos;
+		while (this.pos < this.length && hexDigit(this.dn.charAt(this.pos)) >= 0)
+			this.pos++;
+
+		int numDigits = this.pos - start;
+		if (numDigits == 0 || numDigits % 2 != 0)
+			return null;
+
+		byte[] ber = new byte[numDigits / 2];
+		for (int i = 0; i < ber.length; i++) {
+			ber[i] = (byte) (hexDigit(this.dn.charAt(start + i * 2)) << 4 |
+					hexDigit(this.dn.charAt(start + i * 2 + 1)));
+		}
+
+		try {
+			return new String(new LDAPBer.Reader(ber).readValue(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Função privada que lê um caractere precedido por '\' e o inclui no
+	 * valor. Os pares hexadecimais consecutivos são lidos juntos, já que podem
+	 * representar um único caractere UTF-8 com vários <i>bytes</i>.
+	 * @return Retorna <code>false</code> caso não exista um caractere após o
+	 * '\'.
+	 */
+	private boolean appendEscaped(StringBuilder value) {
+		// ignora o '\'
+		this.pos++;
+		if (this.pos == this.length)
+			return false;
+
+		if (!this.isHexPair(this.pos)) {
+			// os demais caracteres são incluídos sem alteração
+			value.append(this.dn.charAt(this.pos++));
+			return true;
+		}
+
+		// conta quantos pares hexadecimais consecutivos existem
+		int numBytes = 1;
+		int next = this.pos + 2;
+		while (next < this.length && this.dn.charAt(next) == '\\' && this.isHexPair(next + 1)) {
+			numBytes++;
+			next += 3;
+		}
+
+		byte[] bytes = new byte[numBytes];
+		for (int i = 0; i < numBytes; i++) {
+			int p = this.pos + i * 3;
+			bytes[i] = (byte) (hexDigit(this.dn.charAt(p)) << 4 | hexDigit(this.dn.charAt(p + 1)));
+		}
+		value.append(new String(bytes, StandardCharsets.UTF_8));
+		this.pos = next;
+		return true;
+	}
+
+	/**
+	 * Função privada que verifica se existe um par hexadecimal na posição
+	 * passada.
+	 */
+	private boolean isHexPair(int index) {
+		return index + 1 < this.length &&
+				hexDigit(this.dn.charAt(index)) >= 0 &&
+				hexDigit(this.dn.charAt(index + 1)) >= 0;
+	}
+
+	/**
+	 * Função privada que avança a posição até o próximo caractere que não
+	 * seja um espaço.
+	 */
+	private void skipSpaces() {
+		while (this.pos < this.length && this.dn.charAt(this.pos) == ' ')
+			this.pos++;
+	}
+
+	/**
+	 * Função privada que retorna o valor de um dígito hexadecimal, ou -1 caso
+	 * o caractere não seja um dígito hexadecimal.
+	 */
+	private static int hexDigit(char c) {
+		if (c >= '0' && c <= '9')
+			return c - '0';
+		if (c >= 'a' && c <= 'f')
+			return c - 'a' + 10;
+		if (c >= 'A' && c <= 'F')
+			return c - 'A' + 10;
+		return -1;
+	}
+}
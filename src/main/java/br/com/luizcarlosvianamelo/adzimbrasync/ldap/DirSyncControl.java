@@ -0,0 +1,70 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
+
+import javax.naming.ldap.BasicControl;
+
+/**
+ * Classe que representa o controle <i>DirSync</i> do AD
+ * (OID {@value #OID}). Este controle faz com que uma busca retorne apenas as
+ * entradas modificadas desde a busca que gerou o <i>cookie</i> enviado,
+ * incluindo as entradas removidas. Na primeira busca, sem <i>cookie</i>,
+ * são retornadas todas as entradas.
+ * <p>O valor do controle é a sequência BER:</p>
+ * <pre>
+ * DirSyncRequestValue ::= SEQUENCE {
+ *     flags     INTEGER,
+ *     maxBytes  INTEGER,
+ *     cookie    OCTET STRING }
+ * </pre>
+ * O <i>cookie</i> a ser utilizado na próxima busca é retornado no controle
+ * {@link DirSyncResponseControl}.
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+public class DirSyncControl extends BasicControl {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * O OID do controle <i>DirSync</i>.
+	 */
+	public static final String OID = "1.2.840.113556.1.4.841";
+
+	/**
+	 * Retorna apenas as entradas e atributos que o usuário da conexão possui
+	 * permissão de leitura. Sem esta opção, o usuário deverá possuir a
+	 * permissão <i>Replicating Directory Changes</i>.
+	 */
+	public static final int OBJECT_SECURITY = 0x00000001;
+
+	/**
+	 * Retorna as entradas pai antes das entradas filhas.
+	 */
+	public static final int ANCESTORS_FIRST_ORDER = 0x00000800;
+
+	/**
+	 * Não retorna os atributos privados, como as senhas.
+	 */
+	public static final int PUBLIC_DATA_ONLY = 0x00002000;
+
+	/**
+	 * Retorna apenas os valores adicionados ou removidos dos atributos
+	 * multivalorados, como o <code>member</code> dos grupos.
+	 */
+	public static final int INCREMENTAL_VALUES = 0x80000000;
+
+	/**
+	 * Construtor da classe. O controle é sempre crítico, como exigido pelo AD.
+	 * @param flags As opções da busca.
+	 * @param maxBytes A quantidade máxima de <i>bytes</i> retornados em cada
+	 * resposta. Caso seja zero, será utilizado o limite do servidor.
+	 * @param cookie O <i>cookie</i> retornado na última busca. Deve ser
+	 * <code>null</code> na primeira busca.
+	 */
+	public DirSyncControl(int flags, int maxBytes, byte[] cookie) {
+		super(OID, CRITICAL, LDAPBer.encodeSequence(
+				LDAPBer.encodeInteger(flags),
+				LDAPBer.encodeInteger(maxBytes),
+				LDAPBer.encodeOctetString(cookie)));
+	}
+}
@@ -0,0 +1,87 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
+
+import java.io.IOException;
+
+import javax.naming.ldap.BasicControl;
+import javax.naming.ldap.Control;
+
+/**
+ * Classe que representa o controle de resposta de uma busca realizada com o
+ * controle {@link DirSyncControl}. O valor do controle é a sequência BER:
+ * <pre>
+ * DirSyncResponseValue ::= SEQUENCE {
+ *     moreResults  INTEGER,
+ *     unused       INTEGER,
+ *     cookie       OCTET STRING }
+ * </pre>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+public class DirSyncResponseControl extends BasicControl {
+
+	private static final long serialVersionUID = 1L;
+
+	private boolean moreResults;
+
+	private byte[] cookie;
+
+	/**
+	 * Construtor da classe.
+	 * @param id O OID do controle.
+	 * @param criticality Indica se o controle é crítico.
+	 * @param value O valor codificado do controle.
+	 * @throws IOException Lança exceção quando o valor não for válido.
+	 */
+	public DirSyncResponseControl(String id, boolean criticality, byte[] value) throws IOException {
+		super(id, criticality, value);
+
+		if (value == null)
+			throw new IOException("Empty DirSync response control");
+
+		LDAPBer.Reader reader = new LDAPBer.Reader(value);
+		reader.readSequence();
+		this.moreResults = reader.readInteger() != 0;
+		reader.readInteger();
+		this.cookie = reader.readOctetString();
+	}
+
+	/**
+	 * Função que procura a resposta do controle <i>DirSync</i> entre os
+	 * controles retornados pelo servidor. Como a biblioteca do JNDI não
+	 * conhece este controle, ele é retornado sem ser decodificado.
+	 * @param controls Os controles da resposta.
+	 * @return Retorna o controle decodificado. Caso não exista, retorna
+	 * <code>null</code>.
+	 * @throws IOException Lança exceção quando o valor do controle não for
+	 * válido.
+	 */
+	public static DirSyncResponseControl find(Control[] controls) throws IOException {
+		if (controls == null)
+			return null;
+
+		for (Control control : controls) {
+			if (control instanceof DirSyncResponseControl)
+				return (DirSyncResponseControl) control;
+			if (DirSyncControl.OID.equals(control.getID()))
+				return new DirSyncResponseControl(control.getID(), control.isCritical(),
+						control.getEncodedValue());
+		}
+		return null;
+	}
+
+	/**
+	 * Informa se existem mais entradas modificadas a serem lidas com o
+	 * <i>cookie</i> retornado.
+	 */
+	public boolean hasMoreResults() {
+		return moreResults;
+	}
+
+	/**
+	 * Retorna o <i>cookie</i> que deverá ser enviado na próxima busca.
+	 */
+	public byte[] getCookie() {
+		return cookie;
+	}
+}
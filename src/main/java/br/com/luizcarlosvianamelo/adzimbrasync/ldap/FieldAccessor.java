@@ -0,0 +1,169 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+
+/**
+ * Classe que faz a leitura e escrita do valor de um campo associado a um
+ * atributo do LDAP. A forma de acesso ao campo é definida pela implementação
+ * desta classe, sendo que esta é resolvida apenas uma vez para cada campo.
+ * <p>Por padrão, são utilizados {@link MethodHandle}s, o que permite que o
+ * compilador JIT trate o acesso como uma chamada direta. O acesso por reflexão
+ * pode ser selecionado através da propriedade do sistema
+ * <code>adzimbrasync.ldap.fieldAccessor</code> com o valor
+ * <code>"reflection"</code>.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+abstract class FieldAccessor {
+
+	/**
+	 * Nome da propriedade do sistema que define a forma de acesso aos campos.
+	 */
+	static final String ACCESSOR_PROPERTY = "adzimbrasync.ldap.fieldAccessor";
+
+	protected final Field field;
+
+	/**
+	 * Construtor da classe.
+	 * @param field O campo a ser acessado.
+	 */
+	protected FieldAccessor(Field field) {
+		this.field = field;
+		// libera o acesso ao campo apenas uma vez
+		this.field.setAccessible(true);
+	}
+
+	/**
+	 * Função que cria o objeto de acesso a um campo de acordo com a forma de
+	 * acesso configurada. Caso não seja possível criar os
+	 * {@link MethodHandle}s do campo, será utilizado o acesso por reflexão.
+	 * @param field O campo a ser acessado.
+	 * @return Retorna o objeto de acesso ao campo.
+	 */
+	static FieldAccessor create(Field field) {
+		if (!"reflection".equals(System.getProperty(ACCESSOR_PROPERTY))) {
+			try {
+				return new MethodHandleFieldAccessor(field);
+			} catch (IllegalAccessException e) {
+				// utiliza a reflexão
+			}
+		}
+		return new ReflectionFieldAccessor(field);
+	}
+
+	/**
+	 * Retorna o campo acessado.
+	 */
+	Field getField() {
+		return field;
+	}
+
+	/**
+	 * Retorna o tipo do campo.
+	 */
+	Class<?> getType() {
+		return this.field.getType();
+	}
+
+	/**
+	 * Retorna o tipo genérico do campo.
+	 */
+	Type getGenericType() {
+		return this.field.getGenericType();
+	}
+
+	/**
+	 * Função que retorna o valor do campo contido no objeto passado.
+	 * @param obj O objeto que terá o valor do campo retornado.
+	 * @return Retorna o valor do campo.
+	 * @throws Exception Lança exceção quando não for possível fazer a leitura
+	 * do campo.
+	 */
+	abstract Object get(Object obj) throws Exception;
+
+	/**
+	 * Função que ajusta o valor do campo do objeto passado.
+	 * @param obj O objeto que terá o valor do campo ajustado.
+	 * @param value O valor a ser ajustado.
+	 * @throws Exception Lança exceção quando não for possível ajustar o valor
+	 * do campo.
+	 */
+	abstract void set(Object obj, Object value) throws Exception;
+
+	/**
+	 * Implementação que acessa o campo através de reflexão.
+	 */
+	private static class ReflectionFieldAccessor extends FieldAccessor {
+
+		ReflectionFieldAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		Object get(Object obj) throws Exception {
+			return this.field.get(obj);
+		}
+
+		@Override
+		void set(Object obj, Object value) throws Exception {
+			this.field.set(obj, value);
+		}
+	}
+
+	/**
+	 * Implementação que acessa o campo através de {@link MethodHandle}s
+	 * resolvidos na criação do objeto. Os tipos dos <i>handles</i> são
+	 * ajustados para {@link Object} para que estes possam ser chamados com
+	 * {@link MethodHandle#invokeExact(Object...)}.
+	 */
+	private static class MethodHandleFieldAccessor extends FieldAccessor {
+
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+
+		MethodHandleFieldAccessor(Field field) throws IllegalAccessException {
+			super(field);
+
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			this.getter = lookup.unreflectGetter(field)
+					.asType(MethodType.methodType(Object.class, Object.class));
+			this.setter = lookup.unreflectSetter(field)
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		}
+
+		/**
+		 * Função privada que relança os erros retornados pelos
+		 * <i>handles</i>.
+		 */
+		private static Exception rethrow(Throwable t) {
+			if (t instanceof Error)
+				throw (Error) t;
+			if (t instanceof Exception)
+				return (Exception) t;
+			return new Exception(t);
+		}
+
+		@Override
+		Object get(Object obj) throws Exception {
+			try {
+				return (Object) this.getter.invokeExact(obj);
+			} catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+
+		@Override
+		void set(Object obj, Object value) throws Exception {
+			try {
+				this.setter.invokeExact(obj, value);
+			} catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.text.SimpleDateFormat;
@@ -25,7 +24,7 @@ class LDAPAttributeConverter {
 	/**
 	 * Função que faz a conversão do valor do campo para uma lista de
 	 * <i>strings</i>.
-	 * @param field O campo da classe a ser convertido.
+	 * @param accessor O objeto de acesso ao campo da classe a ser convertido.
 	 * @param obj O objeto que terá o valor do campo convertido.
 	 * @return Retorna a lista de {@link String} com os valores do campo. Cada
 	 * elemento desta contém o valor contido na lista ou vetor convertido para
@@ -35,29 +34,29 @@ class LDAPAttributeConverter {
 	 * @throws Exception Lança exceção quando não for possível converter o valor
 	 * do campo.
 	 */
-	public static List<String> getFieldValue(Field field, Object obj) throws Exception {
+	public static List<String> getFieldValue(FieldAccessor accessor, Object obj) throws Exception {
 		// verifica o tipo para chamar a função de conversão
-		Class<?> fieldType = field.getType();
+		Class<?> fieldType = accessor.getType();
 		// se for uma lista, pega o tipo interno
 		if (Iterable.class.isAssignableFrom(fieldType))
-			fieldType = (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+			fieldType = (Class<?>) ((ParameterizedType) accessor.getGenericType()).getActualTypeArguments()[0];
 		
 		/*
 		 * A princípio, o tipo Date é o único que precisa de um tratamento
 		 * especial na conversão.
 		 */
 		if (fieldType.equals(Date.class))
-			return getFieldValueAsDate(field, obj);
+			return getFieldValueAsDate(accessor, obj);
 		
 		// trata como um objeto padrão
-		return getFieldValueAsObject(field, obj);
+		return getFieldValueAsObject(accessor, obj);
 	}
 	
 	/**
 	 * Função que faz a conversão do valor do campo para uma lista de
 	 * <i>strings</i>. O valor do campo será convertido através da chamada do
 	 * método {@link Object#toString()} do mesmo.
-	 * @param field O campo da classe a ser convertido.
+	 * @param accessor O objeto de acesso ao campo da classe a ser convertido.
 	 * @param obj O objeto que terá o valor do campo convertido.
 	 * @return Retorna a lista de {@link String} com os valores do campo. Cada
 	 * elemento desta contém o valor contido na lista ou vetor convertido para
@@ -67,10 +66,9 @@ class LDAPAttributeConverter {
 	 * @throws Exception Lança exceção quando não for possível converter o valor
 	 * do campo.
 	 */
-	private static List<String> getFieldValueAsObject(Field field, Object obj) throws Exception {
-		field.setAccessible(true);
+	private static List<String> getFieldValueAsObject(FieldAccessor accessor, Object obj) throws Exception {
 		// verifica se o valor do campo é nulo
-		Object fieldValue = field.get(obj);
+		Object fieldValue = accessor.get(obj);
 		if (fieldValue == null)
 			return null;
 		
@@ -79,7 +77,7 @@ class LDAPAttributeConverter {
 		/*
 		 * Verifica se o tipo do campo é simples, um vetor ou um Iterable.
 		 */
-		Class<?> fieldType = field.getType();
+		Class<?> fieldType = accessor.getType();
 		if (fieldType.isArray()) {
 			// trata os elementos deste vetor como objetos genéricos
 			int arraySize = Array.getLength(fieldValue);
@@ -109,7 +107,7 @@ class LDAPAttributeConverter {
 	 * {@link Date}, para uma lista de <i>strings</i>. O valor do campo será
 	 * formatado de acordo com a formatação suportada pelo LDAP para este tipo
 	 * de dado (<code>"yyyyMMddHHmmss'Z'"</code>).
-	 * @param field O campo da classe a ser convertido.
+	 * @param accessor O objeto de acesso ao campo da classe a ser convertido.
 	 * @param obj O objeto que terá o valor do campo convertido.
 	 * @return Retorna a lista de {@link String} com os valores do campo. Cada
 	 * elemento desta contém o valor contido na lista ou vetor convertido para
@@ -119,10 +117,9 @@ class LDAPAttributeConverter {
 	 * @throws Exception Lança exceção quando não for possível converter o valor
 	 * do campo.
 	 */
-	private static List<String> getFieldValueAsDate(Field field, Object obj) throws Exception {
-		field.setAccessible(true);
+	private static List<String> getFieldValueAsDate(FieldAccessor accessor, Object obj) throws Exception {
 		// verifica se o valor do campo é nulo
-		Object fieldValue = field.get(obj);
+		Object fieldValue = accessor.get(obj);
 		if (fieldValue == null)
 			return null;
 
@@ -137,7 +134,7 @@ class LDAPAttributeConverter {
 		/*
 		 * Verifica se o tipo do campo é simples, um vetor ou um Iterable.
 		 */
-		Class<?> fieldType = field.getType();
+		Class<?> fieldType = accessor.getType();
 		if (fieldType.isArray()) {
 			// trata os elementos deste vetor como objetos genéricos
 			int arraySize = Array.getLength(fieldValue);
@@ -165,59 +162,59 @@ class LDAPAttributeConverter {
 	/**
 	 * Função que faz o parser dos valores lidos do LDAP e armazena o resultado
 	 * no campo desejado conforme o tipo do mesmo.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	public static void setFieldValue(Field field, Object obj, List<String> values) throws Exception {
+	public static void setFieldValue(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
 		// verifica o tipo para chamar a função de conversão
-		Type fieldType = field.getType();
+		Type fieldType = accessor.getType();
 		// se for uma lista, pega o tipo interno
 		if (fieldType.equals(List.class))
-			fieldType = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+			fieldType = ((ParameterizedType) accessor.getGenericType()).getActualTypeArguments()[0];
 
 		// faz a chamada do parser para os tipos primitivos
 		if (fieldType.equals(boolean.class) || fieldType.equals(Boolean.class))
-			setFieldValueAsBoolean(field, obj, values);
+			setFieldValueAsBoolean(accessor, obj, values);
 		else if (fieldType.equals(byte.class) || fieldType.equals(Byte.class))
-			setFieldValueAsByte(field, obj, values);
+			setFieldValueAsByte(accessor, obj, values);
 		else if (fieldType.equals(char.class) || fieldType.equals(Character.class))
-			setFieldValueAsChar(field, obj, values);
+			setFieldValueAsChar(accessor, obj, values);
 		else if (fieldType.equals(short.class) || fieldType.equals(Short.class))
-			setFieldValueAsShort(field, obj, values);
+			setFieldValueAsShort(accessor, obj, values);
 		else if (fieldType.equals(int.class) || fieldType.equals(Integer.class))
-			setFieldValueAsInt(field, obj, values);
+			setFieldValueAsInt(accessor, obj, values);
 		else if (fieldType.equals(long.class) || fieldType.equals(Long.class))
-			setFieldValueAsLong(field, obj, values);
+			setFieldValueAsLong(accessor, obj, values);
 		else if (fieldType.equals(float.class) || fieldType.equals(Float.class))
-			setFieldValueAsFloat(field, obj, values);
+			setFieldValueAsFloat(accessor, obj, values);
 		else if (fieldType.equals(double.class) || fieldType.equals(Double.class))
-			setFieldValueAsDouble(field, obj, values);
+			setFieldValueAsDouble(accessor, obj, values);
 		else if (fieldType.equals(String.class)) // inicio do parser dos tipos não primitivos
-			setFieldValueAsString(field, obj, values);
+			setFieldValueAsString(accessor, obj, values);
 		else if (fieldType.equals(Date.class))
-			setFieldValueAsDate(field, obj, values);
+			setFieldValueAsDate(accessor, obj, values);
 		else if (fieldType.equals(DN.class))
-			setFieldValueAsDN(field, obj, values);
+			setFieldValueAsDN(accessor, obj, values);
 	}
 	
 	/**
 	 * Função que faz o parser dos valores lidos do LDAP e armazena o resultado
 	 * no campo desejado como um booleano.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	private static void setFieldValueAsBoolean(Field field, Object obj, List<String> values) throws Exception {
-		field.setAccessible(true);
-
-		Class<?> fieldType = field.getType();
+	private static void setFieldValueAsBoolean(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
+		Class<?> fieldType = accessor.getType();
 		
 		// se for um array
 		if (fieldType.isArray()) {
@@ -225,7 +222,7 @@ class LDAPAttributeConverter {
 			boolean[] arrayValue = new boolean[values.size()];
 			for (int i = 0; i < arrayValue.length; i++)
 				arrayValue[i] = Boolean.parseBoolean(values.get(i));		
-			field.set(obj, arrayValue);
+			accessor.set(obj, arrayValue);
 		}
 		// verifica se o tipo do campo é uma lista
 		else if (List.class.isAssignableFrom(fieldType)) {
@@ -235,28 +232,27 @@ class LDAPAttributeConverter {
 				attrValues.add(Boolean.parseBoolean(values.get(i)));
 
 			// ajusta a lista
-			field.set(obj, attrValues);
+			accessor.set(obj, attrValues);
 		} else {
 			// apenas ajusta o valor do campo
 			if (values.size() > 0)
-				field.set(obj, Boolean.parseBoolean(values.get(0)));
+				accessor.set(obj, Boolean.parseBoolean(values.get(0)));
 		}
 	}
 
 	/**
 	 * Função que faz o parser dos valores lidos do LDAP e armazena o resultado
 	 * no campo desejado como um byte.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	private static void setFieldValueAsByte(Field field, Object obj, List<String> values) throws Exception {
-		field.setAccessible(true);
-
-		Class<?> fieldType = field.getType();
+	private static void setFieldValueAsByte(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
+		Class<?> fieldType = accessor.getType();
 		
 		// se for um array
 		if (fieldType.isArray()) {
@@ -264,7 +260,7 @@ class LDAPAttributeConverter {
 			byte[] arrayValue = new byte[values.size()];
 			for (int i = 0; i < arrayValue.length; i++)
 				arrayValue[i] = Byte.parseByte(values.get(i));		
-			field.set(obj, arrayValue);
+			accessor.set(obj, arrayValue);
 		}
 		// verifica se o tipo do campo é uma lista
 		else if (List.class.isAssignableFrom(fieldType)) {
@@ -274,28 +270,27 @@ class LDAPAttributeConverter {
 				attrValues.add(Byte.parseByte(values.get(i)));
 
 			// ajusta a lista
-			field.set(obj, attrValues);
+			accessor.set(obj, attrValues);
 		} else {
 			// apenas ajusta o valor do campo
 			if (values.size() > 0)
-				field.set(obj, Byte.parseByte(values.get(0)));
+				accessor.set(obj, Byte.parseByte(values.get(0)));
 		}
 	}
 
 	/**
 	 * Função que faz o parser dos valores lidos do LDAP e armazena o resultado
 	 * no campo desejado como um caracter.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	private static void setFieldValueAsChar(Field field, Object obj, List<String> values) throws Exception {
-		field.setAccessible(true);
-
-		Class<?> fieldType = field.getType();
+	private static void setFieldValueAsChar(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
+		Class<?> fieldType = accessor.getType();
 		
 		// se for um array
 		if (fieldType.isArray()) {
@@ -303,7 +298,7 @@ class LDAPAttributeConverter {
 			char[] arrayValue = new char[values.size()];
 			for (int i = 0; i < arrayValue.length; i++)
 				arrayValue[i] = values.get(i).charAt(0);		
-			field.set(obj, arrayValue);
+			accessor.set(obj, arrayValue);
 		}
 		// verifica se o tipo do campo é uma lista
 		else if (List.class.isAssignableFrom(fieldType)) {
@@ -313,28 +308,27 @@ class LDAPAttributeConverter {
 				attrValues.add(values.get(i).charAt(0));
 
 			// ajusta a lista
-			field.set(obj, attrValues);
+			accessor.set(obj, attrValues);
 		} else {
 			// apenas ajusta o valor do campo
 			if (values.size() > 0)
-				field.set(obj, values.get(0).charAt(0));
+				accessor.set(obj, values.get(0).charAt(0));
 		}
 	}
 
 	/**
 	 * Função que faz o parser dos valores lidos do LDAP e armazena o resultado
 	 * no campo desejado como um inteiro de 16 bits.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	private static void setFieldValueAsShort(Field field, Object obj, List<String> values) throws Exception {
-		field.setAccessible(true);
-
-		Class<?> fieldType = field.getType();
+	private static void setFieldValueAsShort(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
+		Class<?> fieldType = accessor.getType();
 		
 		// se for um array
 		if (fieldType.isArray()) {
@@ -342,7 +336,7 @@ class LDAPAttributeConverter {
 			short[] arrayValue = new short[values.size()];
 			for (int i = 0; i < arrayValue.length; i++)
 				arrayValue[i] = Short.parseShort(values.get(i));		
-			field.set(obj, arrayValue);
+			accessor.set(obj, arrayValue);
 		}
 		// verifica se o tipo do campo é uma lista
 		else if (List.class.isAssignableFrom(fieldType)) {
@@ -352,28 +346,27 @@ class LDAPAttributeConverter {
 				attrValues.add(Short.parseShort(values.get(i)));
 
 			// ajusta a lista
-			field.set(obj, attrValues);
+			accessor.set(obj, attrValues);
 		} else {
 			// apenas ajusta o valor do campo
 			if (values.size() > 0)
-				field.set(obj, Short.parseShort(values.get(0)));
+				accessor.set(obj, Short.parseShort(values.get(0)));
 		}
 	}
 
 	/**
 	 * Função que faz o parser dos valores lidos do LDAP e armazena o resultado
 	 * no campo desejado como um inteiro de 32 bits.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	private static void setFieldValueAsInt(Field field, Object obj, List<String> values) throws Exception {
-		field.setAccessible(true);
-
-		Class<?> fieldType = field.getType();
+	private static void setFieldValueAsInt(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
+		Class<?> fieldType = accessor.getType();
 		
 		// se for um array
 		if (fieldType.isArray()) {
@@ -381,7 +374,7 @@ class LDAPAttributeConverter {
 			int[] arrayValue = new int[values.size()];
 			for (int i = 0; i < arrayValue.length; i++)
 				arrayValue[i] = Integer.parseInt(values.get(i));		
-			field.set(obj, arrayValue);
+			accessor.set(obj, arrayValue);
 		}
 		// verifica se o tipo do campo é uma lista
 		else if (List.class.isAssignableFrom(fieldType)) {
@@ -391,28 +384,27 @@ class LDAPAttributeConverter {
 				attrValues.add(Integer.parseInt(values.get(i)));
 
 			// ajusta a lista
-			field.set(obj, attrValues);
+			accessor.set(obj, attrValues);
 		} else {
 			// apenas ajusta o valor do campo
 			if (values.size() > 0)
-				field.set(obj, Integer.parseInt(values.get(0)));
+				accessor.set(obj, Integer.parseInt(values.get(0)));
 		}
 	}
 
 	/**
 	 * Função que faz o parser dos valores lidos do LDAP e armazena o resultado
 	 * no campo desejado como um inteiro de 64 bits.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	private static void setFieldValueAsLong(Field field, Object obj, List<String> values) throws Exception {
-		field.setAccessible(true);
-
-		Class<?> fieldType = field.getType();
+	private static void setFieldValueAsLong(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
+		Class<?> fieldType = accessor.getType();
 		
 		// se for um array
 		if (fieldType.isArray()) {
@@ -420,7 +412,7 @@ class LDAPAttributeConverter {
 			long[] arrayValue = new long[values.size()];
 			for (int i = 0; i < arrayValue.length; i++)
 				arrayValue[i] = Long.parseLong(values.get(i));		
-			field.set(obj, arrayValue);
+			accessor.set(obj, arrayValue);
 		}
 		// verifica se o tipo do campo é uma lista
 		else if (List.class.isAssignableFrom(fieldType)) {
@@ -430,28 +422,27 @@ class LDAPAttributeConverter {
 				attrValues.add(Long.parseLong(values.get(i)));
 
 			// ajusta a lista
-			field.set(obj, attrValues);
+			accessor.set(obj, attrValues);
 		} else {
 			// apenas ajusta o valor do campo
 			if (values.size() > 0)
-				field.set(obj, Long.parseLong(values.get(0)));
+				accessor.set(obj, Long.parseLong(values.get(0)));
 		}
 	}
 
 	/**
 	 * Função que faz o parser dos valores lidos do LDAP e armazena o resultado
 	 * no campo desejado como um ponto flutuante de 32 bits.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	private static void setFieldValueAsFloat(Field field, Object obj, List<String> values) throws Exception {
-		field.setAccessible(true);
-
-		Class<?> fieldType = field.getType();
+	private static void setFieldValueAsFloat(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
+		Class<?> fieldType = accessor.getType();
 		
 		// se for um array
 		if (fieldType.isArray()) {
@@ -459,7 +450,7 @@ class LDAPAttributeConverter {
 			float[] arrayValue = new float[values.size()];
 			for (int i = 0; i < arrayValue.length; i++)
 				arrayValue[i] = Float.parseFloat(values.get(i));		
-			field.set(obj, arrayValue);
+			accessor.set(obj, arrayValue);
 		}
 		// verifica se o tipo do campo é uma lista
 		else if (List.class.isAssignableFrom(fieldType)) {
@@ -469,28 +460,27 @@ class LDAPAttributeConverter {
 				attrValues.add(Float.parseFloat(values.get(i)));
 
 			// ajusta a lista
-			field.set(obj, attrValues);
+			accessor.set(obj, attrValues);
 		} else {
 			// apenas ajusta o valor do campo
 			if (values.size() > 0)
-				field.set(obj, Float.parseFloat(values.get(0)));
+				accessor.set(obj, Float.parseFloat(values.get(0)));
 		}
 	}
 
 	/**
 	 * Função que faz o parser dos valores lidos do LDAP e armazena o resultado
 	 * no campo desejado como um ponto flutuante de 64 bits.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	private static void setFieldValueAsDouble(Field field, Object obj, List<String> values) throws Exception {
-		field.setAccessible(true);
-
-		Class<?> fieldType = field.getType();
+	private static void setFieldValueAsDouble(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
+		Class<?> fieldType = accessor.getType();
 		
 		// se for um array
 		if (fieldType.isArray()) {
@@ -498,7 +488,7 @@ class LDAPAttributeConverter {
 			double[] arrayValue = new double[values.size()];
 			for (int i = 0; i < arrayValue.length; i++)
 				arrayValue[i] = Double.parseDouble(values.get(i));		
-			field.set(obj, arrayValue);
+			accessor.set(obj, arrayValue);
 		}
 		// verifica se o tipo do campo é uma lista
 		else if (List.class.isAssignableFrom(fieldType)) {
@@ -508,28 +498,27 @@ class LDAPAttributeConverter {
 				attrValues.add(Double.parseDouble(values.get(i)));
 
 			// ajusta a lista
-			field.set(obj, attrValues);
+			accessor.set(obj, attrValues);
 		} else {
 			// apenas ajusta o valor do campo
 			if (values.size() > 0)
-				field.set(obj, Double.parseDouble(values.get(0)));
+				accessor.set(obj, Double.parseDouble(values.get(0)));
 		}
 	}
 
 	/**
 	 * Função que faz o parser dos valores lidos do LDAP e armazena o resultado
 	 * no campo desejado como um {@link String}.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	private static void setFieldValueAsString(Field field, Object obj, List<String> values) throws Exception {
-		field.setAccessible(true);
-
-		Class<?> fieldType = field.getType();
+	private static void setFieldValueAsString(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
+		Class<?> fieldType = accessor.getType();
 		
 		// se for um array
 		if (fieldType.isArray()) {
@@ -537,7 +526,7 @@ class LDAPAttributeConverter {
 			String[] arrayValue = new String[values.size()];
 			for (int i = 0; i < arrayValue.length; i++)
 				arrayValue[i] = values.get(i);		
-			field.set(obj, arrayValue);
+			accessor.set(obj, arrayValue);
 		}
 		// verifica se o tipo do campo é uma lista
 		else if (List.class.isAssignableFrom(fieldType)) {
@@ -547,28 +536,27 @@ class LDAPAttributeConverter {
 				attrValues.add(values.get(i));
 
 			// ajusta a lista
-			field.set(obj, attrValues);
+			accessor.set(obj, attrValues);
 		} else {
 			// apenas ajusta o valor do campo
 			if (values.size() > 0)
-				field.set(obj, values.get(0));
+				accessor.set(obj, values.get(0));
 		}
 	}
 
 	/**
 	 * Função que faz o parser dos valores lidos do LDAP e armazena o resultado
 	 * no campo desejado como um {@link Date}.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	private static void setFieldValueAsDate(Field field, Object obj, List<String> values) throws Exception {
-		field.setAccessible(true);
-		
-		Class<?> fieldType = field.getType();
+	private static void setFieldValueAsDate(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
+		Class<?> fieldType = accessor.getType();
 
 		// cria o parser para a data vinda do LDAP
 		SimpleDateFormat dateFormater = new SimpleDateFormat("yyyyMMddHHmmss");
@@ -580,7 +568,7 @@ class LDAPAttributeConverter {
 			Date[] arrayValue = new Date[values.size()];
 			for (int i = 0; i < arrayValue.length; i++)
 				arrayValue[i] = dateFormater.parse(values.get(i));		
-			field.set(obj, arrayValue);
+			accessor.set(obj, arrayValue);
 		}
 		// verifica se o tipo do campo é uma lista
 		else if (List.class.isAssignableFrom(fieldType)) {
@@ -593,28 +581,27 @@ class LDAPAttributeConverter {
 			}
 
 			// ajusta a lista
-			field.set(obj, attrValues);
+			accessor.set(obj, attrValues);
 		} else {
 			String dateString = values.get(0);
 			// apenas ajusta o valor do campo
-			field.set(obj, dateFormater.parse(dateString));
+			accessor.set(obj, dateFormater.parse(dateString));
 		}
 	}
 
 	/**
 	 * Função que faz o parser do objeto com o valor do atributo lido pela API
 	 * do LDAP e armazena o resultado no campo desejado como um {@link DN}.
-	 * @param field O campo do objeto que irá receber o resultado da conversão.
+	 * @param accessor O objeto de acesso ao campo que irá receber o resultado
+	 * da conversão.
 	 * @param obj O objeto que terá o seu campo alterado com o resultado da
 	 * conversão.
 	 * @param values A lista de valores lidos do LDAP.
 	 * @throws Exception Lança uma exceção quando não for possível ajustar o
 	 * valor do campo com o valor do atributo.
 	 */
-	private static void setFieldValueAsDN(Field field, Object obj, List<String> values) throws Exception {
-		field.setAccessible(true);
-		
-		Class<?> fieldType = field.getType();
+	private static void setFieldValueAsDN(FieldAccessor accessor, Object obj, List<String> values) throws Exception {
+		Class<?> fieldType = accessor.getType();
 
 		// se for um array
 		if (fieldType.isArray()) {
@@ -622,7 +609,7 @@ class LDAPAttributeConverter {
 			DN[] arrayValue = new DN[values.size()];
 			for (int i = 0; i < arrayValue.length; i++)
 				arrayValue[i] = DN.parse(values.get(i));		
-			field.set(obj, arrayValue);
+			accessor.set(obj, arrayValue);
 		}
 		// verifica se o tipo do campo é uma lista
 		else if (List.class.isAssignableFrom(fieldType)) {
@@ -635,11 +622,11 @@ class LDAPAttributeConverter {
 			}
 
 			// ajusta a lista
-			field.set(obj, attrValues);
+			accessor.set(obj, attrValues);
 		} else {
 			String dnString = values.get(0);
 			// apenas ajusta o valor do campo
-			field.set(obj, DN.parse(dnString));
+			accessor.set(obj, DN.parse(dnString));
 		}
 	}
 }
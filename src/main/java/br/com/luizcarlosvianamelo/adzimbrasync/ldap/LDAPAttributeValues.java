@@ -0,0 +1,273 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
+
+import java.lang.reflect.Array;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
+
+/**
+ * Classe que contém as funções de conversão dos valores dos atributos do LDAP
+ * utilizadas pelos conversores gerados pelo processador de anotações
+ * (veja {@link LDAPEntryCodec}). Estas funções seguem as mesmas regras de
+ * conversão da classe {@link LDAPAttributeConverter}.
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+public final class LDAPAttributeValues {
+
+	/**
+	 * Construtor privado já que esta classe contém apenas funções estáticas.
+	 */
+	private LDAPAttributeValues() {
+	}
+
+	/**
+	 * Função que retorna os valores de um atributo do LDAP como uma lista de
+	 * <i>strings</i>. Os valores binários (veja
+	 * {@link LDAPTree#setBinaryAttributes(String...)}) são convertidos para
+	 * <i>strings</i> hexadecimais.
+	 * @param attr O atributo do LDAP.
+	 * @return Retorna a lista com os valores do atributo. Caso o atributo seja
+	 * <code>null</code>, será retornado este valor.
+	 * @throws NamingException Lança exceção quando não for possível ler os
+	 * valores do atributo.
+	 */
+	public static List<String> getValues(Attribute attr) throws NamingException {
+		if (attr == null)
+			return null;
+
+		List<String> values = new ArrayList<>(attr.size());
+		for (int i = 0; i < attr.size(); i++) {
+			Object value = attr.get(i);
+			values.add(value instanceof byte[] ? toHex((byte[]) value) : value.toString());
+		}
+		return values;
+	}
+
+	/**
+	 * Função que retorna os valores de um atributo do LDAP como uma lista de
+	 * <i>strings</i>.
+	 * @param attributes Os atributos da entrada do LDAP.
+	 * @param attributeName O nome do atributo a ser lido.
+	 * @return Retorna a lista com os valores do atributo. Caso o atributo não
+	 * exista, será retornado o valor <code>null</code>.
+	 * @throws NamingException Lança exceção quando não for possível ler os
+	 * valores do atributo.
+	 */
+	public static List<String> getValues(Attributes attributes, String attributeName) throws NamingException {
+		return getValues(attributes.get(attributeName));
+	}
+
+	/**
+	 * Função que converte um valor binário lido do LDAP para uma
+	 * <i>string</i> hexadecimal.
+	 * @param value O valor binário.
+	 * @return Retorna a <i>string</i> com dois dígitos hexadecimais
+	 * minúsculos para cada <i>byte</i> do valor.
+	 */
+	public static String toHex(byte[] value) {
+		final char[] digits = "0123456789abcdef".toCharArray();
+
+		char[] hex = new char[value.length * 2];
+		for (int i = 0; i < value.length; i++) {
+			hex[i * 2] = digits[(value[i] >> 4) & 0x0f];
+			hex[i * 2 + 1] = digits[value[i] & 0x0f];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * Função que converte uma <i>string</i> hexadecimal gerada pela função
+	 * {@link #toHex(byte[])} para o valor binário.
+	 * @param hex A <i>string</i> hexadecimal.
+	 * @return Retorna o valor binário.
+	 * @throws IllegalArgumentException Lança exceção quando a <i>string</i>
+	 * não for um valor hexadecimal válido.
+	 */
+	public static byte[] parseHex(String hex) {
+		if (hex.length() % 2 != 0)
+			throw new IllegalArgumentException("Invalid hexadecimal value length");
+
+		byte[] value = new byte[hex.length() / 2];
+		for (int i = 0; i < value.length; i++) {
+			int high = Character.digit(hex.charAt(i * 2), 16);
+			int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+			if (high < 0 || low < 0)
+				throw new IllegalArgumentException(String.format("Invalid hexadecimal value \"%s\"", hex));
+			value[i] = (byte) ((high << 4) | low);
+		}
+		return value;
+	}
+
+	/**
+	 * Função que faz o parser de uma data no formato utilizado pelo LDAP
+	 * (<code>"yyyyMMddHHmmss"</code>, no fuso horário GMT).
+	 * @param value O valor lido do LDAP.
+	 * @return Retorna a data lida.
+	 * @throws Exception Lança exceção quando o valor não estiver no formato
+	 * esperado.
+	 */
+	public static Date parseDate(String value) throws Exception {
+		SimpleDateFormat dateFormater = new SimpleDateFormat("yyyyMMddHHmmss");
+		dateFormater.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return dateFormater.parse(value);
+	}
+
+	/**
+	 * Função que faz o parser de um valor lido do LDAP para o tipo desejado.
+	 * @param value O valor lido do LDAP.
+	 * @param type O tipo do valor a ser retornado. Para os tipos primitivos,
+	 * deverá ser passada a classe que os encapsula.
+	 * @return Retorna o valor convertido. Caso o tipo não seja suportado, é
+	 * retornado <code>null</code>.
+	 * @throws Exception Lança exceção quando não for possível converter o
+	 * valor.
+	 */
+	public static Object parseValue(String value, Class<?> type) throws Exception {
+		if (type.equals(String.class))
+			return value;
+		else if (type.equals(DN.class))
+			return DN.parse(value);
+		else if (type.equals(Date.class))
+			return parseDate(value);
+		else if (type.equals(Boolean.class))
+			return Boolean.parseBoolean(value);
+		else if (type.equals(Byte.class))
+			return Byte.parseByte(value);
+		else if (type.equals(Character.class))
+			return value.charAt(0);
+		else if (type.equals(Short.class))
+			return Short.parseShort(value);
+		else if (type.equals(Integer.class))
+			return Integer.parseInt(value);
+		else if (type.equals(Long.class))
+			return Long.parseLong(value);
+		else if (type.equals(Float.class))
+			return Float.parseFloat(value);
+		else if (type.equals(Double.class))
+			return Double.parseDouble(value);
+		return null;
+	}
+
+	/**
+	 * Função que faz o parser dos valores lidos do LDAP para uma lista do tipo
+	 * desejado.
+	 * @param values Os valores lidos do LDAP.
+	 * @param type O tipo dos elementos da lista.
+	 * @return Retorna a lista com os valores convertidos.
+	 * @throws Exception Lança exceção quando não for possível converter um dos
+	 * valores.
+	 */
+	public static <ValueType> List<ValueType> parseList(List<String> values, Class<ValueType> type)
+			throws Exception {
+		List<ValueType> list = new ArrayList<>(values.size());
+		for (String value : values)
+			list.add(type.cast(parseValue(value, type)));
+		return list;
+	}
+
+	/**
+	 * Função privada que converte um valor simples para o formato do LDAP.
+	 */
+	private static String formatSingleValue(Object value) {
+		// as datas deverão estar formatadas de acordo com a notação do LDAP
+		if (value instanceof Date)
+			return new SimpleDateFormat("yyyyMMddHHmmss'Z'").format(value);
+		return value.toString();
+	}
+
+	/**
+	 * Função que faz a conversão do valor de um campo para uma lista de
+	 * <i>strings</i> no formato utilizado pelo LDAP.
+	 * @param value O valor do campo.
+	 * @return Retorna a lista com os valores. Caso o valor seja um vetor ou uma
+	 * lista, cada um dos elementos não nulos será convertido. Caso o valor seja
+	 * <code>null</code>, será retornado este valor.
+	 */
+	public static List<String> formatValue(Object value) {
+		if (value == null)
+			return null;
+
+		List<String> values = new ArrayList<>();
+		if (value.getClass().isArray()) {
+			int arraySize = Array.getLength(value);
+			for (int i = 0; i < arraySize; i++) {
+				Object arrayValue = Array.get(value, i);
+				if (arrayValue != null)
+					values.add(formatSingleValue(arrayValue));
+			}
+		} else if (value instanceof Iterable) {
+			for (Object listValue : (Iterable<?>) value) {
+				if (listValue != null)
+					values.add(formatSingleValue(listValue));
+			}
+		} else
+			values.add(formatSingleValue(value));
+		return values;
+	}
+
+	/**
+	 * Função que monta o conjunto de atributos solicitados.
+	 * @param attributesNames A lista com os nomes dos atributos.
+	 * @return Retorna o conjunto com os nomes. Caso a lista seja vazia,
+	 * retorna <code>null</code>, indicando que todos os atributos foram
+	 * solicitados.
+	 */
+	public static Set<String> requestedAttributes(String... attributesNames) {
+		if (attributesNames.length == 0)
+			return null;
+		return new HashSet<>(Arrays.asList(attributesNames));
+	}
+
+	/**
+	 * Informa se o atributo foi solicitado.
+	 * @param requested O conjunto retornado pela função
+	 * {@link #requestedAttributes(String...)}.
+	 * @param attributeName O nome do atributo.
+	 */
+	public static boolean isRequested(Set<String> requested, String attributeName) {
+		return requested == null || requested.contains(attributeName);
+	}
+
+	/**
+	 * Função que adiciona um atributo na lista caso os valores dele não sejam
+	 * <code>null</code>.
+	 * @param attributes A lista de atributos.
+	 * @param attributeName O nome do atributo.
+	 * @param values Os valores do atributo.
+	 */
+	public static void put(Attributes attributes, String attributeName, List<String> values) {
+		if (values == null)
+			return;
+
+		Attribute attr = new BasicAttribute(attributeName);
+		for (String value : values)
+			attr.add(value);
+		attributes.put(attr);
+	}
+
+	/**
+	 * Função que adiciona um atributo com o valor bruto na lista caso este não
+	 * seja <code>null</code>.
+	 * @param attributes A lista de atributos.
+	 * @param attributeName O nome do atributo.
+	 * @param value O valor do atributo.
+	 */
+	public static void putRaw(Attributes attributes, String attributeName, Object value) {
+		if (value == null)
+			return;
+
+		attributes.put(new BasicAttribute(attributeName, value));
+	}
+}
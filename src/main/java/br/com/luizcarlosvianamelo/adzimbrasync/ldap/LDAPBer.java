@@ -0,0 +1,198 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Classe que contém as funções de codificação e decodificação dos valores dos
+ * controles do LDAP no formato BER (<i>Basic Encoding Rules</i>). São
+ * suportados apenas os tipos utilizados pelos controles da biblioteca:
+ * sequências, inteiros e <i>strings</i> de <i>bytes</i>.
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+final class LDAPBer {
+
+	static final int TAG_INTEGER = 0x02;
+	static final int TAG_OCTET_STRING = 0x04;
+	static final int TAG_SEQUENCE = 0x30;
+
+	/**
+	 * Construtor privado já que esta classe contém apenas funções estáticas.
+	 */
+	private LDAPBer() {
+	}
+
+	/**
+	 * Função privada que codifica um elemento BER.
+	 * @param tag O tipo do elemento.
+	 * @param content O conteúdo já codificado do elemento.
+	 * @return Retorna o elemento codificado.
+	 */
+	private static byte[] encode(int tag, byte[] content) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(content.length + 6);
+		out.write(tag);
+
+		// o tamanho é codificado na forma curta sempre que possível
+		if (content.length < 0x80)
+			out.write(content.length);
+		else {
+			int numBytes = 0;
+			for (int length = content.length; length > 0; length >>>= 8)
+				numBytes++;
+			out.write(0x80 | numBytes);
+			for (int i = numBytes - 1; i >= 0; i--)
+				out.write(content.length >>> (i * 8));
+		}
+
+		out.write(content, 0, content.length);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Função que codifica um inteiro com a menor quantidade de <i>bytes</i>
+	 * possível em complemento de dois.
+	 */
+	static byte[] encodeInteger(int value) {
+		// procura a menor quantidade de bytes que representa o valor com sinal
+		int numBytes = 1;
+		while (numBytes < 4 && (value < -(1 << (numBytes * 8 - 1)) || value >= (1 << (numBytes * 8 - 1))))
+			numBytes++;
+
+		byte[] content = new byte[numBytes];
+		for (int i = 0; i < numBytes; i++)
+			content[i] = (byte) (value >> ((numBytes - 1 - i) * 8));
+		return encode(TAG_INTEGER, content);
+	}
+
+	/**
+	 * Função que codifica uma <i>string</i> de <i>bytes</i>. Caso o valor
+	 * seja <code>null</code>, será codificada uma <i>string</i> vazia.
+	 */
+	static byte[] encodeOctetString(byte[] value) {
+		return encode(TAG_OCTET_STRING, value != null ? value : new byte[0]);
+	}
+
+	/**
+	 * Função que codifica uma sequência com os elementos já codificados.
+	 */
+	static byte[] encodeSequence(byte[]... elements) {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		for (byte[] element : elements)
+			content.write(element, 0, element.length);
+		return encode(TAG_SEQUENCE, content.toByteArray());
+	}
+
+	/**
+	 * Classe que faz a leitura sequencial dos elementos de um valor BER.
+	 */
+	static class Reader {
+
+		private final byte[] data;
+		private int offset;
+
+		/**
+		 * Construtor da classe.
+		 * @param data O valor codificado.
+		 */
+		Reader(byte[] data) {
+			this.data = data;
+			this.offset = 0;
+		}
+
+		/**
+		 * Função privada que lê um <i>byte</i> do valor.
+		 */
+		private int readByte() throws IOException {
+			if (this.offset >= this.data.length)
+				throw new IOException("Unexpected end of BER value");
+			return this.data[this.offset++] & 0xff;
+		}
+
+		/**
+		 * Função privada que lê o tipo e o tamanho de um elemento.
+		 * @param tag O tipo esperado do elemento.
+		 * @return Retorna o tamanho do conteúdo do elemento.
+		 * @throws IOException Lança exceção quando o elemento não for do tipo
+		 * esperado ou o seu tamanho for inválido.
+		 */
+		private int readHeader(int tag) throws IOException {
+			int readTag = this.readByte();
+			if (readTag != tag)
+				throw new IOException(String.format("Unexpected BER tag 0x%02x (expected 0x%02x)", readTag, tag));
+			return this.readLength();
+		}
+
+		/**
+		 * Função privada que lê o tamanho de um elemento.
+		 * @throws IOException Lança exceção quando o tamanho for inválido.
+		 */
+		private int readLength() throws IOException {
+			int length = this.readByte();
+			if ((length & 0x80) != 0) {
+				int numBytes = length & 0x7f;
+				if (numBytes == 0 || numBytes > 4)
+					throw new IOException("Unsupported BER length");
+				length = 0;
+				for (int i = 0; i < numBytes; i++)
+					length = (length << 8) | this.readByte();
+			}
+
+			if (length < 0 || length > this.data.length - this.offset)
+				throw new IOException("Invalid BER length");
+			return length;
+		}
+
+		/**
+		 * Função que lê o início de uma sequência. Os elementos da sequência
+		 * deverão ser lidos em seguida.
+		 * @return Retorna o tamanho do conteúdo da sequência.
+		 */
+		int readSequence() throws IOException {
+			return this.readHeader(TAG_SEQUENCE);
+		}
+
+		/**
+		 * Função que lê um inteiro.
+		 */
+		int readInteger() throws IOException {
+			int length = this.readHeader(TAG_INTEGER);
+			if (length == 0 || length > 4)
+				throw new IOException("Unsupported BER integer length");
+
+			// faz a extensão do bit de sinal
+			int value = (byte) this.readByte();
+			for (int i = 1; i < length; i++)
+				value = (value << 8) | this.readByte();
+			return value;
+		}
+
+		/**
+		 * Função que lê uma <i>string</i> de <i>bytes</i>.
+		 */
+		byte[] readOctetString() throws IOException {
+			return this.readContent(this.readHeader(TAG_OCTET_STRING));
+		}
+
+		/**
+		 * Função que lê o conteúdo de um elemento de qualquer tipo.
+		 */
+		byte[] readValue() throws IOException {
+			// o tipo do elemento é ignorado
+			this.readByte();
+			return this.readContent(this.readLength());
+		}
+
+		/**
+		 * Função privada que lê o conteúdo de um elemento, após o tipo e o
+		 * tamanho.
+		 */
+		private byte[] readContent(int length) {
+			byte[] value = new byte[length];
+			System.arraycopy(this.data, this.offset, value, 0, length);
+			this.offset += length;
+			return value;
+		}
+	}
+}
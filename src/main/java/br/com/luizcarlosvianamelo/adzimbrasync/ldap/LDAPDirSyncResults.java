@@ -0,0 +1,178 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+
+/**
+ * Classe que representa o resultado de uma busca realizada com o controle
+ * {@link DirSyncControl}. Quando o servidor informar que existem mais entradas
+ * modificadas, a busca é repetida com o <i>cookie</i> retornado até que todas
+ * as modificações sejam lidas.
+ * <p>O <i>cookie</i> a ser utilizado na próxima busca (veja
+ * {@link #getCookie()}) estará disponível apenas após a leitura de todas as
+ * entradas do resultado.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+public class LDAPDirSyncResults implements NamingEnumeration<SearchResult>, AutoCloseable {
+
+	private LdapContext context;
+
+	private String searchBase;
+	private String filter;
+	private SearchControls searchControls;
+	private int flags;
+
+	private NamingEnumeration<SearchResult> currentResults;
+
+	private byte[] cookie;
+
+	private boolean completed;
+
+	/**
+	 * Construtor da classe. Este já envia a requisição da busca ao servidor.
+	 * @param ldapContext O contexto da conexão com o servidor. Será criada uma
+	 * nova instância deste contexto para que o controle da busca não interfira
+	 * nas outras operações realizadas na mesma conexão.
+	 * @param searchBase A raiz da partição do diretório onde será feita a
+	 * busca. O AD não aceita outras bases de busca neste tipo de busca.
+	 * @param filter O filtro a ser aplicado na busca.
+	 * @param searchControls Os parâmetros da busca.
+	 * @param flags As opções do controle (veja {@link DirSyncControl}).
+	 * @param cookie O <i>cookie</i> retornado na última busca. Caso seja
+	 * <code>null</code>, serão retornadas todas as entradas.
+	 * @throws NamingException Lança exceção quando não for possível realizar a
+	 * consulta.
+	 */
+	LDAPDirSyncResults(LdapContext ldapContext, String searchBase, String filter,
+			SearchControls searchControls, int flags, byte[] cookie) throws NamingException {
+		this.searchBase = searchBase;
+		this.filter = filter;
+		this.searchControls = searchControls;
+		this.flags = flags;
+		this.cookie = cookie;
+		this.completed = false;
+
+		// cria o contexto que será utilizado apenas nesta busca
+		this.context = ldapContext.newInstance(this.createDirSyncControls());
+		this.currentResults = this.context.search(this.searchBase, this.filter, this.searchControls);
+	}
+
+	/**
+	 * Função privada que cria o controle a ser enviado na requisição com o
+	 * último <i>cookie</i> recebido.
+	 */
+	private Control[] createDirSyncControls() {
+		return new Control[] { new DirSyncControl(this.flags, 0, this.cookie) };
+	}
+
+	/**
+	 * Função privada que lê o controle da resposta da última requisição. Caso
+	 * existam mais modificações, já envia a próxima requisição.
+	 * @throws NamingException Lança exceção quando não for possível ler o
+	 * controle ou realizar a próxima requisição.
+	 */
+	private void readResponseControl() throws NamingException {
+		this.currentResults.close();
+		this.currentResults = null;
+
+		DirSyncResponseControl response;
+		try {
+			response = DirSyncResponseControl.find(this.context.getResponseControls());
+		} catch (IOException e) {
+			NamingException ex = new NamingException("Can't decode the DirSync response control");
+			ex.setRootCause(e);
+			throw ex;
+		}
+		if (response == null)
+			throw new NamingException("The server did not return the DirSync response control");
+
+		// o cookie só é substituído se o servidor retornar um novo
+		if (response.getCookie().length > 0)
+			this.cookie = response.getCookie();
+
+		if (response.hasMoreResults()) {
+			this.context.setRequestControls(this.createDirSyncControls());
+			this.currentResults = this.context.search(this.searchBase, this.filter, this.searchControls);
+		} else {
+			this.completed = true;
+			this.close();
+		}
+	}
+
+	/**
+	 * Retorna o <i>cookie</i> que deverá ser utilizado na próxima busca para
+	 * que sejam retornadas apenas as modificações realizadas após esta.
+	 * @throws IllegalStateException Lança exceção caso o resultado ainda não
+	 * tenha sido lido até o final.
+	 */
+	public byte[] getCookie() {
+		if (!this.completed)
+			throw new IllegalStateException("DirSync results were not fully read");
+		return cookie;
+	}
+
+	@Override
+	public boolean hasMore() throws NamingException {
+		while (this.currentResults != null) {
+			if (this.currentResults.hasMore())
+				return true;
+			this.readResponseControl();
+		}
+		return false;
+	}
+
+	@Override
+	public SearchResult next() throws NamingException {
+		if (!this.hasMore())
+			throw new NoSuchElementException();
+		return this.currentResults.next();
+	}
+
+	/**
+	 * Informa se ainda há entradas a serem lidas. Assim como nas
+	 * implementações do JNDI, caso ocorra um erro durante a leitura, esta
+	 * função retorna <code>false</code>. Para que o erro seja tratado, utilize
+	 * a função {@link #hasMore()}.
+	 */
+	@Override
+	public boolean hasMoreElements() {
+		try {
+			return this.hasMore();
+		} catch (NamingException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public SearchResult nextElement() {
+		try {
+			return this.next();
+		} catch (NamingException e) {
+			NoSuchElementException ex = new NoSuchElementException(e.getMessage());
+			ex.initCause(e);
+			throw ex;
+		}
+	}
+
+	@Override
+	public void close() throws NamingException {
+		// cancela a busca que estiver sendo transferida
+		if (this.currentResults != null)
+			this.currentResults.close();
+		this.currentResults = null;
+
+		// e finaliza o contexto da busca
+		if (this.context != null)
+			this.context.close();
+		this.context = null;
+	}
+}
@@ -1,9 +1,5 @@
 package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
 
-import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -45,68 +41,18 @@ public abstract class LDAPEntry {
 		this.dn = dn;
 	}
 
-	/**
-	 * Função privada que retorna a lista contendo todos os campos declarados
-	 * nas classes pertecentes a hierarquia.
-	 * @param clazz A classe inicial.
-	 * @return A lista de campos de todas as classes.
-	 */
-	private List<Field> getAllClassesFields(Class<?> clazz) {
-		/*
-		 * Como a função getFields não retorna os campos que não são publicos e
-		 * a função getDeclaredFields não retorna os campos herdados da classe
-		 * pai é necessário fazer uma função que percorra toda hierarquia de
-		 * classes e coletar os campos de cada uma delas.
-		 */
-
-		// a condição de parada da recursão será quando a busca alcançar esta
-		// classe
-		if (clazz != LDAPEntry.class) {
-			// faz a chamada recursiva para a classe pai da classe atual
-			// para retornar a lista preenchida até o momento
-			List<Field> fields = this.getAllClassesFields(clazz.getSuperclass());
-
-			// e preenche a lista com os campos da classe atual
-			fields.addAll(Arrays.asList(clazz.getDeclaredFields()));
-
-			return fields;
-		}
-
-		// retorna a lista vazia já que esta classe não tem atributos do LDAP
-		// a serem coletados
-		return new ArrayList<>();
-	}
-
 	/**
 	 * Retorna a lista de atributos do LDAP com os campos associados da classe.
 	 * Esta lista é montada a partir da lista de campos anotados com a anotação
-	 * {@link LDAPAttribute}.
+	 * {@link LDAPAttribute}. Como ela é montada apenas uma vez para cada
+	 * classe e compartilhada entre todos os objetos, esta não pode ser
+	 * modificada.
 	 * 
 	 * @return A lista associativa onde a chave é o nome do atributo do LDAP e
 	 * o valor o campo da classe associado ao atributo.
 	 */
 	public Map<String, AttributeField> getLDAPAttributesFields() throws Exception {
-		// pega a lista de campos de todas as classes na hierarquia
-		List<Field> classesFields = this.getAllClassesFields(this.getClass());
-
-		// pega a lista de campos
-		Hashtable<String, AttributeField> fields = new Hashtable<>();
-		for (Field field : classesFields)
-		{
-			// se o campo  tiver o annotation
-			if (field.isAnnotationPresent(LDAPAttribute.class))
-			{
-				// cria a associação do campo com o atributo
-				AttributeField attrField = new AttributeField(field);
-				// e adiciona na lista
-				fields.put(attrField.getAttributeName(), attrField);
-			}
-		}
-
-		// lança exceção se não tiver atributos a serem coletados
-		if (fields.size() == 0)
-			throw new IllegalArgumentException("LDAP Entry has no attributes to be returned");
-		return fields;
+		return LDAPEntryMetadata.forClass(this.getClass()).getAttributesFields();
 	}
 
 	/**
@@ -124,9 +70,17 @@ public abstract class LDAPEntry {
 	 * atributos.
 	 */
 	public Attributes getLDAPAttributes(AttributeAccessMode attrAccessMode, String... attributesNames) throws Exception {
+		LDAPEntryMetadata metadata = LDAPEntryMetadata.forClass(this.getClass());
+
+		// utiliza o conversor gerado caso ele exista
+		@SuppressWarnings("unchecked")
+		LDAPEntryCodec<LDAPEntry> codec = (LDAPEntryCodec<LDAPEntry>) metadata.getCodec();
+		if (codec != null)
+			return codec.encode(this, attrAccessMode, attributesNames);
+
 		Attributes attributes = new BasicAttributes();
 
-		Map<String, AttributeField> attrFields = this.getLDAPAttributesFields();
+		Map<String, AttributeField> attrFields = metadata.getAttributesFields();
 
 		/*
 		 * Serão modificados apenas os atributos que estiverem na lista de
@@ -221,11 +175,22 @@ public abstract class LDAPEntry {
 	 */
 	public static <EntryType extends LDAPEntry> EntryType parseEntry(Class<EntryType> entryType, Attributes attributes)
 			throws Exception {
+		LDAPEntryMetadata metadata = LDAPEntryMetadata.forClass(entryType);
+
+		// utiliza o conversor gerado caso ele exista
+		@SuppressWarnings("unchecked")
+		LDAPEntryCodec<EntryType> codec = (LDAPEntryCodec<EntryType>) metadata.getCodec();
+		if (codec != null) {
+			EntryType obj = codec.newEntry();
+			codec.decode(obj, attributes);
+			return obj;
+		}
+
 		// cria uma instância do objeto
 		EntryType obj = entryType.newInstance();
 
 		// pega a lista de atributos do LDAP e os campos da classe associados
-		Map<String, AttributeField> attrFields = obj.getLDAPAttributesFields();
+		Map<String, AttributeField> attrFields = metadata.getAttributesFields();
 		for (Entry<String, AttributeField> entry : attrFields.entrySet()) {
 
 			Attribute attr = attributes.get(entry.getKey());
@@ -239,11 +204,7 @@ public abstract class LDAPEntry {
 					continue;
 
 				// ajusta o valor do campo
-				List<String> values = new ArrayList<>();
-				for (int i = 0; i < attr.size(); i++)
-					values.add(attr.get(i).toString());
-
-				attrField.set(obj, values);		
+				attrField.set(obj, LDAPAttributeValues.getValues(attr));		
 			}
 		}
 
@@ -0,0 +1,67 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
+
+import javax.naming.directory.Attributes;
+
+/**
+ * Interface implementada pelas classes que fazem a conversão de uma entrada do
+ * LDAP para um objeto Java e vice-versa sem a utilização de reflexão. As
+ * implementações desta interface são geradas durante a compilação pelo
+ * processador de anotações
+ * {@link br.com.luizcarlosvianamelo.adzimbrasync.ldap.processor.LDAPEntryCodecProcessor}
+ * para cada classe que herda a classe {@link LDAPEntry}. Quando a classe
+ * gerada estiver disponível, ela será utilizada pelas funções
+ * {@link LDAPEntry#parseEntry(Class, Attributes)} e
+ * {@link LDAPEntry#getLDAPAttributes(AttributeAccessMode, String...)}.
+ * <p>A classe gerada possui o mesmo nome da classe da entrada acrescido do
+ * sufixo {@value #CODEC_CLASS_SUFFIX} e é criada no mesmo pacote desta.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ * @param <EntryType> O tipo da entrada do LDAP.
+ */
+public interface LDAPEntryCodec<EntryType extends LDAPEntry> {
+
+	/**
+	 * Sufixo do nome das classes geradas.
+	 */
+	public static final String CODEC_CLASS_SUFFIX = "_LDAPCodec";
+
+	/**
+	 * Função que cria uma nova instância da entrada do LDAP.
+	 * @return Retorna o objeto criado.
+	 */
+	public EntryType newEntry();
+
+	/**
+	 * Retorna a lista com os nomes dos atributos do LDAP que possuem permissão
+	 * de leitura.
+	 */
+	public String[] getReadAttributes();
+
+	/**
+	 * Função que preenche os campos do objeto com os valores dos atributos de
+	 * uma entrada do LDAP. Apenas os atributos com permissão de leitura são
+	 * considerados.
+	 * @param entry O objeto a ser preenchido.
+	 * @param attributes Os atributos da entrada do LDAP.
+	 * @throws Exception Lança exceção quando não for possível ajustar o valor
+	 * de um campo do objeto.
+	 */
+	public void decode(EntryType entry, Attributes attributes) throws Exception;
+
+	/**
+	 * Função que retorna a lista de atributos do LDAP contidos no objeto
+	 * passado. Esta segue as mesmas regras da função
+	 * {@link LDAPEntry#getLDAPAttributes(AttributeAccessMode, String...)}.
+	 * @param entry O objeto que contém os valores dos atributos.
+	 * @param attrAccessMode O modo de acesso dos atributos a serem retornados.
+	 * @param attributesNames A lista com os nomes dos atributos que serão
+	 * coletados. Caso esta seja vazia, serão coletados todos os atributos.
+	 * @return Retorna a lista com os atributos que não estão com o valor igual
+	 * a <code>null</code>.
+	 * @throws Exception Lança exceção quando não for possível coletar os
+	 * atributos.
+	 */
+	public Attributes encode(EntryType entry, AttributeAccessMode attrAccessMode, String... attributesNames)
+			throws Exception;
+}
@@ -0,0 +1,155 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.SearchResult;
+
+/**
+ * Classe que representa o resultado de uma busca de um tipo específico de
+ * entrada do LDAP. Diferente da busca que retorna uma lista, as entradas
+ * retornadas pelo servidor são convertidas para objetos Java apenas quando
+ * forem lidas, o que permite que o resultado seja percorrido sem que todos os
+ * objetos sejam mantidos em memória.
+ * <p>Este objeto deve ser fechado após o seu uso, o que pode ser feito através
+ * de um bloco <code>try</code> com recursos. Caso todas as entradas sejam
+ * lidas, os recursos da busca são liberados automaticamente.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ * @param <EntryType> O tipo das entradas do LDAP retornadas.
+ */
+public class LDAPEntryEnumeration<EntryType extends LDAPEntry>
+		implements NamingEnumeration<EntryType>, Iterable<EntryType>, AutoCloseable {
+
+	private LDAPTree tree;
+
+	private Class<EntryType> entryType;
+
+	private NamingEnumeration<SearchResult> results;
+
+	/**
+	 * Construtor da classe.
+	 * @param tree A árvore onde foi realizada a busca. Esta é utilizada para
+	 * a leitura dos atributos retornados em intervalos.
+	 * @param entryType A classe que representa a entrada do LDAP.
+	 * @param results O resultado da busca realizada na árvore.
+	 */
+	LDAPEntryEnumeration(LDAPTree tree, Class<EntryType> entryType, NamingEnumeration<SearchResult> results) {
+		this.tree = tree;
+		this.entryType = entryType;
+		this.results = results;
+	}
+
+	/**
+	 * Função privada que faz a conversão de uma entrada retornada pela busca
+	 * para o objeto Java.
+	 * @param entry A entrada retornada pela busca.
+	 * @return Retorna o objeto gerado a partir da entrada.
+	 * @throws NamingException Lança exceção quando não for possível converter
+	 * a entrada.
+	 */
+	private EntryType parseSearchResult(SearchResult entry) throws NamingException {
+		try {
+			// completa os atributos multivalorados retornados em intervalos
+			Attributes attributes = this.tree.resolveRangedAttributes(entry.getNameInNamespace(),
+					entry.getAttributes());
+			EntryType ldapEntry = LDAPEntry.parseEntry(this.entryType, attributes);
+
+			// ajusta o DN da entrada
+			ldapEntry.setDn(DN.parse(entry.getNameInNamespace()));
+
+			return ldapEntry;
+		} catch (NamingException e) {
+			throw e;
+		} catch (Exception e) {
+			NamingException ex = new NamingException(String.format("Can't parse entry \"%s\"",
+					entry.getNameInNamespace()));
+			ex.setRootCause(e);
+			throw ex;
+		}
+	}
+
+	@Override
+	public boolean hasMore() throws NamingException {
+		return this.results.hasMore();
+	}
+
+	@Override
+	public EntryType next() throws NamingException {
+		return this.parseSearchResult(this.results.next());
+	}
+
+	/**
+	 * Informa se ainda há entradas a serem lidas. Assim como nas
+	 * implementações do JNDI, caso ocorra um erro durante a leitura do
+	 * resultado, esta função retorna <code>false</code>. Para que o erro seja
+	 * tratado, utilize a função {@link #hasMore()}.
+	 */
+	@Override
+	public boolean hasMoreElements() {
+		try {
+			return this.hasMore();
+		} catch (NamingException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public EntryType nextElement() {
+		try {
+			return this.next();
+		} catch (NamingException e) {
+			NoSuchElementException ex = new NoSuchElementException(e.getMessage());
+			ex.initCause(e);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Retorna um iterador sobre as entradas do resultado para que este possa
+	 * ser percorrido por um laço <code>for</code>. Como o resultado só pode ser
+	 * percorrido uma vez, todos os iteradores retornados compartilham a mesma
+	 * posição. Os erros ocorridos durante a leitura serão relançados como
+	 * {@link IllegalStateException}.
+	 */
+	@Override
+	public Iterator<EntryType> iterator() {
+		return new Iterator<EntryType>() {
+
+			@Override
+			public boolean hasNext() {
+				try {
+					return LDAPEntryEnumeration.this.hasMore();
+				} catch (NamingException e) {
+					throw new IllegalStateException(e.getMessage(), e);
+				}
+			}
+
+			@Override
+			public EntryType next() {
+				try {
+					return LDAPEntryEnumeration.this.next();
+				} catch (NamingException e) {
+					throw new IllegalStateException(e.getMessage(), e);
+				}
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Finaliza a leitura do resultado, liberando os recursos da busca.
+	 */
+	@Override
+	public void close() throws NamingException {
+		this.results.close();
+	}
+}
@@ -0,0 +1,184 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Classe que contém as informações dos atributos do LDAP associados aos campos
+ * de uma classe que herda a classe {@link LDAPEntry}. Como a leitura destas
+ * informações é feita através de reflexão, elas são montadas apenas uma vez
+ * para cada classe e armazenadas em um registro global compartilhado entre as
+ * threads. As informações armazenadas não podem ser alteradas.
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+final class LDAPEntryMetadata {
+
+	private static final ConcurrentMap<Class<?>, LDAPEntryMetadata> METADATA_REGISTRY = new ConcurrentHashMap<>();
+
+	private final Map<String, AttributeField> attributesFields;
+
+	private final LDAPEntryCodec<?> codec;
+
+	private final String[] readAttributes;
+
+	/**
+	 * Construtor da classe. Este faz a leitura dos campos anotados com a
+	 * anotação {@link LDAPAttribute} da classe passada e de toda a sua
+	 * hierarquia.
+	 * @param entryType A classe da entrada do LDAP.
+	 * @throws Exception Lança exceção quando não for possível criar a associação
+	 * de um campo com o atributo ou quando a classe não possuir atributos.
+	 */
+	private LDAPEntryMetadata(Class<?> entryType) throws Exception {
+		// pega a lista de campos de todas as classes na hierarquia
+		List<Field> classesFields = getAllClassesFields(entryType);
+
+		// pega a lista de campos
+		Map<String, AttributeField> fields = new HashMap<>();
+		for (Field field : classesFields)
+		{
+			// se o campo  tiver o annotation
+			if (field.isAnnotationPresent(LDAPAttribute.class))
+			{
+				// cria a associação do campo com o atributo
+				AttributeField attrField = new AttributeField(field);
+				// e adiciona na lista
+				fields.put(attrField.getAttributeName(), attrField);
+			}
+		}
+
+		// lança exceção se não tiver atributos a serem coletados
+		if (fields.size() == 0)
+			throw new IllegalArgumentException("LDAP Entry has no attributes to be returned");
+
+		this.attributesFields = Collections.unmodifiableMap(fields);
+
+		// carrega o conversor gerado durante a compilação
+		this.codec = loadCodec(entryType);
+
+		// monta a lista de atributos que podem ser lidos do LDAP
+		if (this.codec != null)
+			this.readAttributes = this.codec.getReadAttributes();
+		else {
+			List<String> readAttributes = new ArrayList<>();
+			for (AttributeField attrField : fields.values()) {
+				if (attrField.haveRequestedPermission(AttributeAccessMode.READ))
+					readAttributes.add(attrField.getAttributeName());
+			}
+			this.readAttributes = readAttributes.toArray(new String[readAttributes.size()]);
+		}
+	}
+
+	/**
+	 * Função privada que carrega o conversor gerado pelo processador de
+	 * anotações para a classe passada.
+	 * @param entryType A classe da entrada do LDAP.
+	 * @return Retorna o conversor da classe. Caso este não exista ou não
+	 * possa ser criado, retorna <code>null</code> e a conversão será feita
+	 * através de reflexão.
+	 */
+	private static LDAPEntryCodec<?> loadCodec(Class<?> entryType) {
+		try {
+			Class<?> codecType = Class.forName(entryType.getName() + LDAPEntryCodec.CODEC_CLASS_SUFFIX,
+					true, entryType.getClassLoader());
+			if (LDAPEntryCodec.class.isAssignableFrom(codecType))
+				return (LDAPEntryCodec<?>) codecType.newInstance();
+		} catch (ClassNotFoundException e) {
+			// a classe não possui um conversor gerado
+		} catch (Exception e) {
+			// não foi possível criar o conversor, logo utiliza a reflexão
+		}
+		return null;
+	}
+
+	/**
+	 * Função privada que retorna a lista contendo todos os campos declarados
+	 * nas classes pertecentes a hierarquia.
+	 * @param clazz A classe inicial.
+	 * @return A lista de campos de todas as classes.
+	 */
+	private static List<Field> getAllClassesFields(Class<?> clazz) {
+		/*
+		 * Como a função getFields não retorna os campos que não são publicos e
+		 * a função getDeclaredFields não retorna os campos herdados da classe
+		 * pai é necessário fazer uma função que percorra toda hierarquia de
+		 * classes e coletar os campos de cada uma delas.
+		 */
+
+		// a condição de parada da recursão será quando a busca alcançar esta
+		// classe
+		if (clazz != LDAPEntry.class && clazz != null) {
+			// faz a chamada recursiva para a classe pai da classe atual
+			// para retornar a lista preenchida até o momento
+			List<Field> fields = getAllClassesFields(clazz.getSuperclass());
+
+			// e preenche a lista com os campos da classe atual
+			fields.addAll(Arrays.asList(clazz.getDeclaredFields()));
+
+			return fields;
+		}
+
+		// retorna a lista vazia já que esta classe não tem atributos do LDAP
+		// a serem coletados
+		return new ArrayList<>();
+	}
+
+	/**
+	 * Função que retorna as informações dos atributos de uma classe. Caso
+	 * estas ainda não tenham sido montadas, elas serão lidas e armazenadas no
+	 * registro.
+	 * @param entryType A classe da entrada do LDAP.
+	 * @return Retorna as informações dos atributos da classe.
+	 * @throws Exception Lança exceção quando não for possível ler as
+	 * informações da classe.
+	 */
+	static LDAPEntryMetadata forClass(Class<?> entryType) throws Exception {
+		LDAPEntryMetadata metadata = METADATA_REGISTRY.get(entryType);
+		if (metadata == null) {
+			/*
+			 * Se duas threads montarem as informações ao mesmo tempo, apenas
+			 * a primeira a ser armazenada será utilizada.
+			 */
+			metadata = new LDAPEntryMetadata(entryType);
+			LDAPEntryMetadata current = METADATA_REGISTRY.putIfAbsent(entryType, metadata);
+			if (current != null)
+				metadata = current;
+		}
+		return metadata;
+	}
+
+	/**
+	 * Retorna a lista associativa onde a chave é o nome do atributo do LDAP e
+	 * o valor o campo da classe associado ao atributo. Esta lista não pode ser
+	 * modificada.
+	 */
+	Map<String, AttributeField> getAttributesFields() {
+		return attributesFields;
+	}
+
+	/**
+	 * Retorna a lista com os nomes dos atributos do LDAP que possuem permissão
+	 * de leitura. Estes são os únicos atributos utilizados na conversão de uma
+	 * entrada do LDAP para o objeto Java.
+	 */
+	String[] getReadAttributes() {
+		return readAttributes.clone();
+	}
+
+	/**
+	 * Retorna o conversor gerado para a classe. Caso este não exista, retorna
+	 * <code>null</code>.
+	 */
+	LDAPEntryCodec<?> getCodec() {
+		return codec;
+	}
+}
@@ -0,0 +1,222 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+
+/**
+ * Classe que representa o resultado de uma busca paginada na árvore LDAP. A
+ * busca é feita utilizando o controle <i>Simple Paged Results</i> (RFC 2696),
+ * o que permite que sejam retornadas mais entradas do que o limite de
+ * resultados configurado no servidor (no AD, o <code>MaxPageSize</code>).
+ * <p>As páginas são lidas sob demanda. Ao terminar a leitura de uma página, a
+ * requisição da próxima é enviada ao servidor antes que as entradas da página
+ * atual sejam consumidas, de forma que o processamento de uma página ocorra
+ * enquanto a seguinte está sendo transferida. Assim, a quantidade de entradas
+ * mantidas em memória fica limitada ao tamanho da página e não ao tamanho da
+ * árvore.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+class LDAPPagedSearchResults implements NamingEnumeration<SearchResult> {
+
+	private LdapContext context;
+
+	private String searchBase;
+	private String filter;
+	private SearchControls searchControls;
+	private int pageSize;
+	private Control[] requestControls;
+
+	private NamingEnumeration<SearchResult> pendingPage;
+	private Iterator<SearchResult> currentPage;
+
+	/**
+	 * Construtor da classe. Este já envia a requisição da primeira página ao
+	 * servidor.
+	 * @param ldapContext O contexto da conexão com o servidor. Será criada uma
+	 * nova instância deste contexto para que os controles da busca paginada
+	 * não interfiram nas outras operações realizadas na mesma conexão.
+	 * @param searchBase A base de busca na árvore do LDAP.
+	 * @param filter O filtro a ser aplicado na busca.
+	 * @param searchControls Os parâmetros da busca.
+	 * @param pageSize A quantidade máxima de entradas de cada página.
+	 * @throws NamingException Lança exceção quando não for possível realizar a
+	 * consulta.
+	 */
+	LDAPPagedSearchResults(LdapContext ldapContext, String searchBase, String filter,
+			SearchControls searchControls, int pageSize) throws NamingException {
+		this(ldapContext, searchBase, filter, searchControls, pageSize, null);
+	}
+
+	/**
+	 * Construtor da classe que envia outros controles, além do controle de
+	 * paginação, na requisição de cada página.
+	 * @param ldapContext O contexto da conexão com o servidor.
+	 * @param searchBase A base de busca na árvore do LDAP.
+	 * @param filter O filtro a ser aplicado na busca.
+	 * @param searchControls Os parâmetros da busca.
+	 * @param pageSize A quantidade máxima de entradas de cada página.
+	 * @param requestControls Os controles enviados em todas as páginas, como
+	 * o controle que retorna as entradas removidas do AD. Pode ser
+	 * <code>null</code>.
+	 * @throws NamingException Lança exceção quando não for possível realizar a
+	 * consulta.
+	 */
+	LDAPPagedSearchResults(LdapContext ldapContext, String searchBase, String filter,
+			SearchControls searchControls, int pageSize, Control[] requestControls) throws NamingException {
+		this.searchBase = searchBase;
+		this.filter = filter;
+		this.searchControls = searchControls;
+		this.pageSize = pageSize;
+		this.requestControls = requestControls != null ? requestControls : new Control[0];
+
+		// cria o contexto que será utilizado apenas nesta busca
+		this.context = ldapContext.newInstance(this.createPageControls(null));
+
+		// faz a requisição da primeira página
+		this.currentPage = Collections.emptyIterator();
+		this.pendingPage = this.context.search(this.searchBase, this.filter, this.searchControls);
+	}
+
+	/**
+	 * Função privada que cria o controle de paginação a ser enviado na
+	 * requisição de uma página, seguido dos outros controles da busca.
+	 * @param cookie O <i>cookie</i> retornado pelo servidor na página anterior.
+	 * Deve ser <code>null</code> para a requisição da primeira página.
+	 * @return Retorna a lista de controles da requisição.
+	 * @throws NamingException Lança exceção quando não for possível codificar
+	 * o controle.
+	 */
+	private Control[] createPageControls(byte[] cookie) throws NamingException {
+		try {
+			Control[] controls = new Control[this.requestControls.length + 1];
+			controls[0] = new PagedResultsControl(this.pageSize, cookie, Control.CRITICAL);
+			System.arraycopy(this.requestControls, 0, controls, 1, this.requestControls.length);
+			return controls;
+		} catch (IOException e) {
+			NamingException ex = new NamingException("Can't encode the paged results control");
+			ex.setRootCause(e);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Função privada que retorna o <i>cookie</i> enviado pelo servidor na
+	 * resposta da última página lida.
+	 * @return Retorna o <i>cookie</i> da próxima página. Caso não existam mais
+	 * páginas, retorna <code>null</code>.
+	 * @throws NamingException Lança exceção quando não for possível ler os
+	 * controles da resposta.
+	 */
+	private byte[] getResponseCookie() throws NamingException {
+		Control[] controls = this.context.getResponseControls();
+		if (controls != null) {
+			for (Control control : controls) {
+				if (control instanceof PagedResultsResponseControl) {
+					byte[] cookie = ((PagedResultsResponseControl) control).getCookie();
+					// o cookie vazio indica que esta foi a última página
+					if (cookie != null && cookie.length > 0)
+						return cookie;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Função privada que faz a leitura da página que está sendo transferida e
+	 * já envia a requisição da página seguinte.
+	 * @throws NamingException Lança exceção quando não for possível ler a
+	 * página.
+	 */
+	private void readPendingPage() throws NamingException {
+		// lê as entradas da página
+		List<SearchResult> page = new ArrayList<>(this.pageSize);
+		while (this.pendingPage.hasMore())
+			page.add(this.pendingPage.next());
+		this.pendingPage.close();
+		this.pendingPage = null;
+
+		// se houver mais páginas, já faz a requisição da próxima
+		byte[] cookie = this.getResponseCookie();
+		if (cookie != null) {
+			this.context.setRequestControls(this.createPageControls(cookie));
+			this.pendingPage = this.context.search(this.searchBase, this.filter, this.searchControls);
+		} else
+			// finaliza o contexto já que esta foi a última página
+			this.close();
+
+		this.currentPage = page.iterator();
+	}
+
+	@Override
+	public boolean hasMore() throws NamingException {
+		// enquanto a página atual estiver vazia, tenta ler a próxima
+		while (!this.currentPage.hasNext()) {
+			if (this.pendingPage == null)
+				return false;
+			this.readPendingPage();
+		}
+		return true;
+	}
+
+	@Override
+	public SearchResult next() throws NamingException {
+		if (!this.hasMore())
+			throw new NoSuchElementException();
+		return this.currentPage.next();
+	}
+
+	/**
+	 * Informa se ainda há entradas a serem lidas. Assim como nas
+	 * implementações do JNDI, caso ocorra um erro durante a leitura das
+	 * páginas, esta função retorna <code>false</code>. Para que o erro seja
+	 * tratado, utilize a função {@link #hasMore()}.
+	 */
+	@Override
+	public boolean hasMoreElements() {
+		try {
+			return this.hasMore();
+		} catch (NamingException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public SearchResult nextElement() {
+		try {
+			return this.next();
+		} catch (NamingException e) {
+			NoSuchElementException ex = new NoSuchElementException(e.getMessage());
+			ex.initCause(e);
+			throw ex;
+		}
+	}
+
+	@Override
+	public void close() throws NamingException {
+		// cancela a página que estiver sendo transferida
+		if (this.pendingPage != null)
+			this.pendingPage.close();
+		this.pendingPage = null;
+
+		// e finaliza o contexto da busca
+		if (this.context != null)
+			this.context.close();
+		this.context = null;
+	}
+}
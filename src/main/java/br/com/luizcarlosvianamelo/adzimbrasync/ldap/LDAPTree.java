@@ -4,15 +4,23 @@ import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
 
+import javax.naming.CompositeName;
 import javax.naming.Context;
+import javax.naming.Name;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
 import javax.naming.directory.DirContext;
-import javax.naming.directory.InitialDirContext;
 import javax.naming.directory.ModificationItem;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.ExtendedRequest;
+import javax.naming.ldap.ExtendedResponse;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
 
 /**
  * Classe que representa uma árvore do LDAP. Esta árvore contém uma série
@@ -25,7 +33,19 @@ import javax.naming.directory.SearchResult;
  */
 public class LDAPTree {
 
-	private DirContext ldapContext;
+	/**
+	 * Tamanho padrão das páginas das buscas. Este valor deve ser menor que o
+	 * limite de resultados configurado no servidor (no AD, o
+	 * <code>MaxPageSize</code> possui o valor padrão de 1000).
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 500;
+
+	/**
+	 * Opção que indica que um atributo foi retornado em intervalos.
+	 */
+	private static final String RANGE_OPTION = ";range=";
+
+	private LdapContext ldapContext;
 
 	private String ldapUrl;
 
@@ -33,6 +53,10 @@ public class LDAPTree {
 	private String ldapSearchBindDn;
 	private String ldapSearchBindPassword;
 
+	private int pageSize;
+
+	private String[] binaryAttributes;
+
 	/**
 	 * Construtor padrão da classe. Este inicializa os parâmetros de conexão
 	 * com valores padrões.
@@ -60,6 +84,9 @@ public class LDAPTree {
 		this.ldapSearchBase = ldapSearchBase;
 		this.ldapSearchBindDn = ldapSearchBindDn;
 		this.ldapSearchBindPassword = ldapSearchBindPassword;
+
+		this.pageSize = DEFAULT_PAGE_SIZE;
+		this.binaryAttributes = new String[0];
 	}
 	
 	/**
@@ -135,6 +162,41 @@ public class LDAPTree {
 		this.ldapSearchBindPassword = ldapSearchBindPassword;
 	}
 
+	/**
+	 * Retorna a quantidade máxima de entradas retornadas em cada página das
+	 * buscas.
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Ajusta a quantidade máxima de entradas retornadas em cada página das
+	 * buscas. Caso o valor seja menor ou igual a zero, as buscas serão
+	 * realizadas sem paginação e o resultado destas ficará limitado ao
+	 * limite de resultados configurado no servidor.
+	 */
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Retorna a lista com os nomes dos atributos que são retornados pelo
+	 * servidor como vetores de <i>bytes</i>.
+	 */
+	public String[] getBinaryAttributes() {
+		return binaryAttributes.clone();
+	}
+
+	/**
+	 * Ajusta a lista com os nomes dos atributos que deverão ser retornados pelo
+	 * servidor como vetores de <i>bytes</i> ao invés de <i>strings</i>. Esta
+	 * configuração é aplicada apenas nas próximas conexões.
+	 */
+	public void setBinaryAttributes(String... binaryAttributes) {
+		this.binaryAttributes = binaryAttributes.clone();
+	}
+
 	/**
 	 * Função que realiza uma conexão não segura com o servidor de acordo
 	 * com os parâmetros definidos.
@@ -148,7 +210,9 @@ public class LDAPTree {
 
 	/**
 	 * Função que realiza uma conexão com o servidor de acordo com os parâmetros
-	 * definidos.
+	 * definidos. Caso o DN do usuário de consulta não esteja ajustado, a
+	 * conexão é aberta sem autenticação, podendo ser autenticada depois
+	 * através da função {@link #bind(String, String)}.
 	 * @param ssl Indica se será realizada uma conexão segura com o servidor.
 	 * @throws NamingException Lança exceção caso não for possível se conectar
 	 * no servidor.
@@ -158,16 +222,81 @@ public class LDAPTree {
 		Hashtable<String, String> ldapEnv = new Hashtable<>();
 		ldapEnv.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
 		ldapEnv.put(Context.PROVIDER_URL, this.ldapUrl);
-		ldapEnv.put(Context.SECURITY_AUTHENTICATION, "simple");
-		ldapEnv.put(Context.SECURITY_PRINCIPAL, this.ldapSearchBindDn);
-		ldapEnv.put(Context.SECURITY_CREDENTIALS, this.ldapSearchBindPassword);
+		if (this.ldapSearchBindDn == null || this.ldapSearchBindDn.isEmpty()) {
+			// na versão 3 do LDAP, nenhuma operação de bind é enviada ao servidor
+			ldapEnv.put(Context.SECURITY_AUTHENTICATION, "none");
+			ldapEnv.put("java.naming.ldap.version", "3");
+		} else {
+			ldapEnv.put(Context.SECURITY_AUTHENTICATION, "simple");
+			ldapEnv.put(Context.SECURITY_PRINCIPAL, this.ldapSearchBindDn);
+			ldapEnv.put(Context.SECURITY_CREDENTIALS, this.ldapSearchBindPassword);
+		}
 
 		// se estiver habilitada a conexão segura
 		if (ssl)
 			ldapEnv.put(Context.SECURITY_PROTOCOL, "ssl");
 
+		// ajusta os atributos que são lidos como vetores de bytes
+		if (this.binaryAttributes.length > 0) {
+			StringBuilder binaryAttributes = new StringBuilder();
+			for (String attr : this.binaryAttributes) {
+				if (binaryAttributes.length() > 0)
+					binaryAttributes.append(' ');
+				binaryAttributes.append(attr);
+			}
+			ldapEnv.put("java.naming.ldap.attributes.binary", binaryAttributes.toString());
+		}
+
 		// inicializa a conexão
-		this.ldapContext = new InitialDirContext(ldapEnv);
+		this.ldapContext = new InitialLdapContext(ldapEnv, null);
+	}
+
+	/**
+	 * Função que autentica a conexão aberta com outro usuário. A autenticação
+	 * é feita sobre a mesma conexão, sem que uma nova seja aberta com o
+	 * servidor.
+	 * @param bindDn O DN do usuário.
+	 * @param bindPassword A senha do usuário. Não pode ser vazia, já que o
+	 * servidor trataria a autenticação como anônima.
+	 * @throws NamingException Lança exceção caso não for possível autenticar o
+	 * usuário. Quando as credenciais forem inválidas, será lançada uma
+	 * exceção {@link javax.naming.AuthenticationException} e a conexão
+	 * continuará aberta.
+	 */
+	public void bind(String bindDn, String bindPassword) throws NamingException {
+		// lança exceção se não estiver conectado
+		if (!this.isConnected())
+			throw new NamingException("Not connected to LDAP server");
+		if (bindPassword == null || bindPassword.isEmpty())
+			throw new IllegalArgumentException("Empty password");
+
+		this.ldapContext.addToEnvironment(Context.SECURITY_AUTHENTICATION, "simple");
+		this.ldapContext.addToEnvironment(Context.SECURITY_PRINCIPAL, bindDn);
+		this.ldapContext.addToEnvironment(Context.SECURITY_CREDENTIALS, bindPassword);
+		try {
+			// envia a operação de bind sobre a conexão existente
+			this.ldapContext.reconnect(null);
+		} finally {
+			// as credenciais do usuário não são mantidas no ambiente da conexão
+			this.ldapContext.removeFromEnvironment(Context.SECURITY_CREDENTIALS);
+			this.ldapContext.removeFromEnvironment(Context.SECURITY_PRINCIPAL);
+			this.ldapContext.addToEnvironment(Context.SECURITY_AUTHENTICATION, "none");
+		}
+	}
+
+	/**
+	 * Função que envia uma operação estendida para o servidor.
+	 * @param request A requisição da operação estendida.
+	 * @return Retorna a resposta do servidor.
+	 * @throws Exception Lança uma exceção quando o servidor não realizar a
+	 * operação.
+	 */
+	public ExtendedResponse extendedOperation(ExtendedRequest request) throws Exception {
+		// lança exceção se não estiver conectado
+		if (!this.isConnected())
+			throw new Exception("Not connected to LDAP server");
+
+		return this.ldapContext.extendedOperation(request);
 	}
 
 	/**
@@ -191,19 +320,159 @@ public class LDAPTree {
 	}
 
 	/**
-	 * Função que realiza uma busca na árvore LDAP conforme o filtro passado.
-	 * @param filter O filtro a ser aplicado na busca.
-	 * @param returnAttributes A lista com os atributos das entidades que serão
-	 * retornados.
-	 * @return Retorna a estrutura contendo o resultado da consulta.
+	 * Função que verifica se a conexão com o servidor ainda está ativa. Para
+	 * isto, é feita a leitura de um atributo da raiz do servidor
+	 * (<i>RootDSE</i>).
+	 * @return Retorna <code>true</code> caso a conexão esteja ativa. Caso não
+	 * esteja conectado ou o servidor não responda a leitura, retorna
+	 * <code>false</code>.
+	 */
+	public boolean isAlive() {
+		if (!this.isConnected())
+			return false;
+
+		try {
+			this.ldapContext.getAttributes("", new String[] { "supportedLDAPVersion" });
+			return true;
+		} catch (NamingException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Função que faz a leitura dos atributos de uma entrada do LDAP.
+	 * @param dn O DN da entrada. Caso seja uma <i>string</i> vazia, serão lidos
+	 * os atributos da raiz do servidor (<i>RootDSE</i>).
+	 * @param returnAttributes A lista com os atributos que serão retornados.
+	 * Se esta for vazia, serão retornados todos os atributos.
+	 * @return Retorna os atributos da entrada.
 	 * @throws Exception Lança uma exceção quando não for possível realizar a
-	 * consulta.
+	 * leitura.
 	 */
-	public NamingEnumeration<SearchResult> search(String filter, String... returnAttributes) throws Exception {
+	public Attributes getAttributes(String dn, String... returnAttributes) throws Exception {
 		// lança exceção se não estiver conectado
 		if (!this.isConnected())
 			throw new Exception("Not connected to LDAP server");
 
+		// o DN é tratado como um único componente para que os caracteres
+		// especiais dos nomes do JNDI (como a barra) não sejam interpretados
+		Name name = new CompositeName().add(dn);
+		if (returnAttributes.length > 0)
+			return this.ldapContext.getAttributes(name, returnAttributes);
+		return this.ldapContext.getAttributes(name);
+	}
+
+	/**
+	 * Função que completa os atributos multivalorados de uma entrada que foram
+	 * retornados em intervalos. Quando um atributo possui mais valores que o
+	 * limite do servidor (no AD, o <code>MaxValRange</code>), este é retornado
+	 * com o nome <code>atributo;range=0-1499</code>. Neste caso, os valores
+	 * restantes são lidos em requisições seguintes até o último intervalo
+	 * (<code>atributo;range=N-*</code>), sendo acumulados no atributo com o
+	 * nome original.
+	 * @param dn O DN da entrada.
+	 * @param attributes Os atributos da entrada retornados pelo servidor. Os
+	 * atributos em intervalos são substituídos pelos atributos completos.
+	 * @return Retorna os atributos passados.
+	 * @throws Exception Lança uma exceção quando não for possível ler os
+	 * intervalos restantes.
+	 */
+	public Attributes resolveRangedAttributes(String dn, Attributes attributes) throws Exception {
+		// procura os atributos retornados em intervalos
+		List<String> rangedIds = null;
+		NamingEnumeration<String> ids = attributes.getIDs();
+		while (ids.hasMore()) {
+			String id = ids.next();
+			if (id.toLowerCase().contains(RANGE_OPTION)) {
+				if (rangedIds == null)
+					rangedIds = new ArrayList<>();
+				rangedIds.add(id);
+			}
+		}
+		if (rangedIds == null)
+			return attributes;
+
+		for (String rangedId : rangedIds) {
+			Attribute rangedAttr = attributes.remove(rangedId);
+			int rangeIndex = rangedId.toLowerCase().indexOf(RANGE_OPTION);
+			String attrName = rangedId.substring(0, rangeIndex);
+
+			// acumula os valores de cada intervalo no atributo completo
+			Attribute attr = new BasicAttribute(attrName);
+			String range = rangedId.substring(rangeIndex + RANGE_OPTION.length());
+			while (true) {
+				for (int i = 0; i < rangedAttr.size(); i++)
+					attr.add(rangedAttr.get(i));
+
+				// o último intervalo termina com '*'
+				int rangeEnd = range.indexOf('-');
+				if (rangeEnd < 0 || range.endsWith("*"))
+					break;
+				int nextStart = Integer.parseInt(range.substring(rangeEnd + 1)) + 1;
+
+				// lê o próximo intervalo
+				rangedAttr = null;
+				NamingEnumeration<? extends Attribute> nextAttrs = this.getAttributes(dn,
+						String.format("%s%s%d-*", attrName, RANGE_OPTION, nextStart)).getAll();
+				while (nextAttrs.hasMore()) {
+					Attribute nextAttr = nextAttrs.next();
+					int nextRangeIndex = nextAttr.getID().toLowerCase().indexOf(RANGE_OPTION);
+					if (nextRangeIndex >= 0) {
+						rangedAttr = nextAttr;
+						range = nextAttr.getID().substring(nextRangeIndex + RANGE_OPTION.length());
+					}
+				}
+				// a quantidade de valores pode ter diminuído desde a primeira leitura
+				if (rangedAttr == null)
+					break;
+			}
+
+			attributes.put(attr);
+		}
+
+		return attributes;
+	}
+
+	/**
+	 * Função que faz o <i>escape</i> dos caracteres especiais de um valor que
+	 * será utilizado em um filtro de busca, conforme a RFC 4515.
+	 * @param value O valor a ser utilizado no filtro.
+	 * @return Retorna o valor com os caracteres especiais substituídos.
+	 */
+	public static String escapeFilterValue(String value) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '*':
+				escaped.append("\\2a");
+				break;
+			case '(':
+				escaped.append("\\28");
+				break;
+			case ')':
+				escaped.append("\\29");
+				break;
+			case '\\':
+				escaped.append("\\5c");
+				break;
+			case '\0':
+				escaped.append("\\00");
+				break;
+			default:
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * Função privada que cria os parâmetros de uma busca na árvore.
+	 * @param returnAttributes A lista com os atributos das entidades que serão
+	 * retornados. Se esta for vazia, serão retornados todos os atributos.
+	 * @return Retorna os parâmetros da busca.
+	 */
+	private SearchControls createSearchControls(String... returnAttributes) {
 		// ajusta os parâmetros da busca
 		SearchControls searchControls = new SearchControls();
 		searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
@@ -211,9 +480,126 @@ public class LDAPTree {
 		// todos os atributos
 		if (returnAttributes.length > 0)
 			searchControls.setReturningAttributes(returnAttributes);
+		return searchControls;
+	}
+
+	/**
+	 * Função que realiza uma busca na árvore LDAP conforme o filtro passado.
+	 * Caso o tamanho de página esteja ajustado, a busca será paginada
+	 * (veja {@link #searchPaged(String, int, String...)}).
+	 * @param filter O filtro a ser aplicado na busca.
+	 * @param returnAttributes A lista com os atributos das entidades que serão
+	 * retornados.
+	 * @return Retorna a estrutura contendo o resultado da consulta.
+	 * @throws Exception Lança uma exceção quando não for possível realizar a
+	 * consulta.
+	 */
+	public NamingEnumeration<SearchResult> search(String filter, String... returnAttributes) throws Exception {
+		// faz a busca paginada se o tamanho da página estiver ajustado
+		if (this.pageSize > 0)
+			return this.searchPaged(filter, this.pageSize, returnAttributes);
+
+		// lança exceção se não estiver conectado
+		if (!this.isConnected())
+			throw new Exception("Not connected to LDAP server");
+
+		// realiza a busca
+		return this.ldapContext.search(this.ldapSearchBase, filter, this.createSearchControls(returnAttributes));
+	}
+
+	/**
+	 * Função que realiza uma busca paginada na árvore LDAP conforme o filtro
+	 * passado. A busca utiliza o controle <i>Simple Paged Results</i>
+	 * (RFC 2696), permitindo que sejam retornadas mais entradas que o limite
+	 * de resultados do servidor. As páginas são lidas sob demanda durante a
+	 * leitura do resultado, logo a memória utilizada fica limitada ao tamanho
+	 * da página.
+	 * @param filter O filtro a ser aplicado na busca.
+	 * @param pageSize A quantidade máxima de entradas em cada página.
+	 * @param returnAttributes A lista com os atributos das entidades que serão
+	 * retornados.
+	 * @return Retorna a estrutura contendo o resultado da consulta. Esta
+	 * deverá ser fechada caso não seja lida até o final.
+	 * @throws Exception Lança uma exceção quando não for possível realizar a
+	 * consulta.
+	 */
+	public NamingEnumeration<SearchResult> searchPaged(String filter, int pageSize, String... returnAttributes)
+			throws Exception {
+		// lança exceção se não estiver conectado
+		if (!this.isConnected())
+			throw new Exception("Not connected to LDAP server");
+
+		// se o tamanho da página não for válido
+		if (pageSize <= 0)
+			throw new IllegalArgumentException("Invalid page size");
 
 		// realiza a busca
-		return this.ldapContext.search(this.ldapSearchBase, filter, searchControls);
+		return new LDAPPagedSearchResults(this.ldapContext, this.ldapSearchBase, filter,
+				this.createSearchControls(returnAttributes), pageSize);
+	}
+
+	/**
+	 * Função que realiza uma busca das entradas modificadas utilizando o
+	 * controle <i>DirSync</i> do AD (veja {@link DirSyncControl}). As entradas
+	 * retornadas contêm apenas os atributos modificados desde a busca que
+	 * gerou o <i>cookie</i>. As entradas removidas também são retornadas, com
+	 * o atributo <code>isDeleted</code>.
+	 * @param namingContext A raiz da partição do diretório onde será feita a
+	 * busca (por exemplo, o <code>defaultNamingContext</code> do AD). Este
+	 * tipo de busca não aceita outras bases.
+	 * @param filter O filtro a ser aplicado na busca.
+	 * @param flags As opções do controle.
+	 * @param cookie O <i>cookie</i> retornado na última busca (veja
+	 * {@link LDAPDirSyncResults#getCookie()}). Caso seja <code>null</code>,
+	 * serão retornadas todas as entradas.
+	 * @param returnAttributes A lista com os atributos que serão retornados.
+	 * Se esta for vazia, serão retornados todos os atributos modificados.
+	 * @return Retorna o resultado da busca. Este deverá ser fechado caso não
+	 * seja lido até o final.
+	 * @throws Exception Lança uma exceção quando não for possível realizar a
+	 * consulta.
+	 */
+	public LDAPDirSyncResults searchDirSync(String namingContext, String filter, int flags, byte[] cookie,
+			String... returnAttributes) throws Exception {
+		// lança exceção se não estiver conectado
+		if (!this.isConnected())
+			throw new Exception("Not connected to LDAP server");
+
+		// realiza a busca
+		return new LDAPDirSyncResults(this.ldapContext, namingContext, filter,
+				this.createSearchControls(returnAttributes), flags, cookie);
+	}
+
+	/**
+	 * Função que realiza uma busca paginada na árvore LDAP enviando outros
+	 * controles na requisição de cada página, como o controle que retorna as
+	 * entradas removidas do AD (veja
+	 * {@link #searchPaged(String, int, String...)}).
+	 * @param searchBase A base da busca. Esta pode ser diferente da base de
+	 * busca configurada.
+	 * @param filter O filtro a ser aplicado na busca.
+	 * @param controls Os controles enviados na requisição.
+	 * @param pageSize A quantidade máxima de entradas em cada página.
+	 * @param returnAttributes A lista com os atributos das entidades que serão
+	 * retornados.
+	 * @return Retorna a estrutura contendo o resultado da consulta. Esta
+	 * deverá ser fechada caso não seja lida até o final.
+	 * @throws Exception Lança uma exceção quando não for possível realizar a
+	 * consulta.
+	 */
+	public NamingEnumeration<SearchResult> searchPaged(String searchBase, String filter, Control[] controls,
+			int pageSize, String... returnAttributes) throws Exception {
+		// lança exceção se não estiver conectado
+		if (!this.isConnected())
+			throw new Exception("Not connected to LDAP server");
+
+		// se o tamanho da página não for válido
+		if (pageSize <= 0)
+			throw new IllegalArgumentException("Invalid page size");
+
+		// realiza a busca
+		return new LDAPPagedSearchResults(this.ldapContext, searchBase, filter,
+				this.createSearchControls(returnAttributes), pageSize, controls);
 	}
 
 	/**
@@ -231,43 +617,104 @@ public class LDAPTree {
 
 	/**
 	 * Função que faz a busca de um tipo específico de entrada do LDAP de acordo
-	 * com o filtro passado.
+	 * com o filtro passado. Serão retornados do servidor apenas os atributos
+	 * que possuem permissão de leitura na classe da entrada (veja
+	 * {@link LDAPAttribute#accessMode()}).
 	 * @param objType A classe que representa a entrada do LDAP.
 	 * @param filter O filtro a ser utilizado na busca.
+	 * @param returnAttributes A lista com os atributos que serão retornados.
+	 * Esta permite restringir ainda mais os atributos da entrada que serão
+	 * lidos, sendo que os campos associados aos atributos que não estiverem na
+	 * lista não serão ajustados. Caso seja vazia, serão retornados todos os
+	 * atributos de leitura da classe.
 	 * @return Retorna a lista de objetos com as entradas do LDAP de acordo com
 	 * o filtro LDAP. Caso não existam entradas, retorna uma lista vazia.
 	 * @throws Exception Lança uma exceção quando não for possível realizar a
 	 * consulta. 
 	 */
-	public <ObjectType extends LDAPEntry> List<ObjectType> search(Class<ObjectType> objType, String filter)
-			throws Exception {
+	public <ObjectType extends LDAPEntry> List<ObjectType> search(Class<ObjectType> objType, String filter,
+			String... returnAttributes) throws Exception {
+		// armazena a lista de entradas
+		List<ObjectType> ldapEntries = new ArrayList<>();
+
+		// monta os objetos
+		try (LDAPEntryEnumeration<ObjectType> result = this.searchEnumeration(objType, filter, returnAttributes)) {
+			while (result.hasMore())
+				// adiciona na lista
+				ldapEntries.add(result.next());
+		}
+
+		return ldapEntries;
+	}
+
+	/**
+	 * Função que faz a busca de um tipo específico de entrada do LDAP de acordo
+	 * com o filtro passado. Diferente da função
+	 * {@link #search(Class, String, String...)}, as entradas serão convertidas
+	 * para objetos apenas quando forem lidas do resultado, logo não é
+	 * necessário manter todas elas em memória.
+	 * @param objType A classe que representa a entrada do LDAP.
+	 * @param filter O filtro a ser utilizado na busca.
+	 * @param returnAttributes A lista com os atributos que serão retornados
+	 * (veja {@link #search(Class, String, String...)}). Caso seja vazia, serão
+	 * retornados todos os atributos de leitura da classe.
+	 * @return Retorna o resultado da busca. Este deverá ser fechado após o seu
+	 * uso.
+	 * @throws Exception Lança uma exceção quando não for possível realizar a
+	 * consulta.
+	 */
+	public <ObjectType extends LDAPEntry> LDAPEntryEnumeration<ObjectType> searchEnumeration(
+			Class<ObjectType> objType, String filter, String... returnAttributes) throws Exception {
 		// cria uma instância do objeto apenas para retornar a query da entrada
 		ObjectType obj = objType.newInstance();
 		
 		// formata a query a ser realizada
 		String query = String.format(obj.getEntryQueryFormat(), filter);
 		
-		// faz a consulta
-		NamingEnumeration<SearchResult> result = this.search(query);
-
-		// armazena a lista de entradas
-		List<ObjectType> ldapEntries = new ArrayList<>();
-
-		// monta os objetos
-		while (result.hasMoreElements()) {
-
-			SearchResult entry = result.nextElement();
+		// faz a consulta retornando apenas os atributos utilizados pela classe
+		return new LDAPEntryEnumeration<>(this, objType,
+				this.search(query, this.getEntryReturnAttributes(objType, returnAttributes)));
+	}
 
-			ObjectType ldapEntry = LDAPEntry.parseEntry(objType, entry.getAttributes());
-			
-			// ajusta o DN da entrada
-			ldapEntry.setDn(DN.parse(entry.getNameInNamespace()));
-			
-			// adiciona na lista
-			ldapEntries.add(ldapEntry);
+	/**
+	 * Função privada que monta a lista de atributos a serem retornados na
+	 * busca de um tipo específico de entrada do LDAP.
+	 * @param objType A classe que representa a entrada do LDAP.
+	 * @param returnAttributes A lista com os atributos solicitados. Caso seja
+	 * vazia, serão retornados todos os atributos de leitura da classe.
+	 * @return Retorna a lista com os atributos de leitura da classe que foram
+	 * solicitados.
+	 * @throws Exception Lança exceção quando nenhum dos atributos solicitados
+	 * puder ser lido pela classe.
+	 */
+	private String[] getEntryReturnAttributes(Class<? extends LDAPEntry> objType, String... returnAttributes)
+			throws Exception {
+		String[] readAttributes = LDAPEntryMetadata.forClass(objType).getReadAttributes();
+		if (returnAttributes.length == 0)
+			return readAttributes;
+
+		/*
+		 * Considera apenas os atributos solicitados que possuem um campo de
+		 * leitura associado, já que os demais seriam ignorados na conversão.
+		 * Os nomes dos atributos do LDAP não diferenciam maiúsculas de
+		 * minúsculas.
+		 */
+		List<String> attributes = new ArrayList<>();
+		for (String readAttribute : readAttributes) {
+			for (String returnAttribute : returnAttributes) {
+				if (readAttribute.equalsIgnoreCase(returnAttribute)) {
+					attributes.add(readAttribute);
+					break;
+				}
+			}
 		}
 
-		return ldapEntries;
+		// uma lista vazia faria com que todos os atributos fossem retornados
+		if (attributes.isEmpty())
+			throw new IllegalArgumentException(
+					String.format("None of the requested attributes can be read by \"%s\"", objType.getName()));
+
+		return attributes.toArray(new String[attributes.size()]);
 	}
 	
 	/**
@@ -1,25 +1,33 @@
 package br.com.luizcarlosvianamelo.adzimbrasync.ldap;
 
+import java.util.Arrays;
+
 /**
  * Classe que representa um <i>relative distinguished name</i> - RDN do LDAP. Um
  * RDN representa um nível do DN.
- * 
+ * <p>Um RDN pode possuir mais de um par de nome e valor de atributo, como em
+ * <code>CN=Joao+UID=joao</code>. Nestes casos, as funções
+ * {@link #getAttributeName()} e {@link #getAttributeValue()} retornam o
+ * primeiro par. Os valores são mantidos sem os caracteres de <i>escape</i>,
+ * que são incluídos apenas na representação textual do RDN.</p>
+ *
  * @author Luiz Carlos Viana Melo
  *
  */
 public class RDN {
 
-	private String attributeName;
-	private String attributeValue;
+	/**
+	 * Os pares de nome e valor dos atributos, intercalados.
+	 */
+	private String[] attributes;
 
 	/**
 	 * Construtor da classe.
 	 */
 	public RDN() {
-		this.attributeName = "";
-		this.attributeValue = "";
+		this.attributes = new String[] { "", "" };
 	}
-	
+
 	/**
 	 * Construtor parametrizado da classe. Inicializa o objeto com os valores
 	 * passados.
@@ -27,46 +35,248 @@ public class RDN {
 	 * @param attributeValue O valor do atributo.
 	 */
 	public RDN(String attributeName, String attributeValue) {
-		this.attributeName = attributeName;
-		this.attributeValue = attributeValue;
+		this.attributes = new String[] { attributeName, attributeValue };
+	}
+
+	/**
+	 * Construtor parametrizado da classe para RDNs com vários atributos.
+	 * @param attributeNames Os nomes dos atributos a serem utilizados no RDN.
+	 * @param attributeValues Os valores dos atributos, na mesma ordem dos
+	 * nomes.
+	 * @throws IllegalArgumentException Lança exceção quando não for passado
+	 * nenhum atributo ou a quantidade de nomes e de valores for diferente.
+	 */
+	public RDN(String[] attributeNames, String[] attributeValues) {
+		if (attributeNames.length == 0 || attributeNames.length != attributeValues.length)
+			throw new IllegalArgumentException("Invalid RDN attributes");
+
+		this.attributes = new String[attributeNames.length * 2];
+		for (int i = 0; i < attributeNames.length; i++) {
+			this.attributes[i * 2] = attributeNames[i];
+			this.attributes[i * 2 + 1] = attributeValues[i];
+		}
+	}
+
+	/**
+	 * Construtor que cria o RDN a partir dos pares de nome e valor
+	 * intercalados. O vetor passado não é copiado.
+	 */
+	RDN(String[] attributes) {
+		this.attributes = attributes;
 	}
-	
+
 	/**
 	 * Função que retorna a representação textual do RDN;
 	 */
 	@Override
 	public String toString() {
-		if (this.attributeName.length() > 0 &&
-				this.attributeValue.length() > 0)
-			return String.format("%s=%s", this.attributeName, this.attributeValue);
-		return "";
+		return toString(this.attributes);
+	}
+
+	/**
+	 * Função que retorna a forma normalizada do RDN, com os nomes e os valores
+	 * dos atributos em letras minúsculas.
+	 */
+	public String toNormalizedString() {
+		return toNormalizedString(this.attributes);
 	}
 
 	/**
 	 * Retorna o nome do atributo utilizado no RDN.
 	 */
 	public String getAttributeName() {
-		return attributeName;
+		return this.attributes[0];
 	}
 
 	/**
 	 * Ajusta o nome do atributo utilizado no RDN.
 	 */
 	public void setAttributeName(String attributeName) {
-		this.attributeName = attributeName;
+		this.attributes[0] = attributeName;
 	}
 
 	/**
 	 * Retorna o valor do atributo utilizado no RDN.
 	 */
 	public String getAttributeValue() {
-		return attributeValue;
+		return this.attributes[1];
 	}
-	
+
 	/**
 	 * Ajusta o valor do atributo utilizado no RDN.
 	 */
 	public void setAttributeValue(String attributeValue) {
-		this.attributeValue = attributeValue;
+		this.attributes[1] = attributeValue;
+	}
+
+	/**
+	 * Retorna a quantidade de atributos do RDN.
+	 */
+	public int getNumberOfAttributes() {
+		return this.attributes.length / 2;
+	}
+
+	/**
+	 * Retorna o nome do atributo na posição passada.
+	 */
+	public String getAttributeName(int index) {
+		return this.attributes[index * 2];
+	}
+
+	/**
+	 * Retorna o valor do atributo na posição passada.
+	 */
+	public String getAttributeValue(int index) {
+		return this.attributes[index * 2 + 1];
+	}
+
+	/**
+	 * Retorna uma cópia dos pares de nome e valor dos atributos.
+	 */
+	String[] getAttributes() {
+		return Arrays.copyOf(this.attributes, this.attributes.length);
+	}
+
+	/**
+	 * Função que faz o <i>escape</i> dos caracteres especiais de um valor de
+	 * atributo que será utilizado em um DN, conforme a RFC 4514.
+	 * @param value O valor do atributo.
+	 * @return Retorna o valor com os caracteres especiais precedidos por
+	 * <code>\</code>. Caso não haja caracteres especiais, é retornado o
+	 * próprio valor passado.
+	 */
+	public static String escapeValue(String value) {
+		StringBuilder escaped = null;
+		int last = value.length() - 1;
+		for (int i = 0; i <= last; i++) {
+			char c = value.charAt(i);
+			String replacement = null;
+			switch (c) {
+			case ',':
+			case '+':
+			case '"':
+			case '\\':
+			case '<':
+			case '>':
+			case ';':
+			case '=':
+				replacement = "\\" + c;
+				break;
+			case '#':
+				if (i == 0)
+					replacement = "\\#";
+				break;
+			case ' ':
+				if (i == 0 || i == last)
+					replacement = "\\ ";
+				break;
+			case '\0':
+				replacement = "\\00";
+				break;
+			}
+
+			// o buffer só é criado quando há algum caractere especial
+			if (replacement != null) {
+				if (escaped == null) {
+					escaped = new StringBuilder(value.length() + 8);
+					escaped.append(value, 0, i);
+				}
+				escaped.append(replacement);
+			} else if (escaped != null) {
+				escaped.append(c);
+			}
+		}
+		return escaped != null ? escaped.toString() : value;
+	}
+
+	/**
+	 * Função que retorna a representação textual dos pares de atributos. Os
+	 * pares sem o nome ou sem o valor são ignorados.
+	 */
+	static String toString(String[] attributes) {
+		// caso mais comum, com apenas um atributo
+		if (attributes.length == 2) {
+			if (attributes[0].length() > 0 && attributes[1].length() > 0)
+				return attributes[0] + "=" + escapeValue(attributes[1]);
+			return "";
+		}
+
+		StringBuilder str = new StringBuilder();
+		for (int i = 0; i < attributes.length; i += 2) {
+			if (attributes[i].length() == 0 || attributes[i + 1].length() == 0)
+				continue;
+			if (str.length() > 0)
+				str.append('+');
+			str.append(attributes[i]).append('=').append(escapeValue(attributes[i + 1]));
+		}
+		return str.toString();
+	}
+
+	/**
+	 * Função que retorna a forma normalizada dos pares de atributos (veja
+	 * {@link #toNormalizedString()}).
+	 */
+	static String toNormalizedString(String[] attributes) {
+		String[] normalized = new String[attributes.length];
+		for (int i = 0; i < attributes.length; i++)
+			normalized[i] = toLowerCase(attributes[i]);
+		return toString(normalized);
+	}
+
+	/**
+	 * Função que converte a string para letras minúsculas caractere a
+	 * caractere, da mesma forma que as funções
+	 * {@link #normalizedHash(int, String[])} e
+	 * {@link #normalizedEquals(String[], String[])}.
+	 */
+	private static String toLowerCase(String str) {
+		char[] chars = new char[str.length()];
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = Character.toLowerCase(str.charAt(i));
+		return new String(chars);
+	}
+
+	/**
+	 * Função que acumula no código <i>hash</i> passado os caracteres da forma
+	 * normalizada dos pares de atributos, sem que esta seja criada.
+	 * @param hash O código <i>hash</i> calculado até o momento.
+	 * @param attributes Os pares de nome e valor dos atributos.
+	 * @return Retorna o novo código <i>hash</i>.
+	 */
+	static int normalizedHash(int hash, String[] attributes) {
+		for (int i = 0; i < attributes.length; i++) {
+			// separa os nomes dos valores e os pares entre si
+			if (i > 0)
+				hash = 31 * hash + (i % 2 == 1 ? '=' : '+');
+
+			String str = attributes[i];
+			for (int j = 0; j < str.length(); j++)
+				hash = 31 * hash + Character.toLowerCase(str.charAt(j));
+		}
+		return hash;
+	}
+
+	/**
+	 * Função que compara as formas normalizadas de dois pares de atributos,
+	 * sem que estas sejam criadas. Os pares são comparados na ordem em que
+	 * aparecem.
+	 */
+	static boolean normalizedEquals(String[] a, String[] b) {
+		if (a.length != b.length)
+			return false;
+
+		for (int i = 0; i < a.length; i++) {
+			String strA = a[i];
+			String strB = b[i];
+			if (strA.equals(strB))
+				continue;
+			if (strA.length() != strB.length())
+				return false;
+			for (int j = 0; j < strA.length(); j++) {
+				if (Character.toLowerCase(strA.charAt(j)) != Character.toLowerCase(strB.charAt(j)))
+					return false;
+			}
+		}
+		return true;
 	}
 }
@@ -0,0 +1,467 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.ldap.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Processador de anotações que gera, durante a compilação, um conversor
+ * (veja <code>LDAPEntryCodec</code>) para cada classe concreta que herda a
+ * classe <code>LDAPEntry</code>. O conversor gerado acessa diretamente os
+ * campos anotados com a anotação <code>LDAPAttribute</code>, evitando a
+ * utilização de reflexão na conversão das entradas do LDAP.
+ * <p>Apenas os campos que não são privados e cujo tipo é suportado pela
+ * conversão padrão (tipos primitivos, {@link String}, <code>Date</code>,
+ * <code>DN</code> e listas destes) são acessados diretamente. Os demais
+ * campos, assim como os que possuem um conversor customizado, continuam sendo
+ * convertidos através da classe <code>AttributeField</code>.</p>
+ * <p>Como este processador é compilado no mesmo módulo das classes
+ * processadas, ele não faz referência direta a elas, utilizando apenas os
+ * nomes das mesmas.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+@SupportedAnnotationTypes("*")
+@SupportedSourceVersion(SourceVersion.RELEASE_7)
+public class LDAPEntryCodecProcessor extends AbstractProcessor {
+
+	private static final String LDAP_PACKAGE = "br.com.luizcarlosvianamelo.adzimbrasync.ldap";
+	private static final String LDAP_ENTRY = LDAP_PACKAGE + ".LDAPEntry";
+	private static final String LDAP_ATTRIBUTE = LDAP_PACKAGE + ".LDAPAttribute";
+	private static final String DEFAULT_CONVERTER = LDAP_PACKAGE + ".LDAPAttributeConverter";
+	private static final String CODEC_CLASS_SUFFIX = "_LDAPCodec";
+
+	/**
+	 * Tipos suportados pela conversão padrão, associados ao tipo que os
+	 * encapsula.
+	 */
+	private static final Map<String, String> SUPPORTED_TYPES = new LinkedHashMap<>();
+
+	static {
+		SUPPORTED_TYPES.put("boolean", "java.lang.Boolean");
+		SUPPORTED_TYPES.put("byte", "java.lang.Byte");
+		SUPPORTED_TYPES.put("char", "java.lang.Character");
+		SUPPORTED_TYPES.put("short", "java.lang.Short");
+		SUPPORTED_TYPES.put("int", "java.lang.Integer");
+		SUPPORTED_TYPES.put("long", "java.lang.Long");
+		SUPPORTED_TYPES.put("float", "java.lang.Float");
+		SUPPORTED_TYPES.put("double", "java.lang.Double");
+		for (String type : Arrays.asList("java.lang.Boolean", "java.lang.Byte", "java.lang.Character",
+				"java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double",
+				"java.lang.String", "java.util.Date", LDAP_PACKAGE + ".DN"))
+			SUPPORTED_TYPES.put(type, type);
+	}
+
+	private final Set<String> generatedCodecs = new HashSet<>();
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement ldapEntryType = processingEnv.getElementUtils().getTypeElement(LDAP_ENTRY);
+		if (ldapEntryType == null)
+			return false;
+
+		for (Element element : roundEnv.getRootElements()) {
+			if (!isCodecCandidate(element, ldapEntryType))
+				continue;
+
+			TypeElement entryType = (TypeElement) element;
+			String codecName = entryType.getQualifiedName() + CODEC_CLASS_SUFFIX;
+			// gera o conversor apenas uma vez
+			if (!generatedCodecs.add(codecName))
+				continue;
+
+			try {
+				generateCodec(entryType, codecName);
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+						String.format("Unable to generate the LDAP codec \"%s\": %s", codecName, e.getMessage()),
+						entryType);
+			}
+		}
+
+		// não reivindica as anotações para não impedir outros processadores
+		return false;
+	}
+
+	/**
+	 * Função privada que informa se deverá ser gerado um conversor para o
+	 * elemento passado. Este deverá ser uma classe concreta de primeiro nível,
+	 * herdar a classe <code>LDAPEntry</code> e possuir um construtor sem
+	 * parâmetros acessível.
+	 */
+	private boolean isCodecCandidate(Element element, TypeElement ldapEntryType) {
+		if (element.getKind() != ElementKind.CLASS)
+			return false;
+
+		TypeElement type = (TypeElement) element;
+		if (type.getNestingKind() != NestingKind.TOP_LEVEL
+				|| type.getModifiers().contains(Modifier.ABSTRACT)
+				|| !type.getModifiers().contains(Modifier.PUBLIC)
+				|| !type.getTypeParameters().isEmpty())
+			return false;
+
+		if (!processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(type.asType()),
+				processingEnv.getTypeUtils().erasure(ldapEntryType.asType())))
+			return false;
+
+		// verifica se existe o construtor sem parâmetros
+		for (Element member : type.getEnclosedElements()) {
+			if (member.getKind() == ElementKind.CONSTRUCTOR
+					&& ((ExecutableElement) member).getParameters().isEmpty()
+					&& !member.getModifiers().contains(Modifier.PRIVATE))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Função privada que coleta os campos anotados de toda a hierarquia da
+	 * classe. Assim como é feito na leitura por reflexão, os campos das classes
+	 * filhas substituem os campos das classes pai associados ao mesmo
+	 * atributo.
+	 */
+	private Map<String, CodecField> collectFields(TypeElement entryType) {
+		// monta a hierarquia partindo da classe LDAPEntry
+		List<TypeElement> hierarchy = new ArrayList<>();
+		TypeElement current = entryType;
+		while (current != null && !current.getQualifiedName().contentEquals(LDAP_ENTRY)) {
+			hierarchy.add(0, current);
+			TypeMirror superType = current.getSuperclass();
+			current = superType.getKind() == TypeKind.DECLARED
+					? (TypeElement) ((DeclaredType) superType).asElement() : null;
+		}
+
+		String entryPackage = getPackageName(entryType);
+
+		Map<String, CodecField> fields = new LinkedHashMap<>();
+		for (TypeElement type : hierarchy) {
+			for (Element member : type.getEnclosedElements()) {
+				if (member.getKind() != ElementKind.FIELD)
+					continue;
+
+				AnnotationMirror ann = getLDAPAttribute(member);
+				if (ann == null)
+					continue;
+
+				CodecField field = new CodecField((VariableElement) member, ann,
+						isAccessible(member, type, entryPackage));
+				fields.put(field.attributeName, field);
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Função privada que informa se o campo pode ser acessado pelo conversor,
+	 * que é gerado no mesmo pacote da classe da entrada.
+	 */
+	private boolean isAccessible(Element field, TypeElement declaringType, String entryPackage) {
+		Set<Modifier> modifiers = field.getModifiers();
+		if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)
+				|| modifiers.contains(Modifier.FINAL))
+			return false;
+		if (modifiers.contains(Modifier.PUBLIC) && declaringType.getModifiers().contains(Modifier.PUBLIC))
+			return true;
+		// campos protegidos ou do pacote são acessíveis apenas no mesmo pacote
+		return getPackageName(declaringType).equals(entryPackage);
+	}
+
+	private String getPackageName(TypeElement type) {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+		return pkg.getQualifiedName().toString();
+	}
+
+	/**
+	 * Função privada que retorna a anotação <code>LDAPAttribute</code> do
+	 * elemento. Caso ele não possua a anotação, retorna <code>null</code>.
+	 */
+	private static AnnotationMirror getLDAPAttribute(Element element) {
+		for (AnnotationMirror ann : element.getAnnotationMirrors()) {
+			TypeElement annType = (TypeElement) ann.getAnnotationType().asElement();
+			if (annType.getQualifiedName().contentEquals(LDAP_ATTRIBUTE))
+				return ann;
+		}
+		return null;
+	}
+
+	/**
+	 * Função privada que retorna o valor de uma propriedade da anotação. Caso
+	 * a propriedade não tenha sido ajustada, retorna <code>null</code>.
+	 */
+	private static Object getAnnotationValue(AnnotationMirror ann, String property) {
+		for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : ann.getElementValues().entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(property))
+				return entry.getValue().getValue();
+		}
+		return null;
+	}
+
+	/**
+	 * Função privada que escreve o código do conversor da classe passada.
+	 */
+	private void generateCodec(TypeElement entryType, String codecName) throws IOException {
+		Map<String, CodecField> fields = collectFields(entryType);
+		// a classe sem atributos não é suportada pela conversão
+		if (fields.isEmpty())
+			return;
+
+		String packageName = getPackageName(entryType);
+		String entryName = entryType.getSimpleName().toString();
+		String codecSimpleName = entryName + CODEC_CLASS_SUFFIX;
+
+		JavaFileObject file = processingEnv.getFiler().createSourceFile(codecName, entryType);
+		try (PrintWriter out = new PrintWriter(file.openWriter())) {
+			if (!packageName.isEmpty()) {
+				out.printf("package %s;%n", packageName);
+				out.println();
+			}
+			out.println("import java.util.List;");
+			out.println("import java.util.Set;");
+			out.println();
+			out.println("import javax.naming.directory.Attributes;");
+			out.println("import javax.naming.directory.BasicAttributes;");
+			out.println();
+			out.printf("import %s.AttributeAccessMode;%n", LDAP_PACKAGE);
+			if (usesAttributeField(fields.values()))
+				out.printf("import %s.AttributeField;%n", LDAP_PACKAGE);
+			out.printf("import %s.LDAPAttributeValues;%n", LDAP_PACKAGE);
+			out.printf("import %s.LDAPEntryCodec;%n", LDAP_PACKAGE);
+			out.println();
+			out.println("/**");
+			out.printf(" * Conversor da classe {@link %s} gerado pelo processador de anotações%n", entryName);
+			out.printf(" * {@code %s}.%n", getClass().getName());
+			out.println(" * Esta classe não deve ser alterada.");
+			out.println(" */");
+			out.printf("public final class %s implements LDAPEntryCodec<%s> {%n", codecSimpleName, entryName);
+			out.println();
+
+			// lista de atributos de leitura
+			out.println("\tprivate static final String[] READ_ATTRIBUTES = {");
+			List<String> readAttributes = new ArrayList<>();
+			for (CodecField field : fields.values()) {
+				if (field.canRead())
+					readAttributes.add(String.format("\t\t%s", quote(field.attributeName)));
+			}
+			for (int i = 0; i < readAttributes.size(); i++)
+				out.println(readAttributes.get(i) + (i < readAttributes.size() - 1 ? "," : ""));
+			out.println("\t};");
+			out.println();
+
+			// criação da entrada
+			out.println("\t@Override");
+			out.printf("\tpublic %s newEntry() {%n", entryName);
+			out.printf("\t\treturn new %s();%n", entryName);
+			out.println("\t}");
+			out.println();
+
+			out.println("\t@Override");
+			out.println("\tpublic String[] getReadAttributes() {");
+			out.println("\t\treturn READ_ATTRIBUTES.clone();");
+			out.println("\t}");
+			out.println();
+
+			writeDecode(out, entryName, fields);
+			out.println();
+			writeEncode(out, entryName, fields);
+			out.println("}");
+		}
+	}
+
+	/**
+	 * Função privada que informa se algum dos campos deverá ser escrito
+	 * através da classe <code>AttributeField</code>.
+	 */
+	private static boolean usesAttributeField(Iterable<CodecField> fields) {
+		for (CodecField field : fields) {
+			if (field.raw ? !field.isAccessible : !field.isDirect())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Função privada que escreve a função de leitura dos atributos.
+	 */
+	private void writeDecode(PrintWriter out, String entryName, Map<String, CodecField> fields) {
+		out.println("\t@Override");
+		out.printf("\tpublic void decode(%s entry, Attributes attributes) throws Exception {%n", entryName);
+		out.println("\t\tList<String> values;");
+		for (CodecField field : fields.values()) {
+			if (!field.canRead())
+				continue;
+
+			String attr = quote(field.attributeName);
+			out.println();
+			out.printf("\t\tvalues = LDAPAttributeValues.getValues(attributes, %s);%n", attr);
+			if (field.isDirect()) {
+				if (field.isList) {
+					out.println("\t\tif (values != null)");
+					out.printf("\t\t\tentry.%s = LDAPAttributeValues.parseList(values, %s.class);%n",
+							field.fieldName, field.valueType);
+				} else {
+					out.println("\t\tif (values != null && !values.isEmpty())");
+					if (field.valueType.equals("java.lang.String"))
+						out.printf("\t\t\tentry.%s = values.get(0);%n", field.fieldName);
+					else
+						out.printf("\t\t\tentry.%s = (%s) LDAPAttributeValues.parseValue(values.get(0), %s.class);%n",
+								field.fieldName, field.valueType, field.valueType);
+				}
+			} else {
+				out.println("\t\tif (values != null)");
+				out.printf("\t\t\tentry.getLDAPAttributesFields().get(%s).set(entry, values);%n", attr);
+			}
+		}
+		out.println("\t}");
+	}
+
+	/**
+	 * Função privada que escreve a função de escrita dos atributos.
+	 */
+	private void writeEncode(PrintWriter out, String entryName, Map<String, CodecField> fields) {
+		out.println("\t@Override");
+		out.printf("\tpublic Attributes encode(%s entry, AttributeAccessMode attrAccessMode, String... attributesNames)%n",
+				entryName);
+		out.println("\t\t\tthrows Exception {");
+		out.println("\t\tAttributes attributes = new BasicAttributes();");
+		out.println("\t\tSet<String> requested = LDAPAttributeValues.requestedAttributes(attributesNames);");
+		for (CodecField field : fields.values()) {
+			String attr = quote(field.attributeName);
+			out.println();
+			out.printf("\t\tif (AttributeAccessMode.%s.haveRequestedPermission(attrAccessMode)%n", field.accessMode);
+			out.printf("\t\t\t\t&& LDAPAttributeValues.isRequested(requested, %s)) {%n", attr);
+			if (field.raw && field.isAccessible)
+				out.printf("\t\t\tLDAPAttributeValues.putRaw(attributes, %s, entry.%s);%n", attr, field.fieldName);
+			else if (!field.raw && field.isDirect())
+				out.printf("\t\t\tLDAPAttributeValues.put(attributes, %s, LDAPAttributeValues.formatValue(entry.%s));%n",
+						attr, field.fieldName);
+			else {
+				out.printf("\t\t\tAttributeField field = entry.getLDAPAttributesFields().get(%s);%n", attr);
+				if (field.raw)
+					out.printf("\t\t\tLDAPAttributeValues.putRaw(attributes, %s, field.getRaw(entry));%n", attr);
+				else
+					out.printf("\t\t\tLDAPAttributeValues.put(attributes, %s, field.getAsList(entry));%n", attr);
+			}
+			out.println("\t\t}");
+		}
+		out.println();
+		out.println("\t\treturn attributes;");
+		out.println("\t}");
+	}
+
+	/**
+	 * Função privada que retorna o literal Java da <i>string</i> passada.
+	 */
+	private static String quote(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	/**
+	 * Classe privada que contém as informações de um campo anotado necessárias
+	 * para a geração do conversor.
+	 */
+	private static class CodecField {
+
+		final String fieldName;
+		final String attributeName;
+		final String accessMode;
+		final boolean raw;
+		final boolean customConverter;
+		final boolean isAccessible;
+
+		/**
+		 * O tipo dos valores do campo (encapsulado quando primitivo). Caso o
+		 * tipo não seja suportado pela conversão padrão, será
+		 * <code>null</code>.
+		 */
+		final String valueType;
+		final boolean isList;
+
+		CodecField(VariableElement field, AnnotationMirror ann, boolean isAccessible) {
+			this.fieldName = field.getSimpleName().toString();
+			this.isAccessible = isAccessible;
+
+			Object name = getAnnotationValue(ann, "name");
+			this.attributeName = name != null && !name.toString().isEmpty() ? name.toString() : this.fieldName;
+
+			Object accessMode = getAnnotationValue(ann, "accessMode");
+			this.accessMode = accessMode != null ? ((VariableElement) accessMode).getSimpleName().toString()
+					: "READ_WRITE";
+
+			Object raw = getAnnotationValue(ann, "raw");
+			this.raw = raw != null && (Boolean) raw;
+
+			Object converter = getAnnotationValue(ann, "attributeConverter");
+			this.customConverter = converter != null
+					&& !((TypeMirror) converter).toString().equals(DEFAULT_CONVERTER);
+
+			// verifica se o tipo do campo é suportado pela conversão padrão
+			TypeMirror type = field.asType();
+			String valueType = SUPPORTED_TYPES.get(getTypeName(type));
+			boolean isList = false;
+			if (valueType == null && type.getKind() == TypeKind.DECLARED
+					&& getTypeName(type).equals("java.util.List")) {
+				List<? extends TypeMirror> args = ((DeclaredType) type).getTypeArguments();
+				if (args.size() == 1) {
+					valueType = SUPPORTED_TYPES.get(getTypeName(args.get(0)));
+					isList = valueType != null;
+				}
+			}
+			this.valueType = valueType;
+			this.isList = isList;
+		}
+
+		/**
+		 * Função privada que retorna o nome do tipo sem os parâmetros
+		 * genéricos.
+		 */
+		private static String getTypeName(TypeMirror type) {
+			if (type.getKind() == TypeKind.DECLARED)
+				return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+			return type.toString();
+		}
+
+		/**
+		 * Informa se o atributo possui permissão de leitura.
+		 */
+		boolean canRead() {
+			return accessMode.equals("READ") || accessMode.equals("READ_WRITE");
+		}
+
+		/**
+		 * Informa se a leitura do atributo pode ser feita diretamente no
+		 * campo.
+		 */
+		boolean isDirect() {
+			return isAccessible && !customConverter && valueType != null;
+		}
+	}
+}
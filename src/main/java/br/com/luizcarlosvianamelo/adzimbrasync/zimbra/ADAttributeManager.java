@@ -1,11 +1,8 @@
 package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
 
+import java.util.HashMap;
 import java.util.Map;
 
-import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADTree;
-import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADUser;
-import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADUsersRepository;
-
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.account.Account;
@@ -32,21 +29,23 @@ public class ADAttributeManager extends AttributeManager {
 	}
 	
 	/**
-	 * Função que verifica se os atributos a serem modificados no Zimbra estão
+	 * Função que retorna os atributos modificados no Zimbra que estão
 	 * mapeados para o AD.
 	 * @param attrMap O mapeamento dos atributos do AD com os atributos do
 	 * Zimbra.
 	 * @param attrs Os atributos a serem modificados.
-	 * @return Retorna <code>true</code> caso um atributo que estiver sendo
-	 * modificado estiver mapeado. Caso contrário, retorna <code>false</code>.
+	 * @return Retorna os atributos mapeados e os seus valores. Caso nenhum
+	 * atributo mapeado esteja sendo modificado, retorna um mapa vazio.
 	 */
-	private static boolean haveAttributesToBeModified(Map<String, String> attrMap, Map<String, ? extends Object> attrs) {
-		for (java.util.Map.Entry<String, String> entry : attrMap.entrySet()) {
+	private static Map<String, Object> getMappedAttributes(Map<String, String> attrMap,
+			Map<String, ? extends Object> attrs) {
+		Map<String, Object> mappedAttrs = new HashMap<>();
+		for (String attrName : attrMap.values()) {
 			// caso o atributo mapeado do AD for modificado no Zimbra
-			if (attrs.containsKey(entry.getValue()))
-				return true;
+			if (attrs.containsKey(attrName))
+				mappedAttrs.put(attrName, attrs.get(attrName));
 		}
-		return false;
+		return mappedAttrs;
 	}
 
 	/**
@@ -77,40 +76,24 @@ public class ADAttributeManager extends AttributeManager {
 			
 			// pega o domínio da conta
 			Domain domain = prov.getDomain(acct);
-			
-			// verifica se há atributos para serem modificados antes de abrir a conexão
-			Map<String, String> attrMap = ZimbraLDAPMapper.getUserAttributeMapping(domain);
-			if (!haveAttributesToBeModified(attrMap, attrs))
-				// finaliza a função já que não há atributos mapeados para serem modificados
-				return;
 
-			// busca o usuário no AD
-			ADTree adTree = ADConnectionManager.openDomainADConnection(domain);
-			if (adTree == null) {
-				/*
-				 * Se não abrir a conexão é porque o domínio não está habilitado
-				 * para provisionamento. Para os problemas de conexão são
-				 * lançadas exceções.
-				 */
+			// ignora os domínios que não estão habilitados para provisionamento
+			String adURL = domain.getAutoProvLdapURL();
+			if (adURL == null || adURL.isEmpty())
 				return;
-			}
 			
-			ADUsersRepository rep = adTree.getUsersRepository();
-			ADUser user = rep.queryUserByAccountName(acct.getUid());
-			if (user == null) {
-				ZimbraLog.account.error(String.format("AD - Can't find user \"%s\" to modify in AD", acct.getUid()));
+			// verifica se há atributos para serem modificados
+			Map<String, String> attrMap = ZimbraLDAPMapper.getUserAttributeMapping(domain);
+			Map<String, Object> mappedAttrs = getMappedAttributes(attrMap, attrs);
+			if (mappedAttrs.isEmpty())
+				// finaliza a função já que não há atributos mapeados para serem modificados
 				return;
-			}
-			
-			// preenche os atributos a serem modificados
-			ZimbraLDAPMapper.fillAttributesIntoObjectFields(user, attrs, attrMap);
-			
-			// modifica o usuário
-			rep.modifyUser(user);
-			
-			// e desconecta
-			adTree.disconnect();
 
+			/*
+			 * A modificação é gravada no AD em segundo plano, logo a alteração
+			 * da conta no Zimbra não aguarda a comunicação com o AD.
+			 */
+			ADWriteBackQueue.enqueue(acct, mappedAttrs);
 		} catch (Exception e) {
 			ZimbraLog.account.error(String.format("AD - postModify caught exception: %s", e.getMessage()), e);
 		}
@@ -1,14 +1,20 @@
 package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADGroup;
 import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADUser;
 import br.com.luizcarlosvianamelo.adzimbrasync.ldap.AttributeAccessMode;
 
 import com.zimbra.common.account.Key.DistributionListBy;
+import com.zimbra.common.account.ZAttrProvisioning.AccountStatus;
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.account.Account;
 import com.zimbra.cs.account.DistributionList;
@@ -24,6 +30,21 @@ import com.zimbra.cs.account.Provisioning;
  */
 public class ADAutoProvision {
 
+	/**
+	 * Quantidade de travas utilizadas no provisionamento. As contas e listas
+	 * são distribuídas entre as travas pelo e-mail, logo um mesmo e-mail
+	 * nunca é provisionado simultaneamente, mas e-mails diferentes podem ser
+	 * provisionados em paralelo.
+	 */
+	private static final int NUM_PROVISIONING_LOCKS = 64;
+
+	private static final Object[] PROVISIONING_LOCKS = new Object[NUM_PROVISIONING_LOCKS];
+
+	static {
+		for (int i = 0; i < NUM_PROVISIONING_LOCKS; i++)
+			PROVISIONING_LOCKS[i] = new Object();
+	}
+
 	protected ADProvisioning prov;
 
 	/**
@@ -34,6 +55,15 @@ public class ADAutoProvision {
 		this.prov = prov;
 	}
 
+	/**
+	 * Função privada que retorna a trava utilizada no provisionamento de um
+	 * e-mail.
+	 */
+	private static Object getProvisioningLock(String mail) {
+		int hash = mail != null ? mail.toLowerCase().hashCode() : 0;
+		return PROVISIONING_LOCKS[(hash & 0x7fffffff) % NUM_PROVISIONING_LOCKS];
+	}
+
 	/**
 	 * Função que faz o provisionamento automático da conta do AD no Zimbra. A
 	 * função irá buscar a conta no Zimbra e atualizar os seus atributos de
@@ -46,7 +76,7 @@ public class ADAutoProvision {
 	 * @throws Exception Lança exceção quando não for possível atualizar ou
 	 * criar a conta no Zimbra.
 	 */
-	public synchronized Account autoProvisionAccount(Domain domain, ADUser user) throws Exception {
+	public Account autoProvisionAccount(Domain domain, ADUser user) throws Exception {
 		// pega o mapeamento dos campos
 		Map<String, String> attrMap = ZimbraLDAPMapper.getUserAttributeMapping(domain);
 		Map<String, Object> attrValues = ZimbraLDAPMapper.mapObjectFieldsIntoAttributes(user,
@@ -58,32 +88,84 @@ public class ADAutoProvision {
 		 */
 		attrValues.put(Provisioning.A_zimbraMailStatus, Provisioning.MAIL_STATUS_ENABLED);
 		
-		/*
-		 * Verifica se a conta já está cadastrada no Zimbra. Caso não estiver,
-		 * cria ela. A função abaixo usa o e-mail para fazer a busca.
-		 */
-		Account acct = this.prov.getAccountByName(user.getMail());
-		if (acct != null) {
+		// a busca e a criação da conta não podem ser feitas simultaneamente para o mesmo e-mail
+		synchronized (getProvisioningLock(user.getMail())) {
 			/*
-			 * Atualiza apenas se o horário da última modificação no AD for
-			 * maior que a última verificação do domínio no Zimbra.
+			 * Verifica se a conta já está cadastrada no Zimbra. Caso não estiver,
+			 * cria ela. A função abaixo usa o e-mail para fazer a busca.
 			 */
-			Date lastDomainCheck = domain.getAutoProvLastPolledTimestamp();
-			if (lastDomainCheck.before(user.getWhenChanged())) {
-				ZimbraLog.autoprov.debug("AD - Modifying account \"%s\"", user.getDistinguishedName());
-				// atualiza a conta
-				acct.modify(attrValues);
-			} else
-				ZimbraLog.autoprov.debug("AD - No modification is needed for account \"%s\"", user.getDistinguishedName());
-		} else {
-            ZimbraLog.autoprov.info("AD - Creating new Accout for e-mail \"%s\"", user.getMail());
-            // significa que ela não foi encontrada. Logo, cria ela no Zimbra
-            acct = this.prov.createAccount(user.getMail(), "AUTOPROVISIONED", attrValues);
-        }
-
-		return acct;
+			Account acct = this.prov.getAccountByName(user.getMail());
+			if (acct != null) {
+				/*
+				 * Atualiza apenas se o horário da última modificação no AD for
+				 * maior que a última verificação do domínio no Zimbra.
+				 */
+				Date lastDomainCheck = domain.getAutoProvLastPolledTimestamp();
+				if (lastDomainCheck == null || lastDomainCheck.before(user.getWhenChanged())) {
+					/*
+					 * Grava apenas os atributos que foram modificados, já que
+					 * o whenChanged também é alterado por atributos que não
+					 * são mapeados.
+					 */
+					Map<String, Object> modifiedAttrs = ZimbraLDAPMapper.getModifiedAttributes(acct, attrValues);
+					if (!modifiedAttrs.isEmpty()) {
+						ZimbraLog.autoprov.debug("AD - Modifying attributes %s of account \"%s\"",
+								modifiedAttrs.keySet(), user.getDistinguishedName());
+						// atualiza a conta
+						acct.modify(modifiedAttrs);
+					} else
+						ZimbraLog.autoprov.debug("AD - No mapped attribute was modified for account \"%s\"",
+								user.getDistinguishedName());
+				} else
+					ZimbraLog.autoprov.debug("AD - No modification is needed for account \"%s\"", user.getDistinguishedName());
+			} else {
+				ZimbraLog.autoprov.info("AD - Creating new Accout for e-mail \"%s\"", user.getMail());
+				// significa que ela não foi encontrada. Logo, cria ela no Zimbra
+				acct = this.prov.createAccount(user.getMail(), "AUTOPROVISIONED", attrValues);
+			}
+
+			return acct;
+		}
 	}
 	
+	/**
+	 * Função que altera o estado de uma conta do Zimbra, como no bloqueio das
+	 * contas cujos usuários foram desabilitados ou removidos do AD. A conta
+	 * é alterada apenas se estiver em um dos estados esperados.
+	 * @param mail O e-mail da conta.
+	 * @param status O novo estado da conta.
+	 * @param expectedStatuses Os estados em que a conta pode estar para que
+	 * seja alterada. Caso seja vazio, a conta é alterada em qualquer estado
+	 * diferente do novo.
+	 * @return Retorna <code>true</code> se o estado da conta foi alterado.
+	 * Caso a conta não exista ou não esteja em um dos estados esperados,
+	 * retorna <code>false</code>.
+	 * @throws Exception Lança exceção quando não for possível alterar a
+	 * conta no Zimbra.
+	 */
+	public boolean changeAccountStatus(String mail, AccountStatus status, AccountStatus... expectedStatuses)
+			throws Exception {
+		synchronized (getProvisioningLock(mail)) {
+			Account acct = this.prov.getAccountByName(mail);
+			if (acct == null)
+				return false;
+
+			// a conta sem o atributo de estado está ativa
+			String statusValue = acct.getAccountStatusAsString();
+			AccountStatus currentStatus = statusValue != null ? AccountStatus.fromString(statusValue) :
+				AccountStatus.active;
+			if (currentStatus == status)
+				return false;
+			if (expectedStatuses.length > 0 && !Arrays.asList(expectedStatuses).contains(currentStatus))
+				return false;
+
+			ZimbraLog.autoprov.info("AD - Changing status of account \"%s\" from %s to %s",
+					mail, currentStatus, status);
+			this.prov.modifyAccountStatus(acct, status.toString());
+			return true;
+		}
+	}
+
 	/**
 	 * Função que faz o provisionamento automático da lista de distribuição do
 	 * AD no Zimbra. A função irá buscar a lista no Zimbra e atualizar os seus
@@ -97,45 +179,115 @@ public class ADAutoProvision {
 	 * @throws Exception Lança exceção quando não for possível atualizar ou
 	 * criar a lista de distribuição no Zimbra.
 	 */
-	public synchronized DistributionList autoProvisionDistributionList(Domain domain, ADGroup distributionList, List<ADUser> groupUsers)
+	public DistributionList autoProvisionDistributionList(Domain domain, ADGroup distributionList, List<ADUser> groupUsers)
 			throws Exception {
-		// pega o mapeamento dos campos
-		Map<String, String> attrMap = ZimbraLDAPMapper.getGroupAttributeMapping();
-		Map<String, Object> attrValues = ZimbraLDAPMapper.mapObjectFieldsIntoAttributes(distributionList,
-				AttributeAccessMode.READ, attrMap);
-		
 		// monta a lista de usuários
 		String[] mailList = new String[groupUsers.size()];
 		for (int i = 0; i < mailList.length; i++) {
 			mailList[i] = groupUsers.get(i).getMail();
 		}
+
+		return this.autoProvisionDistributionList(domain, distributionList, mailList);
+	}
+
+	/**
+	 * Função que atualiza uma lista de distribuição do Zimbra de acordo com os
+	 * e-mails dos membros já resolvidos. Caso a lista não exista no Zimbra,
+	 * ela será criada.
+	 * @param domain O domínio da conta.
+	 * @param distributionList O objeto da lista lido do AD.
+	 * @param mailList Os e-mails dos usuários pertencentes ao grupo.
+	 * @return Retorna o objeto do tipo {@link DistributionList} representando a
+	 * lista de distribuição no Zimbra.
+	 * @throws Exception Lança exceção quando não for possível atualizar ou
+	 * criar a lista de distribuição no Zimbra.
+	 */
+	public DistributionList autoProvisionDistributionList(Domain domain, ADGroup distributionList,
+			String[] mailList) throws Exception {
+		// pega o mapeamento dos campos
+		Map<String, String> attrMap = ZimbraLDAPMapper.getGroupAttributeMapping();
+		Map<String, Object> attrValues = ZimbraLDAPMapper.mapObjectFieldsIntoAttributes(distributionList,
+				AttributeAccessMode.READ, attrMap);
+		
 		// ajusta na lista
 		attrValues.put(Provisioning.A_zimbraMailForwardingAddress, mailList);
 
-		/*
-		 * Verifica se a lista já existe no Zimbra. Caso não existir, cria ela.
-		 * O nome da lista no Zimbra representa o seu e-mail.
-		 */
-		DistributionList dl = this.prov.get(DistributionListBy.name, distributionList.getMail());
-		if (dl != null) {
+		// a busca e a criação da lista não podem ser feitas simultaneamente para o mesmo e-mail
+		synchronized (getProvisioningLock(distributionList.getMail())) {
 			/*
-			 * Atualiza apenas se o horário da última modificação no AD for
-			 * maior que a última verificação do domínio no Zimbra. Também
-			 * verifica se a quantidade de usuários do grupo com e-mail foi
-			 * modificada.
+			 * Verifica se a lista já existe no Zimbra. Caso não existir, cria ela.
+			 * O nome da lista no Zimbra representa o seu e-mail.
 			 */
-			int numEmailsOnList = dl.getAllMembers().length;
-			Date lastDomainCheck = domain.getAutoProvLastPolledTimestamp();
-			
-			if (lastDomainCheck.before(distributionList.getWhenChanged()) ||
-					groupUsers.size() != numEmailsOnList) {
-				// atualiza a lista
-				dl.modify(attrValues);
-			}
-		} else
-			// significa que a lista não foi encontrada. Logo. cria ela no Zimbra
-			dl = this.prov.createDistributionList(distributionList.getMail(), attrValues);
-		
-		return dl;
+			DistributionList dl = this.prov.get(DistributionListBy.name, distributionList.getMail());
+			if (dl != null) {
+				/*
+				 * Atualiza os demais atributos apenas se o horário da última
+				 * modificação no AD for maior que a última verificação do
+				 * domínio no Zimbra.
+				 */
+				Date lastDomainCheck = domain.getAutoProvLastPolledTimestamp();
+				if (lastDomainCheck == null || lastDomainCheck.before(distributionList.getWhenChanged())) {
+					attrValues.remove(Provisioning.A_zimbraMailForwardingAddress);
+					Map<String, Object> modifiedAttrs = ZimbraLDAPMapper.getModifiedAttributes(dl, attrValues);
+					if (!modifiedAttrs.isEmpty())
+						dl.modify(modifiedAttrs);
+				}
+
+				/*
+				 * Os membros são sempre comparados, já que a alteração do
+				 * e-mail de um membro não modifica o grupo. Apenas os membros
+				 * que entraram ou saíram da lista são gravados.
+				 */
+				this.updateDistributionListMembers(dl, mailList);
+			} else
+				// significa que a lista não foi encontrada. Logo. cria ela no Zimbra
+				dl = this.prov.createDistributionList(distributionList.getMail(), attrValues);
+
+			return dl;
+		}
+	}
+
+	/**
+	 * Função privada que atualiza os membros de uma lista de distribuição do
+	 * Zimbra, incluindo e removendo apenas os membros que diferem da lista de
+	 * e-mails passada. Os e-mails são comparados sem considerar a caixa das
+	 * letras.
+	 * @param dl A lista de distribuição do Zimbra.
+	 * @param mailList Os e-mails dos membros que a lista deverá possuir.
+	 * @throws Exception Lança exceção quando não for possível atualizar os
+	 * membros da lista.
+	 */
+	private void updateDistributionListMembers(DistributionList dl, String[] mailList) throws Exception {
+		// os membros atuais, indexados pelo e-mail em letras minúsculas
+		Map<String, String> currentMembers = new HashMap<>();
+		for (String member : dl.getAllMembers())
+			currentMembers.put(member.toLowerCase(), member);
+
+		List<String> addedMembers = new ArrayList<>();
+		Set<String> newMembers = new HashSet<>(mailList.length * 2);
+		for (String mail : mailList) {
+			if (mail == null)
+				continue;
+			String key = mail.toLowerCase();
+			if (newMembers.add(key) && !currentMembers.containsKey(key))
+				addedMembers.add(mail);
+		}
+
+		List<String> removedMembers = new ArrayList<>();
+		for (Map.Entry<String, String> member : currentMembers.entrySet()) {
+			if (!newMembers.contains(member.getKey()))
+				removedMembers.add(member.getValue());
+		}
+
+		if (!removedMembers.isEmpty()) {
+			ZimbraLog.autoprov.debug("AD - Removing %d members from distribution list \"%s\"",
+					removedMembers.size(), dl.getName());
+			this.prov.removeMembers(dl, removedMembers.toArray(new String[removedMembers.size()]));
+		}
+		if (!addedMembers.isEmpty()) {
+			ZimbraLog.autoprov.debug("AD - Adding %d members to distribution list \"%s\"",
+					addedMembers.size(), dl.getName());
+			this.prov.addMembers(dl, addedMembers.toArray(new String[addedMembers.size()]));
+		}
 	}
 }
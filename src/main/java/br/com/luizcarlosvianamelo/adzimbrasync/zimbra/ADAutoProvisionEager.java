@@ -1,15 +1,50 @@
 package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
 
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.SearchResult;
 
 import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADGroup;
+import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADGroupGraph;
 import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADGroupsRepository;
 import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADTree;
 import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADUser;
 import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADUsersRepository;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.AttributeAccessMode;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.DN;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.DirSyncControl;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPAttributeValues;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPDirSyncResults;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPEntryEnumeration;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPTree;
 
 import com.zimbra.common.account.Key.DomainBy;
+import com.zimbra.common.account.ZAttrProvisioning.AccountStatus;
 import com.zimbra.common.account.ZAttrProvisioning.AutoProvMode;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.ZimbraLog;
@@ -37,29 +72,304 @@ public class ADAutoProvisionEager extends ADAutoProvision {
 		super(prov);
 	}
 	
+	/**
+	 * Quantidade máxima de DNs em cada filtro utilizado na busca das entradas
+	 * modificadas.
+	 */
+	private static final int MAX_DN_FILTER_SIZE = 100;
+
+	/**
+	 * Quantidade padrão de domínios provisionados simultaneamente.
+	 */
+	private static final int DEFAULT_SYNC_THREADS = 4;
+
+	/**
+	 * Quantidade padrão de threads que provisionam as contas de um domínio.
+	 */
+	private static final int DEFAULT_SYNC_ACCOUNT_THREADS = 4;
+
+	/**
+	 * Filtro das entradas retornadas pela busca com o controle <i>DirSync</i>.
+	 * As entradas removidas perdem a maior parte dos atributos, mas mantêm o
+	 * <code>objectClass</code>.
+	 */
+	private static final String DIRSYNC_FILTER = "(|(objectClass=user)(objectClass=group))";
+
+	/**
+	 * Chave do e-mail da entrada no cálculo do <i>hash</i> do conteúdo
+	 * provisionado. Esta não é um nome de atributo válido, logo não se
+	 * confunde com os atributos mapeados.
+	 */
+	private static final String SNAPSHOT_NAME_KEY = "@name";
+
+	/**
+	 * Filtro dos usuários desabilitados no AD, utilizando a regra
+	 * <code>LDAP_MATCHING_RULE_BIT_AND</code> sobre o <i>bit</i>
+	 * <code>ACCOUNTDISABLE</code> do atributo <code>userAccountControl</code>.
+	 */
+	private static final String DISABLED_USER_FILTER = "(userAccountControl:1.2.840.113556.1.4.803:=2)";
+
+	/**
+	 * Filtro dos usuários removidos do AD. Os computadores também pertencem à
+	 * classe <code>user</code>.
+	 */
+	private static final String DELETED_USER_FILTER =
+			"(&(objectClass=user)(!(objectClass=computer))(isDeleted=TRUE)%s)";
+
+	/**
+	 * Função privada que informa se a lista de filtros das entradas
+	 * modificadas representa uma sincronização completa.
+	 */
+	private static boolean isFullSync(List<String> changeFilters) {
+		return changeFilters.size() == 1 && changeFilters.get(0).isEmpty();
+	}
+
 	/**
 	 * Função privada que faz o provisionamento dos usuários de um domínio no AD
 	 * para o Zimbra.
 	 * @param adTree O objeto da árvore do AD conectada.
 	 * @param domain O domínio do Zimbra onde os usuários serão provisionados.
+	 * @param changeFilters Os filtros que selecionam apenas as entradas
+	 * modificadas desde a última sincronização. Caso contenha apenas um
+	 * filtro vazio, todos os usuários serão provisionados.
+	 * @param changedUsersGroups Conjunto que será preenchido com os DNs dos
+	 * grupos dos usuários modificados, já que as listas de distribuição
+	 * contêm os e-mails dos seus membros.
+	 * @param userMails Mapa que será preenchido com os e-mails dos usuários
+	 * lidos, indexados pelo DN.
+	 * @param snapshot Os <i>hashes</i> das entradas já provisionadas, ou
+	 * <code>null</code> caso todas as contas devam ser provisionadas. Na
+	 * sincronização completa, todas as contas são provisionadas e os
+	 * <i>hashes</i> apenas atualizados.
+	 * @param deprovisioned As contas bloqueadas ou fechadas pela
+	 * sincronização, que são reativadas quando provisionadas. Caso seja
+	 * <code>null</code>, o bloqueio das contas está desabilitado e os usuários
+	 * desabilitados também são provisionados.
 	 * @throws Exception Lança exceção quando não for possível realizar o
 	 * provisionamento.
 	 */
-	private void autoProvisionDomainADUsers(ADTree adTree, Domain domain) throws Exception {
+	private void autoProvisionDomainADUsers(ADTree adTree, final Domain domain, List<String> changeFilters,
+			Set<DN> changedUsersGroups, Map<DN, String> userMails, final ADSnapshotStore snapshot,
+			final ADDeprovisionedAccounts deprovisioned) throws Exception {
 		// pega o repositório de usuários
 		ADUsersRepository rep = adTree.getUsersRepository();
 
-		// busca os usuários com e-mail
-		List<ADUser> users = rep.queryUsers(true);
-		ZimbraLog.autoprov.debug("AD - Provisioning %d accounts from domain %s",
-				users.size(), domain.getName());
+		/*
+		 * As contas são provisionadas no Zimbra por várias threads, enquanto
+		 * esta thread faz a leitura dos usuários do AD.
+		 */
+		int numWorkers = Math.max(1, ADLocalConfig.getInt(ADLocalConfig.SYNC_ACCOUNT_THREADS,
+				DEFAULT_SYNC_ACCOUNT_THREADS));
+		/*
+		 * Na sincronização completa todas as contas são atualizadas, corrigindo
+		 * as modificações feitas diretamente no Zimbra, e os hashes são
+		 * atualizados em seguida.
+		 */
+		final boolean fullSync = isFullSync(changeFilters);
+		int numUsers;
+		try (ADProvisioningPipeline<ADUser> pipeline = new ADProvisioningPipeline<>("AccountProvisioner",
+				numWorkers, new ADProvisioningPipeline.Processor<ADUser>() {
+					@Override
+					public void process(ADUser user) throws Exception {
+						// ignora as contas que não foram modificadas desde o último provisionamento
+						Long hash = null;
+						if (snapshot != null && user.getObjectGUID() != null) {
+							hash = computeAccountHash(domain, user);
+							if (!fullSync && snapshot.isUnchanged(user.getObjectGUID(), hash)) {
+								ZimbraLog.autoprov.debug("AD - Account \"%s\" is unchanged since last provisioning",
+										user.getDistinguishedName().toString());
+								return;
+							}
+						}
+
+						// cria ou atualiza a conta no zimbra
+						ZimbraLog.autoprov.info("AD - auto provisioning account \"%s\"",
+								user.getDistinguishedName().toString());
+						autoProvisionAccount(domain, user);
+
+						/*
+						 * Reativa apenas as contas bloqueadas ou fechadas pela
+						 * sincronização. A marca é removida mesmo que o estado
+						 * tenha sido alterado pelo administrador desde então.
+						 */
+						if (deprovisioned != null && deprovisioned.contains(user.getMail())) {
+							changeAccountStatus(user.getMail(), AccountStatus.active,
+									AccountStatus.locked, AccountStatus.closed);
+							deprovisioned.remove(user.getMail());
+						}
+						if (hash != null)
+							snapshot.put(user.getObjectGUID(), hash, user.getMail());
+					}
+				})) {
+			/*
+			 * Busca os usuários com e-mail. Os usuários são lidos do AD à
+			 * medida que são provisionados, logo não é necessário manter todos
+			 * eles em memória. Os usuários desabilitados são bloqueados
+			 * separadamente, quando habilitado.
+			 */
+			String userFilter = deprovisioned != null ? "(mail=*)(!" + DISABLED_USER_FILTER + ")" : "(mail=*)";
+			for (String changeFilter : changeFilters) {
+				try (LDAPEntryEnumeration<ADUser> users = rep.enumerateUsers(userFilter + changeFilter)) {
+					// para cada usuário
+					while (users.hasMore()) {
+						ADUser user = users.next();
+						pipeline.submit(user, user.getDistinguishedName().toString());
+						userMails.put(user.getDistinguishedName(), user.getMail());
+
+						// guarda os grupos do usuário para que as listas sejam atualizadas
+						if (user.getMemberOfGroups() != null) {
+							for (DN group : user.getMemberOfGroups())
+								changedUsersGroups.add(group);
+						}
+					}
+				}
+			}
+
+			// aguarda o provisionamento de todas as contas
+			numUsers = pipeline.finish();
+		}
+
+		ZimbraLog.autoprov.debug("AD - Provisioned %d accounts from domain %s",
+				numUsers, domain.getName());
+	}
+
+	/**
+	 * Função privada que bloqueia as contas dos usuários desabilitados no AD.
+	 * Os usuários desabilitados são selecionados pelo filtro da busca, logo
+	 * são lidos apenas os usuários desabilitados modificados desde a última
+	 * sincronização.
+	 * @param adTree O objeto da árvore do AD conectada.
+	 * @param changeFilters Os filtros que selecionam apenas as entradas
+	 * modificadas desde a última sincronização.
+	 * @param changedUsersGroups Conjunto que será preenchido com os DNs dos
+	 * grupos dos usuários desabilitados.
+	 * @param userMails Mapa que será preenchido com os e-mails dos usuários
+	 * desabilitados, já que estes continuam como membros das listas de
+	 * distribuição.
+	 * @param snapshot Os <i>hashes</i> das entradas já provisionadas, ou
+	 * <code>null</code>. Os usuários desabilitados são removidos deste para
+	 * que as suas contas sejam atualizadas quando forem habilitados.
+	 * @param deprovisioned As contas bloqueadas ou fechadas pela
+	 * sincronização, onde são incluídas as contas bloqueadas.
+	 * @throws Exception Lança exceção quando não for possível bloquear as
+	 * contas.
+	 */
+	private void deprovisionDisabledADUsers(ADTree adTree, List<String> changeFilters,
+			Set<DN> changedUsersGroups, Map<DN, String> userMails, ADSnapshotStore snapshot,
+			ADDeprovisionedAccounts deprovisioned) throws Exception {
+		ADUsersRepository rep = adTree.getUsersRepository();
+		int numLocked = 0;
+
+		for (String changeFilter : changeFilters) {
+			try (LDAPEntryEnumeration<ADUser> users = rep.enumerateUsers("(mail=*)" + DISABLED_USER_FILTER +
+					changeFilter, "distinguishedName", "mail", "memberOf", "objectGUID")) {
+				while (users.hasMore()) {
+					ADUser user = users.next();
+					userMails.put(user.getDistinguishedName(), user.getMail());
+					if (user.getMemberOfGroups() != null) {
+						for (DN group : user.getMemberOfGroups())
+							changedUsersGroups.add(group);
+					}
 
-		// para cada usuário
-		for (ADUser user : users) {
-			// cria ou atualiza a conta no zimbra
-			ZimbraLog.autoprov.info("AD - auto provisioning account \"%s\"", user.getDistinguishedName().toString());
-			this.autoProvisionAccount(domain, user);
+					// as contas fechadas pertencem a usuários removidos e restaurados
+					if (this.changeAccountStatus(user.getMail(), AccountStatus.locked, AccountStatus.active)) {
+						deprovisioned.add(user.getMail());
+						numLocked++;
+					}
+					if (snapshot != null)
+						snapshot.remove(user.getObjectGUID());
+				}
+			}
 		}
+
+		ZimbraLog.autoprov.debug("AD - Locked %d accounts of disabled users", numLocked);
+	}
+
+	/**
+	 * Função privada que fecha as contas dos usuários removidos do AD. Os
+	 * usuários removidos são buscados no container <i>Deleted Objects</i>
+	 * pelo horário da remoção, logo o custo depende apenas da quantidade de
+	 * usuários removidos desde a última sincronização.
+	 * <p>Sem a lixeira do AD habilitada, os usuários removidos perdem o
+	 * atributo <code>mail</code>. Neste caso, o e-mail da conta é lido dos
+	 * <i>hashes</i> das entradas provisionadas, pelo
+	 * <code>objectGUID</code>.</p>
+	 * @param adTree O objeto da árvore do AD conectada.
+	 * @param domain O domínio do Zimbra.
+	 * @param lastSyncTime O horário da última sincronização. Caso seja menor
+	 * ou igual a zero, são lidos todos os usuários removidos que ainda estão
+	 * no AD.
+	 * @param snapshot Os <i>hashes</i> das entradas já provisionadas, ou
+	 * <code>null</code>.
+	 * @param deprovisioned As contas bloqueadas ou fechadas pela
+	 * sincronização. São incluídas apenas as contas que estavam ativas, já que
+	 * as contas bloqueadas pelo administrador não devem ser reativadas.
+	 * @throws Exception Lança exceção quando não for possível fechar as
+	 * contas.
+	 */
+	private void deprovisionDeletedADUsers(ADTree adTree, Domain domain, long lastSyncTime,
+			ADSnapshotStore snapshot, ADDeprovisionedAccounts deprovisioned) throws Exception {
+		String since = "";
+		if (lastSyncTime > 0) {
+			long skew = ADLocalConfig.getLong(ADLocalConfig.SYNC_WHEN_CHANGED_SKEW, 300000);
+			SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmmss'.0Z'");
+			dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+			since = String.format("(whenChanged>=%s)", dateFormat.format(new Date(lastSyncTime - skew)));
+		}
+
+		DN searchBase = DN.parse(adTree.getLdapSearchBase());
+		ADUsersRepository rep = adTree.getUsersRepository();
+		int numClosed = 0;
+		int numDeleted = 0;
+
+		NamingEnumeration<SearchResult> results = adTree.searchDeletedObjects(
+				String.format(DELETED_USER_FILTER, since), "objectGUID", "mail", "lastKnownParent");
+		try {
+			while (results.hasMore()) {
+				SearchResult result = results.next();
+				numDeleted++;
+				Attributes attrs = result.getAttributes();
+
+				// ignora os usuários que estavam fora da base de busca
+				Attribute lastKnownParent = attrs.get("lastKnownParent");
+				if (lastKnownParent == null
+						|| !isInSearchBase(DN.parse(lastKnownParent.get().toString()), searchBase))
+					continue;
+
+				Attribute objectGUID = attrs.get("objectGUID");
+				String guid = objectGUID != null ? LDAPAttributeValues.toHex((byte[]) objectGUID.get()) : null;
+				Attribute mailAttr = attrs.get("mail");
+				String mail = mailAttr != null ? mailAttr.get().toString() : null;
+				if (mail == null && snapshot != null)
+					mail = snapshot.getName(guid);
+				if (mail == null) {
+					ZimbraLog.autoprov.debug("AD - Can't find the e-mail of deleted user \"%s\" (objectGUID %s)",
+							result.getNameInNamespace(), guid);
+					continue;
+				}
+
+				// o e-mail pode ter sido atribuído a outro usuário
+				if (!rep.queryUsers(String.format("(mail=%s)", LDAPTree.escapeFilterValue(mail)),
+						"distinguishedName").isEmpty()) {
+					ZimbraLog.autoprov.debug("AD - E-mail \"%s\" of deleted user is in use by another user", mail);
+					continue;
+				}
+
+				if (this.changeAccountStatus(mail, AccountStatus.closed, AccountStatus.active)) {
+					deprovisioned.add(mail);
+					numClosed++;
+				} else if (this.changeAccountStatus(mail, AccountStatus.closed))
+					// a conta bloqueada continua marcada apenas se foi bloqueada pela sincronização
+					numClosed++;
+				if (snapshot != null)
+					snapshot.remove(guid);
+			}
+		} finally {
+			results.close();
+		}
+
+		ZimbraLog.autoprov.debug("AD - Closed %d accounts of %d deleted users from domain %s",
+				numClosed, numDeleted, domain.getName());
 	}
 
 	/**
@@ -67,34 +377,519 @@ public class ADAutoProvisionEager extends ADAutoProvision {
 	 * domínio no AD para o Zimbra.
 	 * @param adTree O objeto da árvore do AD conectada.
 	 * @param domain O domínio do Zimbra onde as listas serão provisionadas.
+	 * @param changeFilters Os filtros que selecionam apenas as entradas
+	 * modificadas desde a última sincronização. Caso contenha apenas um
+	 * filtro vazio, todas as listas serão provisionadas.
+	 * @param changedUsersGroups Os DNs dos grupos dos usuários modificados.
+	 * Estes são considerados apenas na sincronização incremental.
+	 * @param userMails Os e-mails dos usuários lidos no provisionamento das
+	 * contas, indexados pelo DN. Na sincronização
+	 * completa, este contém todos os usuários com e-mail. Na incremental, é
+	 * completado com os membros das listas que ainda não foram lidos.
+	 * @param snapshot Os <i>hashes</i> das entradas já provisionadas, ou
+	 * <code>null</code> caso todas as listas devam ser provisionadas. Na
+	 * sincronização completa, todas as listas são provisionadas e os
+	 * <i>hashes</i> apenas atualizados.
 	 * @throws Exception Lança exceção quando não for possível realizar o
 	 * provisionamento.
 	 */
-	private void autoProvisionDomainADDistributionLists(ADTree adTree, Domain domain) throws Exception {
+	private void autoProvisionDomainADDistributionLists(ADTree adTree, Domain domain, List<String> changeFilters,
+			Set<DN> changedUsersGroups, Map<DN, String> userMails, ADSnapshotStore snapshot) throws Exception {
 		// pega o repositório de grupos
 		ADGroupsRepository rep = adTree.getGroupsRepository();
-		// pega o repositório de usuários para buscar os usuários do grupo
-		ADUsersRepository userRep = adTree.getUsersRepository();
+
+		/*
+		 * Verifica como os grupos aninhados serão resolvidos. O grafo dos
+		 * grupos é mantido apenas durante esta sincronização, sendo
+		 * compartilhado entre as listas que contêm os mesmos grupos.
+		 */
+		String nestedGroups = ADLocalConfig.getString(ADLocalConfig.SYNC_NESTED_GROUPS,
+				ADLocalConfig.NESTED_GROUPS_NONE).toLowerCase();
+		ADGroupGraph groupGraph = null;
+		if (nestedGroups.equals(ADLocalConfig.NESTED_GROUPS_CLIENT))
+			groupGraph = ADGroupGraph.load(rep);
+		else if (!nestedGroups.equals(ADLocalConfig.NESTED_GROUPS_SERVER) &&
+				!nestedGroups.equals(ADLocalConfig.NESTED_GROUPS_NONE)) {
+			ZimbraLog.autoprov.warn("AD - Invalid nested groups mode \"%s\". Using \"%s\"",
+					nestedGroups, ADLocalConfig.NESTED_GROUPS_NONE);
+			nestedGroups = ADLocalConfig.NESTED_GROUPS_NONE;
+		}
 		
 		// busca as listas de distribuição do AD
-		List<ADGroup> distribuitionLists = rep.queryDistributionLists(true);
+		List<ADGroup> distribuitionLists;
+		if (isFullSync(changeFilters))
+			distribuitionLists = rep.queryDistributionLists(true);
+		else
+			distribuitionLists = queryChangedDistributionLists(rep, changeFilters, changedUsersGroups,
+					nestedGroups, groupGraph);
 		ZimbraLog.autoprov.debug("AD - Provisioning %d distribution lists from domain %s",
 				distribuitionLists.size(), domain.getName());
+		if (distribuitionLists.isEmpty())
+			return;
+
+		/*
+		 * Na sincronização incremental foram lidos apenas os usuários
+		 * modificados, logo são lidos os e-mails dos membros das listas que
+		 * ainda não são conhecidos. Assim, os membros das listas são
+		 * resolvidos sem que seja feita uma busca para cada lista ou uma
+		 * busca de todos os usuários do domínio.
+		 */
+		ADUsersRepository userRep = adTree.getUsersRepository();
+		if (!isFullSync(changeFilters) && !nestedGroups.equals(ADLocalConfig.NESTED_GROUPS_SERVER))
+			queryMemberMails(userRep, distribuitionLists, groupGraph, userMails);
 		
 		// para cada lista
 		for (ADGroup distribuitionList : distribuitionLists) {
+			String[] memberMails;
+			if (groupGraph != null)
+				memberMails = getMemberMails(groupGraph.getNestedMembers(distribuitionList.getDistinguishedName()),
+						userMails);
+			else if (nestedGroups.equals(ADLocalConfig.NESTED_GROUPS_SERVER))
+				memberMails = getMemberMails(userRep.queryNestedGroupMembers(distribuitionList, true, "mail"));
+			else
+				memberMails = getMemberMails(distribuitionList, userMails);
+
+			// ignora as listas cujos atributos e membros não foram modificados
+			Long hash = null;
+			if (snapshot != null && distribuitionList.getObjectGUID() != null) {
+				hash = computeDistributionListHash(distribuitionList, memberMails);
+				// a sincronização completa atualiza todas as listas, como nas contas
+				if (!isFullSync(changeFilters) && snapshot.isUnchanged(distribuitionList.getObjectGUID(), hash)) {
+					ZimbraLog.autoprov.debug("AD - Distribution list \"%s\" is unchanged since last provisioning",
+							distribuitionList.getDistinguishedName().toString());
+					continue;
+				}
+			}
+
 			// cria ou atualiza a lista de distribuição
 			ZimbraLog.autoprov.info("AD - auto provisioning distribution list \"%s\"",
 					distribuitionList.getDistinguishedName().toString());
-			this.autoProvisionDistributionList(domain, distribuitionList,
-					userRep.queryGroupMembers(distribuitionList, true));
+			this.autoProvisionDistributionList(domain, distribuitionList, memberMails);
+			if (hash != null)
+				snapshot.put(distribuitionList.getObjectGUID(), hash, distribuitionList.getMail());
 		}
 	}
 
+	/**
+	 * Função privada que calcula o <i>hash</i> do conteúdo provisionado para
+	 * uma conta: o seu e-mail e os atributos mapeados para o Zimbra.
+	 */
+	private static long computeAccountHash(Domain domain, ADUser user) throws Exception {
+		Map<String, Object> attrValues = ZimbraLDAPMapper.mapObjectFieldsIntoAttributes(user,
+				AttributeAccessMode.READ, ZimbraLDAPMapper.getUserAttributeMapping(domain));
+		attrValues.put(SNAPSHOT_NAME_KEY, user.getMail());
+		return ADSnapshotStore.computeHash(attrValues, null);
+	}
+
+	/**
+	 * Função privada que calcula o <i>hash</i> do conteúdo provisionado para
+	 * uma lista de distribuição: o seu e-mail, os atributos mapeados para o
+	 * Zimbra e os e-mails dos membros.
+	 */
+	private static long computeDistributionListHash(ADGroup distributionList, String[] memberMails)
+			throws Exception {
+		Map<String, Object> attrValues = ZimbraLDAPMapper.mapObjectFieldsIntoAttributes(distributionList,
+				AttributeAccessMode.READ, ZimbraLDAPMapper.getGroupAttributeMapping());
+		attrValues.put(SNAPSHOT_NAME_KEY, distributionList.getMail());
+		return ADSnapshotStore.computeHash(attrValues, Arrays.asList(memberMails));
+	}
+
+	/**
+	 * Função privada que faz a leitura dos e-mails dos membros das listas de
+	 * distribuição que ainda não foram lidos. Os membros são buscados pelo DN
+	 * em blocos, sendo lidos apenas o DN e o e-mail de cada usuário.
+	 * @param rep O repositório de usuários.
+	 * @param distributionLists As listas de distribuição.
+	 * @param groupGraph O grafo dos grupos, quando estes forem resolvidos no
+	 * cliente. Caso seja <code>null</code>, são considerados apenas os
+	 * membros diretos das listas.
+	 * @param userMails Os e-mails dos usuários já lidos, indexados pelo DN.
+	 * Este é preenchido com os e-mails dos membros lidos.
+	 * @throws Exception Lança exceção quando não for possível realizar a
+	 * busca.
+	 */
+	private static void queryMemberMails(ADUsersRepository rep, List<ADGroup> distributionLists,
+			ADGroupGraph groupGraph, Map<DN, String> userMails) throws Exception {
+		// procura os membros que ainda não foram lidos
+		Set<DN> pendingMembers = new LinkedHashSet<>();
+		for (ADGroup distributionList : distributionLists) {
+			Collection<DN> members = groupGraph != null
+					? groupGraph.getNestedMembers(distributionList.getDistinguishedName())
+					: distributionList.getMembers();
+			if (members == null)
+				continue;
+			for (DN member : members) {
+				if (!userMails.containsKey(member))
+					pendingMembers.add(member);
+			}
+		}
+		if (pendingMembers.isEmpty())
+			return;
+
+		List<String> distinguishedNames = new ArrayList<>(pendingMembers.size());
+		for (DN member : pendingMembers)
+			distinguishedNames.add(member.toString());
+
+		// os membros que não são usuários com e-mail não são retornados
+		for (String filter : createDistinguishedNameFilters(distinguishedNames)) {
+			try (LDAPEntryEnumeration<ADUser> users = rep.enumerateUsers("(mail=*)" + filter,
+					"distinguishedName", "mail")) {
+				while (users.hasMore()) {
+					ADUser user = users.next();
+					userMails.put(user.getDistinguishedName(), user.getMail());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Função privada que retorna os e-mails dos membros de uma lista de
+	 * distribuição a partir do atributo <code>member</code> do grupo. São
+	 * considerados apenas os membros que são usuários com e-mail.
+	 * @param group O grupo da lista de distribuição.
+	 * @param userMails Os e-mails dos usuários indexados pelo DN.
+	 * @return Retorna os e-mails dos membros.
+	 */
+	private static String[] getMemberMails(ADGroup group, Map<DN, String> userMails) {
+		List<String> mails = new ArrayList<>();
+		if (group.getMembers() != null) {
+			for (DN member : group.getMembers()) {
+				String mail = userMails.get(member);
+				if (mail != null)
+					mails.add(mail);
+			}
+		}
+		return mails.toArray(new String[mails.size()]);
+	}
+
+	/**
+	 * Função privada que retorna os e-mails dos membros de uma lista de
+	 * distribuição resolvidos pelo grafo dos grupos.
+	 * @param members Os DNs dos membros da lista.
+	 * @param userMails Os e-mails dos usuários indexados pelo DN.
+	 * @return Retorna os e-mails dos membros que são usuários com e-mail.
+	 */
+	private static String[] getMemberMails(Set<DN> members, Map<DN, String> userMails) {
+		List<String> mails = new ArrayList<>();
+		for (DN member : members) {
+			String mail = userMails.get(member);
+			if (mail != null)
+				mails.add(mail);
+		}
+		return mails.toArray(new String[mails.size()]);
+	}
+
+	/**
+	 * Função privada que retorna os e-mails dos usuários retornados pelo
+	 * servidor.
+	 */
+	private static String[] getMemberMails(List<ADUser> users) {
+		String[] mails = new String[users.size()];
+		for (int i = 0; i < mails.length; i++)
+			mails[i] = users.get(i).getMail();
+		return mails;
+	}
+
+	/**
+	 * Função privada que busca as listas de distribuição que foram modificadas
+	 * e as listas que contêm usuários modificados. Quando os grupos aninhados
+	 * são resolvidos, também são buscadas as listas que contêm, direta ou
+	 * indiretamente, os grupos modificados.
+	 * @param rep O repositório de grupos.
+	 * @param changeFilters Os filtros que selecionam as entradas modificadas.
+	 * @param changedUsersGroups Os DNs dos grupos dos usuários modificados.
+	 * @param nestedGroups O modo de resolução dos grupos aninhados.
+	 * @param groupGraph O grafo dos grupos, quando estes forem resolvidos no
+	 * cliente.
+	 * @return Retorna a lista sem repetições das listas de distribuição.
+	 * @throws Exception Lança exceção quando não for possível realizar a
+	 * busca.
+	 */
+	private static List<ADGroup> queryChangedDistributionLists(ADGroupsRepository rep, List<String> changeFilters,
+			Set<DN> changedUsersGroups, String nestedGroups, ADGroupGraph groupGraph) throws Exception {
+		Map<DN, ADGroup> distribuitionLists = new LinkedHashMap<>();
+		for (String changeFilter : changeFilters) {
+			for (ADGroup group : rep.queryDistributionLists(changeFilter, true))
+				distribuitionLists.put(group.getDistinguishedName(), group);
+		}
+
+		// grupos cujas listas que os contêm deverão ser atualizadas
+		Set<DN> changedGroups = new HashSet<>(changedUsersGroups);
+		String filterFormat = "(distinguishedName=%1$s)";
+
+		if (!nestedGroups.equals(ADLocalConfig.NESTED_GROUPS_NONE)) {
+			// os grupos modificados podem estar contidos em outras listas
+			for (String changeFilter : changeFilters) {
+				for (ADGroup group : rep.queryGroups(changeFilter, "distinguishedName"))
+					changedGroups.add(group.getDistinguishedName());
+			}
+
+			if (groupGraph != null)
+				changedGroups = groupGraph.getAncestors(changedGroups);
+			else
+				filterFormat = "(distinguishedName=%1$s)(member:1.2.840.113556.1.4.1941:=%1$s)";
+		}
+
+		// busca as listas que ainda não foram lidas
+		List<String> pendingGroups = new ArrayList<>();
+		for (DN groupDN : changedGroups) {
+			if (!distribuitionLists.containsKey(groupDN))
+				pendingGroups.add(groupDN.toString());
+		}
+
+		for (String filter : createDistinguishedNameFilters(pendingGroups, filterFormat)) {
+			for (ADGroup group : rep.queryDistributionLists(filter, true))
+				distribuitionLists.put(group.getDistinguishedName(), group);
+		}
+
+		return new ArrayList<>(distribuitionLists.values());
+	}
+
+	/**
+	 * Função privada que monta os filtros que selecionam as entradas a partir
+	 * dos seus DNs. As entradas são divididas em blocos para limitar o
+	 * tamanho de cada filtro.
+	 * @param distinguishedNames Os DNs das entradas.
+	 * @return Retorna a lista de filtros. Caso não existam DNs, retorna uma
+	 * lista vazia.
+	 */
+	private static List<String> createDistinguishedNameFilters(List<String> distinguishedNames) {
+		return createDistinguishedNameFilters(distinguishedNames, "(distinguishedName=%1$s)");
+	}
+
+	/**
+	 * Função privada que monta os filtros que selecionam as entradas a partir
+	 * de DNs. As entradas são divididas em blocos para limitar o tamanho de
+	 * cada filtro.
+	 * @param distinguishedNames Os DNs utilizados nos filtros.
+	 * @param filterFormat O formato do filtro de cada DN, que é passado já
+	 * com os caracteres especiais tratados. Os filtros dos DNs de um mesmo
+	 * bloco são combinados com o operador "ou".
+	 * @return Retorna a lista de filtros. Caso não existam DNs, retorna uma
+	 * lista vazia.
+	 */
+	private static List<String> createDistinguishedNameFilters(List<String> distinguishedNames,
+			String filterFormat) {
+		List<String> filters = new ArrayList<>();
+		for (int i = 0; i < distinguishedNames.size(); i += MAX_DN_FILTER_SIZE) {
+			StringBuilder filter = new StringBuilder("(|");
+			int end = Math.min(i + MAX_DN_FILTER_SIZE, distinguishedNames.size());
+			for (String dn : distinguishedNames.subList(i, end))
+				filter.append(String.format(filterFormat, LDAPTree.escapeFilterValue(dn)));
+			filter.append(')');
+			filters.add(filter.toString());
+		}
+		return filters;
+	}
+
+	/**
+	 * Função privada que monta o filtro que seleciona apenas as entradas do AD
+	 * modificadas desde a última sincronização do domínio. O filtro utiliza o
+	 * atributo <code>uSNChanged</code>, cujo valor é válido apenas para o
+	 * controlador de domínio que o gerou. Caso o servidor não informe o USN,
+	 * será utilizado o atributo <code>whenChanged</code>.
+	 * <p>O estado passado é atualizado com as marcas lidas do servidor, que
+	 * deverão ser gravadas apenas se a sincronização for concluída.</p>
+	 * @param adTree O objeto da árvore do AD conectada.
+	 * @param domain O domínio que será sincronizado.
+	 * @param state O estado da última sincronização do domínio.
+	 * @param syncStartTime O horário do início da sincronização.
+	 * @return Retorna o filtro das entradas modificadas. Caso seja necessária
+	 * uma sincronização completa, retorna uma <i>string</i> vazia.
+	 */
+	private static String createChangeFilter(ADTree adTree, Domain domain, ADSyncState state, long syncStartTime) {
+		String lastInvocationId = state.getInvocationId();
+		long lastUSN = state.getHighestCommittedUSN();
+
+		/*
+		 * O USN deve ser lido antes das buscas para que as modificações feitas
+		 * durante a sincronização sejam lidas na próxima.
+		 */
+		String invocationId = null;
+		long highestUSN = -1;
+		try {
+			highestUSN = adTree.getHighestCommittedUSN();
+			invocationId = adTree.getInvocationId();
+		} catch (Exception e) {
+			ZimbraLog.autoprov.warn("AD - Can't read the update sequence number of domain %s: %s",
+					domain.getName(), e.getMessage());
+			highestUSN = -1;
+			invocationId = null;
+		}
+		state.setInvocationId(invocationId);
+		state.setHighestCommittedUSN(highestUSN);
+
+		// verifica se a sincronização completa foi solicitada
+		if (!ADLocalConfig.getBoolean(ADLocalConfig.SYNC_INCREMENTAL, true))
+			return "";
+		long fullSyncInterval = ADLocalConfig.getLong(ADLocalConfig.SYNC_FULL_INTERVAL, 86400000);
+		if (fullSyncInterval > 0 && syncStartTime - state.getLastFullSyncTime() >= fullSyncInterval) {
+			ZimbraLog.autoprov.info("AD - Full synchronization interval reached for domain %s", domain.getName());
+			return "";
+		}
+
+		if (highestUSN >= 0 && invocationId != null) {
+			if (lastUSN < 0 || lastInvocationId == null) {
+				ZimbraLog.autoprov.info("AD - No previous update sequence number for domain %s. " +
+						"Doing a full synchronization", domain.getName());
+				return "";
+			}
+			// o servidor conectado foi trocado ou teve a base restaurada
+			if (!invocationId.equals(lastInvocationId) || highestUSN < lastUSN) {
+				ZimbraLog.autoprov.info("AD - Domain controller of domain %s changed (invocationId %s -> %s, " +
+						"USN %d -> %d). Doing a full synchronization",
+						domain.getName(), lastInvocationId, invocationId, lastUSN, highestUSN);
+				return "";
+			}
+
+			ZimbraLog.autoprov.debug("AD - Synchronizing entries of domain %s changed after USN %d",
+					domain.getName(), lastUSN);
+			return String.format("(uSNChanged>=%d)", lastUSN + 1);
+		}
+
+		// utiliza o horário da última sincronização
+		if (state.getLastSyncTime() <= 0)
+			return "";
+
+		long skew = ADLocalConfig.getLong(ADLocalConfig.SYNC_WHEN_CHANGED_SKEW, 300000);
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmmss'.0Z'");
+		dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+		String since = dateFormat.format(new Date(state.getLastSyncTime() - skew));
+
+		ZimbraLog.autoprov.debug("AD - Synchronizing entries of domain %s changed after %s",
+				domain.getName(), since);
+		return String.format("(whenChanged>=%s)", since);
+	}
+
+	/**
+	 * Função privada que busca as entradas do AD modificadas desde a última
+	 * sincronização utilizando o controle <i>DirSync</i>. Diferente do filtro
+	 * pelo <code>uSNChanged</code>, este modo também retorna as entradas
+	 * removidas do AD, que são informadas no log.
+	 * <p>Caso ainda não exista um <i>cookie</i>, é feita a leitura de todas as
+	 * entradas do domínio apenas para obtê-lo, sendo realizada uma
+	 * sincronização completa em seguida. O novo <i>cookie</i> é ajustado no
+	 * estado passado, que deverá ser gravado apenas se a sincronização for
+	 * concluída.</p>
+	 * @param adTree O objeto da árvore do AD conectada.
+	 * @param domain O domínio que será sincronizado.
+	 * @param state O estado da última sincronização do domínio.
+	 * @param syncStartTime O horário do início da sincronização.
+	 * @return Retorna os filtros que selecionam as entradas modificadas. Caso
+	 * seja necessária uma sincronização completa, retorna uma lista com um
+	 * filtro vazio.
+	 * @throws Exception Lança exceção quando não for possível realizar a
+	 * busca.
+	 */
+	private static List<String> createDirSyncChangeFilters(ADTree adTree, Domain domain, ADSyncState state,
+			long syncStartTime) throws Exception {
+		int flags = DirSyncControl.PUBLIC_DATA_ONLY;
+		if (ADLocalConfig.getBoolean(ADLocalConfig.SYNC_DIRSYNC_OBJECT_SECURITY, false))
+			flags |= DirSyncControl.OBJECT_SECURITY;
+
+		// verifica se a sincronização completa foi solicitada
+		byte[] cookie = state.getDirSyncCookie();
+		long fullSyncInterval = ADLocalConfig.getLong(ADLocalConfig.SYNC_FULL_INTERVAL, 86400000);
+		if (cookie != null && fullSyncInterval > 0 && syncStartTime - state.getLastFullSyncTime() >= fullSyncInterval) {
+			ZimbraLog.autoprov.info("AD - Full synchronization interval reached for domain %s", domain.getName());
+			cookie = null;
+		}
+
+		if (cookie != null) {
+			try {
+				return readDirSyncChanges(adTree, domain, state, flags, cookie);
+			} catch (NamingException e) {
+				// o cookie pode ter expirado ou pertencer a outro domínio
+				ZimbraLog.autoprov.warn("AD - DirSync search with the stored cookie failed on domain %s: %s. " +
+						"Doing a full synchronization", domain.getName(), e.getMessage());
+			}
+		} else
+			ZimbraLog.autoprov.info("AD - No DirSync cookie for domain %s. Doing a full synchronization",
+					domain.getName());
+
+		/*
+		 * Lê todas as entradas apenas para obter o cookie. Este é lido antes
+		 * da sincronização completa para que as modificações feitas durante
+		 * ela sejam lidas na próxima.
+		 */
+		try (LDAPDirSyncResults results = adTree.searchDirSync(DIRSYNC_FILTER, flags, null, "objectGUID")) {
+			while (results.hasMore())
+				results.next();
+			state.setDirSyncCookie(results.getCookie());
+		}
+		return Collections.singletonList("");
+	}
+
+	/**
+	 * Função privada que lê as modificações retornadas pela busca com o
+	 * controle <i>DirSync</i>.
+	 * @return Retorna os filtros que selecionam as entradas modificadas. Caso
+	 * não existam modificações, retorna uma lista vazia.
+	 * @throws Exception Lança exceção quando não for possível realizar a
+	 * busca.
+	 */
+	private static List<String> readDirSyncChanges(ADTree adTree, Domain domain, ADSyncState state, int flags,
+			byte[] cookie) throws Exception {
+		DN searchBase = DN.parse(adTree.getLdapSearchBase());
+		List<String> changedEntries = new ArrayList<>();
+		int numDeleted = 0;
+
+		try (LDAPDirSyncResults results = adTree.searchDirSync(DIRSYNC_FILTER, flags, cookie)) {
+			while (results.hasMore()) {
+				SearchResult result = results.next();
+				Attributes attrs = result.getAttributes();
+
+				Attribute isDeleted = attrs.get("isDeleted");
+				if (isDeleted != null && "TRUE".equalsIgnoreCase(isDeleted.get().toString())) {
+					/*
+					 * As entradas removidas são movidas para o container
+					 * "Deleted Objects", logo é utilizado o último DN pai
+					 * para saber se estavam dentro da base de busca.
+					 */
+					Attribute lastKnownParent = attrs.get("lastKnownParent");
+					if (lastKnownParent == null ||
+							!isInSearchBase(DN.parse(lastKnownParent.get().toString()), searchBase))
+						continue;
+
+					Attribute objectGUID = attrs.get("objectGUID");
+					ZimbraLog.autoprov.info("AD - Entry \"%s\" (objectGUID %s) was deleted from domain %s",
+							result.getNameInNamespace(),
+							objectGUID != null ? LDAPAttributeValues.toHex((byte[]) objectGUID.get()) : "unknown",
+							domain.getName());
+					numDeleted++;
+					continue;
+				}
+
+				// ignora as entradas fora da base de busca
+				String dn = result.getNameInNamespace();
+				if (isInSearchBase(DN.parse(dn), searchBase))
+					changedEntries.add(dn);
+			}
+			state.setDirSyncCookie(results.getCookie());
+		}
+
+		ZimbraLog.autoprov.debug("AD - DirSync returned %d changed and %d deleted entries from domain %s",
+				changedEntries.size(), numDeleted, domain.getName());
+		return createDistinguishedNameFilters(changedEntries);
+	}
+
+	/**
+	 * Função privada que verifica se uma entrada está dentro da base de busca
+	 * do domínio.
+	 * @param dn O DN da entrada. Caso seja <code>null</code> (DN inválido),
+	 * retorna <code>false</code>.
+	 * @param searchBase O DN da base de busca. Caso seja <code>null</code>,
+	 * todas as entradas são consideradas.
+	 */
+	private static boolean isInSearchBase(DN dn, DN searchBase) {
+		return dn != null && (searchBase == null || dn.equals(searchBase) || dn.isDescendantOf(searchBase));
+	}
+
 	/**
 	 * Função privada que faz o provisionamento das entradas LDAP de um domínio
 	 * no AD para o Zimbra. Estas entradas podem ser usuários ou listas de
-	 * distribuição.
+	 * distribuição. Quando possível, serão provisionadas apenas as entradas
+	 * modificadas desde a última sincronização concluída do domínio.
 	 * @param domain O domínio do Zimbra onde os usuários e as listas serão
 	 * provisionadas.
 	 * @throws Exception Lança exceção quando não for possível realizar o
@@ -105,22 +900,57 @@ public class ADAutoProvisionEager extends ADAutoProvision {
 		ZimbraLog.autoprov.debug("AD - Connecting to domain %s", domain.getName());
 
 		ADTree adTree = ADConnectionManager.openDomainADConnection(domain);
-		if (adTree == null) {
-			ZimbraLog.autoprov.warn("AD - Can't connect to domain %s. Accounts from it will not be provisioned.",
-					domain.getName());
-			return;
-		}
+		if (adTree == null)
+			throw ServiceException.FAILURE(String.format("Can't connect to the AD of domain %s", domain.getName()),
+					null);
+
+		try {
+			// carrega o estado da última sincronização
+			long syncStartTime = System.currentTimeMillis();
+			ADSyncState state = ADSyncState.load(domain.getName());
+
+			// busca as entradas modificadas
+			List<String> changeFilters;
+			if (ADLocalConfig.getBoolean(ADLocalConfig.SYNC_INCREMENTAL, true) &&
+					ADLocalConfig.getBoolean(ADLocalConfig.SYNC_DIRSYNC, false))
+				changeFilters = createDirSyncChangeFilters(adTree, domain, state, syncStartTime);
+			else
+				changeFilters = Collections.singletonList(createChangeFilter(adTree, domain, state, syncStartTime));
 
-		// faz a leitura das contas do servidor AD
-		this.autoProvisionDomainADUsers(adTree, domain);
+			// faz a leitura das contas do servidor AD
+			Set<DN> changedUsersGroups = new HashSet<>();
+			Map<DN, String> userMails = new HashMap<>();
+			try (ADSnapshotStore snapshot = ADLocalConfig.getBoolean(ADLocalConfig.SYNC_SNAPSHOT, true) ?
+					ADSnapshotStore.open(domain.getName()) : null) {
+				ADDeprovisionedAccounts deprovisioned = ADLocalConfig.getBoolean(ADLocalConfig.SYNC_DEPROVISION,
+						false) ? ADDeprovisionedAccounts.load(domain.getName()) : null;
+				this.autoProvisionDomainADUsers(adTree, domain, changeFilters, changedUsersGroups, userMails,
+						snapshot, deprovisioned);
+				if (deprovisioned != null)
+					this.deprovisionDisabledADUsers(adTree, changeFilters, changedUsersGroups, userMails,
+							snapshot, deprovisioned);
 
-		// faz a leitura das listas de distribuição do AD
-		this.autoProvisionDomainADDistributionLists(adTree, domain);
+				// faz a leitura das listas de distribuição do AD
+				this.autoProvisionDomainADDistributionLists(adTree, domain, changeFilters, changedUsersGroups,
+						userMails, snapshot);
 
-		ZimbraLog.autoprov.debug("AD - Disconnecting of domain %s", domain.getName());
+				// fecha as contas dos usuários removidos do AD desde a última sincronização
+				if (deprovisioned != null)
+					this.deprovisionDeletedADUsers(adTree, domain, state.getLastSyncTime(), snapshot,
+							deprovisioned);
+			}
+
+			// grava o estado apenas quando a sincronização for concluída
+			state.setLastSyncTime(syncStartTime);
+			if (isFullSync(changeFilters))
+				state.setLastFullSyncTime(syncStartTime);
+			state.save();
+		} finally {
+			ZimbraLog.autoprov.debug("AD - Releasing connection of domain %s", domain.getName());
 
-		// desconecta do servidor AD
-		adTree.disconnect();
+			// devolve a conexão com o servidor AD
+			ADConnectionManager.releaseDomainADConnection(adTree);
+		}
 	}
 
 	/**
@@ -136,9 +966,44 @@ public class ADAutoProvisionEager extends ADAutoProvision {
 				.contains(AutoProvMode.EAGER.name());
 	}
 	
+	/**
+	 * Função privada que faz o provisionamento de um domínio, isolando os
+	 * erros ocorridos para que não interrompam os demais domínios.
+	 * @param domain O domínio a ser provisionado.
+	 * @return Retorna o tempo, em milissegundos, gasto no provisionamento do
+	 * domínio. Caso ocorra um erro, retorna <code>null</code>.
+	 */
+	private Long autoProvisionDomain(Domain domain) {
+		ZimbraLog.autoprov.info("AD - Auto provisioning accounts and distribution lists on domain %s",
+				domain.getName());
+
+		long startTime = System.currentTimeMillis();
+		try {
+			// fazendo a provisão do domínio
+			this.autoProvisionDomainADEntries(domain);
+
+			/*
+			 * Atualiza o horário da última checagem do domínio apenas quando
+			 * esta for concluída, com o horário do seu início.
+			 */
+			domain.setAutoProvLastPolledTimestamp(new Date(startTime));
+		} catch (Exception ex) {
+			// informa o erro que ocorreu durante a provisão do domínio
+			ZimbraLog.autoprov.error("AD - Error while provisioning domain %s after %d ms. Error: %s",
+					domain.getName(), System.currentTimeMillis() - startTime, ex.getMessage());
+			return null;
+		}
+
+		long elapsedTime = System.currentTimeMillis() - startTime;
+		ZimbraLog.autoprov.info("AD - Domain %s provisioned in %d ms", domain.getName(), elapsedTime);
+		return elapsedTime;
+	}
+
 	/**
 	 * Faz o provisionamento automático das contas e listas de distribuição
-	 * de um domínio do AD.
+	 * dos domínios do AD. Os domínios são provisionados simultaneamente, até o
+	 * limite configurado em {@link ADLocalConfig#SYNC_THREADS}, logo um
+	 * domínio lento não atrasa os demais.
 	 * @throws ServiceException Lança exceção se não for possível fazer o
 	 * provisionamento.
 	 */
@@ -149,6 +1014,7 @@ public class ADAutoProvisionEager extends ADAutoProvision {
 		 */
 		Server server = this.prov.getLocalServer();
 		String[] scheduledDomains = server.getAutoProvScheduledDomains();
+		List<Domain> domains = new ArrayList<>(scheduledDomains.length);
 
 		for (String domainName : scheduledDomains) {
 			// busca o domínio
@@ -185,20 +1051,88 @@ public class ADAutoProvisionEager extends ADAutoProvision {
 				continue;
 			}
 
-			ZimbraLog.autoprov.info("AD - Auto provisioning accounts and distribution lists on domain %s", domainName);
+			domains.add(domain);
+		}
 
-			try {
-				// fazendo a provisão do domínio
-				this.autoProvisionDomainADEntries(domain);
-			} catch (Exception ex) {
-				// informa o erro que ocorreu durante a provisão do domínio
-				ZimbraLog.autoprov.error("AD - Error while provisioning domain %s. Error: %s",
-						domainName, ex.getMessage());
+		if (domains.isEmpty())
+			return;
+
+		// cada domínio é provisionado em uma thread do executor
+		int numThreads = Math.max(1, Math.min(domains.size(),
+				ADLocalConfig.getInt(ADLocalConfig.SYNC_THREADS, DEFAULT_SYNC_THREADS)));
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			private final AtomicInteger threadNumber = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ADZimbraSync-EagerProvisioner-" + this.threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
 			}
-			
-			// atualiza o horário da última checagem do domínio
-			domain.setAutoProvLastPolledTimestamp(new Date(System.currentTimeMillis()));
+		});
+
+		long cycleStartTime = System.currentTimeMillis();
+		Map<String, Long> domainTimes = new HashMap<>();
+		int numFailed = 0;
+		try {
+			Map<String, Future<Long>> results = new LinkedHashMap<>();
+			for (final Domain domain : domains) {
+				results.put(domain.getName(), executor.submit(new Callable<Long>() {
+					@Override
+					public Long call() {
+						return autoProvisionDomain(domain);
+					}
+				}));
+			}
+
+			// aguarda a finalização de todos os domínios
+			for (Map.Entry<String, Future<Long>> result : results.entrySet()) {
+				Long elapsedTime;
+				try {
+					elapsedTime = result.getValue().get();
+				} catch (ExecutionException ex) {
+					ZimbraLog.autoprov.error("AD - Error while provisioning domain %s. Error: %s",
+							result.getKey(), ex.getCause());
+					elapsedTime = null;
+				}
+
+				if (elapsedTime != null)
+					domainTimes.put(result.getKey(), elapsedTime);
+				else
+					numFailed++;
+			}
+		} catch (InterruptedException ex) {
+			ZimbraLog.autoprov.warn("AD - EAGER auto provision interrupted");
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		ZimbraLog.autoprov.info("AD - EAGER auto provision of %d domains finished in %d ms (%d failed). " +
+				"Domain times: %s", domains.size(), System.currentTimeMillis() - cycleStartTime, numFailed,
+				formatDomainTimes(domainTimes));
+	}
+
+	/**
+	 * Função privada que formata os tempos de provisionamento dos domínios,
+	 * do mais lento para o mais rápido.
+	 */
+	private static String formatDomainTimes(final Map<String, Long> domainTimes) {
+		List<String> domainNames = new ArrayList<>(domainTimes.keySet());
+		Collections.sort(domainNames, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				return domainTimes.get(b).compareTo(domainTimes.get(a));
+			}
+		});
+
+		StringBuilder str = new StringBuilder();
+		for (String domainName : domainNames) {
+			if (str.length() > 0)
+				str.append(", ");
+			str.append(domainName).append('=').append(domainTimes.get(domainName)).append(" ms");
 		}
+		return str.toString();
 	}
 
 }
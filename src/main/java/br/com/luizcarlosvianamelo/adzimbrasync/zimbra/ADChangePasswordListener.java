@@ -40,43 +40,43 @@ public class ADChangePasswordListener extends ChangePasswordListener {
 	 * @param attrsToModify Parâmetro não utilizado.
 	 */
 	@Override
-	public void preModify(Account account, String newPassword, Map context,
+	public void preModify(Account account, final String newPassword, Map context,
 			Map<String, Object> attrsToModify) throws ServiceException {
+		// a senha anterior não pode mais ser aceita sem consultar o AD
+		ADCredentialCache.invalidate(account);
+
 		// captura as exceções do LDAP e lança as exceções do Zimbra
 		try {
 			Provisioning prov = Provisioning.getInstance();
 			// pega as informações do domínio ao qual o usuário pertence
 			Domain dom = prov.getDomain(account);
 			
-			// pega as configurações do LDAP para auto-provisioning
-			String ldapUrl = dom.getAutoProvLdapURL();
-			String ldapSearchBase = dom.getAutoProvLdapSearchBase();
-			// pega o usuário de administrador do LDAP
-			String ldapAdminBindDn = dom.getAutoProvLdapAdminBindDn();
-			String ldapAdminBindPassword = dom.getAutoProvLdapAdminBindPassword();
-			
 			// faz a conexão segura com o servidor
-			ADTree adTree = new ADTree(
-					ldapUrl,
-					ldapSearchBase,
-					ldapAdminBindDn,
-					ldapAdminBindPassword);
-			
-			adTree.connect(true);
-			
-			// busca o usuário no AD
-			ADUsersRepository rep = adTree.getUsersRepository();
-			ADUser user = rep.queryUserByAccountName(account.getUid());
+			ADTree adTree = ADConnectionManager.openDomainADConnection(dom, true);
+			if (adTree == null)
+				throw new Exception(String.format("Domain %s isn't configured to connect to AD", dom.getName()));
 			
-			// se não encontrou o usuário no AD
-			if (user == null)
-				throw AccountServiceException.NO_SUCH_ACCOUNT(account.getUid());
-			
-			// faz a mudança da senha do usuário
-			rep.changeUserPassword(user, newPassword);
-			
-			// desconecta
-			adTree.disconnect();
+			try {
+				/*
+				 * Modifica a senha diretamente no DN armazenado na conta,
+				 * buscando o usuário no AD apenas se o DN não existir mais.
+				 */
+				ADUsersRepository rep = adTree.getUsersRepository();
+				boolean found = ADUserLocator.modifyUser(rep, account, new ADUserLocator.UserOperation() {
+					@Override
+					public void apply(ADUsersRepository rep, ADUser user) throws Exception {
+						// faz a mudança da senha do usuário
+						rep.changeUserPassword(user, newPassword);
+					}
+				});
+
+				// se não encontrou o usuário no AD
+				if (!found)
+					throw AccountServiceException.NO_SUCH_ACCOUNT(account.getUid());
+			} finally {
+				// devolve a conexão
+				ADConnectionManager.releaseDomainADConnection(adTree);
+			}
 		} catch (Exception ex) {
 			throw AccountServiceException.PERM_DENIED(ex.getMessage());
 		}
@@ -84,12 +84,13 @@ public class ADChangePasswordListener extends ChangePasswordListener {
 	}
 	
 	/**
-	 * Função que será chamada após a mudança da senha do usuário. Neste caso,
-	 * não é necessário realizar ações após a mudança da senha.
+	 * Função que será chamada após a mudança da senha do usuário. Remove
+	 * novamente a autenticação armazenada da conta, já que uma autenticação
+	 * com a senha anterior pode ter sido armazenada durante a mudança.
 	 */
 	@Override
 	public void postModify(Account account, String newPassword, Map context) {
-		// não faz nada
+		ADCredentialCache.invalidate(account);
 	}
 
 }
@@ -1,18 +1,39 @@
 package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADTree;
 
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.account.Domain;
 
 /**
- * Classe responsável em gerenciar as conexões do Zimbra com o AD.
- * 
+ * Classe responsável em gerenciar as conexões do Zimbra com o AD. As conexões
+ * de cada domínio são mantidas em um conjunto de conexões reutilizáveis (veja
+ * {@link ADConnectionPool}), evitando que cada operação tenha que abrir e
+ * autenticar uma nova conexão com o servidor. As conexões retornadas pela
+ * função {@link #openDomainADConnection(Domain)} deverão ser devolvidas
+ * através da função {@link #releaseDomainADConnection(ADTree)}.
+ *
  * @author Luiz Carlos Viana Melo
  *
  */
 public class ADConnectionManager {
 
+	/**
+	 * Intervalo, em milissegundos, da verificação das conexões sem uso.
+	 */
+	private static final long EVICTION_INTERVAL = 60000;
+
+	private static final ConcurrentMap<String, ADConnectionPool> CONNECTION_POOLS = new ConcurrentHashMap<>();
+
+	private static ScheduledExecutorService evictionExecutor = null;
+
 	/**
 	 * Função que abre uma conexão com o AD com base nas configurações de
 	 * provisionamento automático do domínio.
@@ -22,15 +43,32 @@ public class ADConnectionManager {
 	 * @throws Exception Lança uma exceção quando ocorre um erro na conexão.
 	 */
 	public static ADTree openDomainADConnection(Domain domain) throws Exception {
+		// realiza uma conexão não segura
+		return openDomainADConnection(domain, false);
+	}
+
+	/**
+	 * Função que abre uma conexão com o AD com base nas configurações de
+	 * provisionamento automático do domínio. A conexão é retirada do conjunto
+	 * de conexões do domínio, sendo aberta uma nova conexão apenas quando não
+	 * existirem conexões livres.
+	 * @param domain O domínio configurado para provisionamento automático.
+	 * @param ssl Indica se será realizada uma conexão segura com o servidor.
+	 * @return Retorna o objeto da conexão com a árvore do AD. Caso o domínio
+	 * não esteja configurado, retorna <code>null</code>.
+	 * @throws Exception Lança uma exceção quando ocorre um erro na conexão ou
+	 * quando não houver conexões livres dentro do tempo de espera.
+	 */
+	public static ADTree openDomainADConnection(Domain domain, boolean ssl) throws Exception {
 		// se conectando com o servidor AD do domínio
 		String adURL = domain.getAutoProvLdapURL();
 		String adBindDn = domain.getAutoProvLdapAdminBindDn();
 		String adBindPassword = domain.getAutoProvLdapAdminBindPassword();
 		String adSearchBase = domain.getAutoProvLdapSearchBase();
-		
+
 		/*
 		 * Se estes atributos não estiverem ajustados, então não realiza a
-		 * conexão. 
+		 * conexão.
 		 */
 		if (adURL == null || adURL.equals("") ||
 				adBindDn == null || adBindDn.equals("") ||
@@ -38,20 +76,148 @@ public class ADConnectionManager {
 				adSearchBase == null || adSearchBase.equals(""))
 			return null;
 
-		ZimbraLog.autoprov.debug("AD - Connecting to AD - Url: %s | BindDn: %s | BindPassword: %s | " +
-				"SearchBase: %s", adURL, adBindDn, adBindPassword, adSearchBase);
+		ADConnectionPool pool = getConnectionPool(adURL, adSearchBase, adBindDn, adBindPassword, ssl);
 
-		ADTree adTree = new ADTree(
-				adURL,
-				adSearchBase,
-				adBindDn,
-				adBindPassword);
-		adTree.connect();
+		ADTree adTree = pool.borrow();
 		// caso não consiga se conectar
-		if (!adTree.isConnected())
+		if (!adTree.isConnected()) {
+			releaseDomainADConnection(adTree);
 			return null;
+		}
 
 		return adTree;
 	}
-	
+
+	/**
+	 * Função que devolve uma conexão aberta pela função
+	 * {@link #openDomainADConnection(Domain, boolean)}. Caso a conexão não
+	 * pertença a um conjunto de conexões, ela será fechada.
+	 * @param adTree O objeto da conexão com a árvore do AD. Caso seja
+	 * <code>null</code>, a função não faz nada.
+	 */
+	public static void releaseDomainADConnection(ADTree adTree) {
+		if (adTree == null)
+			return;
+
+		if (ADConnectionPool.releaseConnection(adTree))
+			return;
+
+		try {
+			adTree.disconnect();
+		} catch (Exception e) {
+			ZimbraLog.autoprov.debug("AD - Error closing connection: %s", e.getMessage());
+		}
+	}
+
+	/**
+	 * Função que valida as credenciais de um usuário em uma conexão de
+	 * autenticação com o AD, mantida aberta no modo <i>Fast Bind</i> (veja
+	 * {@link ADConnectionPool#bind(String, String)}).
+	 * @param ldapUrls Os endereços dos servidores AD, que serão tentados em
+	 * ordem na abertura das conexões. Devem ser endereços
+	 * <code>ldaps://</code>, já que as conexões são sempre abertas com SSL.
+	 * @param bindDn O DN do usuário.
+	 * @param password A senha do usuário.
+	 * @throws javax.naming.AuthenticationException Lança exceção quando as
+	 * credenciais forem inválidas.
+	 * @throws Exception Lança exceção quando ocorrer um erro de comunicação
+	 * com o servidor.
+	 */
+	static void authenticate(String[] ldapUrls, String bindDn, String password) throws Exception {
+		StringBuilder urls = new StringBuilder();
+		for (String url : ldapUrls) {
+			if (urls.length() > 0)
+				urls.append(' ');
+			urls.append(url);
+		}
+		String key = String.format("auth|%s", urls);
+
+		ADConnectionPool pool = CONNECTION_POOLS.get(key);
+		if (pool == null) {
+			ZimbraLog.account.debug("AD - Creating authentication connection pool - Url: %s", urls);
+
+			ADConnectionPool newPool = new ADConnectionPool(urls.toString(), true);
+			pool = CONNECTION_POOLS.putIfAbsent(key, newPool);
+			if (pool == null) {
+				pool = newPool;
+				startEvictionExecutor();
+			}
+		}
+
+		pool.bind(bindDn, password);
+	}
+
+	/**
+	 * Função privada que retorna o conjunto de conexões associado aos
+	 * parâmetros passados. Caso este não exista ou a senha do usuário tenha
+	 * sido alterada, será criado um novo conjunto.
+	 */
+	private static ADConnectionPool getConnectionPool(String adURL, String adSearchBase, String adBindDn,
+			String adBindPassword, boolean ssl) {
+		String key = String.format("%s|%s|%s|%b", adURL, adSearchBase, adBindDn, ssl);
+
+		while (true) {
+			ADConnectionPool pool = CONNECTION_POOLS.get(key);
+			if (pool != null && pool.getLdapBindPassword().equals(adBindPassword))
+				return pool;
+
+			ZimbraLog.autoprov.debug("AD - Creating connection pool - Url: %s | BindDn: %s | SearchBase: %s | " +
+					"SSL: %b", adURL, adBindDn, adSearchBase, ssl);
+
+			ADConnectionPool newPool = new ADConnectionPool(adURL, adSearchBase, adBindDn, adBindPassword, ssl);
+			if (pool == null) {
+				if (CONNECTION_POOLS.putIfAbsent(key, newPool) != null)
+					continue;
+			} else {
+				// a senha foi alterada, logo as conexões antigas são descartadas
+				if (!CONNECTION_POOLS.replace(key, pool, newPool))
+					continue;
+				pool.close();
+			}
+
+			startEvictionExecutor();
+			return newPool;
+		}
+	}
+
+	/**
+	 * Função privada que inicia a tarefa que fecha as conexões sem uso.
+	 */
+	private static synchronized void startEvictionExecutor() {
+		if (evictionExecutor != null)
+			return;
+
+		evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ADZimbraSync-ConnectionEvictor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				for (ADConnectionPool pool : CONNECTION_POOLS.values()) {
+					pool.evictIdleConnections();
+					pool.logBindStatistics();
+				}
+			}
+		}, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Função que fecha todas as conexões livres e finaliza a tarefa que fecha
+	 * as conexões sem uso. Deve ser chamada na finalização da extensão.
+	 */
+	public static synchronized void shutdown() {
+		if (evictionExecutor != null) {
+			evictionExecutor.shutdownNow();
+			evictionExecutor = null;
+		}
+
+		for (ADConnectionPool pool : CONNECTION_POOLS.values())
+			pool.close();
+		CONNECTION_POOLS.clear();
+	}
 }
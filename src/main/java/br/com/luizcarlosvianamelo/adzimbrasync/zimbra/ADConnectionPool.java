@@ -0,0 +1,356 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
+
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.AuthenticationException;
+import javax.naming.NamingException;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADTree;
+
+import com.zimbra.common.util.ZimbraLog;
+
+/**
+ * Classe que mantém um conjunto limitado de conexões abertas com um servidor
+ * AD, permitindo que estas sejam reutilizadas pelas operações realizadas
+ * pela extensão. Cada conjunto está associado a um endereço, usuário de
+ * consulta e base de busca do AD.
+ * <p>As conexões livres são validadas antes de serem reutilizadas quando
+ * ficarem sem uso por mais tempo que o intervalo de validação e são fechadas
+ * quando ficarem sem uso por mais tempo que o limite configurado ou quando
+ * atingirem o tempo máximo de vida. Caso todas as conexões estejam em uso, a
+ * solicitação de uma conexão aguardará até que uma delas seja liberada ou que
+ * o tempo de espera seja atingido.</p>
+ * <p>Os conjuntos de autenticação abrem as conexões sem usuário de consulta e
+ * no modo <i>Fast Bind</i> do AD, sendo utilizados apenas para validar as
+ * credenciais dos usuários através da função {@link #bind(String, String)}.
+ * Assim, cada autenticação não precisa abrir uma nova conexão com o
+ * servidor.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+class ADConnectionPool {
+
+	private final String ldapUrl;
+	private final String ldapSearchBase;
+	private final String ldapBindDn;
+	private final String ldapBindPassword;
+	private final boolean ssl;
+	private final boolean fastBind;
+
+	private final long borrowTimeout;
+	private final long idleTimeout;
+	private final long maxLifetime;
+	private final long validationInterval;
+
+	/**
+	 * Limita a quantidade de conexões abertas, estejam elas livres ou em uso.
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * Conexões livres. A última conexão liberada é a primeira a ser
+	 * reutilizada, permitindo que as conexões menos utilizadas expirem.
+	 */
+	private final LinkedBlockingDeque<PooledADTree> idleConnections = new LinkedBlockingDeque<>();
+
+	private volatile boolean closed;
+
+	/*
+	 * Estatísticas das autenticações realizadas desde o último registro no
+	 * log.
+	 */
+	private final AtomicLong bindCount = new AtomicLong();
+	private final AtomicLong bindFailures = new AtomicLong();
+	private final AtomicLong bindTotalTime = new AtomicLong();
+	private final AtomicLong bindMaxTime = new AtomicLong();
+
+	/**
+	 * Construtor da classe. Os limites do conjunto são lidos das configurações
+	 * da extensão (veja {@link ADLocalConfig}).
+	 * @param ldapUrl O endereço do servidor AD.
+	 * @param ldapSearchBase A base de busca na árvore do AD.
+	 * @param ldapBindDn O DN do usuário utilizado nas conexões.
+	 * @param ldapBindPassword A senha do usuário.
+	 * @param ssl Indica se as conexões serão seguras.
+	 */
+	ADConnectionPool(String ldapUrl, String ldapSearchBase, String ldapBindDn, String ldapBindPassword,
+			boolean ssl) {
+		this(ldapUrl, ldapSearchBase, ldapBindDn, ldapBindPassword, ssl, false,
+				ADLocalConfig.getInt(ADLocalConfig.LDAP_POOL_MAX_SIZE, 8));
+	}
+
+	/**
+	 * Construtor de um conjunto de conexões de autenticação, que são abertas
+	 * no modo <i>Fast Bind</i>. A quantidade máxima de conexões é lida da
+	 * configuração {@value ADLocalConfig#AUTH_POOL_MAX_SIZE}.
+	 * @param ldapUrl O endereço do servidor AD. Podem ser informados vários
+	 * endereços separados por espaço, que serão tentados em ordem.
+	 * @param ssl Indica se as conexões serão seguras.
+	 */
+	ADConnectionPool(String ldapUrl, boolean ssl) {
+		this(ldapUrl, "", "", "", ssl, true, ADLocalConfig.getInt(ADLocalConfig.AUTH_POOL_MAX_SIZE, 16));
+	}
+
+	/**
+	 * Construtor privado que inicializa todos os parâmetros do conjunto.
+	 */
+	private ADConnectionPool(String ldapUrl, String ldapSearchBase, String ldapBindDn, String ldapBindPassword,
+			boolean ssl, boolean fastBind, int maxSize) {
+		this.ldapUrl = ldapUrl;
+		this.ldapSearchBase = ldapSearchBase;
+		this.ldapBindDn = ldapBindDn;
+		this.ldapBindPassword = ldapBindPassword;
+		this.ssl = ssl;
+		this.fastBind = fastBind;
+
+		this.permits = new Semaphore(Math.max(1, maxSize), true);
+		this.borrowTimeout = ADLocalConfig.getLong(ADLocalConfig.LDAP_POOL_BORROW_TIMEOUT, 10000);
+		this.idleTimeout = ADLocalConfig.getLong(ADLocalConfig.LDAP_POOL_IDLE_TIMEOUT, 300000);
+		this.maxLifetime = ADLocalConfig.getLong(ADLocalConfig.LDAP_POOL_MAX_LIFETIME, 1800000);
+		this.validationInterval = ADLocalConfig.getLong(ADLocalConfig.LDAP_POOL_VALIDATION_INTERVAL, 30000);
+
+		this.closed = false;
+	}
+
+	/**
+	 * Retorna a senha do usuário utilizado nas conexões.
+	 */
+	String getLdapBindPassword() {
+		return ldapBindPassword;
+	}
+
+	/**
+	 * Função que retorna uma conexão do conjunto. Caso não existam conexões
+	 * livres válidas, será aberta uma nova conexão. A conexão retornada deverá
+	 * ser devolvida através da função {@link #releaseConnection(ADTree)}.
+	 * @return Retorna a árvore do AD conectada.
+	 * @throws Exception Lança exceção quando não houver uma conexão livre
+	 * dentro do tempo de espera ou quando não for possível abrir uma nova
+	 * conexão.
+	 */
+	ADTree borrow() throws Exception {
+		if (this.closed)
+			throw new IllegalStateException("AD connection pool is closed");
+
+		// aguarda uma conexão ser liberada
+		if (!this.permits.tryAcquire(this.borrowTimeout, TimeUnit.MILLISECONDS))
+			throw new Exception(String.format("Timeout waiting for a connection to %s", this.ldapUrl));
+
+		try {
+			// procura uma conexão livre que ainda seja válida
+			PooledADTree adTree;
+			while ((adTree = this.idleConnections.pollFirst()) != null) {
+				if (this.isReusable(adTree, System.currentTimeMillis()))
+					return adTree;
+				this.closeConnection(adTree);
+			}
+
+			// abre uma nova conexão
+			adTree = new PooledADTree(this);
+			adTree.connect(this.ssl);
+			if (this.fastBind) {
+				try {
+					adTree.enableFastBind();
+				} catch (Exception e) {
+					this.closeConnection(adTree);
+					throw e;
+				}
+			}
+			return adTree;
+		} catch (Exception e) {
+			this.permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Função que valida as credenciais de um usuário utilizando uma conexão
+	 * de autenticação do conjunto. A conexão é devolvida ao conjunto após a
+	 * validação, inclusive quando as credenciais forem inválidas.
+	 * @param bindDn O DN do usuário.
+	 * @param password A senha do usuário.
+	 * @throws AuthenticationException Lança exceção quando as credenciais
+	 * forem inválidas. A mensagem desta contém o código de erro do AD.
+	 * @throws Exception Lança exceção quando não houver uma conexão livre ou
+	 * quando ocorrer um erro de comunicação com o servidor.
+	 */
+	void bind(String bindDn, String password) throws Exception {
+		if (!this.fastBind)
+			throw new IllegalStateException("Not an authentication connection pool");
+
+		ADTree adTree = this.borrow();
+		long startTime = System.nanoTime();
+		boolean success = false;
+		try {
+			adTree.bind(bindDn, password);
+			success = true;
+		} catch (AuthenticationException e) {
+			// a conexão continua válida quando as credenciais estão incorretas
+			throw e;
+		} catch (NamingException e) {
+			// descarta a conexão, que será fechada ao ser devolvida
+			this.closeConnection(adTree);
+			throw e;
+		} finally {
+			long elapsedTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+			this.recordBind(elapsedTime, success);
+			ZimbraLog.account.debug("AD - Bind of %s on %s %s in %d ms", bindDn, this.ldapUrl,
+					success ? "succeeded" : "failed", elapsedTime);
+
+			releaseConnection(adTree);
+		}
+	}
+
+	/**
+	 * Função privada que acumula o tempo de uma autenticação nas
+	 * estatísticas do conjunto.
+	 */
+	private void recordBind(long elapsedTime, boolean success) {
+		this.bindCount.incrementAndGet();
+		if (!success)
+			this.bindFailures.incrementAndGet();
+		this.bindTotalTime.addAndGet(elapsedTime);
+
+		long maxTime;
+		do {
+			maxTime = this.bindMaxTime.get();
+		} while (elapsedTime > maxTime && !this.bindMaxTime.compareAndSet(maxTime, elapsedTime));
+	}
+
+	/**
+	 * Função que registra no log as estatísticas das autenticações realizadas
+	 * desde o último registro, reiniciando-as em seguida. Não registra nada
+	 * caso nenhuma autenticação tenha sido realizada.
+	 */
+	void logBindStatistics() {
+		long count = this.bindCount.getAndSet(0);
+		if (count == 0)
+			return;
+
+		long failures = this.bindFailures.getAndSet(0);
+		long totalTime = this.bindTotalTime.getAndSet(0);
+		long maxTime = this.bindMaxTime.getAndSet(0);
+		ZimbraLog.account.info("AD - Binds on %s: %d (%d failed) | Avg: %d ms | Max: %d ms | " +
+				"Idle connections: %d", this.ldapUrl, count, failures, totalTime / count, maxTime,
+				this.idleConnections.size());
+	}
+
+	/**
+	 * Função que devolve uma conexão para o conjunto ao qual ela pertence.
+	 * @param adTree A conexão retornada pela função {@link #borrow()}.
+	 * @return Retorna <code>true</code> caso a conexão pertença a um conjunto.
+	 * Caso contrário, retorna <code>false</code> e a conexão não é alterada.
+	 */
+	static boolean releaseConnection(ADTree adTree) {
+		if (!(adTree instanceof PooledADTree))
+			return false;
+
+		PooledADTree pooled = (PooledADTree) adTree;
+		pooled.pool.release(pooled);
+		return true;
+	}
+
+	/**
+	 * Função privada que devolve uma conexão para o conjunto.
+	 */
+	private void release(PooledADTree pooled) {
+		// ignora as conexões já devolvidas, inclusive por outra thread ao mesmo tempo
+		if (!pooled.borrowed.compareAndSet(true, false))
+			return;
+
+		pooled.lastUsed = System.currentTimeMillis();
+
+		// descarta a conexão se o conjunto tiver sido fechado ou se ela expirou
+		if (this.closed || !pooled.isConnected()
+				|| pooled.lastUsed - pooled.created >= this.maxLifetime)
+			this.closeConnection(pooled);
+		else
+			this.idleConnections.offerFirst(pooled);
+
+		this.permits.release();
+	}
+
+	/**
+	 * Função privada que informa se uma conexão livre pode ser reutilizada.
+	 */
+	private boolean isReusable(PooledADTree adTree, long now) {
+		if (!adTree.isConnected())
+			return false;
+		if (now - adTree.created >= this.maxLifetime || now - adTree.lastUsed >= this.idleTimeout)
+			return false;
+
+		// valida a conexão se ela ficou um tempo sem uso
+		if (now - adTree.lastUsed >= this.validationInterval && !adTree.isAlive()) {
+			ZimbraLog.autoprov.debug("AD - Discarding stale connection to %s", this.ldapUrl);
+			return false;
+		}
+
+		adTree.borrowed.set(true);
+		return true;
+	}
+
+	/**
+	 * Função que fecha as conexões livres que ficaram sem uso por mais tempo
+	 * que o limite configurado ou que atingiram o tempo máximo de vida.
+	 */
+	void evictIdleConnections() {
+		long now = System.currentTimeMillis();
+		Iterator<PooledADTree> it = this.idleConnections.iterator();
+		while (it.hasNext()) {
+			PooledADTree adTree = it.next();
+			if (now - adTree.created >= this.maxLifetime || now - adTree.lastUsed >= this.idleTimeout) {
+				// a conexão pode ter sido retirada por outra thread
+				if (this.idleConnections.removeFirstOccurrence(adTree))
+					this.closeConnection(adTree);
+			}
+		}
+	}
+
+	/**
+	 * Função que fecha todas as conexões livres. As conexões em uso serão
+	 * fechadas quando forem devolvidas.
+	 */
+	void close() {
+		this.closed = true;
+
+		PooledADTree adTree;
+		while ((adTree = this.idleConnections.pollFirst()) != null)
+			this.closeConnection(adTree);
+	}
+
+	/**
+	 * Função privada que fecha uma conexão ignorando os erros.
+	 */
+	private void closeConnection(ADTree adTree) {
+		try {
+			adTree.disconnect();
+		} catch (Exception e) {
+			ZimbraLog.autoprov.debug("AD - Error closing connection to %s: %s", this.ldapUrl, e.getMessage());
+		}
+	}
+
+	/**
+	 * Árvore do AD que pertence a um conjunto de conexões.
+	 */
+	private static class PooledADTree extends ADTree {
+
+		final ADConnectionPool pool;
+		final long created;
+		volatile long lastUsed;
+		final AtomicBoolean borrowed = new AtomicBoolean(true);
+
+		PooledADTree(ADConnectionPool pool) {
+			super(pool.ldapUrl, pool.ldapSearchBase, pool.ldapBindDn, pool.ldapBindPassword);
+
+			this.pool = pool;
+			this.created = System.currentTimeMillis();
+			this.lastUsed = this.created;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.cs.account.Account;
+
+/**
+ * Classe que mantém em memória as autenticações realizadas com sucesso no AD
+ * por um curto período, evitando que clientes que se autenticam com
+ * frequência (como os clientes móveis) gerem uma operação de bind no AD a
+ * cada autenticação. Apenas as autenticações bem sucedidas são armazenadas,
+ * logo as autenticações com senha incorreta sempre são verificadas no AD.
+ * <p>A senha não é armazenada, apenas o seu <i>hash</i> PBKDF2 com um
+ * <i>salt</i> aleatório por entrada. As entradas expiram após o tempo
+ * configurado em {@value ADLocalConfig#AUTH_CACHE_TTL}, são removidas quando
+ * a senha é alterada através do Zimbra e, quando o limite de entradas for
+ * atingido, as menos utilizadas são descartadas. Uma senha alterada
+ * diretamente no AD continua sendo aceita até que a entrada expire.</p>
+ * <p>O armazenamento está desabilitado quando o tempo de expiração for menor
+ * ou igual a zero (padrão).</p>
+ * <p>As funções estáticas utilizam uma instância compartilhada criada a partir
+ * das configurações do {@link ADLocalConfig}, que é recriada quando estas
+ * configurações são alteradas.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+public class ADCredentialCache {
+
+	private static final String HASH_ALGORITHM = "PBKDF2WithHmacSHA1";
+	private static final int SALT_LENGTH = 16;
+	private static final int HASH_LENGTH = 160;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	/**
+	 * Instância compartilhada, criada a partir das configurações atuais.
+	 */
+	private static ADCredentialCache sharedCache;
+
+	private final long ttl;
+	private final int maxSize;
+	private final int iterations;
+
+	/**
+	 * Autenticações armazenadas, indexadas pelo identificador da conta. A
+	 * lista é ordenada pelo acesso, permitindo descartar as entradas menos
+	 * utilizadas. Também é utilizada como trava.
+	 */
+	private final LinkedHashMap<String, CachedCredential> credentials;
+
+	/**
+	 * Construtor da classe.
+	 * @param ttl O tempo, em milissegundos, que as autenticações são
+	 * mantidas. O armazenamento está desabilitado quando for menor ou igual a
+	 * zero.
+	 * @param maxSize A quantidade máxima de autenticações armazenadas.
+	 * @param iterations A quantidade de iterações do <i>hash</i> das senhas.
+	 */
+	public ADCredentialCache(long ttl, int maxSize, int iterations) {
+		this.ttl = ttl;
+		this.maxSize = Math.max(1, maxSize);
+		this.iterations = Math.max(1, iterations);
+		this.credentials = new LinkedHashMap<String, CachedCredential>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedCredential> eldest) {
+				return this.size() > ADCredentialCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Informa se o armazenamento das autenticações está habilitado.
+	 */
+	public boolean isEnabled() {
+		return this.ttl > 0;
+	}
+
+	/**
+	 * Função que verifica se a senha corresponde a uma autenticação bem
+	 * sucedida da conta que ainda não expirou.
+	 * @param accountId O identificador da conta.
+	 * @param password A senha informada pelo usuário.
+	 * @return Retorna <code>true</code> caso a autenticação esteja armazenada.
+	 * Caso contrário ou se o armazenamento estiver desabilitado, retorna
+	 * <code>false</code>.
+	 */
+	public boolean verify(String accountId, String password) {
+		if (!this.isEnabled() || accountId == null || password == null || password.isEmpty())
+			return false;
+
+		CachedCredential credential;
+		synchronized (this.credentials) {
+			credential = this.credentials.get(accountId);
+			if (credential == null)
+				return false;
+			if (credential.expireTime <= System.currentTimeMillis()) {
+				this.credentials.remove(accountId);
+				return false;
+			}
+		}
+
+		// o hash é calculado fora da trava, já que é propositalmente lento
+		byte[] hash = computeHash(password, credential.salt, credential.iterations);
+		return hash != null && MessageDigest.isEqual(hash, credential.hash);
+	}
+
+	/**
+	 * Função que armazena uma autenticação bem sucedida da conta. Não faz nada
+	 * caso o armazenamento esteja desabilitado.
+	 * @param accountId O identificador da conta.
+	 * @param password A senha validada no AD.
+	 */
+	public void put(String accountId, String password) {
+		if (!this.isEnabled() || accountId == null || password == null || password.isEmpty())
+			return;
+
+		byte[] salt = new byte[SALT_LENGTH];
+		RANDOM.nextBytes(salt);
+		byte[] hash = computeHash(password, salt, this.iterations);
+		if (hash == null)
+			return;
+
+		CachedCredential credential = new CachedCredential(salt, this.iterations, hash,
+				System.currentTimeMillis() + this.ttl);
+		synchronized (this.credentials) {
+			this.credentials.put(accountId, credential);
+		}
+	}
+
+	/**
+	 * Função que remove a autenticação armazenada da conta. Deve ser chamada
+	 * quando a senha da conta for alterada.
+	 * @param accountId O identificador da conta.
+	 */
+	public void invalidate(String accountId) {
+		synchronized (this.credentials) {
+			this.credentials.remove(accountId);
+		}
+	}
+
+	/**
+	 * Retorna a quantidade de autenticações armazenadas, incluindo as que
+	 * expiraram e ainda não foram removidas.
+	 */
+	public int size() {
+		synchronized (this.credentials) {
+			return this.credentials.size();
+		}
+	}
+
+	/**
+	 * Função que verifica a senha na instância compartilhada.
+	 * @param acct A conta do Zimbra.
+	 * @param password A senha informada pelo usuário.
+	 * @return Retorna <code>true</code> caso a autenticação esteja armazenada.
+	 * @see #verify(String, String)
+	 */
+	static boolean verify(Account acct, String password) {
+		if (!getSharedCache().verify(acct.getId(), password))
+			return false;
+
+		ZimbraLog.account.debug("AD - Account \"%s\" authenticated by cached credential", acct.getName());
+		return true;
+	}
+
+	/**
+	 * Função que armazena a autenticação na instância compartilhada.
+	 * @param acct A conta do Zimbra.
+	 * @param password A senha validada no AD.
+	 * @see #put(String, String)
+	 */
+	static void put(Account acct, String password) {
+		getSharedCache().put(acct.getId(), password);
+	}
+
+	/**
+	 * Função que remove a autenticação da instância compartilhada.
+	 * @param acct A conta do Zimbra.
+	 * @see #invalidate(String)
+	 */
+	static void invalidate(Account acct) {
+		getSharedCache().invalidate(acct.getId());
+	}
+
+	/**
+	 * Função privada que retorna a instância compartilhada. Caso as
+	 * configurações tenham sido alteradas, uma nova instância é criada e as
+	 * autenticações armazenadas são descartadas.
+	 */
+	private static synchronized ADCredentialCache getSharedCache() {
+		long ttl = ADLocalConfig.getLong(ADLocalConfig.AUTH_CACHE_TTL, 0);
+		int maxSize = Math.max(1, ADLocalConfig.getInt(ADLocalConfig.AUTH_CACHE_MAX_SIZE, 10000));
+		int iterations = Math.max(1, ADLocalConfig.getInt(ADLocalConfig.AUTH_CACHE_ITERATIONS, 10000));
+
+		if (sharedCache == null || sharedCache.ttl != ttl || sharedCache.maxSize != maxSize
+				|| sharedCache.iterations != iterations)
+			sharedCache = new ADCredentialCache(ttl, maxSize, iterations);
+		return sharedCache;
+	}
+
+	/**
+	 * Função privada que calcula o hash PBKDF2 da senha.
+	 * @return Retorna o hash. Caso não seja possível calculá-lo, retorna
+	 * <code>null</code>.
+	 */
+	private static byte[] computeHash(String password, byte[] salt, int iterations) {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_LENGTH);
+		try {
+			return SecretKeyFactory.getInstance(HASH_ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (Exception e) {
+			ZimbraLog.account.warn("AD - Can't compute credential hash: %s", e.getMessage());
+			return null;
+		} finally {
+			spec.clearPassword();
+		}
+	}
+
+	/**
+	 * Autenticação armazenada de uma conta.
+	 */
+	private static class CachedCredential {
+
+		final byte[] salt;
+		final int iterations;
+		final byte[] hash;
+		final long expireTime;
+
+		CachedCredential(byte[] salt, int iterations, byte[] hash, long expireTime) {
+			this.salt = salt;
+			this.iterations = iterations;
+			this.hash = hash;
+			this.expireTime = expireTime;
+		}
+	}
+}
@@ -3,7 +3,10 @@ package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
 import java.util.List;
 import java.util.Map;
 
+import javax.naming.AuthenticationException;
+
 import com.zimbra.common.service.ServiceException;
+import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.account.Account;
 import com.zimbra.cs.account.AccountServiceException;
 import com.zimbra.cs.account.Domain;
@@ -22,6 +25,35 @@ import com.zimbra.cs.ldap.LdapException;
  */
 public class ADCustomAuth extends ZimbraCustomAuth {
 
+	/**
+	 * Código de erro do AD que indica que o usuário deve mudar a senha no
+	 * próximo login.
+	 */
+	private static final String PASSWORD_MUST_CHANGE = "NT_STATUS_PASSWORD_MUST_CHANGE";
+
+	/**
+	 * Código de erro do AD, retornado na mensagem da operação de bind
+	 * (<code>data 773</code>), que indica que o usuário deve mudar a senha no
+	 * próximo login.
+	 */
+	private static final String PASSWORD_MUST_CHANGE_DATA = "data 773";
+
+	/**
+	 * Código de erro do AD, retornado na mensagem da operação de bind
+	 * (<code>data 525</code>), que indica que o usuário não foi encontrado.
+	 */
+	private static final String USER_NOT_FOUND_DATA = "data 525";
+
+	/**
+	 * Atributo do domínio com os endereços do AD utilizados na autenticação.
+	 */
+	private static final String AUTH_LDAP_URL_ATTR = "zimbraAuthLdapURL";
+
+	/**
+	 * Prefixo dos endereços do AD acessados através de SSL.
+	 */
+	private static final String LDAPS_URL_PREFIX = "ldaps://";
+
 	/**
 	 * Construtor da classe.
 	 */
@@ -48,7 +80,7 @@ public class ADCustomAuth extends ZimbraCustomAuth {
 		// verifica se é uma exceção do LDAP e 
 		if (cause != null && cause instanceof LdapException) {
 			//se tem a mensagem tem o código de mudança de senha
-			if (cause.getMessage().contains("NT_STATUS_PASSWORD_MUST_CHANGE"))
+			if (cause.getMessage().contains(PASSWORD_MUST_CHANGE))
 				// marca o usuário para mudança de senha
 				acct.setPasswordMustChange(true);
 		}
@@ -57,6 +89,71 @@ public class ADCustomAuth extends ZimbraCustomAuth {
 			throw ex;		
 	}
 
+	/**
+	 * Função privada que realiza a autenticação do usuário em uma conexão
+	 * mantida aberta no modo <i>Fast Bind</i> do AD, evitando que uma nova
+	 * conexão seja aberta a cada autenticação. A autenticação é feita com o DN
+	 * do usuário armazenado na conta.
+	 * @param acct O objeto da conta do usuário no Zimbra.
+	 * @param domain O domínio da conta.
+	 * @param password A senha digitada pelo usuário.
+	 * @return Retorna <code>true</code> caso a autenticação tenha sido
+	 * realizada. Caso a conta não possua o DN do usuário, o DN não exista no
+	 * AD, o domínio não possua o endereço do AD, algum dos endereços não seja
+	 * <code>ldaps://</code> ou não seja possível utilizar as conexões de
+	 * autenticação, retorna <code>false</code>.
+	 * @throws ServiceException Lança exceção caso as credenciais do usuário
+	 * sejam inválidas.
+	 */
+	private boolean fastBindAuthenticate(Account acct, Domain domain, String password)
+			throws ServiceException {
+		String bindDn = acct.getAuthLdapExternalDn();
+		String[] ldapUrls = domain.getMultiAttr(AUTH_LDAP_URL_ATTR);
+		if (bindDn == null || bindDn.isEmpty() || ldapUrls == null || ldapUrls.length == 0)
+			return false;
+
+		/*
+		 * As conexões de autenticação não fazem o StartTLS configurado no
+		 * domínio, logo são utilizadas apenas com endereços ldaps://, para que
+		 * a senha nunca seja enviada sem criptografia.
+		 */
+		for (String ldapUrl : ldapUrls) {
+			if (!ldapUrl.trim().toLowerCase().startsWith(LDAPS_URL_PREFIX)) {
+				ZimbraLog.account.debug("AD - Fast bind disabled for domain \"%s\": \"%s\" isn't an ldaps:// URL",
+						domain.getName(), ldapUrl);
+				return false;
+			}
+		}
+		if (password == null || password.isEmpty())
+			throw AccountServiceException.AUTH_FAILED(acct.getName());
+
+		try {
+			ADConnectionManager.authenticate(ldapUrls, bindDn, password);
+			ADCredentialCache.put(acct, password);
+		} catch (AuthenticationException ex) {
+			// verifica se o usuário deve mudar a senha no próximo login
+			String message = ex.getMessage();
+			if (message != null && (message.contains(PASSWORD_MUST_CHANGE_DATA)
+					|| message.contains(PASSWORD_MUST_CHANGE)))
+				// marca o usuário para mudança de senha
+				acct.setPasswordMustChange(true);
+			else if (message != null && message.contains(USER_NOT_FOUND_DATA)) {
+				// o DN armazenado pode estar desatualizado (usuário movido ou renomeado)
+				ZimbraLog.account.debug("AD - Stored DN of account \"%s\" not found", acct.getName());
+				return false;
+			} else {
+				ZimbraLog.account.debug("AD - Invalid credentials of account \"%s\": %s", acct.getName(), message);
+				throw AccountServiceException.AUTH_FAILED(acct.getName());
+			}
+		} catch (Exception ex) {
+			// faz a autenticação através de uma nova conexão
+			ZimbraLog.account.warn("AD - Fast bind of account \"%s\" failed: %s", acct.getName(),
+					ex.getMessage());
+			return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Função que realiza a autenticação do usuário com o servidor AD.
 	 * @param acct O objeto da conta do usuário no Zimbra.
@@ -70,15 +167,25 @@ public class ADCustomAuth extends ZimbraCustomAuth {
 	@Override
 	public void authenticate(Account acct, String password,
 			Map<String, Object> authCtxt, List<String> mArgs) throws Exception {
+		// aceita as autenticações bem sucedidas recentes sem consultar o AD
+		if (ADCredentialCache.verify(acct, password))
+			return;
+
 		try {
 			// deixa que a própria classe de provisioning do Zimbra faz a autenticação
 			LdapProv prov = (LdapProv) Provisioning.getInstance();
 			
 			// pega o domínio da conta
 			Domain domain = prov.getDomain(acct);
+
+			// valida as credenciais nas conexões de autenticação mantidas abertas
+			if (ADLocalConfig.getBoolean(ADLocalConfig.AUTH_FAST_BIND, false)
+					&& this.fastBindAuthenticate(acct, domain, password))
+				return;
 			
 			// faz a chamada
 			prov.externalLdapAuth(domain, AuthMech.custom , acct, password, authCtxt);
+			ADCredentialCache.put(acct, password);
 		} catch (AccountServiceException ex) {
 			// trata a exceção
 			this.handleAuthenticationException(acct, ex);
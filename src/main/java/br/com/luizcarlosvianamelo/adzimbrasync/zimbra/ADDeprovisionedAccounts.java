@@ -0,0 +1,146 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Classe que armazena os e-mails das contas de um domínio bloqueadas ou
+ * fechadas pela sincronização, por terem os seus usuários desabilitados ou
+ * removidos do AD. Apenas estas contas são reativadas quando os seus usuários
+ * voltam a ser provisionados, logo as contas bloqueadas ou fechadas pelo
+ * administrador do Zimbra por outros motivos não são alteradas.
+ * <p>Os e-mails são gravados em um arquivo na pasta dos estados da
+ * sincronização (veja {@link ADSyncState#getStateDirectory()}), que é
+ * reescrito a cada alteração, já que as contas são bloqueadas raramente.
+ * Assim, uma conta bloqueada continua marcada mesmo que a sincronização seja
+ * interrompida em seguida.</p>
+ * <p>As funções desta classe podem ser chamadas simultaneamente por várias
+ * threads.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+public class ADDeprovisionedAccounts {
+
+	private final File file;
+
+	private final Set<String> mails;
+
+	/**
+	 * Construtor privado da classe. Os objetos devem ser criados através da
+	 * função {@link #load(File, String)}.
+	 */
+	private ADDeprovisionedAccounts(File file) {
+		this.file = file;
+		this.mails = new TreeSet<>();
+	}
+
+	/**
+	 * Função que faz a leitura das contas marcadas de um domínio na pasta dos
+	 * estados da sincronização.
+	 * @param domainName O nome do domínio.
+	 * @return Retorna as contas marcadas do domínio.
+	 * @throws IOException Lança exceção quando não for possível ler o arquivo.
+	 */
+	static ADDeprovisionedAccounts load(String domainName) throws IOException {
+		return load(ADSyncState.getStateDirectory(), domainName);
+	}
+
+	/**
+	 * Função que faz a leitura das contas marcadas de um domínio.
+	 * @param dir A pasta onde o arquivo é armazenado.
+	 * @param domainName O nome do domínio.
+	 * @return Retorna as contas marcadas do domínio. Caso o arquivo não
+	 * exista, nenhuma conta estará marcada.
+	 * @throws IOException Lança exceção quando não for possível ler o arquivo.
+	 */
+	public static ADDeprovisionedAccounts load(File dir, String domainName) throws IOException {
+		ADDeprovisionedAccounts accounts = new ADDeprovisionedAccounts(
+				new File(dir, domainName + ".deprovisioned"));
+		if (!accounts.file.exists())
+			return accounts;
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(accounts.file),
+				StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty())
+					accounts.mails.add(line.toLowerCase());
+			}
+		}
+		return accounts;
+	}
+
+	/**
+	 * Informa se a conta foi bloqueada ou fechada pela sincronização.
+	 * @param mail O e-mail da conta.
+	 */
+	public boolean contains(String mail) {
+		if (mail == null)
+			return false;
+		synchronized (this.mails) {
+			return this.mails.contains(mail.toLowerCase());
+		}
+	}
+
+	/**
+	 * Função que marca a conta como bloqueada ou fechada pela sincronização.
+	 * @param mail O e-mail da conta.
+	 * @throws IOException Lança exceção quando não for possível gravar o
+	 * arquivo.
+	 */
+	public void add(String mail) throws IOException {
+		if (mail == null)
+			return;
+		synchronized (this.mails) {
+			if (this.mails.add(mail.toLowerCase()))
+				this.save();
+		}
+	}
+
+	/**
+	 * Função que remove a marca da conta, como quando ela é reativada.
+	 * @param mail O e-mail da conta.
+	 * @throws IOException Lança exceção quando não for possível gravar o
+	 * arquivo.
+	 */
+	public void remove(String mail) throws IOException {
+		if (mail == null)
+			return;
+		synchronized (this.mails) {
+			if (this.mails.remove(mail.toLowerCase()))
+				this.save();
+		}
+	}
+
+	/**
+	 * Função privada que grava as contas marcadas no arquivo. O arquivo é
+	 * gravado em um arquivo temporário e então renomeado, evitando que uma
+	 * lista incompleta seja lida caso ocorra uma falha durante a gravação.
+	 */
+	private void save() throws IOException {
+		File dir = this.file.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException(String.format("Can't create directory %s", dir));
+
+		File tmpFile = new File(dir, this.file.getName() + ".tmp");
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+			for (String mail : this.mails)
+				writer.write(mail + "\n");
+		}
+		Files.move(tmpFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,257 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
+
+import com.zimbra.common.localconfig.LC;
+import com.zimbra.common.util.ZimbraLog;
+
+/**
+ * Classe que faz a leitura das configurações da extensão armazenadas no
+ * <i>local config</i> do Zimbra (<code>localconfig.xml</code>). Todas as
+ * chaves da extensão possuem o prefixo {@value #KEY_PREFIX}, podendo ser
+ * ajustadas através do comando:
+ * <p><code>zmlocalconfig -e adzimbrasync_ldap_pool_max_size=16</code></p>
+ * Caso uma chave não esteja ajustada ou possua um valor inválido, será
+ * utilizado o valor padrão informado.
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+public final class ADLocalConfig {
+
+	/**
+	 * Prefixo das chaves das configurações da extensão.
+	 */
+	public static final String KEY_PREFIX = "adzimbrasync_";
+
+	/**
+	 * Quantidade máxima de conexões abertas com cada servidor AD.
+	 */
+	public static final String LDAP_POOL_MAX_SIZE = "ldap_pool_max_size";
+
+	/**
+	 * Tempo máximo, em milissegundos, de espera por uma conexão livre.
+	 */
+	public static final String LDAP_POOL_BORROW_TIMEOUT = "ldap_pool_borrow_timeout";
+
+	/**
+	 * Tempo, em milissegundos, que uma conexão pode ficar sem uso antes de
+	 * ser fechada.
+	 */
+	public static final String LDAP_POOL_IDLE_TIMEOUT = "ldap_pool_idle_timeout";
+
+	/**
+	 * Tempo máximo de vida, em milissegundos, de uma conexão.
+	 */
+	public static final String LDAP_POOL_MAX_LIFETIME = "ldap_pool_max_lifetime";
+
+	/**
+	 * Tempo, em milissegundos, sem uso a partir do qual a conexão será
+	 * validada antes de ser reutilizada.
+	 */
+	public static final String LDAP_POOL_VALIDATION_INTERVAL = "ldap_pool_validation_interval";
+
+	/**
+	 * Indica se a sincronização periódica deverá buscar apenas as entradas do
+	 * AD modificadas desde a última sincronização.
+	 */
+	public static final String SYNC_INCREMENTAL = "sync_incremental";
+
+	/**
+	 * Intervalo, em milissegundos, entre as sincronizações completas quando a
+	 * sincronização incremental estiver habilitada. Caso seja menor ou igual a
+	 * zero, a sincronização completa será feita apenas quando necessária.
+	 */
+	public static final String SYNC_FULL_INTERVAL = "sync_full_interval";
+
+	/**
+	 * Margem, em milissegundos, subtraída do horário da última sincronização
+	 * quando as entradas modificadas forem buscadas através do atributo
+	 * <code>whenChanged</code>.
+	 */
+	public static final String SYNC_WHEN_CHANGED_SKEW = "sync_when_changed_skew";
+
+	/**
+	 * Indica se as entradas modificadas deverão ser buscadas através do
+	 * controle <i>DirSync</i> do AD em vez do atributo <code>uSNChanged</code>.
+	 * Este modo também permite identificar as entradas removidas do AD.
+	 */
+	public static final String SYNC_DIRSYNC = "sync_dirsync";
+
+	/**
+	 * Indica se a busca com o controle <i>DirSync</i> deverá retornar apenas
+	 * as entradas que o usuário de consulta possui permissão de leitura.
+	 * Caso não esteja habilitada, o usuário deverá possuir a permissão
+	 * <i>Replicating Directory Changes</i> no domínio.
+	 */
+	public static final String SYNC_DIRSYNC_OBJECT_SECURITY = "sync_dirsync_object_security";
+
+	/**
+	 * Modo de resolução dos grupos aninhados nas listas de distribuição. Os
+	 * valores aceitos são {@value #NESTED_GROUPS_NONE}, que considera apenas
+	 * os membros diretos, {@value #NESTED_GROUPS_CLIENT}, que resolve os
+	 * grupos a partir do grafo de todos os grupos lido em uma única busca, e
+	 * {@value #NESTED_GROUPS_SERVER}, que faz uma busca por lista utilizando
+	 * a regra <code>LDAP_MATCHING_RULE_IN_CHAIN</code> do AD. O modo no
+	 * cliente é mais barato quando há muitas listas de distribuição.
+	 */
+	public static final String SYNC_NESTED_GROUPS = "sync_nested_groups";
+
+	public static final String NESTED_GROUPS_NONE = "none";
+	public static final String NESTED_GROUPS_CLIENT = "client";
+	public static final String NESTED_GROUPS_SERVER = "server";
+
+	/**
+	 * Quantidade máxima de domínios provisionados simultaneamente pela
+	 * sincronização periódica. Cada domínio utiliza a sua própria conexão com
+	 * o AD.
+	 */
+	public static final String SYNC_THREADS = "sync_threads";
+
+	/**
+	 * Quantidade de threads que provisionam as contas de cada domínio no
+	 * Zimbra, enquanto os usuários são lidos do AD.
+	 */
+	public static final String SYNC_ACCOUNT_THREADS = "sync_account_threads";
+
+	/**
+	 * Pasta onde é armazenado o estado da sincronização de cada domínio.
+	 */
+	public static final String SYNC_STATE_DIR = "sync_state_dir";
+
+	/**
+	 * Indica se a sincronização periódica deverá armazenar o <i>hash</i> do
+	 * conteúdo provisionado de cada entrada, ignorando as entradas que não
+	 * foram modificadas sem consultar o Zimbra.
+	 */
+	public static final String SYNC_SNAPSHOT = "sync_snapshot";
+
+	/**
+	 * Indica se a sincronização periódica deverá bloquear as contas dos
+	 * usuários desabilitados no AD e fechar as contas dos usuários removidos.
+	 * As contas bloqueadas ou fechadas pela sincronização são reativadas
+	 * quando os usuários forem habilitados ou restaurados no AD (veja
+	 * {@link ADDeprovisionedAccounts}). As contas bloqueadas pelo
+	 * administrador do Zimbra não são reativadas.
+	 */
+	public static final String SYNC_DEPROVISION = "sync_deprovision";
+
+	/**
+	 * Tempo, em milissegundos, que as modificações das contas do Zimbra
+	 * aguardam antes de serem gravadas no AD. As modificações de uma mesma
+	 * conta feitas neste intervalo são gravadas em uma única alteração.
+	 */
+	public static final String WRITEBACK_DELAY = "writeback_delay";
+
+	/**
+	 * Quantidade máxima de contas com modificações aguardando a gravação no
+	 * AD. Quando atingida, as modificações são gravadas durante a alteração
+	 * da conta.
+	 */
+	public static final String WRITEBACK_QUEUE_SIZE = "writeback_queue_size";
+
+	/**
+	 * Quantidade máxima de tentativas de gravação das modificações de uma
+	 * conta no AD.
+	 */
+	public static final String WRITEBACK_MAX_ATTEMPTS = "writeback_max_attempts";
+
+	/**
+	 * Indica se a autenticação dos usuários deverá validar as credenciais em
+	 * conexões mantidas abertas no modo <i>Fast Bind</i> do AD. Caso não
+	 * esteja habilitada (padrão), cada autenticação abre uma nova conexão com
+	 * o AD. As conexões de autenticação são utilizadas apenas quando todos os
+	 * endereços do domínio forem <code>ldaps://</code>, já que o StartTLS não
+	 * é realizado nestas conexões.
+	 */
+	public static final String AUTH_FAST_BIND = "auth_fast_bind";
+
+	/**
+	 * Quantidade máxima de conexões de autenticação abertas com cada servidor
+	 * AD.
+	 */
+	public static final String AUTH_POOL_MAX_SIZE = "auth_pool_max_size";
+
+	/**
+	 * Tempo, em milissegundos, que uma autenticação bem sucedida no AD é
+	 * mantida em memória, sendo aceita sem uma nova operação de bind. O
+	 * armazenamento está desabilitado quando o valor for menor ou igual a
+	 * zero.
+	 */
+	public static final String AUTH_CACHE_TTL = "auth_cache_ttl";
+
+	/**
+	 * Quantidade máxima de autenticações mantidas em memória.
+	 */
+	public static final String AUTH_CACHE_MAX_SIZE = "auth_cache_max_size";
+
+	/**
+	 * Quantidade de iterações do <i>hash</i> PBKDF2 das senhas das
+	 * autenticações mantidas em memória.
+	 */
+	public static final String AUTH_CACHE_ITERATIONS = "auth_cache_iterations";
+
+	/**
+	 * Construtor privado já que esta classe contém apenas funções estáticas.
+	 */
+	private ADLocalConfig() {
+	}
+
+	/**
+	 * Função que retorna o valor de uma configuração da extensão.
+	 * @param key O nome da configuração sem o prefixo {@value #KEY_PREFIX}.
+	 * @param defaultValue O valor padrão da configuração.
+	 * @return Retorna o valor configurado. Caso a configuração não esteja
+	 * ajustada, retorna o valor padrão.
+	 */
+	public static String getString(String key, String defaultValue) {
+		String value = LC.get(KEY_PREFIX + key);
+		if (value == null || value.trim().isEmpty())
+			return defaultValue;
+		return value.trim();
+	}
+
+	/**
+	 * Função que retorna o valor inteiro de uma configuração da extensão.
+	 * @param key O nome da configuração sem o prefixo {@value #KEY_PREFIX}.
+	 * @param defaultValue O valor padrão da configuração.
+	 * @return Retorna o valor configurado. Caso a configuração não esteja
+	 * ajustada ou não seja um número válido, retorna o valor padrão.
+	 */
+	public static int getInt(String key, int defaultValue) {
+		return (int) getLong(key, defaultValue);
+	}
+
+	/**
+	 * Função que retorna o valor inteiro de uma configuração da extensão.
+	 * @param key O nome da configuração sem o prefixo {@value #KEY_PREFIX}.
+	 * @param defaultValue O valor padrão da configuração.
+	 * @return Retorna o valor configurado. Caso a configuração não esteja
+	 * ajustada ou não seja um número válido, retorna o valor padrão.
+	 */
+	public static long getLong(String key, long defaultValue) {
+		String value = getString(key, null);
+		if (value == null)
+			return defaultValue;
+
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			ZimbraLog.extensions.warn("AD - Invalid value \"%s\" for local config key %s%s. Using default %d",
+					value, KEY_PREFIX, key, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Função que retorna o valor booleano de uma configuração da extensão.
+	 * @param key O nome da configuração sem o prefixo {@value #KEY_PREFIX}.
+	 * @param defaultValue O valor padrão da configuração.
+	 * @return Retorna o valor configurado. Caso a configuração não esteja
+	 * ajustada, retorna o valor padrão.
+	 */
+	public static boolean getBoolean(String key, boolean defaultValue) {
+		String value = getString(key, null);
+		if (value == null)
+			return defaultValue;
+		return Boolean.parseBoolean(value);
+	}
+}
@@ -0,0 +1,253 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.zimbra.common.util.ZimbraLog;
+
+/**
+ * Classe que distribui o provisionamento das entradas lidas do AD entre
+ * várias threads. As entradas são enviadas por uma única thread (normalmente a
+ * que faz a leitura do AD) através da função {@link #submit(Object, String)}
+ * e colocadas em uma fila limitada. Quando a fila estiver cheia, o envio
+ * fica bloqueado até que as threads de processamento liberem espaço, logo a
+ * leitura do AD não avança mais rápido que o provisionamento.
+ * <p>Os erros ocorridos no processamento de uma entrada não interrompem as
+ * demais. Eles são informados na função {@link #finish()}, na mesma ordem em
+ * que as entradas foram enviadas.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ * @param <T> O tipo das entradas processadas.
+ */
+final class ADProvisioningPipeline<T> implements AutoCloseable {
+
+	/**
+	 * Interface que faz o processamento de uma entrada. Esta será chamada
+	 * simultaneamente pelas threads de processamento.
+	 */
+	interface Processor<T> {
+		void process(T item) throws Exception;
+	}
+
+	/**
+	 * Quantidade de entradas na fila para cada thread de processamento.
+	 */
+	private static final int QUEUE_SIZE_PER_WORKER = 32;
+
+	/**
+	 * Tempo, em milissegundos, que o envio aguarda por espaço na fila antes
+	 * de verificar se as threads de processamento ainda estão executando.
+	 */
+	private static final long SUBMIT_WAIT_INTERVAL = 1000;
+
+	/**
+	 * Classe privada que representa uma entrada na fila.
+	 */
+	private static final class Task<T> {
+		final long sequence;
+		final T item;
+		final String description;
+
+		Task(long sequence, T item, String description) {
+			this.sequence = sequence;
+			this.item = item;
+			this.description = description;
+		}
+	}
+
+	/**
+	 * Classe privada que representa o erro no processamento de uma entrada.
+	 */
+	private static final class Failure {
+		final String description;
+		final Exception error;
+
+		Failure(String description, Exception error) {
+			this.description = description;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * Entrada que indica às threads de processamento que não há mais entradas.
+	 */
+	private final Task<T> endOfQueue = new Task<>(-1, null, null);
+
+	private final String name;
+	private final Processor<T> processor;
+	private final BlockingQueue<Task<T>> queue;
+	private final ExecutorService executor;
+	private final List<Future<Void>> workers;
+
+	/**
+	 * Os erros ocorridos, ordenados pela ordem de envio das entradas.
+	 */
+	private final Map<Long, Failure> failures;
+
+	private long numSubmitted;
+
+	/**
+	 * Construtor da classe. As threads de processamento já são iniciadas.
+	 * @param name O nome do processamento, utilizado no nome das threads e nos
+	 * logs.
+	 * @param numWorkers A quantidade de threads de processamento.
+	 * @param processor O objeto que faz o processamento das entradas.
+	 */
+	ADProvisioningPipeline(final String name, int numWorkers, Processor<T> processor) {
+		this.name = name;
+		this.processor = processor;
+		this.queue = new ArrayBlockingQueue<>(numWorkers * QUEUE_SIZE_PER_WORKER);
+		this.failures = new ConcurrentSkipListMap<>();
+		this.numSubmitted = 0;
+
+		this.executor = Executors.newFixedThreadPool(numWorkers, new ThreadFactory() {
+			private final AtomicInteger threadNumber = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ADZimbraSync-" + name + "-" + this.threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		this.workers = new ArrayList<>(numWorkers);
+		for (int i = 0; i < numWorkers; i++) {
+			this.workers.add(this.executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws InterruptedException {
+					processQueue();
+					return null;
+				}
+			}));
+		}
+	}
+
+	/**
+	 * Função privada executada pelas threads de processamento. Processa as
+	 * entradas da fila até que seja encontrado o fim da fila.
+	 */
+	private void processQueue() throws InterruptedException {
+		while (true) {
+			Task<T> task = this.queue.take();
+			if (task == this.endOfQueue)
+				return;
+
+			try {
+				this.processor.process(task.item);
+			} catch (Exception ex) {
+				this.failures.put(task.sequence, new Failure(task.description, ex));
+			}
+		}
+	}
+
+	/**
+	 * Função que envia uma entrada para ser processada. Caso a fila esteja
+	 * cheia, aguarda até que exista espaço.
+	 * @param item A entrada a ser processada.
+	 * @param description A descrição da entrada, utilizada no log de erros.
+	 * @throws InterruptedException Lança exceção caso a thread seja
+	 * interrompida enquanto aguarda espaço na fila.
+	 * @throws IllegalStateException Lança exceção caso as threads de
+	 * processamento tenham sido finalizadas.
+	 */
+	void submit(T item, String description) throws InterruptedException {
+		Task<T> task = new Task<>(this.numSubmitted, item, description);
+		while (!this.queue.offer(task, SUBMIT_WAIT_INTERVAL, TimeUnit.MILLISECONDS)) {
+			// evita aguardar indefinidamente caso as threads tenham parado
+			if (!this.isRunning())
+				throw new IllegalStateException(String.format("%s workers are not running", this.name));
+		}
+		this.numSubmitted++;
+	}
+
+	/**
+	 * Função privada que informa se alguma thread de processamento ainda está
+	 * executando.
+	 */
+	private boolean isRunning() {
+		for (Future<Void> worker : this.workers) {
+			if (!worker.isDone())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Função que aguarda o processamento de todas as entradas enviadas e
+	 * finaliza as threads de processamento. Os erros ocorridos são escritos
+	 * no log na ordem de envio das entradas.
+	 * @return Retorna a quantidade de entradas processadas com sucesso.
+	 * @throws Exception Lança o erro da primeira entrada que falhou, ou o erro
+	 * que finalizou uma thread de processamento.
+	 */
+	int finish() throws Exception {
+		for (int i = 0; i < this.workers.size(); i++)
+			this.submitEndOfQueue();
+
+		try {
+			for (Future<Void> worker : this.workers) {
+				try {
+					worker.get();
+				} catch (ExecutionException ex) {
+					if (ex.getCause() instanceof Exception)
+						throw (Exception) ex.getCause();
+					throw ex;
+				}
+			}
+		} finally {
+			this.executor.shutdownNow();
+		}
+
+		if (this.failures.isEmpty())
+			return (int) this.numSubmitted;
+
+		Failure firstFailure = null;
+		for (Failure failure : this.failures.values()) {
+			ZimbraLog.autoprov.error("AD - %s failed for \"%s\". Error: %s",
+					this.name, failure.description, failure.error.getMessage());
+			if (firstFailure == null)
+				firstFailure = failure;
+		}
+
+		Exception ex = new Exception(String.format("%s failed for %d of %d entries. First error on \"%s\": %s",
+				this.name, this.failures.size(), this.numSubmitted, firstFailure.description,
+				firstFailure.error.getMessage()));
+		ex.initCause(firstFailure.error);
+		throw ex;
+	}
+
+	/**
+	 * Função privada que envia o fim da fila para uma thread de
+	 * processamento.
+	 */
+	private void submitEndOfQueue() throws InterruptedException {
+		while (!this.queue.offer(this.endOfQueue, SUBMIT_WAIT_INTERVAL, TimeUnit.MILLISECONDS)) {
+			if (!this.isRunning())
+				return;
+		}
+	}
+
+	/**
+	 * Finaliza as threads de processamento sem aguardar as entradas que ainda
+	 * estão na fila. Deve ser chamada caso ocorra um erro antes da função
+	 * {@link #finish()}.
+	 */
+	@Override
+	public void close() {
+		this.executor.shutdownNow();
+	}
+}
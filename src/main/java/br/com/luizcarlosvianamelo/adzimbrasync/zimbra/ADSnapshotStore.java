@@ -0,0 +1,439 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.zimbra.common.util.ZimbraLog;
+
+/**
+ * Classe que armazena o <i>hash</i> do conteúdo provisionado no Zimbra para
+ * cada entrada do AD de um domínio, indexado pelo <code>objectGUID</code> da
+ * entrada. Assim, a sincronização pode ignorar as entradas cujo conteúdo não
+ * foi modificado desde o último provisionamento, sem que seja feita nenhuma
+ * consulta ao Zimbra, inclusive após a reinicialização do servidor. Como o
+ * <i>hash</i> considera apenas o conteúdo do AD, as sincronizações completas
+ * não ignoram as entradas, corrigindo as modificações feitas diretamente no
+ * Zimbra. Também é armazenado o nome da entrada no Zimbra, permitindo
+ * encontrar as contas das entradas removidas do AD, que perdem o atributo
+ * <code>mail</code>.
+ * <p>Os dados são gravados em dois arquivos na pasta dos estados da
+ * sincronização (veja {@link ADSyncState#getStateDirectory()}): um índice
+ * compactado e um <i>log</i>, onde as alterações são incluídas à medida que
+ * as entradas são provisionadas. Na leitura, o <i>log</i> é aplicado sobre o
+ * índice, logo as entradas provisionadas antes de uma falha não são
+ * provisionadas novamente. Quando o <i>log</i> fica maior que o índice, os
+ * dois são unidos em um novo índice.</p>
+ * <p>As funções desta classe podem ser chamadas simultaneamente por várias
+ * threads.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+public class ADSnapshotStore implements AutoCloseable {
+
+	private static final String INDEX_EXTENSION = ".snapshot";
+	private static final String LOG_EXTENSION = ".snapshot.log";
+
+	/**
+	 * Valor gravado no <i>log</i> para as entradas removidas.
+	 */
+	private static final String REMOVED = "-";
+
+	/**
+	 * Quantidade mínima de alterações no <i>log</i> para que seja feita a
+	 * compactação.
+	 */
+	private static final int MIN_COMPACTION_SIZE = 1000;
+
+	/**
+	 * Quantidade de alterações gravadas no <i>log</i> entre cada
+	 * descarregamento do arquivo.
+	 */
+	private static final int FLUSH_INTERVAL = 100;
+
+	private final File indexFile;
+	private final File logFile;
+
+	/**
+	 * Classe privada que representa o conteúdo provisionado de uma entrada.
+	 */
+	private static final class Snapshot {
+		final long hash;
+		final String name;
+
+		Snapshot(long hash, String name) {
+			this.hash = hash;
+			this.name = name;
+		}
+	}
+
+	private final Map<String, Snapshot> snapshots;
+
+	private Writer log;
+	private int numLogEntries;
+	private int numUnflushedEntries;
+
+	/**
+	 * Construtor privado da classe. Os objetos devem ser criados através da
+	 * função {@link #open(File, String)}.
+	 */
+	private ADSnapshotStore(File indexFile, File logFile) {
+		this.indexFile = indexFile;
+		this.logFile = logFile;
+		this.snapshots = new HashMap<>();
+		this.log = null;
+		this.numLogEntries = 0;
+		this.numUnflushedEntries = 0;
+	}
+
+	/**
+	 * Função que faz a leitura dos <i>hashes</i> das entradas de um domínio.
+	 * @param domainName O nome do domínio.
+	 * @return Retorna o objeto com os <i>hashes</i> do domínio. Caso o
+	 * domínio ainda não tenha sido provisionado, retorna um objeto vazio. O
+	 * objeto deve ser fechado após o seu uso.
+	 * @throws IOException Lança exceção quando não for possível ler os
+	 * arquivos do domínio.
+	 */
+	static ADSnapshotStore open(String domainName) throws IOException {
+		return open(ADSyncState.getStateDirectory(), domainName);
+	}
+
+	/**
+	 * Função que faz a leitura dos <i>hashes</i> das entradas de um domínio
+	 * armazenados em uma pasta.
+	 * @param dir A pasta onde os arquivos do domínio são gravados.
+	 * @param domainName O nome do domínio.
+	 * @return Retorna o objeto com os <i>hashes</i> do domínio. Caso o
+	 * domínio ainda não tenha sido provisionado, retorna um objeto vazio. O
+	 * objeto deve ser fechado após o seu uso.
+	 * @throws IOException Lança exceção quando não for possível ler os
+	 * arquivos do domínio.
+	 */
+	public static ADSnapshotStore open(File dir, String domainName) throws IOException {
+		ADSnapshotStore store = new ADSnapshotStore(new File(dir, domainName + INDEX_EXTENSION),
+				new File(dir, domainName + LOG_EXTENSION));
+
+		store.read(store.indexFile);
+		store.numLogEntries = store.read(store.logFile);
+		if (store.shouldCompact())
+			store.compact();
+		return store;
+	}
+
+	/**
+	 * Função privada que lê um dos arquivos. As linhas inválidas são
+	 * ignoradas. Caso a última linha não termine com uma quebra de linha, ela
+	 * foi gravada parcialmente e é removida do arquivo antes da leitura, já
+	 * que poderia conter um <i>hash</i> ou nome truncado que ainda é válido
+	 * e as próximas alterações seriam incluídas na mesma linha.
+	 * @return Retorna a quantidade de linhas lidas.
+	 */
+	private int read(File file) throws IOException {
+		if (!file.exists())
+			return 0;
+		truncatePartialLine(file);
+
+		int numLines = 0;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+				StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (this.parseLine(line))
+					numLines++;
+			}
+		}
+		return numLines;
+	}
+
+	/**
+	 * Função privada que remove a última linha de um arquivo caso esta não
+	 * termine com uma quebra de linha.
+	 */
+	private static void truncatePartialLine(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			long length = raf.length();
+			long end = length;
+			while (end > 0) {
+				raf.seek(end - 1);
+				if (raf.read() == '\n')
+					break;
+				end--;
+			}
+
+			if (end < length) {
+				ZimbraLog.autoprov.warn("AD - Discarding partially written line of %s", file);
+				raf.setLength(end);
+			}
+		}
+	}
+
+	/**
+	 * Função privada que aplica uma linha de um dos arquivos.
+	 * @return Retorna <code>true</code> caso a linha seja válida.
+	 */
+	private boolean parseLine(String line) {
+		// o nome é opcional
+		String[] fields = line.split(" ");
+		if (fields.length < 2 || fields.length > 3 || fields[0].isEmpty())
+			return false;
+
+		if (fields[1].equals(REMOVED)) {
+			this.snapshots.remove(fields[0]);
+		} else {
+			try {
+				this.snapshots.put(fields[0], new Snapshot(parseHash(fields[1]),
+						fields.length > 2 ? fields[2] : null));
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Função privada que lê o <i>hash</i> gravado em hexadecimal pela função
+	 * {@link Long#toHexString(long)}, que não possui sinal. Por isso, os
+	 * <i>hashes</i> negativos não podem ser lidos com a função
+	 * {@link Long#parseLong(String, int)}.
+	 * @throws NumberFormatException Lança exceção quando o valor não for
+	 * válido.
+	 */
+	private static long parseHash(String value) {
+		if (value.isEmpty() || value.length() > 16)
+			throw new NumberFormatException(value);
+
+		long hash = 0;
+		for (int i = 0; i < value.length(); i++) {
+			int digit = Character.digit(value.charAt(i), 16);
+			if (digit < 0)
+				throw new NumberFormatException(value);
+			hash = (hash << 4) | digit;
+		}
+		return hash;
+	}
+
+	/**
+	 * Função privada que informa se o <i>log</i> deve ser unido ao índice.
+	 */
+	private boolean shouldCompact() {
+		return this.numLogEntries >= MIN_COMPACTION_SIZE && this.numLogEntries > this.snapshots.size();
+	}
+
+	/**
+	 * Função privada que grava o índice com todos os <i>hashes</i> e apaga o
+	 * <i>log</i>. O índice é gravado em um arquivo temporário e então
+	 * renomeado, logo uma falha durante a compactação não perde os dados.
+	 */
+	private void compact() throws IOException {
+		this.closeLog();
+
+		File dir = this.indexFile.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException(String.format("Can't create directory %s", dir));
+
+		File tmpFile = new File(dir, this.indexFile.getName() + ".tmp");
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile),
+				StandardCharsets.UTF_8))) {
+			for (Map.Entry<String, Snapshot> entry : this.snapshots.entrySet())
+				writer.write(formatLine(entry.getKey(), entry.getValue()) + "\n");
+		}
+		Files.move(tmpFile.toPath(), this.indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		// o log só é apagado após o índice ser gravado
+		Files.deleteIfExists(this.logFile.toPath());
+		this.numLogEntries = 0;
+	}
+
+	/**
+	 * Função que informa se o conteúdo de uma entrada é igual ao do último
+	 * provisionamento.
+	 * @param objectGUID O identificador da entrada. Caso seja
+	 * <code>null</code>, retorna <code>false</code>.
+	 * @param hash O <i>hash</i> do conteúdo atual da entrada (veja
+	 * {@link #computeHash(Map, Collection)}).
+	 */
+	public synchronized boolean isUnchanged(String objectGUID, long hash) {
+		Snapshot snapshot = objectGUID != null ? this.snapshots.get(objectGUID) : null;
+		return snapshot != null && snapshot.hash == hash;
+	}
+
+	/**
+	 * Função que retorna o nome no Zimbra da última versão provisionada de
+	 * uma entrada.
+	 * @param objectGUID O identificador da entrada.
+	 * @return Retorna o nome da entrada. Caso a entrada não tenha sido
+	 * provisionada, retorna <code>null</code>.
+	 */
+	public synchronized String getName(String objectGUID) {
+		Snapshot snapshot = objectGUID != null ? this.snapshots.get(objectGUID) : null;
+		return snapshot != null ? snapshot.name : null;
+	}
+
+	/**
+	 * Função que armazena o <i>hash</i> do conteúdo provisionado de uma
+	 * entrada.
+	 * @param objectGUID O identificador da entrada. Caso seja
+	 * <code>null</code>, nada é armazenado.
+	 * @param hash O <i>hash</i> do conteúdo da entrada.
+	 * @param name O nome da entrada no Zimbra (o seu e-mail). Caso contenha
+	 * espaços, não é armazenado.
+	 * @throws IOException Lança exceção quando não for possível gravar o
+	 * <i>log</i>.
+	 */
+	public synchronized void put(String objectGUID, long hash, String name) throws IOException {
+		if (objectGUID == null)
+			return;
+		if (name != null && (name.isEmpty() || name.indexOf(' ') >= 0))
+			name = null;
+
+		Snapshot snapshot = new Snapshot(hash, name);
+		Snapshot storedSnapshot = this.snapshots.put(objectGUID, snapshot);
+		if (storedSnapshot == null || storedSnapshot.hash != hash ||
+				(name == null ? storedSnapshot.name != null : !name.equals(storedSnapshot.name)))
+			this.appendLog(formatLine(objectGUID, snapshot));
+	}
+
+	/**
+	 * Função privada que monta a linha gravada nos arquivos para uma
+	 * entrada.
+	 */
+	private static String formatLine(String objectGUID, Snapshot snapshot) {
+		String line = objectGUID + " " + Long.toHexString(snapshot.hash);
+		return snapshot.name != null ? line + " " + snapshot.name : line;
+	}
+
+	/**
+	 * Função que remove o <i>hash</i> de uma entrada, fazendo com que esta
+	 * seja provisionada novamente.
+	 * @param objectGUID O identificador da entrada.
+	 * @throws IOException Lança exceção quando não for possível gravar o
+	 * <i>log</i>.
+	 */
+	public synchronized void remove(String objectGUID) throws IOException {
+		if (objectGUID != null && this.snapshots.remove(objectGUID) != null)
+			this.appendLog(objectGUID + " " + REMOVED);
+	}
+
+	/**
+	 * Função privada que inclui uma alteração no <i>log</i>.
+	 */
+	private void appendLog(String line) throws IOException {
+		if (this.log == null) {
+			File dir = this.logFile.getParentFile();
+			if (!dir.isDirectory() && !dir.mkdirs())
+				throw new IOException(String.format("Can't create directory %s", dir));
+			this.log = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.logFile, true),
+					StandardCharsets.UTF_8));
+		}
+
+		this.log.write(line + "\n");
+		this.numLogEntries++;
+
+		// descarrega o log periodicamente para limitar o que é perdido em uma falha
+		if (++this.numUnflushedEntries >= FLUSH_INTERVAL) {
+			this.log.flush();
+			this.numUnflushedEntries = 0;
+		}
+	}
+
+	/**
+	 * Função privada que fecha o arquivo do <i>log</i>.
+	 */
+	private void closeLog() throws IOException {
+		if (this.log != null) {
+			this.log.close();
+			this.log = null;
+		}
+		this.numUnflushedEntries = 0;
+	}
+
+	/**
+	 * Grava as alterações pendentes e, caso necessário, faz a compactação do
+	 * <i>log</i>.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		this.closeLog();
+		if (this.shouldCompact())
+			this.compact();
+	}
+
+	/**
+	 * Função que calcula o <i>hash</i> do conteúdo que será provisionado para
+	 * uma entrada.
+	 * @param attrValues Os atributos que serão gravados no Zimbra. A ordem
+	 * dos atributos não altera o <i>hash</i>.
+	 * @param members Os e-mails dos membros, no caso das listas de
+	 * distribuição, ou <code>null</code>. A ordem e a caixa das letras dos
+	 * e-mails não alteram o <i>hash</i>.
+	 * @return Retorna os primeiros 64 bits do SHA-256 do conteúdo.
+	 */
+	public static long computeHash(Map<String, Object> attrValues, Collection<String> members) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		for (Map.Entry<String, Object> attr : new TreeMap<>(attrValues).entrySet()) {
+			update(digest, attr.getKey());
+			Object value = attr.getValue();
+			if (value instanceof Object[]) {
+				for (Object v : (Object[]) value)
+					update(digest, String.valueOf(v));
+			} else if (value instanceof Collection) {
+				for (Object v : (Collection<?>) value)
+					update(digest, String.valueOf(v));
+			} else {
+				update(digest, String.valueOf(value));
+			}
+			digest.update((byte) 1);
+		}
+
+		if (members != null) {
+			digest.update((byte) 2);
+			TreeMap<String, Boolean> sortedMembers = new TreeMap<>();
+			for (String member : members) {
+				if (member != null)
+					sortedMembers.put(member.toLowerCase(), Boolean.TRUE);
+			}
+			for (String member : sortedMembers.keySet())
+				update(digest, member);
+		}
+
+		byte[] hash = digest.digest();
+		long value = 0;
+		for (int i = 0; i < 8; i++)
+			value = (value << 8) | (hash[i] & 0xff);
+		return value;
+	}
+
+	/**
+	 * Função privada que inclui uma <i>string</i> no cálculo do <i>hash</i>,
+	 * seguida por um separador.
+	 */
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+}
@@ -0,0 +1,225 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.LDAPAttributeValues;
+
+/**
+ * Classe que armazena o estado da sincronização periódica de um domínio. Este
+ * estado contém as marcas que permitem que a próxima sincronização busque
+ * apenas as entradas do AD modificadas desde a última sincronização concluída
+ * com sucesso. O estado de cada domínio é gravado em um arquivo na pasta
+ * configurada na chave {@link ADLocalConfig#SYNC_STATE_DIR}.
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+class ADSyncState {
+
+	/**
+	 * Pasta padrão onde os estados são armazenados.
+	 */
+	static final String DEFAULT_STATE_DIR = "/opt/zimbra/data/adzimbrasync";
+
+	private static final String INVOCATION_ID = "invocationId";
+	private static final String HIGHEST_COMMITTED_USN = "highestCommittedUSN";
+	private static final String LAST_SYNC_TIME = "lastSyncTime";
+	private static final String LAST_FULL_SYNC_TIME = "lastFullSyncTime";
+	private static final String DIRSYNC_COOKIE = "dirSyncCookie";
+
+	private final File file;
+
+	private String invocationId;
+	private long highestCommittedUSN;
+	private long lastSyncTime;
+	private long lastFullSyncTime;
+	private byte[] dirSyncCookie;
+
+	/**
+	 * Construtor privado da classe. Os objetos devem ser criados através da
+	 * função {@link #load(String)}.
+	 */
+	private ADSyncState(File file) {
+		this.file = file;
+
+		this.invocationId = null;
+		this.highestCommittedUSN = -1;
+		this.lastSyncTime = 0;
+		this.lastFullSyncTime = 0;
+		this.dirSyncCookie = null;
+	}
+
+	/**
+	 * Função que retorna a pasta onde os estados são armazenados.
+	 */
+	static File getStateDirectory() {
+		return new File(ADLocalConfig.getString(ADLocalConfig.SYNC_STATE_DIR, DEFAULT_STATE_DIR));
+	}
+
+	/**
+	 * Função que faz a leitura do estado da sincronização de um domínio.
+	 * @param domainName O nome do domínio.
+	 * @return Retorna o estado do domínio. Caso este ainda não tenha sido
+	 * sincronizado, retorna um estado vazio.
+	 * @throws IOException Lança exceção quando não for possível ler o arquivo
+	 * do estado.
+	 */
+	static ADSyncState load(String domainName) throws IOException {
+		ADSyncState state = new ADSyncState(new File(getStateDirectory(), domainName + ".properties"));
+		if (!state.file.exists())
+			return state;
+
+		Properties props = new Properties();
+		try (InputStream in = new FileInputStream(state.file)) {
+			props.load(in);
+		}
+
+		state.invocationId = props.getProperty(INVOCATION_ID);
+		state.highestCommittedUSN = parseLong(props.getProperty(HIGHEST_COMMITTED_USN), -1);
+		state.lastSyncTime = parseLong(props.getProperty(LAST_SYNC_TIME), 0);
+		state.lastFullSyncTime = parseLong(props.getProperty(LAST_FULL_SYNC_TIME), 0);
+		state.dirSyncCookie = parseHex(props.getProperty(DIRSYNC_COOKIE));
+		return state;
+	}
+
+	/**
+	 * Função privada que faz a conversão de um valor numérico armazenado.
+	 */
+	private static long parseLong(String value, long defaultValue) {
+		if (value == null)
+			return defaultValue;
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Função privada que faz a conversão de um valor binário armazenado em
+	 * formato hexadecimal.
+	 */
+	private static byte[] parseHex(String value) {
+		if (value == null || value.trim().isEmpty())
+			return null;
+		try {
+			return LDAPAttributeValues.parseHex(value.trim());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Função que grava o estado no arquivo do domínio. O arquivo é gravado em
+	 * um arquivo temporário e então renomeado, evitando que um estado
+	 * incompleto seja lido caso ocorra uma falha durante a gravação.
+	 * @throws IOException Lança exceção quando não for possível gravar o
+	 * arquivo.
+	 */
+	void save() throws IOException {
+		Properties props = new Properties();
+		if (this.invocationId != null)
+			props.setProperty(INVOCATION_ID, this.invocationId);
+		props.setProperty(HIGHEST_COMMITTED_USN, Long.toString(this.highestCommittedUSN));
+		props.setProperty(LAST_SYNC_TIME, Long.toString(this.lastSyncTime));
+		props.setProperty(LAST_FULL_SYNC_TIME, Long.toString(this.lastFullSyncTime));
+		if (this.dirSyncCookie != null)
+			props.setProperty(DIRSYNC_COOKIE, LDAPAttributeValues.toHex(this.dirSyncCookie));
+
+		File dir = this.file.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException(String.format("Can't create directory %s", dir));
+
+		File tmpFile = new File(dir, this.file.getName() + ".tmp");
+		try (OutputStream out = new FileOutputStream(tmpFile)) {
+			props.store(out, "ADZimbraSync domain synchronization state");
+		}
+		Files.move(tmpFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Retorna o identificador da base de dados do controlador de domínio
+	 * utilizado na última sincronização.
+	 */
+	String getInvocationId() {
+		return invocationId;
+	}
+
+	/**
+	 * Ajusta o identificador da base de dados do controlador de domínio.
+	 */
+	void setInvocationId(String invocationId) {
+		this.invocationId = invocationId;
+	}
+
+	/**
+	 * Retorna o maior USN do controlador de domínio lido no início da última
+	 * sincronização. Caso não tenha sido lido, retorna <code>-1</code>.
+	 */
+	long getHighestCommittedUSN() {
+		return highestCommittedUSN;
+	}
+
+	/**
+	 * Ajusta o maior USN do controlador de domínio.
+	 */
+	void setHighestCommittedUSN(long highestCommittedUSN) {
+		this.highestCommittedUSN = highestCommittedUSN;
+	}
+
+	/**
+	 * Retorna o horário, em milissegundos, do início da última sincronização
+	 * concluída. Caso o domínio não tenha sido sincronizado, retorna zero.
+	 */
+	long getLastSyncTime() {
+		return lastSyncTime;
+	}
+
+	/**
+	 * Ajusta o horário do início da última sincronização concluída.
+	 */
+	void setLastSyncTime(long lastSyncTime) {
+		this.lastSyncTime = lastSyncTime;
+	}
+
+	/**
+	 * Retorna o horário, em milissegundos, do início da última sincronização
+	 * completa concluída. Caso o domínio não tenha sido sincronizado, retorna
+	 * zero.
+	 */
+	long getLastFullSyncTime() {
+		return lastFullSyncTime;
+	}
+
+	/**
+	 * Ajusta o horário do início da última sincronização completa concluída.
+	 */
+	void setLastFullSyncTime(long lastFullSyncTime) {
+		this.lastFullSyncTime = lastFullSyncTime;
+	}
+
+	/**
+	 * Retorna o <i>cookie</i> da última busca das modificações realizada com
+	 * o controle <i>DirSync</i>. Caso não exista, retorna <code>null</code>.
+	 */
+	byte[] getDirSyncCookie() {
+		return dirSyncCookie;
+	}
+
+	/**
+	 * Ajusta o <i>cookie</i> da última busca realizada com o controle
+	 * <i>DirSync</i>.
+	 */
+	void setDirSyncCookie(byte[] dirSyncCookie) {
+		this.dirSyncCookie = dirSyncCookie;
+	}
+}
@@ -0,0 +1,118 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.naming.NameNotFoundException;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADUser;
+import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADUsersRepository;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.DN;
+
+import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.account.Provisioning;
+
+/**
+ * Classe que localiza o usuário do AD associado a uma conta do Zimbra para
+ * que este seja modificado. O usuário é modificado diretamente através do DN
+ * armazenado no atributo {@value #EXTERNAL_DN_ATTR} da conta, evitando a busca
+ * do usuário no AD. A busca através do nome da conta é realizada apenas quando
+ * o DN não estiver armazenado ou não existir mais no AD (usuário movido ou
+ * renomeado), sendo o DN da conta atualizado em seguida.
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+final class ADUserLocator {
+
+	/**
+	 * Atributo do Zimbra onde é armazenado o DN do usuário do AD.
+	 */
+	static final String EXTERNAL_DN_ATTR = "zimbraAuthLdapExternalDn";
+
+	/**
+	 * Interface da operação realizada sobre o usuário do AD.
+	 */
+	interface UserOperation {
+
+		/**
+		 * Função que realiza a modificação do usuário no AD.
+		 * @param rep O repositório de usuários do AD.
+		 * @param user O usuário do AD. Caso este tenha sido criado a partir do
+		 * DN armazenado, apenas o DN estará preenchido.
+		 * @throws Exception Lança exceção quando não for possível modificar o
+		 * usuário. Uma exceção {@link NameNotFoundException} indica que o DN
+		 * do usuário não existe no AD.
+		 */
+		void apply(ADUsersRepository rep, ADUser user) throws Exception;
+	}
+
+	/**
+	 * Construtor privado já que esta classe contém apenas funções estáticas.
+	 */
+	private ADUserLocator() {
+	}
+
+	/**
+	 * Função que realiza uma operação sobre o usuário do AD associado a uma
+	 * conta do Zimbra.
+	 * @param rep O repositório de usuários do AD.
+	 * @param acct A conta do Zimbra.
+	 * @param operation A operação a ser realizada sobre o usuário.
+	 * @return Retorna <code>true</code> caso a operação tenha sido realizada,
+	 * ou <code>false</code> caso o usuário não exista no AD.
+	 * @throws Exception Lança exceção quando não for possível realizar a
+	 * operação.
+	 */
+	static boolean modifyUser(ADUsersRepository rep, Account acct, UserOperation operation)
+			throws Exception {
+		String storedDN = acct.getAuthLdapExternalDn();
+		DN dn = storedDN == null || storedDN.isEmpty() ? null : DN.parse(storedDN);
+
+		if (dn != null) {
+			// modifica diretamente o DN armazenado na conta
+			ADUser user = new ADUser();
+			user.setDn(dn);
+			user.setDistinguishedName(dn);
+			try {
+				operation.apply(rep, user);
+				return true;
+			} catch (NameNotFoundException e) {
+				ZimbraLog.account.debug("AD - Stored DN \"%s\" of account \"%s\" not found. Searching user by account name",
+						storedDN, acct.getName());
+			}
+		}
+
+		// busca o usuário no AD
+		ADUser user = rep.queryUserByAccountName(acct.getUid());
+		if (user == null)
+			return false;
+
+		operation.apply(rep, user);
+
+		// atualiza o DN armazenado para que as próximas modificações não precisem da busca
+		DN newDN = user.getDn();
+		if (newDN != null && (dn == null || !newDN.equals(dn)))
+			updateStoredDN(acct, newDN);
+
+		return true;
+	}
+
+	/**
+	 * Função que atualiza o DN do usuário do AD armazenado na conta.
+	 * @param acct A conta do Zimbra.
+	 * @param dn O novo DN do usuário.
+	 */
+	private static void updateStoredDN(Account acct, DN dn) {
+		Map<String, Object> attrs = new HashMap<>();
+		attrs.put(EXTERNAL_DN_ATTR, dn.toString());
+		try {
+			// não dispara os callbacks para que a alteração não seja gravada no AD
+			Provisioning.getInstance().modifyAttrs(acct, attrs, false, false);
+		} catch (Exception e) {
+			ZimbraLog.account.warn("AD - Can't update stored DN of account \"%s\": %s",
+					acct.getName(), e.getMessage());
+		}
+	}
+}
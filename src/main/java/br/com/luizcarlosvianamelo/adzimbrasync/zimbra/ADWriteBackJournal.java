@@ -0,0 +1,159 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Classe que define o formato do arquivo das modificações pendentes de
+ * gravação no AD (veja {@link ADWriteBackQueue}). Cada linha contém o
+ * identificador da conta, o nome do atributo e o seu valor, separados por
+ * tabulações:
+ * <pre>
+ * conta \t atributo \t valor
+ * conta \t atributo \t \a \t valor1 \t valor2 ...
+ * </pre>
+ * Os atributos multivalorados são precedidos pelo marcador
+ * {@value #MULTI_VALUE_MARKER}, logo uma lista vazia ou com um único valor é
+ * lida da mesma forma que foi gravada. As tabulações, quebras de linha e
+ * barras invertidas dos valores são tratadas, então o marcador nunca é
+ * confundido com um valor.
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+public final class ADWriteBackJournal {
+
+	/**
+	 * Marcador que indica que os campos seguintes são os valores de um
+	 * atributo multivalorado.
+	 */
+	public static final String MULTI_VALUE_MARKER = "\\a";
+
+	/**
+	 * Construtor privado já que esta classe contém apenas funções estáticas.
+	 */
+	private ADWriteBackJournal() {
+	}
+
+	/**
+	 * Função que monta a linha do arquivo para o valor de um atributo.
+	 * @param accountId O identificador da conta.
+	 * @param attrName O nome do atributo.
+	 * @param value O valor do atributo: uma <i>string</i> ou, caso seja
+	 * multivalorado, um vetor de <i>strings</i>.
+	 * @return Retorna a linha, incluindo a quebra de linha.
+	 */
+	public static String formatLine(String accountId, String attrName, Object value) {
+		StringBuilder line = new StringBuilder(escape(accountId)).append('\t').append(escape(attrName));
+		if (value instanceof String[]) {
+			line.append('\t').append(MULTI_VALUE_MARKER);
+			for (String v : (String[]) value)
+				line.append('\t').append(escape(v));
+		} else
+			line.append('\t').append(escape(value.toString()));
+		return line.append('\n').toString();
+	}
+
+	/**
+	 * Função que lê uma linha do arquivo, incluindo o valor do atributo nas
+	 * modificações da conta. Um valor já existente do mesmo atributo é
+	 * substituído, já que as linhas seguintes são as mais recentes.
+	 * @param line A linha, sem a quebra de linha.
+	 * @param writes As modificações indexadas pelo identificador da conta e
+	 * pelo nome do atributo.
+	 * @return Retorna <code>true</code> caso a linha seja válida. Caso
+	 * contrário, retorna <code>false</code> e as modificações não são
+	 * alteradas.
+	 */
+	public static boolean parseLine(String line, Map<String, Map<String, Object>> writes) {
+		String[] fields = line.split("\t", -1);
+		if (fields.length < 3 || fields[0].isEmpty() || fields[1].isEmpty())
+			return false;
+
+		Object value;
+		if (fields[2].equals(MULTI_VALUE_MARKER)) {
+			String[] values = new String[fields.length - 3];
+			for (int i = 0; i < values.length; i++)
+				values[i] = unescape(fields[i + 3]);
+			value = values;
+		} else if (fields.length == 3)
+			value = unescape(fields[2]);
+		else {
+			// linhas gravadas antes do marcador, que possuem vários valores
+			String[] values = new String[fields.length - 2];
+			for (int i = 0; i < values.length; i++)
+				values[i] = unescape(fields[i + 2]);
+			value = values;
+		}
+
+		String accountId = unescape(fields[0]);
+		Map<String, Object> attrs = writes.get(accountId);
+		if (attrs == null) {
+			attrs = new LinkedHashMap<>();
+			writes.put(accountId, attrs);
+		}
+		attrs.put(unescape(fields[1]), value);
+		return true;
+	}
+
+	/**
+	 * Função que lê todas as modificações gravadas em um arquivo. As linhas
+	 * inválidas, como uma última linha gravada pela metade, são ignoradas.
+	 * @param file O arquivo das modificações.
+	 * @return Retorna as modificações indexadas pelo identificador da conta e
+	 * pelo nome do atributo, na ordem em que foram gravadas. Caso o arquivo
+	 * não exista, retorna um mapa vazio.
+	 * @throws IOException Lança exceção quando não for possível ler o arquivo.
+	 */
+	public static Map<String, Map<String, Object>> read(File file) throws IOException {
+		Map<String, Map<String, Object>> writes = new LinkedHashMap<>();
+		if (!file.exists())
+			return writes;
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+				StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null)
+				parseLine(line, writes);
+		}
+		return writes;
+	}
+
+	/**
+	 * Função privada que trata os caracteres que separam os campos e as
+	 * linhas do arquivo.
+	 */
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	/**
+	 * Função privada que desfaz o tratamento da função {@link #escape(String)}.
+	 */
+	private static String unescape(String value) {
+		if (value.indexOf('\\') < 0)
+			return value;
+
+		StringBuilder str = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				c = value.charAt(++i);
+				if (c == 't')
+					c = '\t';
+				else if (c == 'n')
+					c = '\n';
+				else if (c == 'r')
+					c = '\r';
+			}
+			str.append(c);
+		}
+		return str.toString();
+	}
+}
@@ -0,0 +1,480 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADTree;
+import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADUser;
+import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADUsersRepository;
+
+import com.zimbra.common.account.Key.AccountBy;
+import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.account.Domain;
+import com.zimbra.cs.account.Provisioning;
+
+/**
+ * Classe que grava no AD, em segundo plano, as modificações feitas nos
+ * atributos mapeados das contas do Zimbra (veja {@link ADAttributeManager}).
+ * As modificações de uma mesma conta feitas dentro de um curto intervalo são
+ * unidas em uma única alteração no AD, e as gravações que falharem são
+ * repetidas com intervalos crescentes.
+ * <p>As modificações pendentes também são gravadas em um arquivo na pasta dos
+ * estados da sincronização (veja {@link ADSyncState#getStateDirectory()}),
+ * logo não são perdidas quando o servidor for reiniciado. O arquivo é lido na
+ * inicialização da extensão, através da função {@link #start()}.</p>
+ * <p>A quantidade de contas pendentes é limitada. Quando o limite for
+ * atingido, a modificação é gravada no AD pela própria thread que a
+ * realizou.</p>
+ *
+ * @author Luiz Carlos Viana Melo
+ *
+ */
+public class ADWriteBackQueue {
+
+	/**
+	 * Nome do arquivo com as modificações pendentes.
+	 */
+	private static final String JOURNAL_FILE = "writeback.journal";
+
+	/**
+	 * Tempo padrão, em milissegundos, que uma modificação aguarda outras
+	 * modificações da mesma conta antes de ser gravada.
+	 */
+	private static final long DEFAULT_WRITEBACK_DELAY = 2000;
+
+	/**
+	 * Quantidade padrão de contas com modificações pendentes.
+	 */
+	private static final int DEFAULT_WRITEBACK_QUEUE_SIZE = 10000;
+
+	/**
+	 * Quantidade padrão de tentativas de gravação de uma modificação.
+	 */
+	private static final int DEFAULT_WRITEBACK_MAX_ATTEMPTS = 10;
+
+	/**
+	 * Intervalo máximo, em milissegundos, entre as tentativas de gravação.
+	 */
+	private static final long MAX_RETRY_DELAY = 300000;
+
+	/**
+	 * Classe privada que representa as modificações pendentes de uma conta.
+	 */
+	private static final class PendingWrite {
+		final String accountId;
+		Map<String, Object> attrs;
+		long dueTime;
+		int attempts;
+
+		PendingWrite(String accountId, long dueTime) {
+			this.accountId = accountId;
+			this.attrs = new LinkedHashMap<>();
+			this.dueTime = dueTime;
+			this.attempts = 0;
+		}
+	}
+
+	/**
+	 * As modificações pendentes, indexadas pelo identificador da conta. Todos
+	 * os campos desta classe são protegidos pela trava deste objeto.
+	 */
+	private static final Map<String, PendingWrite> PENDING_WRITES = new LinkedHashMap<>();
+
+	private static Thread worker = null;
+
+	private static Writer journal = null;
+
+	/**
+	 * Construtor privado já que esta classe contém apenas funções estáticas.
+	 */
+	private ADWriteBackQueue() {
+	}
+
+	/**
+	 * Função que lê as modificações pendentes gravadas no arquivo e inicia a
+	 * thread que grava as modificações no AD. Deve ser chamada na
+	 * inicialização da extensão.
+	 */
+	public static void start() {
+		synchronized (PENDING_WRITES) {
+			if (worker != null)
+				return;
+
+			readJournal();
+
+			worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					processQueue();
+				}
+			}, "ADZimbraSync-WriteBack");
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Função que finaliza a thread que grava as modificações no AD. As
+	 * modificações pendentes permanecem no arquivo e são gravadas após a
+	 * próxima inicialização. Deve ser chamada na finalização da extensão.
+	 */
+	public static void shutdown() {
+		Thread stoppedWorker;
+		synchronized (PENDING_WRITES) {
+			stoppedWorker = worker;
+			worker = null;
+			closeJournal();
+			PENDING_WRITES.clear();
+		}
+
+		if (stoppedWorker != null) {
+			stoppedWorker.interrupt();
+			try {
+				stoppedWorker.join(MAX_RETRY_DELAY);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Função que inclui na fila as modificações dos atributos de uma conta.
+	 * Caso a conta já possua modificações pendentes, os novos valores
+	 * substituem os anteriores.
+	 * @param acct A conta do Zimbra modificada.
+	 * @param attrs Os atributos mapeados para o AD que foram modificados.
+	 * Os atributos com valores <code>null</code> são ignorados.
+	 * @throws Exception Lança exceção quando a fila estiver cheia e não for
+	 * possível gravar a modificação diretamente no AD.
+	 */
+	static void enqueue(Account acct, Map<String, ? extends Object> attrs) throws Exception {
+		long now = System.currentTimeMillis();
+		synchronized (PENDING_WRITES) {
+			PendingWrite write = PENDING_WRITES.get(acct.getId());
+			if (write == null && worker != null && PENDING_WRITES.size() <
+					ADLocalConfig.getInt(ADLocalConfig.WRITEBACK_QUEUE_SIZE, DEFAULT_WRITEBACK_QUEUE_SIZE)) {
+				write = new PendingWrite(acct.getId(),
+						now + ADLocalConfig.getLong(ADLocalConfig.WRITEBACK_DELAY, DEFAULT_WRITEBACK_DELAY));
+				PENDING_WRITES.put(write.accountId, write);
+				PENDING_WRITES.notifyAll();
+			}
+
+			if (write != null) {
+				for (Map.Entry<String, ? extends Object> attr : attrs.entrySet()) {
+					Object value = toStoredValue(attr.getValue());
+					if (value != null) {
+						write.attrs.put(attr.getKey(), value);
+						appendJournal(write.accountId, attr.getKey(), value);
+					}
+				}
+				flushJournal();
+				return;
+			}
+		}
+
+		// a fila está cheia ou não foi iniciada, logo grava a modificação nesta thread
+		ZimbraLog.account.warn("AD - Write-back queue is full or stopped. Modifying account \"%s\" synchronously",
+				acct.getName());
+		Map<String, Object> values = new LinkedHashMap<>();
+		for (Map.Entry<String, ? extends Object> attr : attrs.entrySet()) {
+			Object value = toStoredValue(attr.getValue());
+			if (value != null)
+				values.put(attr.getKey(), value);
+		}
+		writeToAD(acct, values);
+	}
+
+	/**
+	 * Função privada que converte o valor de um atributo para uma
+	 * <i>string</i> ou, caso seja multivalorado, para um vetor de
+	 * <i>strings</i>.
+	 */
+	private static Object toStoredValue(Object value) {
+		if (value == null)
+			return null;
+
+		Collection<?> values;
+		if (value instanceof Collection)
+			values = (Collection<?>) value;
+		else if (value instanceof Object[])
+			values = Arrays.asList((Object[]) value);
+		else
+			return value.toString();
+
+		String[] strValues = new String[values.size()];
+		int i = 0;
+		for (Object v : values)
+			strValues[i++] = String.valueOf(v);
+		return strValues;
+	}
+
+	/**
+	 * Função privada executada pela thread de gravação. Aguarda o fim do
+	 * intervalo de cada conta e grava as modificações no AD.
+	 */
+	private static void processQueue() {
+		while (true) {
+			List<PendingWrite> dueWrites = new ArrayList<>();
+			synchronized (PENDING_WRITES) {
+				while (dueWrites.isEmpty()) {
+					if (worker != Thread.currentThread())
+						return;
+
+					// retira da fila as contas cujo intervalo terminou
+					long now = System.currentTimeMillis();
+					long nextDueTime = Long.MAX_VALUE;
+					for (Iterator<PendingWrite> it = PENDING_WRITES.values().iterator(); it.hasNext(); ) {
+						PendingWrite write = it.next();
+						if (write.dueTime <= now) {
+							dueWrites.add(write);
+							it.remove();
+						} else
+							nextDueTime = Math.min(nextDueTime, write.dueTime);
+					}
+
+					if (dueWrites.isEmpty()) {
+						try {
+							PENDING_WRITES.wait(nextDueTime == Long.MAX_VALUE ? 0 : nextDueTime - now);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}
+
+			for (PendingWrite write : dueWrites) {
+				if (Thread.currentThread().isInterrupted())
+					break;
+				processWrite(write);
+			}
+
+			/*
+			 * Regrava o arquivo apenas com as modificações que ainda estão
+			 * pendentes. Caso a thread tenha sido finalizada durante a
+			 * gravação, o arquivo é mantido para a próxima inicialização.
+			 */
+			synchronized (PENDING_WRITES) {
+				if (worker != Thread.currentThread())
+					return;
+				rewriteJournal();
+			}
+		}
+	}
+
+	/**
+	 * Função privada que grava as modificações de uma conta no AD. Caso
+	 * ocorra um erro, as modificações voltam para a fila até que seja
+	 * atingida a quantidade máxima de tentativas.
+	 */
+	private static void processWrite(PendingWrite write) {
+		try {
+			Account acct = Provisioning.getInstance().get(AccountBy.id, write.accountId);
+			if (acct == null) {
+				ZimbraLog.account.warn("AD - Account %s was removed before its modifications were written to AD",
+						write.accountId);
+				return;
+			}
+
+			writeToAD(acct, write.attrs);
+		} catch (Exception e) {
+			write.attempts++;
+			int maxAttempts = ADLocalConfig.getInt(ADLocalConfig.WRITEBACK_MAX_ATTEMPTS,
+					DEFAULT_WRITEBACK_MAX_ATTEMPTS);
+			if (write.attempts >= maxAttempts) {
+				ZimbraLog.account.error("AD - Discarding modifications %s of account %s after %d attempts. " +
+						"Error: %s", write.attrs.keySet(), write.accountId, write.attempts, e.getMessage());
+				return;
+			}
+
+			// aguarda um intervalo que dobra a cada tentativa
+			long delay = ADLocalConfig.getLong(ADLocalConfig.WRITEBACK_DELAY, DEFAULT_WRITEBACK_DELAY);
+			delay = Math.min(MAX_RETRY_DELAY, Math.max(1000, delay) << Math.min(write.attempts, 16));
+			ZimbraLog.account.warn("AD - Can't write modifications of account %s (attempt %d). Retrying in %d ms. " +
+					"Error: %s", write.accountId, write.attempts, delay, e.getMessage());
+			requeue(write, System.currentTimeMillis() + delay);
+		}
+	}
+
+	/**
+	 * Função privada que devolve para a fila as modificações de uma conta que
+	 * não puderam ser gravadas. As modificações feitas enquanto a gravação
+	 * estava sendo realizada possuem prioridade sobre as devolvidas.
+	 */
+	private static void requeue(PendingWrite write, long dueTime) {
+		synchronized (PENDING_WRITES) {
+			PendingWrite newWrite = PENDING_WRITES.get(write.accountId);
+			if (newWrite != null) {
+				write.attrs.putAll(newWrite.attrs);
+				newWrite.attrs = write.attrs;
+				newWrite.attempts = write.attempts;
+			} else {
+				write.dueTime = dueTime;
+				PENDING_WRITES.put(write.accountId, write);
+			}
+		}
+	}
+
+	/**
+	 * Função privada que grava no AD as modificações dos atributos de uma
+	 * conta. O usuário é modificado diretamente através do DN armazenado na
+	 * conta, sendo buscado no AD pelo login apenas se o DN não existir mais.
+	 * @param acct A conta do Zimbra.
+	 * @param attrs Os atributos modificados.
+	 * @throws Exception Lança exceção quando não for possível gravar as
+	 * modificações no AD.
+	 */
+	private static void writeToAD(final Account acct, final Map<String, Object> attrs) throws Exception {
+		// pega o domínio da conta
+		Domain domain = Provisioning.getInstance().getDomain(acct);
+		final Map<String, String> attrMap = ZimbraLDAPMapper.getUserAttributeMapping(domain);
+
+		ADTree adTree = ADConnectionManager.openDomainADConnection(domain);
+		if (adTree == null)
+			// o domínio não está habilitado para provisionamento
+			return;
+
+		try {
+			ADUsersRepository rep = adTree.getUsersRepository();
+			boolean found = ADUserLocator.modifyUser(rep, acct, new ADUserLocator.UserOperation() {
+				@Override
+				public void apply(ADUsersRepository rep, ADUser user) throws Exception {
+					// preenche os atributos a serem modificados
+					ZimbraLDAPMapper.fillAttributesIntoObjectFields(user, attrs, attrMap);
+
+					// modifica o usuário
+					ZimbraLog.account.debug("AD - Writing attributes %s of account \"%s\" to AD",
+							attrs.keySet(), acct.getName());
+					rep.modifyUser(user);
+				}
+			});
+			if (!found)
+				ZimbraLog.account.error("AD - Can't find user \"%s\" to modify in AD", acct.getUid());
+		} finally {
+			// e devolve a conexão
+			ADConnectionManager.releaseDomainADConnection(adTree);
+		}
+	}
+
+	/**
+	 * Função privada que retorna o arquivo com as modificações pendentes.
+	 */
+	private static File getJournalFile() {
+		return new File(ADSyncState.getStateDirectory(), JOURNAL_FILE);
+	}
+
+	/**
+	 * Função privada que lê as modificações pendentes gravadas no arquivo
+	 * (veja {@link ADWriteBackJournal}). As linhas inválidas são ignoradas.
+	 */
+	private static void readJournal() {
+		File file = getJournalFile();
+		long now = System.currentTimeMillis();
+		try {
+			for (Map.Entry<String, Map<String, Object>> entry : ADWriteBackJournal.read(file).entrySet()) {
+				PendingWrite write = new PendingWrite(entry.getKey(), now);
+				write.attrs.putAll(entry.getValue());
+				PENDING_WRITES.put(write.accountId, write);
+			}
+		} catch (IOException e) {
+			ZimbraLog.account.error("AD - Can't read pending AD modifications from %s: %s", file, e.getMessage());
+		}
+
+		if (!PENDING_WRITES.isEmpty())
+			ZimbraLog.account.info("AD - Loaded pending AD modifications of %d accounts", PENDING_WRITES.size());
+	}
+
+	/**
+	 * Função privada que inclui uma modificação no arquivo. Caso não seja
+	 * possível gravar o arquivo, a modificação é mantida apenas em memória.
+	 */
+	private static void appendJournal(String accountId, String attrName, Object value) {
+		try {
+			if (journal == null) {
+				File file = getJournalFile();
+				File dir = file.getParentFile();
+				if (!dir.isDirectory() && !dir.mkdirs())
+					throw new IOException(String.format("Can't create directory %s", dir));
+				journal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true),
+						StandardCharsets.UTF_8));
+			}
+			journal.write(ADWriteBackJournal.formatLine(accountId, attrName, value));
+		} catch (IOException e) {
+			ZimbraLog.account.error("AD - Can't write pending AD modification of account %s: %s",
+					accountId, e.getMessage());
+			closeJournal();
+		}
+	}
+
+	/**
+	 * Função privada que descarrega as modificações incluídas no arquivo.
+	 */
+	private static void flushJournal() {
+		if (journal == null)
+			return;
+		try {
+			journal.flush();
+		} catch (IOException e) {
+			ZimbraLog.account.error("AD - Can't write pending AD modifications: %s", e.getMessage());
+			closeJournal();
+		}
+	}
+
+	/**
+	 * Função privada que fecha o arquivo das modificações pendentes.
+	 */
+	private static void closeJournal() {
+		if (journal == null)
+			return;
+		try {
+			journal.close();
+		} catch (IOException e) {
+			ZimbraLog.account.debug("AD - Error closing pending AD modifications file: %s", e.getMessage());
+		}
+		journal = null;
+	}
+
+	/**
+	 * Função privada que regrava o arquivo apenas com as modificações
+	 * pendentes. O arquivo é gravado em um arquivo temporário e então
+	 * renomeado, logo uma falha durante a gravação não perde as modificações.
+	 */
+	private static void rewriteJournal() {
+		closeJournal();
+
+		File file = getJournalFile();
+		try {
+			if (PENDING_WRITES.isEmpty()) {
+				Files.deleteIfExists(file.toPath());
+				return;
+			}
+
+			File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+			try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile),
+					StandardCharsets.UTF_8))) {
+				for (PendingWrite write : PENDING_WRITES.values()) {
+					for (Map.Entry<String, Object> attr : write.attrs.entrySet())
+						writer.write(ADWriteBackJournal.formatLine(write.accountId, attr.getKey(), attr.getValue()));
+				}
+			}
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			ZimbraLog.account.error("AD - Can't write pending AD modifications to %s: %s", file, e.getMessage());
+		}
+	}
+}
@@ -1,6 +1,9 @@
 package br.com.luizcarlosvianamelo.adzimbrasync.zimbra;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -137,6 +140,64 @@ public class ZimbraLDAPMapper {
 
 		return mappedAttributes;
 	}
+
+	/**
+	 * Função que retorna apenas os atributos cujos valores são diferentes dos
+	 * valores atuais de uma entrada do Zimbra. Os valores dos atributos
+	 * multivalorados são comparados sem considerar a ordem.
+	 * @param entry A entrada do Zimbra, como uma conta.
+	 * @param attrValues Os novos valores dos atributos (veja
+	 * {@link #mapObjectFieldsIntoAttributes(LDAPEntry, AttributeAccessMode, Map)}).
+	 * @return Retorna o mapa com os atributos modificados e os seus novos
+	 * valores. Caso nenhum atributo tenha sido modificado, retorna um mapa
+	 * vazio.
+	 */
+	public static Map<String, Object> getModifiedAttributes(com.zimbra.cs.account.Entry entry,
+			Map<String, Object> attrValues) {
+		Map<String, Object> modifiedAttributes = new Hashtable<>();
+		for (Entry<String, Object> attr : attrValues.entrySet()) {
+			String[] newValues = toStringValues(attr.getValue());
+			String[] currentValues = entry.getMultiAttr(attr.getKey());
+			if (currentValues == null)
+				currentValues = new String[0];
+
+			boolean modified;
+			if (newValues.length != currentValues.length)
+				modified = true;
+			else if (newValues.length <= 1)
+				modified = !Arrays.equals(newValues, currentValues);
+			else
+				modified = !new HashSet<>(Arrays.asList(newValues)).equals(
+						new HashSet<>(Arrays.asList(currentValues)));
+
+			if (modified)
+				modifiedAttributes.put(attr.getKey(), attr.getValue());
+		}
+		return modifiedAttributes;
+	}
+
+	/**
+	 * Função privada que converte o valor bruto de um campo para os valores
+	 * textuais que serão gravados no Zimbra.
+	 */
+	private static String[] toStringValues(Object value) {
+		if (value instanceof String[])
+			return (String[]) value;
+
+		Collection<?> values;
+		if (value instanceof Collection)
+			values = (Collection<?>) value;
+		else if (value instanceof Object[])
+			values = Arrays.asList((Object[]) value);
+		else
+			return new String[] { value.toString() };
+
+		String[] strValues = new String[values.size()];
+		int i = 0;
+		for (Object v : values)
+			strValues[i++] = String.valueOf(v);
+		return strValues;
+	}
 	/**
 	 * Função que preenche os campos do objeto com os valores dos atributos de
 	 * acordo com o mapeamento.
@@ -0,0 +1,112 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.zimbra.ADCredentialCache;
+
+public class ADCredentialCacheTest {
+
+	private static final long TTL = 200;
+	private static final int ITERATIONS = 10;
+
+	@Test
+	public void testPutAndVerify() {
+		ADCredentialCache cache = new ADCredentialCache(TTL, 10, ITERATIONS);
+		assertTrue(cache.isEnabled());
+		assertFalse(cache.verify("conta1", "senha"));
+
+		cache.put("conta1", "senha");
+		assertTrue(cache.verify("conta1", "senha"));
+		assertFalse(cache.verify("conta2", "senha"));
+	}
+
+	@Test
+	public void testWrongPasswordNeverMatches() {
+		ADCredentialCache cache = new ADCredentialCache(TTL, 10, ITERATIONS);
+		cache.put("conta1", "senha");
+
+		assertFalse(cache.verify("conta1", "Senha"));
+		assertFalse(cache.verify("conta1", "senha "));
+		assertFalse(cache.verify("conta1", "senh"));
+		assertFalse(cache.verify("conta1", ""));
+		assertFalse(cache.verify("conta1", null));
+
+		// a senha incorreta não remove a autenticação armazenada
+		assertTrue(cache.verify("conta1", "senha"));
+
+		// senhas vazias nunca são armazenadas
+		cache.put("conta2", "");
+		cache.put("conta3", null);
+		assertFalse(cache.verify("conta2", ""));
+		assertFalse(cache.verify("conta3", null));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testTtlExpiry() throws Exception {
+		ADCredentialCache cache = new ADCredentialCache(TTL, 10, ITERATIONS);
+		cache.put("conta1", "senha");
+		assertTrue(cache.verify("conta1", "senha"));
+
+		Thread.sleep(TTL + 50);
+
+		// a entrada expirada é removida na verificação
+		assertFalse(cache.verify("conta1", "senha"));
+		assertEquals(0, cache.size());
+
+		// uma nova autenticação volta a ser aceita
+		cache.put("conta1", "senha");
+		assertTrue(cache.verify("conta1", "senha"));
+	}
+
+	@Test
+	public void testLruEviction() {
+		ADCredentialCache cache = new ADCredentialCache(TTL * 100, 2, ITERATIONS);
+		cache.put("conta1", "senha1");
+		cache.put("conta2", "senha2");
+
+		// o acesso torna a primeira conta a mais recente
+		assertTrue(cache.verify("conta1", "senha1"));
+
+		cache.put("conta3", "senha3");
+		assertEquals(2, cache.size());
+		assertFalse(cache.verify("conta2", "senha2"));
+		assertTrue(cache.verify("conta1", "senha1"));
+		assertTrue(cache.verify("conta3", "senha3"));
+
+		// substituir uma entrada existente não descarta as demais
+		cache.put("conta3", "nova");
+		assertEquals(2, cache.size());
+		assertTrue(cache.verify("conta1", "senha1"));
+		assertFalse(cache.verify("conta3", "senha3"));
+		assertTrue(cache.verify("conta3", "nova"));
+	}
+
+	@Test
+	public void testInvalidate() {
+		ADCredentialCache cache = new ADCredentialCache(TTL, 10, ITERATIONS);
+		cache.put("conta1", "senha1");
+		cache.put("conta2", "senha2");
+
+		cache.invalidate("conta1");
+		assertFalse(cache.verify("conta1", "senha1"));
+		assertTrue(cache.verify("conta2", "senha2"));
+
+		// remover uma conta inexistente não faz nada
+		cache.invalidate("conta1");
+		cache.invalidate(null);
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testDisabled() {
+		ADCredentialCache cache = new ADCredentialCache(0, 10, ITERATIONS);
+		assertFalse(cache.isEnabled());
+
+		cache.put("conta1", "senha");
+		assertFalse(cache.verify("conta1", "senha"));
+		assertEquals(0, cache.size());
+	}
+}
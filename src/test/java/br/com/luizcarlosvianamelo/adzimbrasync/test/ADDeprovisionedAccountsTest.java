@@ -0,0 +1,92 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.zimbra.ADDeprovisionedAccounts;
+
+public class ADDeprovisionedAccountsTest {
+
+	private static final String DOMAIN = "empresa.local";
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		this.dir = Files.createTempDirectory("deprovisioned").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = this.dir.listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		this.dir.delete();
+	}
+
+	@Test
+	public void testAddAndRemove() throws Exception {
+		ADDeprovisionedAccounts accounts = ADDeprovisionedAccounts.load(this.dir, DOMAIN);
+		assertFalse(accounts.contains("joao@empresa.local"));
+		assertFalse(accounts.contains(null));
+
+		// os e-mails são comparados sem considerar a caixa
+		accounts.add("Joao@Empresa.local");
+		assertTrue(accounts.contains("joao@empresa.local"));
+		assertTrue(accounts.contains("JOAO@EMPRESA.LOCAL"));
+
+		accounts.remove("joao@EMPRESA.local");
+		assertFalse(accounts.contains("joao@empresa.local"));
+
+		// e-mails nulos são ignorados
+		accounts.add(null);
+		accounts.remove(null);
+	}
+
+	@Test
+	public void testReload() throws Exception {
+		ADDeprovisionedAccounts accounts = ADDeprovisionedAccounts.load(this.dir, DOMAIN);
+		accounts.add("a@empresa.local");
+		accounts.add("b@empresa.local");
+		accounts.add("c@empresa.local");
+		accounts.remove("b@empresa.local");
+
+		// cada alteração é gravada imediatamente
+		accounts = ADDeprovisionedAccounts.load(this.dir, DOMAIN);
+		assertTrue(accounts.contains("a@empresa.local"));
+		assertFalse(accounts.contains("b@empresa.local"));
+		assertTrue(accounts.contains("c@empresa.local"));
+
+		// o arquivo temporário não é mantido
+		assertEquals(Arrays.asList(DOMAIN + ".deprovisioned"), Arrays.asList(this.dir.list()));
+		assertEquals(Arrays.asList("a@empresa.local", "c@empresa.local"), Files.readAllLines(
+				new File(this.dir, DOMAIN + ".deprovisioned").toPath(), StandardCharsets.UTF_8));
+
+		// os domínios são armazenados separadamente
+		assertFalse(ADDeprovisionedAccounts.load(this.dir, "outro.local").contains("a@empresa.local"));
+	}
+
+	@Test
+	public void testMissingDirectory() throws Exception {
+		File subDir = new File(this.dir, "estado");
+		ADDeprovisionedAccounts accounts = ADDeprovisionedAccounts.load(subDir, DOMAIN);
+		assertFalse(accounts.contains("a@empresa.local"));
+
+		// a pasta é criada na primeira gravação
+		accounts.add("a@empresa.local");
+		assertTrue(ADDeprovisionedAccounts.load(subDir, DOMAIN).contains("a@empresa.local"));
+
+		new File(subDir, DOMAIN + ".deprovisioned").delete();
+		subDir.delete();
+	}
+}
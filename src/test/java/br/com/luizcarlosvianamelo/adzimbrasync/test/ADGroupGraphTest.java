@@ -0,0 +1,135 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADGroup;
+import br.com.luizcarlosvianamelo.adzimbrasync.ad.ADGroupGraph;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.DN;
+
+public class ADGroupGraphTest {
+
+	private static DN group(String name) {
+		return DN.parse("CN=" + name + ",OU=Grupos,DC=empresa,DC=local");
+	}
+
+	private static DN user(String name) {
+		return DN.parse("CN=" + name + ",OU=Usuarios,DC=empresa,DC=local");
+	}
+
+	private static ADGroup createGroup(DN dn, DN... members) {
+		ADGroup group = new ADGroup();
+		group.setDistinguishedName(dn);
+		group.setMembers(new ArrayList<>(Arrays.asList(members)));
+		return group;
+	}
+
+	private static Set<DN> set(DN... dns) {
+		return new HashSet<>(Arrays.asList(dns));
+	}
+
+	@Test
+	public void testCycle() {
+		// A contém B e B contém A
+		List<ADGroup> groups = Arrays.asList(
+				createGroup(group("A"), user("u1"), group("B")),
+				createGroup(group("B"), user("u2"), group("A")));
+
+		ADGroupGraph graph = new ADGroupGraph(groups);
+		assertEquals(set(user("u1"), user("u2")), graph.getNestedMembers(group("A")));
+		assertEquals(set(user("u1"), user("u2")), graph.getNestedMembers(group("B")));
+
+		// a ordem das consultas não altera o resultado
+		graph = new ADGroupGraph(groups);
+		assertEquals(set(user("u1"), user("u2")), graph.getNestedMembers(group("B")));
+		assertEquals(set(user("u1"), user("u2")), graph.getNestedMembers(group("A")));
+
+		assertEquals(set(group("A"), group("B")), graph.getAncestors(Arrays.asList(group("A"))));
+	}
+
+	@Test
+	public void testLongCycle() {
+		// A -> B -> C -> A, com um usuário em cada grupo
+		List<ADGroup> groups = Arrays.asList(
+				createGroup(group("A"), user("a"), group("B")),
+				createGroup(group("B"), user("b"), group("C")),
+				createGroup(group("C"), user("c"), group("A")));
+
+		ADGroupGraph graph = new ADGroupGraph(groups);
+		Set<DN> all = set(user("a"), user("b"), user("c"));
+		assertEquals(all, graph.getNestedMembers(group("B")));
+		assertEquals(all, graph.getNestedMembers(group("C")));
+		assertEquals(all, graph.getNestedMembers(group("A")));
+	}
+
+	@Test
+	public void testSelfMember() {
+		ADGroupGraph graph = new ADGroupGraph(Arrays.asList(
+				createGroup(group("A"), group("A"), user("u1"))));
+
+		assertEquals(set(user("u1")), graph.getNestedMembers(group("A")));
+		assertEquals(set(group("A")), graph.getAncestors(Arrays.asList(group("A"))));
+	}
+
+	@Test
+	public void testDiamond() {
+		// A contém B e C, que contêm D
+		List<ADGroup> groups = Arrays.asList(
+				createGroup(group("A"), group("B"), group("C")),
+				createGroup(group("B"), group("D"), user("u1")),
+				createGroup(group("C"), group("D"), user("u2")),
+				createGroup(group("D"), user("u3"), user("u4")));
+
+		ADGroupGraph graph = new ADGroupGraph(groups);
+		Set<DN> members = graph.getNestedMembers(group("A"));
+		assertEquals(set(user("u1"), user("u2"), user("u3"), user("u4")), members);
+
+		// os membros calculados dos subgrupos são reutilizados
+		graph = new ADGroupGraph(groups);
+		assertEquals(set(user("u1"), user("u3"), user("u4")), graph.getNestedMembers(group("B")));
+		assertEquals(set(user("u3"), user("u4")), graph.getNestedMembers(group("D")));
+		assertEquals(members, graph.getNestedMembers(group("A")));
+		assertSame(graph.getNestedMembers(group("A")), graph.getNestedMembers(group("A")));
+
+		assertEquals(set(group("A"), group("B"), group("C"), group("D")),
+				graph.getAncestors(Arrays.asList(group("D"))));
+		assertEquals(set(group("A"), group("C")), graph.getAncestors(Arrays.asList(group("C"))));
+		assertEquals(set(group("A")), graph.getAncestors(Arrays.asList(group("A"))));
+	}
+
+	@Test
+	public void testMemberCase() {
+		// os membros referenciam os grupos com outra caixa
+		ADGroupGraph graph = new ADGroupGraph(Arrays.asList(
+				createGroup(group("A"), DN.parse("cn=b,ou=grupos,dc=EMPRESA,dc=LOCAL")),
+				createGroup(group("B"), user("u1"))));
+
+		assertEquals(set(user("u1")), graph.getNestedMembers(group("A")));
+		assertEquals(set(group("A"), group("B")), graph.getAncestors(Arrays.asList(group("B"))));
+	}
+
+	@Test
+	public void testMissingGroup() {
+		ADGroup empty = new ADGroup();
+		empty.setDistinguishedName(group("Vazio"));
+		ADGroupGraph graph = new ADGroupGraph(Arrays.asList(
+				createGroup(group("A"), user("u1"), group("Externo")),
+				empty));
+
+		// os membros que não são grupos conhecidos são tratados como usuários
+		assertEquals(set(user("u1"), group("Externo")), graph.getNestedMembers(group("A")));
+		assertTrue(graph.getNestedMembers(group("Vazio")).isEmpty());
+		assertTrue(graph.getNestedMembers(group("Inexistente")).isEmpty());
+		assertEquals(set(group("Inexistente")),
+				graph.getAncestors(Arrays.asList(group("Inexistente"))));
+		assertTrue(graph.getAncestors(Collections.<DN>emptyList()).isEmpty());
+	}
+}
@@ -0,0 +1,208 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.zimbra.ADSnapshotStore;
+
+public class ADSnapshotStoreTest {
+
+	private static final String DOMAIN = "empresa.local";
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		this.dir = Files.createTempDirectory("snapshot").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = this.dir.listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		this.dir.delete();
+	}
+
+	private File getIndexFile() {
+		return new File(this.dir, DOMAIN + ".snapshot");
+	}
+
+	private File getLogFile() {
+		return new File(this.dir, DOMAIN + ".snapshot.log");
+	}
+
+	private void appendToLog(String content) throws Exception {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(this.getLogFile(), true),
+				StandardCharsets.UTF_8)) {
+			writer.write(content);
+		}
+	}
+
+	@Test
+	public void testPutAndGet() throws Exception {
+		try (ADSnapshotStore store = ADSnapshotStore.open(this.dir, DOMAIN)) {
+			assertFalse(store.isUnchanged("guid1", 1));
+			assertNull(store.getName("guid1"));
+
+			store.put("guid1", 0x1234L, "joao@empresa.local");
+			assertTrue(store.isUnchanged("guid1", 0x1234L));
+			assertFalse(store.isUnchanged("guid1", 0x1235L));
+			assertEquals("joao@empresa.local", store.getName("guid1"));
+
+			// nomes com espaços não são armazenados
+			store.put("guid2", 7, "nome com espaço");
+			assertTrue(store.isUnchanged("guid2", 7));
+			assertNull(store.getName("guid2"));
+
+			store.remove("guid1");
+			assertFalse(store.isUnchanged("guid1", 0x1234L));
+			assertNull(store.getName("guid1"));
+
+			// identificadores nulos são ignorados
+			store.put(null, 1, "x@empresa.local");
+			assertFalse(store.isUnchanged(null, 1));
+		}
+	}
+
+	@Test
+	public void testReopenAfterAppend() throws Exception {
+		try (ADSnapshotStore store = ADSnapshotStore.open(this.dir, DOMAIN)) {
+			store.put("guid1", 0x10L, "a@empresa.local");
+			// hashes negativos são gravados em hexadecimal sem sinal
+			store.put("guid2", -2L, "b@empresa.local");
+			store.put("guid3", Long.MIN_VALUE, null);
+			store.put("guid4", 5, "d@empresa.local");
+			store.remove("guid4");
+		}
+		assertTrue(this.getLogFile().exists());
+
+		try (ADSnapshotStore store = ADSnapshotStore.open(this.dir, DOMAIN)) {
+			assertTrue(store.isUnchanged("guid1", 0x10L));
+			assertTrue(store.isUnchanged("guid2", -2L));
+			assertTrue(store.isUnchanged("guid3", Long.MIN_VALUE));
+			assertFalse(store.isUnchanged("guid4", 5));
+			assertEquals("b@empresa.local", store.getName("guid2"));
+			assertNull(store.getName("guid3"));
+
+			// as alterações após a reabertura são incluídas no mesmo log
+			store.put("guid1", 0x11L, "a2@empresa.local");
+		}
+
+		try (ADSnapshotStore store = ADSnapshotStore.open(this.dir, DOMAIN)) {
+			assertTrue(store.isUnchanged("guid1", 0x11L));
+			assertEquals("a2@empresa.local", store.getName("guid1"));
+			assertTrue(store.isUnchanged("guid2", -2L));
+		}
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		// sobrescreve as mesmas entradas até que o log fique maior que o índice
+		int numEntries = 10;
+		try (ADSnapshotStore store = ADSnapshotStore.open(this.dir, DOMAIN)) {
+			for (int i = 0; i < 1200; i++)
+				store.put("guid" + (i % numEntries), i, "user" + (i % numEntries) + "@empresa.local");
+			store.remove("guid0");
+		}
+
+		// o log foi unido ao índice no fechamento
+		assertTrue(this.getIndexFile().exists());
+		assertFalse(this.getLogFile().exists());
+		assertEquals(numEntries - 1, Files.readAllLines(this.getIndexFile().toPath(),
+				StandardCharsets.UTF_8).size());
+
+		try (ADSnapshotStore store = ADSnapshotStore.open(this.dir, DOMAIN)) {
+			assertFalse(store.isUnchanged("guid0", 1190));
+			for (int i = 1; i < numEntries; i++) {
+				assertTrue(store.isUnchanged("guid" + i, 1190 + i));
+				assertEquals("user" + i + "@empresa.local", store.getName("guid" + i));
+			}
+
+			// o log é aplicado sobre o índice compactado
+			store.put("guid1", 42, "novo@empresa.local");
+		}
+		assertTrue(this.getLogFile().exists());
+
+		try (ADSnapshotStore store = ADSnapshotStore.open(this.dir, DOMAIN)) {
+			assertTrue(store.isUnchanged("guid1", 42));
+			assertTrue(store.isUnchanged("guid2", 1192));
+		}
+	}
+
+	@Test
+	public void testTruncatedLastLogLine() throws Exception {
+		try (ADSnapshotStore store = ADSnapshotStore.open(this.dir, DOMAIN)) {
+			store.put("guid1", 0xabcdefL, "joao@empresa.local");
+		}
+
+		// uma falha durante a gravação deixa a última linha incompleta
+		this.appendToLog("guid2 1f2e3d4c5b6a7988 maria@empresa.local\n");
+		this.appendToLog("guid1 abc joao@empre");
+
+		try (ADSnapshotStore store = ADSnapshotStore.open(this.dir, DOMAIN)) {
+			// a linha incompleta não substitui o valor anterior
+			assertTrue(store.isUnchanged("guid1", 0xabcdefL));
+			assertEquals("joao@empresa.local", store.getName("guid1"));
+			assertTrue(store.isUnchanged("guid2", 0x1f2e3d4c5b6a7988L));
+
+			// a próxima alteração continua em uma nova linha
+			store.put("guid3", 3, "c@empresa.local");
+		}
+
+		try (ADSnapshotStore store = ADSnapshotStore.open(this.dir, DOMAIN)) {
+			assertTrue(store.isUnchanged("guid1", 0xabcdefL));
+			assertTrue(store.isUnchanged("guid3", 3));
+		}
+	}
+
+	@Test
+	public void testInvalidLogLines() throws Exception {
+		this.appendToLog("\nguid1\nguid2 xyz\nguid3 12345678901234567 a@b\nguid4 1 a b\nguid5 ff e@empresa.local\n");
+
+		try (ADSnapshotStore store = ADSnapshotStore.open(this.dir, DOMAIN)) {
+			assertFalse(store.isUnchanged("guid2", 0));
+			assertNull(store.getName("guid3"));
+			assertNull(store.getName("guid4"));
+			assertTrue(store.isUnchanged("guid5", 0xff));
+		}
+	}
+
+	@Test
+	public void testComputeHash() {
+		Map<String, Object> attrs = new LinkedHashMap<>();
+		attrs.put("displayName", "João");
+		attrs.put("sn", new String[] { "Silva" });
+		Map<String, Object> reversedAttrs = new HashMap<>();
+		reversedAttrs.put("sn", new String[] { "Silva" });
+		reversedAttrs.put("displayName", "João");
+
+		// a ordem dos atributos e a ordem e caixa dos membros não alteram o hash
+		long hash = ADSnapshotStore.computeHash(attrs, Arrays.asList("a@empresa.local", "B@empresa.local"));
+		assertEquals(hash, ADSnapshotStore.computeHash(reversedAttrs,
+				Arrays.asList("b@empresa.local", "A@EMPRESA.LOCAL")));
+
+		assertFalse(hash == ADSnapshotStore.computeHash(attrs, Arrays.asList("a@empresa.local")));
+		assertFalse(hash == ADSnapshotStore.computeHash(attrs, null));
+
+		attrs.put("displayName", "Joao");
+		assertFalse(hash == ADSnapshotStore.computeHash(attrs,
+				Arrays.asList("a@empresa.local", "b@empresa.local")));
+	}
+}
@@ -0,0 +1,146 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.zimbra.ADWriteBackJournal;
+
+public class ADWriteBackJournalTest {
+
+	private static final String ACCOUNT_ID = "5b0c5e0e-1d2b-4a6f-9c3e-7f1a2b3c4d5e";
+
+	private File journalFile;
+
+	@Before
+	public void setUp() throws Exception {
+		this.journalFile = File.createTempFile("writeback", ".journal");
+	}
+
+	@After
+	public void tearDown() {
+		this.journalFile.delete();
+	}
+
+	/**
+	 * Grava as linhas no arquivo e lê as modificações de volta.
+	 */
+	private Map<String, Map<String, Object>> roundTrip(String... lines) throws Exception {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(this.journalFile),
+				StandardCharsets.UTF_8)) {
+			for (String line : lines)
+				writer.write(line);
+		}
+		return ADWriteBackJournal.read(this.journalFile);
+	}
+
+	@Test
+	public void testRoundTripSpecialCharacters() throws Exception {
+		String value = "linha 1\nlinha 2\r\n\tcom tabulação e barra \\ no fim\\";
+		Map<String, Object> attrs = this.roundTrip(
+				ADWriteBackJournal.formatLine(ACCOUNT_ID, "description", value),
+				ADWriteBackJournal.formatLine(ACCOUNT_ID, "attr\twith\\tab", "\\t não é tabulação"))
+				.get(ACCOUNT_ID);
+
+		assertNotNull(attrs);
+		assertEquals(value, attrs.get("description"));
+		assertEquals("\\t não é tabulação", attrs.get("attr\twith\\tab"));
+	}
+
+	@Test
+	public void testRoundTripMultiValued() throws Exception {
+		String[] values = { "a\tb", "", "c\\", "d\ne" };
+		Map<String, Object> attrs = this.roundTrip(
+				ADWriteBackJournal.formatLine(ACCOUNT_ID, "multi", values),
+				ADWriteBackJournal.formatLine(ACCOUNT_ID, "empty", new String[0]),
+				ADWriteBackJournal.formatLine(ACCOUNT_ID, "single", new String[] { "único" }),
+				ADWriteBackJournal.formatLine(ACCOUNT_ID, "emptyString", ""))
+				.get(ACCOUNT_ID);
+
+		assertNotNull(attrs);
+		assertArrayEquals(values, (String[]) attrs.get("multi"));
+
+		// a remoção de todos os valores deve ser mantida como uma lista vazia
+		assertTrue(attrs.get("empty") instanceof String[]);
+		assertEquals(0, ((String[]) attrs.get("empty")).length);
+
+		// uma lista com um valor não deve ser convertida para string
+		assertTrue(attrs.get("single") instanceof String[]);
+		assertArrayEquals(new String[] { "único" }, (String[]) attrs.get("single"));
+
+		assertEquals("", attrs.get("emptyString"));
+	}
+
+	@Test
+	public void testValueEqualToMarker() throws Exception {
+		// um valor igual ao marcador não pode ser lido como lista
+		String marker = ADWriteBackJournal.MULTI_VALUE_MARKER;
+		Map<String, Object> attrs = this.roundTrip(
+				ADWriteBackJournal.formatLine(ACCOUNT_ID, "attr", marker),
+				ADWriteBackJournal.formatLine(ACCOUNT_ID, "list", new String[] { marker }))
+				.get(ACCOUNT_ID);
+
+		assertEquals(marker, attrs.get("attr"));
+		assertArrayEquals(new String[] { marker }, (String[]) attrs.get("list"));
+	}
+
+	@Test
+	public void testLaterLinesReplaceValues() throws Exception {
+		Map<String, Map<String, Object>> writes = this.roundTrip(
+				ADWriteBackJournal.formatLine(ACCOUNT_ID, "displayName", "Antigo"),
+				ADWriteBackJournal.formatLine("outra-conta", "displayName", "Outra"),
+				ADWriteBackJournal.formatLine(ACCOUNT_ID, "displayName", "Novo"));
+
+		assertEquals(2, writes.size());
+		assertEquals("Novo", writes.get(ACCOUNT_ID).get("displayName"));
+		assertEquals("Outra", writes.get("outra-conta").get("displayName"));
+	}
+
+	@Test
+	public void testInvalidAndLegacyLines() throws Exception {
+		Map<String, Map<String, Object>> writes = this.roundTrip(
+				"\n",
+				ACCOUNT_ID + "\n",
+				ACCOUNT_ID + "\tsemValor\n",
+				"\tattr\tvalor\n",
+				// linhas gravadas antes do marcador de listas
+				ACCOUNT_ID + "\tlegado\tvalor\n",
+				ACCOUNT_ID + "\tlegadoMulti\tv1\tv2\n",
+				// última linha gravada pela metade
+				ACCOUNT_ID + "\tincompleto");
+
+		assertEquals(1, writes.size());
+		Map<String, Object> attrs = writes.get(ACCOUNT_ID);
+		assertEquals(2, attrs.size());
+		assertEquals("valor", attrs.get("legado"));
+		assertArrayEquals(new String[] { "v1", "v2" }, (String[]) attrs.get("legadoMulti"));
+	}
+
+	@Test
+	public void testParseLine() {
+		Map<String, Map<String, Object>> writes = new LinkedHashMap<>();
+		String line = ADWriteBackJournal.formatLine(ACCOUNT_ID, "mail", new String[] { "a@b", "c@d" });
+		assertTrue(line.endsWith("\n"));
+		assertTrue(ADWriteBackJournal.parseLine(line.substring(0, line.length() - 1), writes));
+		assertArrayEquals(new String[] { "a@b", "c@d" }, (String[]) writes.get(ACCOUNT_ID).get("mail"));
+
+		assertFalse(ADWriteBackJournal.parseLine("invalida", writes));
+		assertEquals(1, writes.size());
+	}
+
+	@Test
+	public void testMissingFile() throws Exception {
+		this.journalFile.delete();
+		assertTrue(ADWriteBackJournal.read(this.journalFile).isEmpty());
+	}
+}
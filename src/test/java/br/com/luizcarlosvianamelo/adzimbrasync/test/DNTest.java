@@ -0,0 +1,178 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.test;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+
+import org.junit.Test;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.DN;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.RDN;
+
+public class DNTest {
+
+	private static final String[] ATTRIBUTE_TYPES = { "CN", "OU", "DC", "UID", "O", "L" };
+
+	private static final String VALUE_CHARS = "abcXYZ019 ,+\"\\<>;=#*()ãçéÁ";
+
+	@Test
+	public void testParseEscapedValues() {
+		DN dn = DN.parse("CN=Silva\\, Joao,OU=Usuarios,DC=empresa,DC=local");
+		assertNotNull(dn);
+		assertEquals(4, dn.getNumberOfLevels());
+		assertEquals("Silva, Joao", dn.getLeafRDN().getAttributeValue());
+		assertEquals("CN=Silva\\, Joao,OU=Usuarios,DC=empresa,DC=local", dn.toString());
+
+		// pares hexadecimais em UTF-8 e espaços ao redor dos separadores
+		dn = DN.parse("CN=Jo\\C3\\A3o , OU = Usuarios,DC=empresa");
+		assertNotNull(dn);
+		assertEquals("João", dn.getLeafRDN().getAttributeValue());
+		assertEquals("Usuarios", dn.getLevel(1).getAttributeValue());
+
+		// espaços precedidos por '\' são mantidos
+		dn = DN.parse("CN=\\ a\\ ,DC=empresa");
+		assertNotNull(dn);
+		assertEquals(" a ", dn.getLeafRDN().getAttributeValue());
+
+		// valores entre aspas e RDNs com vários atributos
+		dn = DN.parse("CN=\"Silva, Joao\"+UID=joao,DC=empresa");
+		assertNotNull(dn);
+		RDN rdn = dn.getLeafRDN();
+		assertEquals(2, rdn.getNumberOfAttributes());
+		assertEquals("Silva, Joao", rdn.getAttributeValue(0));
+		assertEquals("UID", rdn.getAttributeName(1));
+		assertEquals("joao", rdn.getAttributeValue(1));
+
+		// valores hexadecimais codificados em BER
+		dn = DN.parse("CN=#04034a6f65,DC=empresa");
+		assertNotNull(dn);
+		assertEquals("Joe", dn.getLeafRDN().getAttributeValue());
+	}
+
+	@Test
+	public void testParseInvalid() {
+		String[] invalidDNs = { "", "CN", "=valor", "CN=valor\\", "CN=#0", "CN=\"valor", "CN=valor,", "CN=\"a\"b" };
+		for (String invalidDN : invalidDNs)
+			assertNull(invalidDN, DN.parse(invalidDN));
+	}
+
+	@Test
+	public void testHierarchy() {
+		DN dn = DN.parse("CN=Silva\\, Joao,OU=Usuarios,DC=empresa,DC=local");
+		DN base = DN.parse("dc=EMPRESA, dc=local");
+		assertTrue(dn.isDescendantOf(base));
+		assertFalse(base.isDescendantOf(dn));
+		assertFalse(dn.isDescendantOf(dn));
+		assertEquals(DN.parse("OU=Usuarios,DC=empresa,DC=local"), dn.getParent());
+		assertEquals(base, dn.getAncestor(2));
+		assertNull(dn.getAncestor(4));
+
+		// a vírgula precedida por '\' não cria um novo nível
+		assertFalse(DN.parse("CN=a\\,DC=local,DC=empresa,DC=local").isDescendantOf(DN.parse("DC=local,DC=empresa,DC=local")));
+	}
+
+	/**
+	 * Compara o parser com a classe {@link LdapName} para DNs gerados
+	 * aleatoriamente.
+	 */
+	@Test
+	public void testParseFuzz() throws Exception {
+		Random random = new Random(4514);
+		for (int i = 0; i < 20000; i++) {
+			String str = randomDN(random);
+			LdapName ldapName = new LdapName(str);
+			DN dn = DN.parse(str);
+			assertNotNull(str, dn);
+			assertEquals(str, ldapName.size(), dn.getNumberOfLevels());
+
+			// o LdapName possui os RDNs da raiz para o nível mais baixo
+			for (int level = 0; level < dn.getNumberOfLevels(); level++) {
+				RDN rdn = dn.getLevel(level);
+				Attributes expected = ldapName.getRdn(ldapName.size() - level - 1).toAttributes();
+				assertEquals(str, expected.size(), rdn.getNumberOfAttributes());
+				for (int j = 0; j < rdn.getNumberOfAttributes(); j++) {
+					Attribute attr = expected.get(rdn.getAttributeName(j));
+					assertNotNull(str, attr);
+					assertEquals(str, attr.get(), rdn.getAttributeValue(j));
+				}
+			}
+
+			// a representação textual deve gerar o mesmo DN
+			assertEquals(str, ldapName, new LdapName(dn.toString()));
+			DN reparsed = DN.parse(dn.toString());
+			assertEquals(str, dn, reparsed);
+			assertEquals(str, dn.hashCode(), reparsed.hashCode());
+			assertEquals(str, dn.toString(), reparsed.toString());
+		}
+	}
+
+	/**
+	 * Gera um DN aleatório, com caracteres especiais, pares hexadecimais,
+	 * RDNs com vários atributos e espaços ao redor dos separadores.
+	 */
+	private static String randomDN(Random random) {
+		StringBuilder str = new StringBuilder();
+		int levels = 1 + random.nextInt(6);
+		for (int level = 0; level < levels; level++) {
+			if (level > 0)
+				str.append(randomSpaces(random)).append(random.nextInt(10) == 0 ? ';' : ',');
+
+			// os atributos de um mesmo RDN possuem nomes diferentes
+			int numAttributes = random.nextInt(8) == 0 ? 2 + random.nextInt(2) : 1;
+			int firstType = random.nextInt(ATTRIBUTE_TYPES.length);
+			for (int i = 0; i < numAttributes; i++) {
+				if (i > 0)
+					str.append(randomSpaces(random)).append('+');
+				str.append(randomSpaces(random))
+					.append(ATTRIBUTE_TYPES[(firstType + i) % ATTRIBUTE_TYPES.length])
+					.append(randomSpaces(random)).append('=').append(randomSpaces(random))
+					.append(randomValue(random));
+			}
+		}
+		return str.toString();
+	}
+
+	/**
+	 * Gera um valor aleatório com os caracteres especiais precedidos por '\'.
+	 * Alguns caracteres são representados por pares hexadecimais.
+	 */
+	private static String randomValue(Random random) {
+		StringBuilder value = new StringBuilder();
+		int length = 1 + random.nextInt(12);
+		for (int i = 0; i < length; i++)
+			value.append(VALUE_CHARS.charAt(random.nextInt(VALUE_CHARS.length())));
+
+		String escaped = (String) Rdn.escapeValue(value.toString());
+		if (random.nextInt(4) != 0)
+			return escaped;
+
+		// substitui os caracteres que não são espaços por pares hexadecimais
+		StringBuilder hex = new StringBuilder();
+		for (int i = 0; i < escaped.length(); i++) {
+			char c = escaped.charAt(i);
+			if (c == '\\' && i + 1 < escaped.length()) {
+				c = escaped.charAt(++i);
+				if (c == ' ') {
+					hex.append("\\ ");
+					continue;
+				}
+			} else if (c == ' ' || random.nextBoolean()) {
+				hex.append(c);
+				continue;
+			}
+			for (byte b : String.valueOf(c).getBytes(StandardCharsets.UTF_8))
+				hex.append(String.format("\\%02X", b & 0xff));
+		}
+		return hex.toString();
+	}
+
+	private static String randomSpaces(Random random) {
+		return random.nextInt(4) == 0 ? "  ".substring(random.nextInt(2)) : "";
+	}
+}
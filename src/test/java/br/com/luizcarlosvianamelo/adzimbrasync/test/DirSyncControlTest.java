@@ -0,0 +1,158 @@
+package br.com.luizcarlosvianamelo.adzimbrasync.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.naming.ldap.BasicControl;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.PagedResultsControl;
+
+import org.junit.Test;
+
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.DirSyncControl;
+import br.com.luizcarlosvianamelo.adzimbrasync.ldap.DirSyncResponseControl;
+
+public class DirSyncControlTest {
+
+	/**
+	 * Converte os valores para um vetor de <i>bytes</i>.
+	 */
+	private static byte[] bytes(int... values) {
+		byte[] result = new byte[values.length];
+		for (int i = 0; i < values.length; i++)
+			result[i] = (byte) values[i];
+		return result;
+	}
+
+	@Test
+	public void testEncodeRequest() {
+		DirSyncControl control = new DirSyncControl(DirSyncControl.OBJECT_SECURITY, 0x100000,
+				bytes(0x01, 0x02, 0x03));
+
+		assertEquals(DirSyncControl.OID, control.getID());
+		assertTrue(control.isCritical());
+		assertArrayEquals(bytes(
+				0x30, 0x0d,
+				0x02, 0x01, 0x01,
+				0x02, 0x03, 0x10, 0x00, 0x00,
+				0x04, 0x03, 0x01, 0x02, 0x03),
+				control.getEncodedValue());
+	}
+
+	@Test
+	public void testEncodeRequestIntegers() {
+		// o bit de sinal exige um byte a mais: 0x80 é codificado como 00 80
+		DirSyncControl control = new DirSyncControl(0x80, 0, null);
+		assertArrayEquals(bytes(
+				0x30, 0x09,
+				0x02, 0x02, 0x00, 0x80,
+				0x02, 0x01, 0x00,
+				0x04, 0x00),
+				control.getEncodedValue());
+
+		// as opções com o bit mais alto são negativas em complemento de dois
+		int flags = DirSyncControl.INCREMENTAL_VALUES | DirSyncControl.ANCESTORS_FIRST_ORDER
+				| DirSyncControl.OBJECT_SECURITY;
+		control = new DirSyncControl(flags, -1, new byte[0]);
+		assertArrayEquals(bytes(
+				0x30, 0x0b,
+				0x02, 0x04, 0x80, 0x00, 0x08, 0x01,
+				0x02, 0x01, 0xff,
+				0x04, 0x00),
+				control.getEncodedValue());
+	}
+
+	@Test
+	public void testEncodeRequestLongCookie() throws Exception {
+		// o cookie com mais de 127 bytes utiliza a forma longa do tamanho
+		byte[] cookie = new byte[300];
+		for (int i = 0; i < cookie.length; i++)
+			cookie[i] = (byte) i;
+
+		byte[] value = new DirSyncControl(0, 0, cookie).getEncodedValue();
+		int contentLength = 3 + 3 + 4 + cookie.length;
+		assertEquals(4 + contentLength, value.length);
+		assertArrayEquals(bytes(0x30, 0x82, contentLength >> 8, contentLength & 0xff,
+				0x02, 0x01, 0x00, 0x02, 0x01, 0x00, 0x04, 0x82, 0x01, 0x2c),
+				Arrays.copyOf(value, 14));
+		assertArrayEquals(cookie, Arrays.copyOfRange(value, 14, value.length));
+
+		// a mesma sequência deve ser lida pelo controle de resposta
+		DirSyncResponseControl response = new DirSyncResponseControl(DirSyncControl.OID, false, value);
+		assertFalse(response.hasMoreResults());
+		assertArrayEquals(cookie, response.getCookie());
+	}
+
+	@Test
+	public void testDecodeResponse() throws Exception {
+		DirSyncResponseControl response = new DirSyncResponseControl(DirSyncControl.OID, false, bytes(
+				0x30, 0x0a,
+				0x02, 0x01, 0x01,
+				0x02, 0x01, 0x00,
+				0x04, 0x02, 0xab, 0xcd));
+
+		assertTrue(response.hasMoreResults());
+		assertArrayEquals(bytes(0xab, 0xcd), response.getCookie());
+	}
+
+	@Test
+	public void testDecodeResponseEmptyCookie() throws Exception {
+		DirSyncResponseControl response = new DirSyncResponseControl(DirSyncControl.OID, false, bytes(
+				0x30, 0x08,
+				0x02, 0x01, 0x00,
+				0x02, 0x01, 0x00,
+				0x04, 0x00));
+
+		assertFalse(response.hasMoreResults());
+		assertNotNull(response.getCookie());
+		assertEquals(0, response.getCookie().length);
+	}
+
+	@Test
+	public void testDecodeInvalidResponse() {
+		byte[][] invalidValues = {
+				null,
+				bytes(),
+				// tipo inesperado
+				bytes(0x31, 0x08, 0x02, 0x01, 0x00, 0x02, 0x01, 0x00, 0x04, 0x00),
+				// tamanho do cookie maior que o valor
+				bytes(0x30, 0x08, 0x02, 0x01, 0x00, 0x02, 0x01, 0x00, 0x04, 0x05),
+				// valor truncado
+				bytes(0x30, 0x08, 0x02, 0x01, 0x00, 0x02, 0x01),
+				// inteiro vazio
+				bytes(0x30, 0x07, 0x02, 0x00, 0x02, 0x01, 0x00, 0x04, 0x00),
+		};
+
+		for (byte[] value : invalidValues) {
+			try {
+				new DirSyncResponseControl(DirSyncControl.OID, false, value);
+				fail("Invalid value accepted");
+			} catch (IOException e) {
+				// esperado
+			}
+		}
+	}
+
+	@Test
+	public void testFind() throws Exception {
+		byte[] value = bytes(0x30, 0x09, 0x02, 0x01, 0x00, 0x02, 0x01, 0x00, 0x04, 0x01, 0x7f);
+
+		assertNull(DirSyncResponseControl.find(null));
+		assertNull(DirSyncResponseControl.find(new Control[0]));
+		assertNull(DirSyncResponseControl.find(new Control[] { new PagedResultsControl(10, false) }));
+
+		// o controle não decodificado pelo JNDI é decodificado
+		DirSyncResponseControl response = DirSyncResponseControl.find(new Control[] {
+				new PagedResultsControl(10, false),
+				new BasicControl(DirSyncControl.OID, false, value) });
+		assertNotNull(response);
+		assertFalse(response.hasMoreResults());
+		assertArrayEquals(bytes(0x7f), response.getCookie());
+
+		// o controle já decodificado é retornado sem alterações
+		DirSyncResponseControl decoded = new DirSyncResponseControl(DirSyncControl.OID, false, value);
+		assertSame(decoded, DirSyncResponseControl.find(new Control[] { decoded }));
+	}
+}